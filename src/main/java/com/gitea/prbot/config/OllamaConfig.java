@@ -1,28 +1,21 @@
 package com.gitea.prbot.config;
 
-import org.springframework.ai.chat.ChatClient;
-import org.springframework.ai.ollama.OllamaChatClient;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * ModelRouter 가 모델별 옵션으로 직접 부르는 OllamaApi. 모델 이름은 요청마다 정한다.
+ */
 @Configuration
 public class OllamaConfig {
 
     @Value("${spring.ai.ollama.base-url:http://localhost:11434}")
     private String ollamaBaseUrl;
 
-    @Value("${spring.ai.ollama.chat.options.model:starcoder2:3b}")
-    private String model;
-
     @Bean
     public OllamaApi ollamaApi() {
         return new OllamaApi(ollamaBaseUrl);
     }
-
-    @Bean
-    public ChatClient chatClient(OllamaApi ollamaApi) {
-        return new OllamaChatClient(ollamaApi);
-    }
-}
\ No newline at end of file
+}
@@ -1,14 +1,71 @@
 package com.gitea.prbot.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
+/**
+ * Gitea API 용 RestTemplate.
+ * 연결 풀(keep-alive)을 재사용하고, 응답이 gzip/deflate 로 오면 HttpClient 가 자동으로 풀어준다
+ * (요청에는 Accept-Encoding 이 자동으로 붙는다).
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${gitea.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${gitea.http.read-timeout:60s}")
+    private Duration readTimeout;
+
+    @Value("${gitea.http.max-connections:32}")
+    private int maxConnections;
+
+    @Value("${gitea.http.max-connections-per-host:${bot.concurrency.gitea:8}}")
+    private int maxConnectionsPerHost;
+
+    @Value("${gitea.http.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient giteaHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        // 서버가 먼저 끊은 keep-alive 연결을 재사용하지 않도록 오래 쉰 연결은 검사 후 사용
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient giteaHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(giteaHttpClient));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.gitea.prbot.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 리액티브 리뷰 파이프라인(bot.review.pipeline: REACTIVE)에서 쓰는 Gitea WebClient.
+ * RestTemplate 쪽과 같은 gitea.http.* 설정으로 연결 수와 시간 제한을 맞춘다.
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Value("${gitea.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${gitea.http.read-timeout:60s}")
+    private Duration readTimeout;
+
+    @Value("${gitea.http.max-connections-per-host:${bot.concurrency.gitea:8}}")
+    private int maxConnectionsPerHost;
+
+    @Value("${gitea.http.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    @Bean
+    public WebClient giteaWebClient(WebClient.Builder builder) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("gitea")
+                .maxConnections(maxConnectionsPerHost)
+                .pendingAcquireMaxCount(-1)
+                .maxIdleTime(idleTimeout)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+}
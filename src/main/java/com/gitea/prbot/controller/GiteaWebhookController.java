@@ -1,7 +1,8 @@
 package com.gitea.prbot.controller;
 
 import com.gitea.prbot.dto.PullRequestEvent;
-import com.gitea.prbot.service.CodeReviewService;
+import com.gitea.prbot.entity.ReviewJob;
+import com.gitea.prbot.service.ReviewJobQueueService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -13,10 +14,10 @@ public class GiteaWebhookController {
 
     private static final Logger log = LoggerFactory.getLogger(GiteaWebhookController.class);
 
-    private final CodeReviewService codeReviewService;
+    private final ReviewJobQueueService reviewJobQueueService;
 
-    public GiteaWebhookController(CodeReviewService codeReviewService) {
-        this.codeReviewService = codeReviewService;
+    public GiteaWebhookController(ReviewJobQueueService reviewJobQueueService) {
+        this.reviewJobQueueService = reviewJobQueueService;
     }
 
     @PostMapping("/gitea")
@@ -27,8 +28,8 @@ public class GiteaWebhookController {
                     event.getRepository().getFullName());
 
             if ("opened".equals(event.getAction()) || "synchronize".equals(event.getAction())) {
-                codeReviewService.reviewPullRequest(event);
-                return ResponseEntity.ok("PR review initiated successfully");
+                ReviewJob job = reviewJobQueueService.enqueue(event);
+                return ResponseEntity.accepted().body("PR review queued (job #" + job.getId() + ")");
             }
 
             return ResponseEntity.ok("Event ignored (not a PR open/sync event)");
@@ -0,0 +1,14 @@
+package com.gitea.prbot.diff;
+
+/**
+ * diff 의 파일 단위 정보. path 는 변경 후(b/) 경로이다.
+ */
+public record DiffFile(String path, String extension) {
+
+    public static DiffFile of(String path) {
+        int lastDot = path.lastIndexOf('.');
+        int lastSlash = path.lastIndexOf('/');
+        String extension = lastDot > lastSlash + 1 ? path.substring(lastDot + 1) : "";
+        return new DiffFile(path, extension);
+    }
+}
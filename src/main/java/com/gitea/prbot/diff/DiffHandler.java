@@ -0,0 +1,22 @@
+package com.gitea.prbot.diff;
+
+/**
+ * UnifiedDiffParser 가 파싱 이벤트를 전달하는 콜백.
+ */
+public interface DiffHandler {
+
+    /** "diff --git" 으로 새 파일이 시작될 때 */
+    void onFile(DiffFile file);
+
+    /** "@@ -a,b +c,d @@" hunk 헤더를 만났을 때 */
+    void onHunk(DiffHunk hunk);
+
+    /**
+     * hunk 안의 한 줄. line 객체는 재사용되므로 콜백 밖으로 보관하면 안 된다.
+     */
+    void onLine(DiffLine line);
+
+    /** 입력이 끝났을 때 */
+    default void onEnd() {
+    }
+}
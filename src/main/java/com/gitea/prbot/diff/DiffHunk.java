@@ -0,0 +1,7 @@
+package com.gitea.prbot.diff;
+
+/**
+ * hunk 헤더 "@@ -oldStart,oldCount +newStart,newCount @@" 의 값.
+ */
+public record DiffHunk(int oldStart, int oldCount, int newStart, int newCount) {
+}
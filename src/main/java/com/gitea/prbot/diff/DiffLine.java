@@ -0,0 +1,60 @@
+package com.gitea.prbot.diff;
+
+/**
+ * hunk 안의 한 줄. 원본 버퍼의 [start, end) 범위를 가리키므로 substring 을 만들지 않는다.
+ * 파서가 같은 인스턴스를 재사용하므로 필요한 내용은 콜백 안에서 복사해야 한다.
+ */
+public final class DiffLine {
+
+    public enum Kind {
+        ADDED,
+        REMOVED,
+        CONTEXT
+    }
+
+    private CharSequence source;
+    private int start;
+    private int end;
+    private Kind kind;
+    private int oldLineNumber;
+    private int newLineNumber;
+
+    void set(CharSequence source, int start, int end, Kind kind, int oldLineNumber, int newLineNumber) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.kind = kind;
+        this.oldLineNumber = oldLineNumber;
+        this.newLineNumber = newLineNumber;
+    }
+
+    public Kind kind() { return kind; }
+
+    /** 변경 전 파일 기준 라인 번호. 추가된 줄은 다음에 올 줄 번호를 가리킨다. */
+    public int oldLineNumber() { return oldLineNumber; }
+
+    /** 변경 후 파일 기준 라인 번호. 삭제된 줄은 다음에 올 줄 번호를 가리킨다. */
+    public int newLineNumber() { return newLineNumber; }
+
+    /** +, -, 공백 접두사를 포함한 줄 길이 */
+    public int length() { return end - start; }
+
+    public char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    /** 접두사를 포함한 줄 전체를 덧붙인다. */
+    public void appendTo(StringBuilder target) {
+        target.append(source, start, end);
+    }
+
+    /** 접두사(+, -, 공백)를 제외한 내용을 덧붙인다. */
+    public void appendContentTo(StringBuilder target) {
+        target.append(source, Math.min(start + 1, end), end);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,264 @@
+package com.gitea.prbot.diff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * git unified diff 를 정규식이나 split 없이 한 번에 훑는 파서.
+ * 줄을 String 으로 만들지 않고 입력 버퍼의 인덱스 범위로만 다루며, 결과는 DiffHandler 콜백으로 전달한다.
+ */
+public class UnifiedDiffParser {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final String DIFF_GIT = "diff --git ";
+    private static final String HUNK_START = "@@ ";
+
+    private final DiffHandler handler;
+    private final DiffLine line = new DiffLine();
+
+    private boolean inFileHeader = false;
+    private boolean inHunk = false;
+    private int oldLine;
+    private int newLine;
+    private int oldRemaining;
+    private int newRemaining;
+
+    // parseHunkHeader 결과 (hunk 마다 배열을 만들지 않기 위해 필드로 둔다)
+    private int parsedOldStart;
+    private int parsedOldCount;
+    private int parsedNewStart;
+    private int parsedNewCount;
+
+    public UnifiedDiffParser(DiffHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 메모리에 있는 diff 전체를 파싱한다.
+     */
+    public void parse(CharSequence diff) {
+        int length = diff.length();
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int lineEnd = indexOf(diff, '\n', lineStart, length);
+            acceptLine(diff, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+        handler.onEnd();
+    }
+
+    /**
+     * Reader 에서 읽으며 파싱한다. 버퍼는 가장 긴 한 줄을 담을 만큼만 커진다.
+     */
+    public void parse(Reader reader) throws IOException {
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        CharBuffer view = CharBuffer.wrap(buffer);
+        int filled = 0;
+        int lineStart = 0;
+
+        while (true) {
+            if (filled == buffer.length) {
+                if (lineStart > 0) {
+                    // 처리한 줄을 버리고 남은 부분을 앞으로 당긴다
+                    System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                    filled -= lineStart;
+                    lineStart = 0;
+                } else {
+                    // 한 줄이 버퍼보다 길다
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    view = CharBuffer.wrap(buffer);
+                }
+            }
+
+            int read = reader.read(buffer, filled, buffer.length - filled);
+            if (read < 0) {
+                break;
+            }
+
+            int scanFrom = filled;
+            filled += read;
+            for (int i = scanFrom; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    acceptLine(view, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+        }
+
+        if (lineStart < filled) {
+            acceptLine(view, lineStart, filled);
+        }
+        handler.onEnd();
+    }
+
+    /**
+     * 줄 단위로 밀어 넣는 방식 (줄바꿈 문자는 제외). 입력이 끝나면 finish 를 호출해야 한다.
+     */
+    public void feed(CharSequence line) {
+        acceptLine(line, 0, line.length());
+    }
+
+    public void finish() {
+        handler.onEnd();
+    }
+
+    private void acceptLine(CharSequence source, int start, int end) {
+        if (end > start && source.charAt(end - 1) == '\r') {
+            end--;
+        }
+
+        if (startsWith(source, start, end, DIFF_GIT)) {
+            inFileHeader = true;
+            inHunk = false;
+            handler.onFile(DiffFile.of(extractPath(source, start + DIFF_GIT.length(), end)));
+            return;
+        }
+
+        if (startsWith(source, start, end, HUNK_START) && parseHunkHeader(source, start + HUNK_START.length(), end)) {
+            inFileHeader = false;
+            inHunk = true;
+            oldLine = parsedOldStart;
+            newLine = parsedNewStart;
+            oldRemaining = parsedOldCount;
+            newRemaining = parsedNewCount;
+            handler.onHunk(new DiffHunk(parsedOldStart, parsedOldCount, parsedNewStart, parsedNewCount));
+            return;
+        }
+
+        // 파일 헤더(index, ---, +++, mode, Binary files ...) 또는 hunk 밖의 줄
+        if (inFileHeader || !inHunk) {
+            return;
+        }
+
+        char marker = end > start ? source.charAt(start) : ' ';
+        switch (marker) {
+            case '+' -> {
+                line.set(source, start, end, DiffLine.Kind.ADDED, oldLine, newLine);
+                newLine++;
+                newRemaining--;
+            }
+            case '-' -> {
+                line.set(source, start, end, DiffLine.Kind.REMOVED, oldLine, newLine);
+                oldLine++;
+                oldRemaining--;
+            }
+            case '\\' -> {
+                // "\ No newline at end of file"
+                return;
+            }
+            default -> {
+                line.set(source, start, end, DiffLine.Kind.CONTEXT, oldLine, newLine);
+                oldLine++;
+                newLine++;
+                oldRemaining--;
+                newRemaining--;
+            }
+        }
+        handler.onLine(line);
+
+        if (oldRemaining <= 0 && newRemaining <= 0) {
+            inHunk = false;
+        }
+    }
+
+    /**
+     * "-a[,b] +c[,d] @@..." 를 파싱한다. 형식이 맞지 않으면 false.
+     */
+    private boolean parseHunkHeader(CharSequence source, int pos, int end) {
+        pos = skipSpaces(source, pos, end);
+        if (pos >= end || source.charAt(pos) != '-') {
+            return false;
+        }
+        pos++;
+
+        int numberEnd = scanDigits(source, pos, end);
+        if (numberEnd == pos) {
+            return false;
+        }
+        parsedOldStart = parseInt(source, pos, numberEnd);
+        pos = numberEnd;
+        parsedOldCount = 1;
+        if (pos < end && source.charAt(pos) == ',') {
+            numberEnd = scanDigits(source, pos + 1, end);
+            parsedOldCount = parseInt(source, pos + 1, numberEnd);
+            pos = numberEnd;
+        }
+
+        pos = skipSpaces(source, pos, end);
+        if (pos >= end || source.charAt(pos) != '+') {
+            return false;
+        }
+        pos++;
+
+        numberEnd = scanDigits(source, pos, end);
+        if (numberEnd == pos) {
+            return false;
+        }
+        parsedNewStart = parseInt(source, pos, numberEnd);
+        pos = numberEnd;
+        parsedNewCount = 1;
+        if (pos < end && source.charAt(pos) == ',') {
+            numberEnd = scanDigits(source, pos + 1, end);
+            parsedNewCount = parseInt(source, pos + 1, numberEnd);
+        }
+        return true;
+    }
+
+    /**
+     * "a/old/path b/new/path" 에서 b/ 이후의 경로를 꺼낸다.
+     */
+    private String extractPath(CharSequence source, int start, int end) {
+        for (int i = end - 3; i >= start; i--) {
+            if (source.charAt(i) == ' ' && source.charAt(i + 1) == 'b' && source.charAt(i + 2) == '/') {
+                return source.subSequence(i + 3, end).toString();
+            }
+        }
+        return start < end ? source.subSequence(start, end).toString() : "unknown";
+    }
+
+    private static boolean startsWith(CharSequence source, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (source.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence source, char target, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (source.charAt(i) == target) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipSpaces(CharSequence source, int pos, int end) {
+        while (pos < end && source.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int scanDigits(CharSequence source, int pos, int end) {
+        while (pos < end && source.charAt(pos) >= '0' && source.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int parseInt(CharSequence source, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (source.charAt(i) - '0');
+        }
+        return value;
+    }
+}
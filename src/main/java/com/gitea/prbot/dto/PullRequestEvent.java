@@ -90,6 +90,10 @@ public class PullRequestEvent {
         private Head head;
         private Base base;
 
+        // 변경 규모 (Gitea 가 webhook payload 에 포함하는 경우)
+        private Integer additions;
+        private Integer deletions;
+
         // Constructors
         public PullRequest() {
         }
@@ -170,6 +174,22 @@ public class PullRequestEvent {
             this.base = base;
         }
 
+        public Integer getAdditions() {
+            return additions;
+        }
+
+        public void setAdditions(Integer additions) {
+            this.additions = additions;
+        }
+
+        public Integer getDeletions() {
+            return deletions;
+        }
+
+        public void setDeletions(Integer deletions) {
+            this.deletions = deletions;
+        }
+
         // Builder pattern
         public static PullRequestBuilder builder() {
             return new PullRequestBuilder();
@@ -184,6 +204,8 @@ public class PullRequestEvent {
             private String htmlUrl;
             private Head head;
             private Base base;
+            private Integer additions;
+            private Integer deletions;
 
             public PullRequestBuilder number(Long number) {
                 this.number = number;
@@ -225,8 +247,21 @@ public class PullRequestEvent {
                 return this;
             }
 
+            public PullRequestBuilder additions(Integer additions) {
+                this.additions = additions;
+                return this;
+            }
+
+            public PullRequestBuilder deletions(Integer deletions) {
+                this.deletions = deletions;
+                return this;
+            }
+
             public PullRequest build() {
-                return new PullRequest(number, title, body, state, diffUrl, htmlUrl, head, base);
+                PullRequest pullRequest = new PullRequest(number, title, body, state, diffUrl, htmlUrl, head, base);
+                pullRequest.setAdditions(additions);
+                pullRequest.setDeletions(deletions);
+                return pullRequest;
             }
         }
 
@@ -0,0 +1,70 @@
+package com.gitea.prbot.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * PR 별로 마지막으로 리뷰를 마친 head SHA. synchronize 이벤트에서 증분 리뷰의 기준점이 된다.
+ */
+@Entity
+@Table(name = "pull_request_review_state", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pull_request_review_state_pr",
+                columnNames = {"repository_full_name", "pull_request_number"})
+})
+public class PullRequestReviewState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repository_full_name", nullable = false)
+    private String repositoryFullName;
+
+    @Column(name = "pull_request_number", nullable = false)
+    private Long pullRequestNumber;
+
+    @Column(nullable = false)
+    private String lastReviewedSha;
+
+    @Column(nullable = false)
+    private Instant reviewedAt;
+
+    // Constructors
+    public PullRequestReviewState() {
+    }
+
+    public PullRequestReviewState(String repositoryFullName, Long pullRequestNumber) {
+        this.repositoryFullName = repositoryFullName;
+        this.pullRequestNumber = pullRequestNumber;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public String getRepositoryFullName() {
+        return repositoryFullName;
+    }
+
+    public Long getPullRequestNumber() {
+        return pullRequestNumber;
+    }
+
+    public String getLastReviewedSha() {
+        return lastReviewedSha;
+    }
+
+    public void setLastReviewedSha(String lastReviewedSha) {
+        this.lastReviewedSha = lastReviewedSha;
+    }
+
+    public Instant getReviewedAt() {
+        return reviewedAt;
+    }
+
+    public void setReviewedAt(Instant reviewedAt) {
+        this.reviewedAt = reviewedAt;
+    }
+}
@@ -0,0 +1,95 @@
+package com.gitea.prbot.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * LLM 리뷰 결과 캐시의 영속 계층. 키는 프롬프트 종류(리뷰 타입 또는 COMBINED), 프롬프트 버전, 모델명,
+ * 파일 경로, 라인 번호를 뺀 chunk 내용의 해시이다 (ReviewResultCache.cacheKey).
+ */
+@Entity
+@Table(name = "review_cache_entry", indexes = {
+        @Index(name = "idx_review_cache_entry_last_used", columnList = "last_used_at")
+})
+public class ReviewCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(length = 20)
+    private String reviewType;
+
+    private String model;
+
+    @Column(length = 64)
+    private String promptVersion;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    // 응답을 받았을 때 chunk 의 시작 라인. 다른 위치에서 캐시가 맞으면 이 차이만큼 라인 번호를 옮긴다
+    @Column(name = "base_line", nullable = false)
+    private int baseLine;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "last_used_at", nullable = false)
+    private Instant lastUsedAt;
+
+    // Constructors
+    public ReviewCacheEntry() {
+    }
+
+    public ReviewCacheEntry(String cacheKey, String reviewType, String model, String promptVersion, String content,
+                            int baseLine) {
+        Instant now = Instant.now();
+        this.cacheKey = cacheKey;
+        this.reviewType = reviewType;
+        this.model = model;
+        this.promptVersion = promptVersion;
+        this.content = content;
+        this.baseLine = baseLine;
+        this.createdAt = now;
+        this.lastUsedAt = now;
+    }
+
+    // Getters and Setters
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public String getReviewType() {
+        return reviewType;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getPromptVersion() {
+        return promptVersion;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public int getBaseLine() {
+        return baseLine;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public void setLastUsedAt(Instant lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
+    }
+}
@@ -0,0 +1,183 @@
+package com.gitea.prbot.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * 웹훅으로 접수된 PR 리뷰 작업. 워커가 DB에서 꺼내 처리하므로 재시작 후에도 유실되지 않는다.
+ */
+@Entity
+@Table(name = "review_job", indexes = {
+        @Index(name = "idx_review_job_status_available", columnList = "status, available_at"),
+        @Index(name = "idx_review_job_pr", columnList = "repository_full_name, pull_request_number")
+})
+public class ReviewJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repository_full_name", nullable = false)
+    private String repositoryFullName;
+
+    @Column(name = "pull_request_number", nullable = false)
+    private Long pullRequestNumber;
+
+    private String headSha;
+
+    private String action;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ReviewJobStatus status;
+
+    private int attempts;
+
+    @Column(length = 2000)
+    private String lastError;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    // RUNNING 작업을 가진 워커와 그 임대 만료 시각. 만료될 때까지 하트비트가 없으면 다른 워커가 다시 가져간다
+    @Column(name = "worker_id", length = 100)
+    private String workerId;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    // Constructors
+    public ReviewJob() {
+    }
+
+    public ReviewJob(String repositoryFullName, Long pullRequestNumber, String headSha, String action, String payload) {
+        Instant now = Instant.now();
+        this.repositoryFullName = repositoryFullName;
+        this.pullRequestNumber = pullRequestNumber;
+        this.headSha = headSha;
+        this.action = action;
+        this.payload = payload;
+        this.status = ReviewJobStatus.PENDING;
+        this.availableAt = now;
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public String getRepositoryFullName() {
+        return repositoryFullName;
+    }
+
+    public void setRepositoryFullName(String repositoryFullName) {
+        this.repositoryFullName = repositoryFullName;
+    }
+
+    public Long getPullRequestNumber() {
+        return pullRequestNumber;
+    }
+
+    public void setPullRequestNumber(Long pullRequestNumber) {
+        this.pullRequestNumber = pullRequestNumber;
+    }
+
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    public void setHeadSha(String headSha) {
+        this.headSha = headSha;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public ReviewJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReviewJobStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+
+    public void setAvailableAt(Instant availableAt) {
+        this.availableAt = availableAt;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public void setWorkerId(String workerId) {
+        this.workerId = workerId;
+    }
+
+    public Instant getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(Instant leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
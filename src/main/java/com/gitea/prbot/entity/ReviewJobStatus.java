@@ -0,0 +1,9 @@
+package com.gitea.prbot.entity;
+
+public enum ReviewJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    SUPERSEDED
+}
@@ -0,0 +1,14 @@
+package com.gitea.prbot.model;
+
+/**
+ * diff 에 나온 파일의 종류. SOURCE 가 아닌 파일은 chunk 로 나누기 전에 버린다.
+ */
+public enum FileKind {
+    SOURCE,
+    GENERATED,
+    VENDORED,
+    BINARY,
+    MINIFIED,
+    LOCKFILE,
+    IGNORED
+}
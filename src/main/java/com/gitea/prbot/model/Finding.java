@@ -0,0 +1,48 @@
+package com.gitea.prbot.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 모델 응답의 지적 사항 한 건을 구조화한 것. 여러 chunk/리뷰 타입에서 같은 문제가 보고되면 하나로 합쳐진다.
+ *
+ * @param path        파일 경로, 알 수 없으면 null
+ * @param line        코멘트를 달 라인 (새 파일 기준), 없으면 0
+ * @param startLine   합쳐진 보고들이 가리킨 라인 범위의 시작, 없으면 0
+ * @param endLine     라인 범위의 끝, 없으면 0
+ * @param category    대표 분류
+ * @param categories  이 문제를 보고한 모든 분류
+ * @param severity    보고된 것 중 가장 높은 심각도
+ * @param rule        규칙명, 없으면 null
+ * @param message     설명
+ * @param commentable line 이 리뷰한 diff 안에 있어 라인 코멘트를 달 수 있는지
+ * @param occurrences 합쳐진 보고 수
+ */
+public record Finding(String path, int line, int startLine, int endLine,
+                      ReviewType category, Set<ReviewType> categories, Severity severity,
+                      String rule, String message, boolean commentable, int occurrences) {
+
+    /**
+     * 모델 응답 한 줄에서 읽은, 아직 합쳐지지 않은 지적 사항.
+     */
+    public static Finding reported(String path, int startLine, int endLine, ReviewType category,
+                                   Severity severity, String rule, String message) {
+        return new Finding(path, startLine, startLine, endLine, category, EnumSet.of(category), severity,
+                rule, message, false, 1);
+    }
+
+    /**
+     * 라인 번호를 offset 만큼 옮긴 사본. 라인이 없으면(0) 그대로 둔다.
+     */
+    public Finding shiftLines(int offset) {
+        if (offset == 0) {
+            return this;
+        }
+        return new Finding(path, shift(line, offset), shift(startLine, offset), shift(endLine, offset),
+                category, categories, severity, rule, message, commentable, occurrences);
+    }
+
+    private static int shift(int line, int offset) {
+        return line > 0 ? Math.max(1, line + offset) : line;
+    }
+}
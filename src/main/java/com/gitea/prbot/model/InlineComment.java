@@ -0,0 +1,7 @@
+package com.gitea.prbot.model;
+
+/**
+ * PR 리뷰의 라인 코멘트 하나. line 은 새 파일 기준 라인 번호(Gitea 의 new_position)다.
+ */
+public record InlineComment(String path, int line, String body) {
+}
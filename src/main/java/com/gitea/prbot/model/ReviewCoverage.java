@@ -0,0 +1,23 @@
+package com.gitea.prbot.model;
+
+import java.util.Map;
+
+/**
+ * PR 에서 리뷰하지 않은 파일.
+ *
+ * @param overBudget 예산 한도 때문에 빼거나 일부만 리뷰한 파일과 이유
+ * @param filtered   생성 코드, lockfile 등이라 chunk 로 나누기 전에 버린 파일
+ */
+public record ReviewCoverage(Map<String, String> overBudget, Map<String, FileKind> filtered) {
+
+    public static final ReviewCoverage FULL = new ReviewCoverage(Map.of(), Map.of());
+
+    /** 예산 때문에 리뷰가 완전하지 않은지 */
+    public boolean isPartial() {
+        return !overBudget.isEmpty();
+    }
+
+    public int skippedFiles() {
+        return overBudget.size() + filtered.size();
+    }
+}
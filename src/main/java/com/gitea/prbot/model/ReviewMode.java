@@ -0,0 +1,8 @@
+package com.gitea.prbot.model;
+
+public enum ReviewMode {
+    /** chunk 마다 ReviewType 별 프롬프트로 각각 호출 */
+    FAN_OUT,
+    /** chunk 마다 보안/성능/스타일/일반 항목을 한 번에 묻는 단일 호출 */
+    COMBINED
+}
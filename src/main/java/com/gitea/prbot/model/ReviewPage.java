@@ -0,0 +1,9 @@
+package com.gitea.prbot.model;
+
+import java.util.List;
+
+/**
+ * createReview 한 번으로 보낼 내용. 요청 크기 제한을 넘으면 여러 페이지로 나뉜다.
+ */
+public record ReviewPage(String body, List<InlineComment> comments) {
+}
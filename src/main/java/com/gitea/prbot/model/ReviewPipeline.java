@@ -0,0 +1,8 @@
+package com.gitea.prbot.model;
+
+public enum ReviewPipeline {
+    /** 가상 스레드 + 블로킹 클라이언트(RestTemplate, OllamaApi.chat) */
+    BLOCKING,
+    /** WebClient 와 OllamaApi.streamingChat 으로 diff 수신부터 코멘트 게시까지 논블로킹으로 처리 */
+    REACTIVE
+}
@@ -1,5 +1,6 @@
 package com.gitea.prbot.model;
 
+import java.util.BitSet;
 import java.util.List;
 
 public class ReviewResult {
@@ -7,9 +8,14 @@ public class ReviewResult {
     private String content;
     private String overallGrade;
     private List<String> issues;
+    private List<Finding> findings;
     private String repositoryName;
     private Long pullRequestNumber;
 
+    // 결과가 나온 chunk 의 파일 경로와 인라인 코멘트 가능한 라인 (없으면 요약에만 들어간다)
+    private String filePath;
+    private BitSet commentableLines;
+
     // Constructors
     public ReviewResult() {
     }
@@ -56,6 +62,14 @@ public class ReviewResult {
         this.issues = issues;
     }
 
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    public void setFindings(List<Finding> findings) {
+        this.findings = findings;
+    }
+
     public String getRepositoryName() {
         return repositoryName;
     }
@@ -72,6 +86,22 @@ public class ReviewResult {
         this.pullRequestNumber = pullRequestNumber;
     }
 
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public BitSet getCommentableLines() {
+        return commentableLines;
+    }
+
+    public void setCommentableLines(BitSet commentableLines) {
+        this.commentableLines = commentableLines;
+    }
+
     // Builder pattern
     public static ReviewResultBuilder builder() {
         return new ReviewResultBuilder();
@@ -82,8 +112,11 @@ public class ReviewResult {
         private String content;
         private String overallGrade;
         private List<String> issues;
+        private List<Finding> findings;
         private String repositoryName;
         private Long pullRequestNumber;
+        private String filePath;
+        private BitSet commentableLines;
 
         public ReviewResultBuilder reviewType(ReviewType reviewType) {
             this.reviewType = reviewType;
@@ -115,8 +148,27 @@ public class ReviewResult {
             return this;
         }
 
+        public ReviewResultBuilder findings(List<Finding> findings) {
+            this.findings = findings;
+            return this;
+        }
+
+        public ReviewResultBuilder filePath(String filePath) {
+            this.filePath = filePath;
+            return this;
+        }
+
+        public ReviewResultBuilder commentableLines(BitSet commentableLines) {
+            this.commentableLines = commentableLines;
+            return this;
+        }
+
         public ReviewResult build() {
-            return new ReviewResult(reviewType, content, overallGrade, issues, repositoryName, pullRequestNumber);
+            ReviewResult result = new ReviewResult(reviewType, content, overallGrade, issues, repositoryName, pullRequestNumber);
+            result.setFindings(findings);
+            result.setFilePath(filePath);
+            result.setCommentableLines(commentableLines);
+            return result;
         }
     }
 }
\ No newline at end of file
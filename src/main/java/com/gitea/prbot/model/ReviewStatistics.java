@@ -0,0 +1,89 @@
+package com.gitea.prbot.model;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PR 한 건의 리뷰 동안 누적되는 LLM 사용량.
+ */
+public class ReviewStatistics {
+    private final ReviewMode mode;
+    private final long startedAt = System.nanoTime();
+    private final AtomicInteger llmCalls = new AtomicInteger();
+    private final AtomicInteger cacheHits = new AtomicInteger();
+    // 실제 값이 있으면 실제 값, 없으면 어림값의 합
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong responseTokens = new AtomicLong();
+    private final AtomicLong estimatedPromptTokens = new AtomicLong();
+    private final AtomicLong estimatedResponseTokens = new AtomicLong();
+    // Ollama 가 토큰 수를 보고한 호출만의 합
+    private final AtomicLong actualPromptTokens = new AtomicLong();
+    private final AtomicLong actualResponseTokens = new AtomicLong();
+    private final AtomicInteger reportedPromptCalls = new AtomicInteger();
+    private final AtomicInteger reportedResponseCalls = new AtomicInteger();
+    private final AtomicLong llmNanos = new AtomicLong();
+    private final AtomicInteger promptTruncations = new AtomicInteger();
+    private final AtomicIntegerArray routedChunks = new AtomicIntegerArray(ReviewType.values().length);
+    private final AtomicInteger unroutedChunks = new AtomicInteger();
+
+    public ReviewStatistics(ReviewMode mode) {
+        this.mode = mode;
+    }
+
+    public void recordLlmCall(TokenUsage tokens, long durationNanos) {
+        this.llmCalls.incrementAndGet();
+        this.promptTokens.addAndGet(tokens.prompt());
+        this.responseTokens.addAndGet(tokens.response());
+        this.estimatedPromptTokens.addAndGet(tokens.estimatedPrompt());
+        this.estimatedResponseTokens.addAndGet(tokens.estimatedResponse());
+        if (tokens.actualPrompt() >= 0) {
+            actualPromptTokens.addAndGet(tokens.actualPrompt());
+            reportedPromptCalls.incrementAndGet();
+        }
+        if (tokens.actualResponse() >= 0) {
+            actualResponseTokens.addAndGet(tokens.actualResponse());
+            reportedResponseCalls.incrementAndGet();
+        }
+        this.llmNanos.addAndGet(durationNanos);
+    }
+
+    public void recordCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    public void recordPromptTruncations(int truncations) {
+        promptTruncations.addAndGet(truncations);
+    }
+
+    /**
+     * @param types chunk 를 보낸 리뷰 타입. 비어 있으면 어느 리뷰에도 보내지 않은 chunk
+     */
+    public void recordRouting(Set<ReviewType> types) {
+        if (types.isEmpty()) {
+            unroutedChunks.incrementAndGet();
+            return;
+        }
+        for (ReviewType type : types) {
+            routedChunks.incrementAndGet(type.ordinal());
+        }
+    }
+
+    public ReviewMode getMode() { return mode; }
+    public int getLlmCalls() { return llmCalls.get(); }
+    public int getCacheHits() { return cacheHits.get(); }
+    public long getPromptTokens() { return promptTokens.get(); }
+    public long getResponseTokens() { return responseTokens.get(); }
+    public long getEstimatedPromptTokens() { return estimatedPromptTokens.get(); }
+    public long getEstimatedResponseTokens() { return estimatedResponseTokens.get(); }
+    public long getActualPromptTokens() { return actualPromptTokens.get(); }
+    public long getActualResponseTokens() { return actualResponseTokens.get(); }
+    public int getReportedPromptCalls() { return reportedPromptCalls.get(); }
+    public int getReportedResponseCalls() { return reportedResponseCalls.get(); }
+    public long getLlmNanos() { return llmNanos.get(); }
+    public int getPromptTruncations() { return promptTruncations.get(); }
+    public int getRoutedChunks(ReviewType type) { return routedChunks.get(type.ordinal()); }
+    public int getUnroutedChunks() { return unroutedChunks.get(); }
+    public long getElapsedNanos() { return System.nanoTime() - startedAt; }
+}
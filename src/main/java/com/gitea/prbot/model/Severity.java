@@ -0,0 +1,10 @@
+package com.gitea.prbot.model;
+
+/**
+ * 지적 사항의 심각도. 선언 순서가 높은 것부터이다.
+ */
+public enum Severity {
+    HIGH,
+    MED,
+    LOW
+}
@@ -0,0 +1,21 @@
+package com.gitea.prbot.model;
+
+/**
+ * LLM 호출 한 번의 토큰 수. 실제 값은 Ollama 가 보고한 값이고, 보고되지 않았으면 -1 이다.
+ *
+ * @param estimatedPrompt   프롬프트 토큰 수 어림값
+ * @param estimatedResponse 응답 토큰 수 어림값
+ * @param actualPrompt      모델이 처리한 프롬프트 토큰 수 (prompt_eval_count)
+ * @param actualResponse    모델이 생성한 토큰 수 (eval_count, 스트리밍을 일찍 끊었으면 받은 조각 수)
+ */
+public record TokenUsage(int estimatedPrompt, int estimatedResponse, int actualPrompt, int actualResponse) {
+
+    /** 실제 값이 있으면 실제 값, 없으면 어림값 */
+    public int prompt() {
+        return actualPrompt >= 0 ? actualPrompt : estimatedPrompt;
+    }
+
+    public int response() {
+        return actualResponse >= 0 ? actualResponse : estimatedResponse;
+    }
+}
@@ -0,0 +1,12 @@
+package com.gitea.prbot.repository;
+
+import com.gitea.prbot.entity.PullRequestReviewState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface PullRequestReviewStateRepository extends JpaRepository<PullRequestReviewState, Long> {
+
+    Optional<PullRequestReviewState> findByRepositoryFullNameAndPullRequestNumber(String repositoryFullName,
+                                                                                  Long pullRequestNumber);
+}
@@ -0,0 +1,20 @@
+package com.gitea.prbot.repository;
+
+import com.gitea.prbot.entity.ReviewCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface ReviewCacheEntryRepository extends JpaRepository<ReviewCacheEntry, String> {
+
+    @Modifying
+    @Query("update ReviewCacheEntry e set e.lastUsedAt = :now where e.cacheKey = :cacheKey")
+    int touch(@Param("cacheKey") String cacheKey, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from ReviewCacheEntry e where e.lastUsedAt < :cutoff")
+    int deleteUnusedSince(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,88 @@
+package com.gitea.prbot.repository;
+
+import com.gitea.prbot.entity.ReviewJob;
+import com.gitea.prbot.entity.ReviewJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReviewJobRepository extends JpaRepository<ReviewJob, Long> {
+
+    List<ReviewJob> findByStatusAndAvailableAtLessThanEqualOrderByCreatedAtAsc(ReviewJobStatus status,
+                                                                               Instant availableAt,
+                                                                               Pageable pageable);
+
+    long countByStatus(ReviewJobStatus status);
+
+    boolean existsByRepositoryFullNameAndPullRequestNumberAndIdGreaterThan(String repositoryFullName,
+                                                                           Long pullRequestNumber,
+                                                                           Long id);
+
+    /**
+     * 같은 PR 에 대해 아직 시작하지 않은 이전 작업을 새 작업으로 대체한다.
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = :superseded, j.updatedAt = :now " +
+           "where j.repositoryFullName = :repositoryFullName and j.pullRequestNumber = :prNumber " +
+           "and j.status = :pending and j.id <> :latestId")
+    int supersedePending(@Param("repositoryFullName") String repositoryFullName,
+                         @Param("prNumber") Long prNumber,
+                         @Param("latestId") Long latestId,
+                         @Param("pending") ReviewJobStatus pending,
+                         @Param("superseded") ReviewJobStatus superseded,
+                         @Param("now") Instant now);
+
+    /**
+     * PENDING 일 때만 RUNNING 으로 바꾸고 워커와 임대 만료 시각을 기록한다.
+     * 여러 워커(또는 인스턴스)가 같은 작업을 동시에 가져가지 않도록 한다.
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = :running, j.workerId = :workerId, j.leaseExpiresAt = :leaseExpiresAt, " +
+           "j.updatedAt = :now where j.id = :id and j.status = :pending")
+    int claim(@Param("id") Long id,
+              @Param("workerId") String workerId,
+              @Param("leaseExpiresAt") Instant leaseExpiresAt,
+              @Param("pending") ReviewJobStatus pending,
+              @Param("running") ReviewJobStatus running,
+              @Param("now") Instant now);
+
+    /**
+     * 이 워커가 아직 가진 RUNNING 작업의 임대를 연장한다.
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.leaseExpiresAt = :leaseExpiresAt, j.updatedAt = :now " +
+           "where j.id in :ids and j.status = :running and j.workerId = :workerId")
+    int renewLeases(@Param("ids") Collection<Long> ids,
+                    @Param("workerId") String workerId,
+                    @Param("leaseExpiresAt") Instant leaseExpiresAt,
+                    @Param("running") ReviewJobStatus running,
+                    @Param("now") Instant now);
+
+    /**
+     * 임대가 끝난(워커가 죽었거나 하트비트를 못 보낸) RUNNING 작업을 대기열로 돌려놓는다.
+     * 임대 없이 RUNNING 인 작업은 임대를 기록하기 전 버전이 선점한 것이다.
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = :pending, j.workerId = null, j.leaseExpiresAt = null, j.updatedAt = :now " +
+           "where j.status = :running and (j.leaseExpiresAt is null or j.leaseExpiresAt < :now)")
+    int requeueExpired(@Param("running") ReviewJobStatus running,
+                       @Param("pending") ReviewJobStatus pending,
+                       @Param("now") Instant now);
+
+    /**
+     * 한 워커가 가진 RUNNING 작업을 대기열로 돌려놓는다. 같은 worker-id 로 재시작했을 때 임대 만료를 기다리지 않는다.
+     */
+    @Modifying
+    @Query("update ReviewJob j set j.status = :pending, j.workerId = null, j.leaseExpiresAt = null, j.updatedAt = :now " +
+           "where j.status = :running and j.workerId = :workerId")
+    int requeueWorker(@Param("workerId") String workerId,
+                      @Param("running") ReviewJobStatus running,
+                      @Param("pending") ReviewJobStatus pending,
+                      @Param("now") Instant now);
+}
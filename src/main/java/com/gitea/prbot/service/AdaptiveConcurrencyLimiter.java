@@ -0,0 +1,255 @@
+package com.gitea.prbot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 모델별로 동시 LLM 호출 수를 AIMD 방식으로 조절한다.
+ * <ul>
+ *     <li>최근 지연 시간(단기 EWMA)이 기준 지연 시간(장기 EWMA)의 latency-tolerance 배 이내이고
+ *     허용량을 다 쓰고 있으면 limit 을 조금씩(1/limit) 올린다.</li>
+ *     <li>지연 시간이 기준을 넘거나 호출이 실패하면 limit 에 backoff-ratio 를 곱해 줄인다.</li>
+ * </ul>
+ * 모델마다 처리량 한계가 다르므로 상태는 모델 이름별로 따로 둔다.
+ * 블로킹 호출(acquire)과 리액티브 호출(acquireReactive)이 같은 허용량을 나눠 쓴다.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double SHORT_ALPHA = 0.3;
+    private static final double LONG_ALPHA = 0.02;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final ConcurrentMap<String, ModelLimit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${bot.models.adaptive-concurrency.enabled:true}") boolean enabled,
+                                      @Value("${bot.models.adaptive-concurrency.initial-limit:2}") int initialLimit,
+                                      @Value("${bot.models.adaptive-concurrency.min-limit:1}") int minLimit,
+                                      @Value("${bot.models.adaptive-concurrency.max-limit:${bot.concurrency.ollama:4}}") int maxLimit,
+                                      @Value("${bot.models.adaptive-concurrency.latency-tolerance:2.0}") double latencyTolerance,
+                                      @Value("${bot.models.adaptive-concurrency.backoff-ratio:0.75}") double backoffRatio,
+                                      @Value("${bot.models.primary:}") String primaryModel,
+                                      @Value("${bot.models.fallback:}") String fallbackModel) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+
+        // 설정된 모델은 호출 전부터 지표가 보이도록 미리 만든다
+        if (!primaryModel.isBlank()) {
+            limitFor(primaryModel);
+        }
+        if (!fallbackModel.isBlank()) {
+            limitFor(fallbackModel);
+        }
+    }
+
+    /**
+     * 얻은 허용량. 호출자가 잰 모델 호출 시간과 성공 여부를 넘겨 돌려준다. 처음 돌려준 것만 반영된다.
+     */
+    public static final class Permit {
+        private static final Permit UNLIMITED = new Permit(null);
+
+        private final ModelLimit limit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * @param latencyNanos 허용량을 얻은 뒤의 모델 호출 시간. 다른 제한기에서 기다린 시간은 빼야 한다
+         */
+        public void release(long latencyNanos, boolean success) {
+            if (limit != null && released.compareAndSet(false, true)) {
+                limit.release(latencyNanos, success);
+            }
+        }
+
+        /**
+         * 모델 호출 결과 없이 돌려준다 (구독 취소 등). limit 은 바꾸지 않는다.
+         */
+        public void abandon() {
+            if (limit != null && released.compareAndSet(false, true)) {
+                limit.permits.release();
+            }
+        }
+    }
+
+    /**
+     * model 의 허용량을 얻을 때까지 기다린다.
+     */
+    public Permit acquire(String model) {
+        if (!enabled) {
+            return Permit.UNLIMITED;
+        }
+        ModelLimit limit = limitFor(model);
+        long started = System.nanoTime();
+        limit.permits.acquireUninterruptibly();
+        limit.queueTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return new Permit(limit);
+    }
+
+    /**
+     * acquire 의 논블로킹 버전. 기다리는 동안 스레드를 점유하지 않고, 구독이 취소되면 대기열에서 빠진다.
+     */
+    public Mono<Permit> acquireReactive(String model) {
+        if (!enabled) {
+            return Mono.just(Permit.UNLIMITED);
+        }
+        ModelLimit limit = limitFor(model);
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return limit.permits.acquireReactive()
+                    .then(Mono.fromSupplier(() -> {
+                        limit.queueTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                        return new Permit(limit);
+                    }));
+        });
+    }
+
+    /**
+     * model 의 허용량을 얻어 action 을 실행하고, action 전체의 시간과 성공 여부로 limit 을 조정한다.
+     * action 안에서 다른 제한기를 기다린다면 acquire 로 얻고 모델 호출 시간만 넘겨야 한다.
+     */
+    public <T> T call(String model, Supplier<T> action) {
+        Permit permit = acquire(model);
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = action.get();
+            success = true;
+            return result;
+        } finally {
+            permit.release(System.nanoTime() - started, success);
+        }
+    }
+
+    public int getLimit(String model) {
+        return limitFor(model).currentLimit();
+    }
+
+    private ModelLimit limitFor(String model) {
+        return limits.computeIfAbsent(model, this::register);
+    }
+
+    private ModelLimit register(String model) {
+        ModelLimit limit = new ModelLimit(model, Timer.builder("prbot.llm.concurrency.queue")
+                .description("Time spent waiting for an adaptive concurrency permit")
+                .tag("model", model)
+                .register(meterRegistry));
+
+        Gauge.builder("prbot.llm.concurrency.limit", limit, ModelLimit::currentLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("prbot.llm.concurrency.in.flight", limit, ModelLimit::inFlight)
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("prbot.llm.latency.baseline", limit, ModelLimit::baselineMillis)
+                .description("Long-term latency baseline used by the adaptive limiter (ms)")
+                .tag("model", model)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    private class ModelLimit {
+        private final String model;
+        private final Timer queueTimer;
+        private final PermitQueue permits = new PermitQueue(initialLimit);
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private double limit = initialLimit;
+        private double shortLatency = -1;
+        private double baselineLatency = -1;
+
+        ModelLimit(String model, Timer queueTimer) {
+            this.model = model;
+            this.queueTimer = queueTimer;
+        }
+
+        void release(long latencyNanos, boolean success) {
+            lock.lock();
+            try {
+                // limit 을 다 쓰고 있을 때만 올린다. 여유가 있는데 올리면 측정 없이 limit 만 커진다
+                boolean saturated = permits.inUse() >= (int) limit;
+
+                int before = (int) limit;
+                if (!success) {
+                    decrease();
+                } else {
+                    sample(latencyNanos);
+                    if (shortLatency > baselineLatency * latencyTolerance) {
+                        decrease();
+                    } else if (saturated) {
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                }
+
+                if ((int) limit != before) {
+                    log.debug("Adaptive concurrency limit for {}: {} -> {} (latency {} ms, baseline {} ms)",
+                            model, before, (int) limit,
+                            TimeUnit.NANOSECONDS.toMillis(latencyNanos), Math.round(baselineMillis()));
+                    permits.setCapacity((int) limit);
+                }
+            } finally {
+                lock.unlock();
+            }
+            permits.release();
+        }
+
+        private void sample(long latencyNanos) {
+            if (baselineLatency < 0) {
+                shortLatency = latencyNanos;
+                baselineLatency = latencyNanos;
+                return;
+            }
+            shortLatency += SHORT_ALPHA * (latencyNanos - shortLatency);
+            baselineLatency += LONG_ALPHA * (latencyNanos - baselineLatency);
+        }
+
+        private void decrease() {
+            limit = Math.max(minLimit, Math.floor(limit * backoffRatio));
+            // 줄인 직후 같은 지연 시간으로 연달아 줄이지 않도록 단기 평균을 기준으로 되돌린다
+            shortLatency = baselineLatency;
+        }
+
+        int currentLimit() {
+            return (int) limit;
+        }
+
+        int inFlight() {
+            return permits.inUse();
+        }
+
+        double baselineMillis() {
+            return baselineLatency < 0 ? 0 : baselineLatency / 1_000_000.0;
+        }
+    }
+}
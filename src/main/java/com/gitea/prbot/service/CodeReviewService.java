@@ -1,194 +1,461 @@
 package com.gitea.prbot.service;
 
 import com.gitea.prbot.dto.PullRequestEvent;
+import com.gitea.prbot.model.FileKind;
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewCoverage;
+import com.gitea.prbot.model.ReviewMode;
+import com.gitea.prbot.model.ReviewPage;
 import com.gitea.prbot.model.ReviewResult;
+import com.gitea.prbot.model.ReviewStatistics;
 import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.TokenUsage;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.InFlightReviewRegistry.ReviewRun;
+import com.gitea.prbot.service.ModelOutputParser.ModelOutput;
+import com.gitea.prbot.service.PromptAssembler.PromptValues;
+import com.gitea.prbot.service.PromptAssembler.RenderedPrompt;
+import com.gitea.prbot.service.PromptService.PromptSet;
+import com.gitea.prbot.service.PromptService.ResolvedPrompt;
+import com.gitea.prbot.service.ReviewBudgetPlanner.Budget;
+import com.gitea.prbot.service.ReviewBudgetPlanner.PlannedChunk;
+import com.gitea.prbot.service.ReviewBudgetPlanner.ReviewPlan;
+import com.gitea.prbot.service.ReviewResultCache.Answer;
+import com.gitea.prbot.service.ReviewScheduler.PullRequestQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.ChatClient;
-import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class CodeReviewService {
 
     private static final Logger log = LoggerFactory.getLogger(CodeReviewService.class);
 
-    private final ChatClient chatClient;
+    private final ModelRouter modelRouter;
+    private final PromptAssembler promptAssembler;
+    private final TokenEstimator tokenEstimator;
     private final GiteaService giteaService;
     private final PromptService promptService;
     private final DiffProcessorService diffProcessorService;
-
-    public CodeReviewService(ChatClient chatClient, GiteaService giteaService, PromptService promptService, DiffProcessorService diffProcessorService) {
-        this.chatClient = chatClient;
+    private final InFlightReviewRegistry inFlightReviewRegistry;
+    private final ReviewResultCache reviewResultCache;
+    private final ReviewStateService reviewStateService;
+    private final ReviewMetrics reviewMetrics;
+    private final ReviewScheduler reviewScheduler;
+    private final FindingsAggregator findingsAggregator;
+    private final ReviewCommentPlanner reviewCommentPlanner;
+    private final ReviewBudgetPlanner reviewBudgetPlanner;
+    private final FileClassifier fileClassifier;
+    private final ReviewMode defaultMode;
+    private final Set<String> combinedRepositories;
+    private final int maxPendingChunks;
+
+    public CodeReviewService(ModelRouter modelRouter, PromptAssembler promptAssembler, TokenEstimator tokenEstimator,
+                             GiteaService giteaService, PromptService promptService,
+                             DiffProcessorService diffProcessorService, InFlightReviewRegistry inFlightReviewRegistry,
+                             ReviewResultCache reviewResultCache, ReviewStateService reviewStateService,
+                             ReviewMetrics reviewMetrics, ReviewScheduler reviewScheduler,
+                             FindingsAggregator findingsAggregator, ReviewCommentPlanner reviewCommentPlanner,
+                             ReviewBudgetPlanner reviewBudgetPlanner, FileClassifier fileClassifier,
+                             @Value("${bot.review.mode:FAN_OUT}") ReviewMode defaultMode,
+                             @Value("${bot.review.combined-repositories:}") Set<String> combinedRepositories,
+                             @Value("${bot.review.max-pending-chunks:32}") int maxPendingChunks) {
+        this.modelRouter = modelRouter;
+        this.promptAssembler = promptAssembler;
+        this.tokenEstimator = tokenEstimator;
         this.giteaService = giteaService;
         this.promptService = promptService;
         this.diffProcessorService = diffProcessorService;
+        this.inFlightReviewRegistry = inFlightReviewRegistry;
+        this.reviewResultCache = reviewResultCache;
+        this.reviewStateService = reviewStateService;
+        this.reviewMetrics = reviewMetrics;
+        this.reviewScheduler = reviewScheduler;
+        this.findingsAggregator = findingsAggregator;
+        this.reviewCommentPlanner = reviewCommentPlanner;
+        this.reviewBudgetPlanner = reviewBudgetPlanner;
+        this.fileClassifier = fileClassifier;
+        this.defaultMode = defaultMode;
+        this.combinedRepositories = combinedRepositories;
+        this.maxPendingChunks = maxPendingChunks;
     }
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
-    private static final int CHUNK_SIZE = 100;
+    private static final String COMBINED_PROMPT_ID = PromptService.COMBINED_PROMPT_ID;
 
-    public void reviewPullRequest(PullRequestEvent event) {
-        try {
-            log.info("Starting review for PR #{} in {}",
-                    event.getPullRequest().getNumber(),
-                    event.getRepository().getFullName());
+    private final ModelOutputParser outputParser = new ModelOutputParser();
 
-            String diff = giteaService.getPullRequestDiff(
-                    event.getRepository().getFullName(),
-                    event.getPullRequest().getNumber().intValue()
-            );
+    public void reviewPullRequest(PullRequestEvent event) {
+        String repositoryFullName = event.getRepository().getFullName();
+        Long prNumber = event.getPullRequest().getNumber();
+        String headSha = headSha(event);
+        ReviewRun run = inFlightReviewRegistry.begin(repositoryFullName, prNumber, headSha);
+        PullRequestQueue queue = reviewScheduler.open(repositoryFullName, prNumber, sizeHint(event));
 
-            if (diff == null || diff.trim().isEmpty()) {
-                log.warn("No diff content found for PR #{}", event.getPullRequest().getNumber());
+        try {
+            if (run.isCancelled()) {
+                log.info("PR #{} at {} has a newer push queued, skipping", prNumber, headSha);
                 return;
             }
+            log.info("Starting review for PR #{} in {}", prNumber, repositoryFullName);
 
-            List<String> chunks = chunkDiff(diff);
-            List<CompletableFuture<ReviewResult>> futures = new ArrayList<>();
+            String lastReviewedSha = reviewStateService.getLastReviewedSha(repositoryFullName, prNumber).orElse(null);
+            if (headSha != null && headSha.equals(lastReviewedSha)) {
+                log.info("PR #{} at {} has already been reviewed, skipping", prNumber, headSha);
+                return;
+            }
 
-            for (String chunk : chunks) {
-                if (shouldSkipChunk(chunk)) {
-                    continue;
+            ReviewStatistics stats = new ReviewStatistics(reviewModeFor(repositoryFullName));
+            PromptSet prompts = promptsFor(event);
+            FileFilter fileFilter = fileFilterFor(event);
+            // 파일 순위는 diff 를 읽으면서 파일별 통계로 매기고, 예산 밖으로 밀린 파일의 chunk 는 들고 있지 않는다
+            Budget budget = reviewBudgetPlanner.open(stats.getMode(), stats);
+            Consumer<Reader> diffConsumer = reader -> diffProcessorService.processDiff(reader, fileFilter, chunk -> {
+                if (!shouldSkipChunk(chunk.getContent())) {
+                    budget.add(chunk);
                 }
-
-                for (ReviewType type : ReviewType.values()) {
-                    CompletableFuture<ReviewResult> future = CompletableFuture
-                            .supplyAsync(() -> reviewChunk(chunk, type, event), executorService);
-                    futures.add(future);
+            });
+
+            String reviewScope = null;
+            boolean fetched = false;
+            if ("synchronize".equals(event.getAction()) && lastReviewedSha != null && headSha != null) {
+                fetched = giteaService.streamCompareDiff(repositoryFullName, lastReviewedSha, headSha, diffConsumer);
+                if (fetched) {
+                    reviewScope = shortSha(lastReviewedSha) + ".." + shortSha(headSha);
+                    log.info("Reviewing only changes since {} for PR #{}", lastReviewedSha, prNumber);
                 }
             }
+            if (!fetched) {
+                budget.reset();
+                fetched = giteaService.streamPullRequestDiff(repositoryFullName, prNumber.intValue(), diffConsumer);
+            }
+
+            if (!fetched) {
+                throw new IllegalStateException("Could not fetch diff for PR #" + prNumber);
+            }
+
+            ReviewPlan plan = budget.finish();
+            ReviewCoverage coverage = coverage(prNumber, fileFilter, plan);
+            if (plan.chunks().isEmpty()) {
+                log.warn("No reviewable diff content found for PR #{}", prNumber);
+            }
+
+            List<CompletableFuture<List<ReviewResult>>> futures = new ArrayList<>();
+            Semaphore pendingChunks = new Semaphore(maxPendingChunks);
+            for (PlannedChunk planned : plan.chunks()) {
+                submitChunk(planned, event, prompts, run, stats, queue, pendingChunks, futures);
+            }
+
+            // 리뷰 작업 워커 스레드에서 호출되므로 모든 chunk 리뷰가 끝날 때까지 기다린다
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            List<ReviewResult> results = futures.stream()
+                    .map(CompletableFuture::join)
+                    .flatMap(List::stream)
+                    .filter(result -> !result.getIssues().isEmpty())
+                    .toList();
+
+            reviewMetrics.recordReview(repositoryFullName, prNumber, stats);
+
+            if (run.isCancelled()) {
+                log.info("Discarding results of superseded review for PR #{} at {}", prNumber, run.getHeadSha());
+                return;
+            }
 
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                    .thenAccept(v -> {
-                        List<ReviewResult> results = futures.stream()
-                                .map(CompletableFuture::join)
-                                .filter(result -> result != null && !result.getIssues().isEmpty())
-                                .toList();
-
-                        if (!results.isEmpty()) {
-                            postReviewComments(event, results);
-                        } else {
-                            log.info("No issues found in PR #{}", event.getPullRequest().getNumber());
-                        }
-                    })
-                    .exceptionally(ex -> {
-                        log.error("Error during parallel review processing", ex);
-                        return null;
-                    });
+            if (!results.isEmpty() || coverage.isPartial()) {
+                postReview(event, results, reviewScope, coverage);
+            } else {
+                log.info("No issues found in PR #{}", prNumber);
+            }
 
+            // 게시가 모두 성공한 뒤에만 기록한다. 실패한 채로 기록하면 다음 push 는 그 뒤 변경분만 보므로 지적이 사라진다
+            reviewStateService.markReviewed(repositoryFullName, prNumber, headSha);
+
+        } catch (CancellationException e) {
+            log.info("Review for PR #{} at {} was superseded by a newer push", prNumber, run.getHeadSha());
         } catch (Exception e) {
+            if (run.isCancelled()) {
+                log.info("Review for PR #{} at {} was superseded by a newer push", prNumber, run.getHeadSha());
+                return;
+            }
             log.error("Error reviewing pull request", e);
+            throw new RuntimeException("Failed to review pull request", e);
+        } finally {
+            queue.close();
+            inFlightReviewRegistry.complete(run);
         }
     }
 
-    private ReviewResult reviewChunk(String chunk, ReviewType type, PullRequestEvent event) {
-        try {
-            String promptTemplate = promptService.getPrompt(type);
-            String fullPrompt = promptTemplate + "\n\n코드:\n" + chunk;
+    /**
+     * 예산 안에서 고른 chunk 를 라우팅된 리뷰 타입별 작업으로 스케줄러에 넣는다. 아직 끝나지 않은 작업이
+     * maxPendingChunks 개를 넘으면 앞 작업이 끝날 때까지 기다려 큐에 쌓이는 작업 수를 제한한다.
+     */
+    private void submitChunk(PlannedChunk planned, PullRequestEvent event, PromptSet prompts, ReviewRun run,
+                             ReviewStatistics stats, PullRequestQueue queue, Semaphore pendingChunks,
+                             List<CompletableFuture<List<ReviewResult>>> futures) {
+        if (run.isCancelled()) {
+            return;
+        }
 
-            Prompt prompt = new Prompt(new UserMessage(fullPrompt));
-            ChatResponse response = chatClient.call(prompt);
-            String content = response.getResult().getOutput().getContent();
+        DiffChunk diffChunk = planned.chunk();
+        Set<ReviewType> routed = planned.reviewTypes();
+        String chunk = formatChunk(diffChunk);
+        int lines = Math.max(1, diffChunk.getEndLine() - diffChunk.getStartLine() + 1);
+
+        // REACTIVE 파이프라인과 같은 규칙으로 호출할 프롬프트를 고른다
+        List<Supplier<List<ReviewResult>>> tasks = new ArrayList<>();
+        for (String promptId : promptIdsFor(stats.getMode(), routed)) {
+            ResolvedPrompt prompt = prompts.get(promptId);
+            tasks.add(() -> reviewChunk(chunk, diffChunk, prompt, event, run, stats));
+        }
+
+        for (Supplier<List<ReviewResult>> task : tasks) {
+            pendingChunks.acquireUninterruptibly();
+            CompletableFuture<List<ReviewResult>> future = queue.submit(lines, diffChunk.getEstimatedTokens(), task);
+            future.whenComplete((result, error) -> pendingChunks.release());
+            futures.add(run.track(future));
+        }
+    }
+
+    String formatChunk(DiffChunk chunk) {
+        return "파일: " + chunk.getFileName() + " (" + chunk.getStartLine() + "번째 줄부터)\n" + chunk.getContent();
+    }
+
+    /**
+     * chunk 하나를 프롬프트 하나로 리뷰한다. COMBINED 프롬프트의 응답은 ReviewType 별 결과로 나뉜다.
+     */
+    private List<ReviewResult> reviewChunk(String chunk, DiffChunk diffChunk, ResolvedPrompt prompt,
+                                           PullRequestEvent event, ReviewRun run, ReviewStatistics stats) {
+        if (run.isCancelled()) {
+            return List.of();
+        }
+
+        try {
+            Answer answer = callModel(chunk, diffChunk, prompt, event, stats);
 
-            return ReviewResult.builder()
-                    .reviewType(type)
-                    .content(content)
-                    .issues(extractIssues(content))
-                    .repositoryName(event.getRepository().getFullName())
-                    .pullRequestNumber(event.getPullRequest().getNumber())
-                    .build();
+            return parseResults(prompt.id(), answer, diffChunk, event);
 
         } catch (Exception e) {
-            log.error("Error reviewing chunk with type {}: {}", type, e.getMessage());
-            return null;
+            log.error("Error reviewing chunk with prompt {}: {}", prompt.id(), e.getMessage());
+            return List.of();
         }
     }
 
-    private List<String> chunkDiff(String diff) {
-        List<String> chunks = new ArrayList<>();
-        String[] lines = diff.split("\n");
+    private Answer callModel(String chunk, DiffChunk diffChunk, ResolvedPrompt prompt, PullRequestEvent event,
+                             ReviewStatistics stats) {
+        String promptId = prompt.id();
+        Answer cached = reviewResultCache.get(diffChunk, promptId, prompt.version(), modelRouter.preferredModel())
+                .orElse(null);
+        if (cached != null) {
+            stats.recordCacheHit();
+            return cached;
+        }
+
+        RenderedPrompt rendered = renderPrompt(prompt, chunk, event, stats);
+
+        long started = System.nanoTime();
+        ModelRouter.ModelResponse response = modelRouter.call(rendered.text());
+        String content = response.content();
+        long elapsed = System.nanoTime() - started;
+
+        TokenUsage tokens = tokenUsage(rendered, response);
+        stats.recordLlmCall(tokens, elapsed);
+        reviewMetrics.recordLlmCall(stats.getMode(), promptId, response.model(), elapsed, tokens);
+
+        // 실제로 응답한 모델로 저장해야 보조 모델 결과가 주 모델 결과로 재사용되지 않는다
+        reviewResultCache.put(diffChunk, promptId, prompt.version(), response.model(), content);
+        return new Answer(content, 0);
+    }
 
-        for (int i = 0; i < lines.length; i += CHUNK_SIZE) {
-            int end = Math.min(i + CHUNK_SIZE, lines.length);
-            String chunk = String.join("\n", Arrays.copyOfRange(lines, i, end));
-            chunks.add(chunk);
+    /**
+     * 리뷰 모드별로 chunk 하나에 보낼 프롬프트 ID 목록. COMBINED 는 통합 프롬프트 하나, FAN_OUT 은 라우팅된 타입별 하나씩.
+     */
+    static List<String> promptIdsFor(ReviewMode mode, Set<ReviewType> routed) {
+        if (routed.isEmpty()) {
+            return List.of();
+        }
+        if (mode == ReviewMode.COMBINED) {
+            return List.of(COMBINED_PROMPT_ID);
+        }
+        List<String> ids = new ArrayList<>();
+        for (ReviewType type : routed) {
+            ids.add(type.name());
         }
+        return ids;
+    }
 
-        return chunks;
+    /**
+     * 저장소의 대상 브랜치에 있는 프롬프트를 우선 쓴다. PR 작성자가 고친 프롬프트가 자기 PR 리뷰에 쓰이지 않도록
+     * head 가 아닌 base 브랜치를 본다.
+     */
+    PromptSet promptsFor(PullRequestEvent event) {
+        PullRequestEvent.PullRequest.Base base = event.getPullRequest().getBase();
+        return promptService.promptsFor(event.getRepository().getFullName(), base != null ? base.getRef() : null);
     }
 
-    private boolean shouldSkipChunk(String chunk) {
-        return diffProcessorService.shouldSkipChunk(chunk);
+    /**
+     * 생성/vendor/lockfile 등을 가려낼 필터. 프롬프트와 같은 이유로 base 브랜치의 규칙을 쓴다.
+     */
+    FileFilter fileFilterFor(PullRequestEvent event) {
+        PullRequestEvent.PullRequest.Base base = event.getPullRequest().getBase();
+        return fileClassifier.filterFor(event.getRepository().getFullName(), base != null ? base.getRef() : null);
     }
 
-    private List<String> extractIssues(String content) {
-        List<String> issues = new ArrayList<>();
-        Pattern pattern = Pattern.compile("\\[(HIGH|MED|LOW)\\](.+?)(?=\\n|$)", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(content);
+    /**
+     * 리뷰하지 않은 파일: 생성 코드 등으로 버린 파일과 예산 때문에 빠진 파일.
+     */
+    ReviewCoverage coverage(Long prNumber, FileFilter fileFilter, ReviewPlan plan) {
+        Map<String, FileKind> filtered = fileFilter.getSkippedFiles();
+        if (!filtered.isEmpty()) {
+            log.info("Skipped {} files in PR #{} before chunking: {}", filtered.size(), prNumber, filtered);
+        }
+        return new ReviewCoverage(plan.overBudget(), filtered);
+    }
 
-        while (matcher.find()) {
-            issues.add(matcher.group().trim());
+    /**
+     * 템플릿 슬롯에 chunk 와 PR 정보를 채운다. 주 모델의 토큰 예산을 넘으면 diff 를 잘라낸다.
+     */
+    RenderedPrompt renderPrompt(ResolvedPrompt prompt, String chunk, PullRequestEvent event, ReviewStatistics stats) {
+        PullRequestEvent.PullRequest pullRequest = event.getPullRequest();
+        PromptValues values = new PromptValues(chunk, pullRequest.getTitle(),
+                pullRequest.getAdditions() != null ? pullRequest.getAdditions() : 0,
+                pullRequest.getDeletions() != null ? pullRequest.getDeletions() : 0);
+
+        RenderedPrompt rendered = promptAssembler.assemble(prompt.id(), prompt.template(), values,
+                modelRouter.preferredModel());
+        if (rendered.truncations() > 0) {
+            stats.recordPromptTruncations(rendered.truncations());
         }
+        return rendered;
+    }
 
-        return issues;
+    /**
+     * 호출 한 번의 어림값과 모델이 보고한 토큰 수. 보조 모델이 응답했으면 그 모델 기준으로 다시 어림한다.
+     */
+    TokenUsage tokenUsage(RenderedPrompt rendered, ModelRouter.ModelResponse response) {
+        TokenEstimator.Profile profile = tokenEstimator.forModel(response.model());
+        int estimatedPrompt = response.model().equals(rendered.model())
+                ? rendered.estimatedTokens()
+                : profile.count(rendered.text());
+        return new TokenUsage(estimatedPrompt, profile.count(response.content()),
+                response.promptTokens(), response.responseTokens());
     }
 
-    private void postReviewComments(PullRequestEvent event, List<ReviewResult> results) {
-        try {
-            StringBuilder comment = new StringBuilder();
-            comment.append("## 🤖 자동 코드 리뷰 결과\n\n");
-
-            for (ReviewType type : ReviewType.values()) {
-                List<ReviewResult> typeResults = results.stream()
-                        .filter(r -> r.getReviewType() == type)
-                        .toList();
-
-                if (!typeResults.isEmpty()) {
-                    comment.append("### ").append(getReviewTypeEmoji(type)).append(" ")
-                            .append(type.name()).append(" 리뷰\n\n");
-
-                    for (ReviewResult result : typeResults) {
-                        for (String issue : result.getIssues()) {
-                            comment.append("- ").append(issue).append("\n");
-                        }
-                    }
-                    comment.append("\n");
-                }
-            }
+    /**
+     * 모델 응답을 ReviewResult 로 바꾼다. 통합 프롬프트의 응답은 분류 태그로 타입별 결과로 나눈다.
+     * 캐시된 응답이 다른 위치의 같은 변경에 대한 것이면 지적 사항의 라인을 이번 chunk 위치로 옮긴다.
+     */
+    List<ReviewResult> parseResults(String promptId, Answer answer, DiffChunk diffChunk, PullRequestEvent event) {
+        boolean combined = COMBINED_PROMPT_ID.equals(promptId);
+        ReviewType defaultType = combined ? ReviewType.GENERAL : ReviewType.valueOf(promptId);
+        String content = answer.content();
+        ModelOutput parsed = outputParser.parse(content, defaultType);
+        ModelOutput output = answer.lineOffset() == 0 ? parsed : new ModelOutput(
+                parsed.findings().stream().map(finding -> finding.shiftLines(answer.lineOffset())).toList(),
+                parsed.lines(), parsed.overallGrade());
+
+        if (!combined) {
+            return List.of(buildResult(defaultType, content, output.findings(), output.lines(),
+                    output.overallGrade(), diffChunk, event));
+        }
 
-            if (comment.length() > 100) {
-                giteaService.addPullRequestComment(
-                        event.getRepository().getFullName(),
-                        event.getPullRequest().getNumber(),
-                        comment.toString()
-                );
-                log.info("Posted review comments for PR #{}", event.getPullRequest().getNumber());
-            }
+        Map<ReviewType, List<Finding>> findingsByType = new EnumMap<>(ReviewType.class);
+        Map<ReviewType, List<String>> linesByType = new EnumMap<>(ReviewType.class);
+        for (int i = 0; i < output.findings().size(); i++) {
+            Finding finding = output.findings().get(i);
+            findingsByType.computeIfAbsent(finding.category(), t -> new ArrayList<>()).add(finding);
+            linesByType.computeIfAbsent(finding.category(), t -> new ArrayList<>()).add(output.lines().get(i));
+        }
 
-        } catch (Exception e) {
-            log.error("Error posting review comments", e);
+        List<ReviewResult> results = new ArrayList<>();
+        findingsByType.forEach((type, findings) -> results.add(buildResult(type, content, findings,
+                linesByType.get(type), output.overallGrade(), diffChunk, event)));
+        return results;
+    }
+
+    private ReviewResult buildResult(ReviewType type, String content, List<Finding> findings, List<String> issues,
+                                     String overallGrade, DiffChunk diffChunk, PullRequestEvent event) {
+        return ReviewResult.builder()
+                .reviewType(type)
+                .content(content)
+                .overallGrade(overallGrade)
+                .issues(issues)
+                .findings(findings)
+                .filePath(diffChunk.getFileName())
+                .commentableLines(diffChunk.getCommentableLines())
+                .repositoryName(event.getRepository().getFullName())
+                .pullRequestNumber(event.getPullRequest().getNumber())
+                .build();
+    }
+
+    /**
+     * chunk 별 전체 등급 중 가장 낮은 것. 등급을 낸 응답이 없으면 null.
+     */
+    String overallGrade(List<ReviewResult> results) {
+        String worst = null;
+        for (ReviewResult result : results) {
+            String grade = result.getOverallGrade();
+            if (grade != null && (worst == null || grade.compareTo(worst) > 0)) {
+                worst = grade;
+            }
         }
+        return worst;
+    }
+
+    ReviewMode reviewModeFor(String repositoryFullName) {
+        return combinedRepositories.contains(repositoryFullName) ? ReviewMode.COMBINED : defaultMode;
+    }
+
+    /**
+     * webhook 에 변경량이 있으면 스케줄러가 diff 를 다 읽기 전부터 PR 크기를 알 수 있다.
+     */
+    private int sizeHint(PullRequestEvent event) {
+        Integer additions = event.getPullRequest().getAdditions();
+        Integer deletions = event.getPullRequest().getDeletions();
+        return (additions != null ? additions : 0) + (deletions != null ? deletions : 0);
+    }
+
+    String headSha(PullRequestEvent event) {
+        PullRequestEvent.PullRequest.Head head = event.getPullRequest().getHead();
+        return head != null ? head.getSha() : null;
+    }
+
+    String shortSha(String sha) {
+        return sha.length() > 7 ? sha.substring(0, 7) : sha;
     }
 
-    private String getReviewTypeEmoji(ReviewType type) {
-        return switch (type) {
-            case SECURITY -> "🔒";
-            case PERFORMANCE -> "⚡";
-            case STYLE -> "🎨";
-            case GENERAL -> "📋";
-        };
+    boolean shouldSkipChunk(String chunk) {
+        return diffProcessorService.shouldSkipChunk(chunk);
+    }
+
+    /**
+     * 지적 사항을 라인 코멘트가 달린 리뷰로 게시한다. 코멘트가 많으면 리뷰 여러 개로 나뉜다.
+     * 모든 페이지를 게시해야 돌아온다. 하나라도 실패하면 예외를 던져 head SHA 를 리뷰한 것으로 남기지 않고,
+     * 작업 재시도 때 같은 범위를 다시 리뷰하게 한다.
+     */
+    private void postReview(PullRequestEvent event, List<ReviewResult> results, String reviewScope,
+                            ReviewCoverage coverage) {
+        String repositoryFullName = event.getRepository().getFullName();
+        int prNumber = event.getPullRequest().getNumber().intValue();
+        String commitSha = headSha(event);
+
+        List<ReviewPage> pages = reviewCommentPlanner.plan(findingsAggregator.aggregate(results),
+                overallGrade(results), reviewScope, coverage);
+        for (ReviewPage page : pages) {
+            giteaService.createReview(repositoryFullName, prNumber, commitSha, page);
+        }
+        log.info("Posted review for PR #{}", prNumber);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,307 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.diff.DiffFile;
+import com.gitea.prbot.diff.DiffHandler;
+import com.gitea.prbot.diff.DiffHunk;
+import com.gitea.prbot.diff.DiffLine;
+
+import java.util.Arrays;
+
+/**
+ * 파일/hunk 경계를 지키면서 토큰 예산에 맞춰 chunk 를 채우는 chunker.
+ * <ul>
+ *     <li>토큰 수는 주 모델의 어림값(TokenEstimator)으로 줄마다 한 번 세어 두고 더해 쓴다. 긴 줄이나 기호가 많은 줄도 예산에 맞는다.</li>
+ *     <li>같은 파일의 작은 hunk 들은 예산이 허락하는 만큼 하나의 chunk 로 묶는다.</li>
+ *     <li>예산을 넘는 hunk 는 블록이 닫히는 곳, 빈 줄, 선언부 시작 직전에서 나눈다.</li>
+ *     <li>각 hunk(또는 조각)는 라인 번호를 알 수 있도록 "@@ -a,b +c,d @@" 헤더와 함께 들어간다.</li>
+ * </ul>
+ */
+class DiffChunker implements DiffHandler {
+
+    /**
+     * 완성된 chunk 를 받는 콜백.
+     */
+    interface ChunkSink {
+        void accept(DiffFile file, String content, int startLine, int endLine, int estimatedTokens);
+    }
+
+    private static final String[] DECLARATION_PREFIXES = {
+            "public ", "private ", "protected ", "static ", "class ", "interface ", "enum ", "record ",
+            "def ", "func ", "fn ", "function ", "@"
+    };
+
+    // hunk 헤더의 토큰 수는 이 정도 길이의 헤더로 어림한다
+    private static final String SAMPLE_HEADER = "@@ -1234,56 +1234,56 @@\n";
+
+    private final ChunkSink sink;
+    private final int tokenBudget;
+    private final int maxLines;
+    private final int headerTokens;
+
+    private DiffFile file = DiffFile.of("unknown");
+    private final HunkBuffer hunk;
+
+    private final StringBuilder pack = new StringBuilder();
+    private int packStartLine;
+    private int packEndLine;
+    private int packLines;
+    private int packTokens;
+
+    DiffChunker(ChunkSink sink, int tokenBudget, int maxLines, TokenEstimator.Profile profile) {
+        this.sink = sink;
+        this.tokenBudget = tokenBudget;
+        this.maxLines = maxLines;
+        this.headerTokens = profile.count(SAMPLE_HEADER);
+        this.hunk = new HunkBuffer(profile);
+    }
+
+    @Override
+    public void onFile(DiffFile file) {
+        finishHunk();
+        flushPack();
+        this.file = file;
+    }
+
+    @Override
+    public void onHunk(DiffHunk header) {
+        finishHunk();
+    }
+
+    @Override
+    public void onLine(DiffLine line) {
+        hunk.add(line);
+    }
+
+    @Override
+    public void onEnd() {
+        finishHunk();
+        flushPack();
+    }
+
+    /**
+     * 현재 파일에서 아직 내보내지 않은 줄을 버린다. 다음 onFile 까지 들어오는 줄은 호출하는 쪽에서 걸러야 한다.
+     */
+    void discardFile() {
+        hunk.reset();
+        pack.setLength(0);
+        packLines = 0;
+        packTokens = 0;
+    }
+
+    private void finishHunk() {
+        int lines = hunk.lineCount;
+        if (lines == 0) {
+            return;
+        }
+
+        int hunkTokens = hunk.tokens(0, lines) + headerTokens;
+        if (fits(packTokens + hunkTokens, packLines + lines)) {
+            appendToPack(0, lines);
+        } else {
+            flushPack();
+            if (fits(hunkTokens, lines)) {
+                appendToPack(0, lines);
+            } else {
+                splitHunk();
+            }
+        }
+        hunk.reset();
+    }
+
+    /**
+     * 예산을 넘는 hunk 를 블록 경계에서 나눈다. 마지막 조각은 다음 hunk 와 묶일 수 있도록 남겨둔다.
+     */
+    private void splitHunk() {
+        int pieceStart = 0;
+        int lastBoundary = -1;
+        int depth = 0;
+
+        for (int i = 0; i < hunk.lineCount; i++) {
+            // 현재 줄(i)을 넣으면 예산을 넘는 동안 앞부분을 잘라낸다
+            while (i > pieceStart && !fits(hunk.tokens(pieceStart, i + 1) + headerTokens, i - pieceStart + 1)) {
+                // 경계가 조각의 절반 이후에 있으면 경계에서, 아니면 현재 줄 앞에서 자른다
+                int pieceLines = i - pieceStart;
+                int splitAt = lastBoundary > pieceStart && (lastBoundary - pieceStart) * 2 >= pieceLines
+                        ? lastBoundary
+                        : i;
+                appendToPack(pieceStart, splitAt);
+                flushPack();
+                pieceStart = splitAt;
+                lastBoundary = -1;
+            }
+
+            depth += braceDelta(i);
+            if (isBoundaryAfter(i, depth)) {
+                lastBoundary = i + 1;
+            }
+        }
+
+        if (pieceStart < hunk.lineCount) {
+            appendToPack(pieceStart, hunk.lineCount);
+        }
+    }
+
+    private boolean isBoundaryAfter(int index, int depth) {
+        if (hunk.isBlank(index)) {
+            return true;
+        }
+        if (depth <= 0 && hunk.lastNonBlankChar(index) == '}') {
+            return true;
+        }
+        return index + 1 < hunk.lineCount && hunk.startsWithAny(index + 1, DECLARATION_PREFIXES);
+    }
+
+    private int braceDelta(int index) {
+        if (hunk.kinds[index] == DiffLine.Kind.REMOVED) {
+            return 0;
+        }
+        int delta = 0;
+        for (int p = hunk.lineStart[index] + 1; p < hunk.lineEnd[index]; p++) {
+            char c = hunk.text.charAt(p);
+            if (c == '{') {
+                delta++;
+            } else if (c == '}') {
+                delta--;
+            }
+        }
+        return delta;
+    }
+
+    private void appendToPack(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+
+        int oldCount = 0;
+        int newCount = 0;
+        int endLine = hunk.newNumbers[from];
+        for (int i = from; i < to; i++) {
+            if (hunk.kinds[i] != DiffLine.Kind.ADDED) {
+                oldCount++;
+            }
+            if (hunk.kinds[i] != DiffLine.Kind.REMOVED) {
+                newCount++;
+                endLine = hunk.newNumbers[i];
+            }
+        }
+
+        if (packLines == 0) {
+            packStartLine = hunk.newNumbers[from];
+        }
+        packEndLine = endLine;
+
+        pack.append("@@ -").append(hunk.oldNumbers[from]).append(',').append(oldCount)
+                .append(" +").append(hunk.newNumbers[from]).append(',').append(newCount)
+                .append(" @@\n");
+        pack.append(hunk.text, hunk.lineStart[from], hunk.lineEnd[to - 1] + 1);
+        packLines += to - from;
+        packTokens += hunk.tokens(from, to) + headerTokens;
+    }
+
+    private void flushPack() {
+        if (packLines == 0) {
+            return;
+        }
+        sink.accept(file, pack.toString(), packStartLine, packEndLine, packTokens);
+        pack.setLength(0);
+        packLines = 0;
+        packTokens = 0;
+    }
+
+    private boolean fits(int tokens, int lines) {
+        return lines <= maxLines && tokens <= tokenBudget;
+    }
+
+    /**
+     * 한 hunk 의 줄들을 복사해 둔다. DiffLine 은 파서가 재사용하므로 내용을 보관해야 한다.
+     */
+    private static class HunkBuffer {
+        private final StringBuilder text = new StringBuilder();
+        private final TokenEstimator.Profile profile;
+        private int[] lineStart = new int[64];
+        private int[] lineEnd = new int[64];
+        // 0..i 번째 줄(줄바꿈 포함)의 토큰 수 누적
+        private int[] tokenEnd = new int[64];
+        private int[] oldNumbers = new int[64];
+        private int[] newNumbers = new int[64];
+        private DiffLine.Kind[] kinds = new DiffLine.Kind[64];
+        private int lineCount = 0;
+
+        HunkBuffer(TokenEstimator.Profile profile) {
+            this.profile = profile;
+        }
+
+        void add(DiffLine line) {
+            if (lineCount == lineStart.length) {
+                int capacity = lineCount * 2;
+                lineStart = Arrays.copyOf(lineStart, capacity);
+                lineEnd = Arrays.copyOf(lineEnd, capacity);
+                tokenEnd = Arrays.copyOf(tokenEnd, capacity);
+                oldNumbers = Arrays.copyOf(oldNumbers, capacity);
+                newNumbers = Arrays.copyOf(newNumbers, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+
+            lineStart[lineCount] = text.length();
+            line.appendTo(text);
+            lineEnd[lineCount] = text.length();
+            text.append('\n');
+            tokenEnd[lineCount] = (lineCount > 0 ? tokenEnd[lineCount - 1] : 0)
+                    + profile.count(text, lineStart[lineCount], text.length());
+            oldNumbers[lineCount] = line.oldLineNumber();
+            newNumbers[lineCount] = line.newLineNumber();
+            kinds[lineCount] = line.kind();
+            lineCount++;
+        }
+
+        /** from..to-1 번째 줄의 토큰 수 */
+        int tokens(int from, int to) {
+            return tokenEnd[to - 1] - (from > 0 ? tokenEnd[from - 1] : 0);
+        }
+
+        boolean isBlank(int index) {
+            return lastNonBlankChar(index) == 0;
+        }
+
+        /** diff 접두사를 제외한 마지막 공백 아닌 문자, 없으면 0 */
+        char lastNonBlankChar(int index) {
+            for (int p = lineEnd[index] - 1; p > lineStart[index]; p--) {
+                char c = text.charAt(p);
+                if (!Character.isWhitespace(c)) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        boolean startsWithAny(int index, String[] prefixes) {
+            int p = lineStart[index] + 1;
+            while (p < lineEnd[index] && Character.isWhitespace(text.charAt(p))) {
+                p++;
+            }
+            for (String prefix : prefixes) {
+                if (regionMatches(p, lineEnd[index], prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean regionMatches(int start, int end, String prefix) {
+            if (end - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (text.charAt(start + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void reset() {
+            text.setLength(0);
+            lineCount = 0;
+        }
+    }
+}
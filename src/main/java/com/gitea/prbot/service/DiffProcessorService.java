@@ -1,13 +1,23 @@
 package com.gitea.prbot.service;
 
+import com.gitea.prbot.diff.DiffFile;
+import com.gitea.prbot.diff.DiffHandler;
+import com.gitea.prbot.diff.DiffHunk;
+import com.gitea.prbot.diff.DiffLine;
+import com.gitea.prbot.diff.UnifiedDiffParser;
+import com.gitea.prbot.model.ReviewType;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 @Service
 public class DiffProcessorService {
@@ -17,141 +27,182 @@ public class DiffProcessorService {
     @Value("${bot.review.chunk-size:100}")
     private int chunkSize;
 
-    @Value("${bot.review.enable-static-analysis:true}")
+    // 켜면 정적 분석 키워드가 하나도 없는 chunk 는 리뷰하지 않는다 (GENERAL 리뷰도 빠짐)
+    @Value("${bot.review.enable-static-analysis:false}")
     private boolean enableStaticAnalysis;
 
-    private static final Pattern DIFF_FILE_PATTERN = Pattern.compile("^diff --git a/(.*) b/(.*)$");
-    private static final Pattern HUNK_HEADER_PATTERN = Pattern.compile("^@@\\s*-\\d+,?\\d*\\s*\\+\\d+,?\\d*\\s*@@");
+    @Value("${bot.review.prompt-reserve-tokens:1024}")
+    private int promptReserveTokens;
 
-    public List<DiffChunk> processDiff(String diff) {
-        if (diff == null || diff.trim().isEmpty()) {
-            return Collections.emptyList();
-        }
+    @Value("${bot.review.response-reserve-tokens:1024}")
+    private int responseReserveTokens;
 
-        List<DiffChunk> chunks = new ArrayList<>();
-        String[] files = splitDiffByFiles(diff);
+    // 비워 두면 아래 기본 키워드를 쓴다
+    @Value("${bot.review.rules.security:}")
+    private List<String> securityKeywords;
 
-        for (String fileDiff : files) {
-            chunks.addAll(processFileDiff(fileDiff));
-        }
+    @Value("${bot.review.rules.performance:}")
+    private List<String> performanceKeywords;
 
-        if (enableStaticAnalysis) {
-            chunks = filterWithStaticAnalysis(chunks);
-        }
+    @Value("${bot.review.rules.style:}")
+    private List<String> styleKeywords;
 
-        log.info("Processed {} diff chunks", chunks.size());
-        return chunks;
-    }
+    // 이보다 긴 chunk 는 키워드가 없어도 스타일 리뷰 대상으로 본다 (너무 긴 메서드)
+    @Value("${bot.review.rules.style-min-length:1000}")
+    private int styleMinLength;
 
-    private String[] splitDiffByFiles(String diff) {
-        List<String> files = new ArrayList<>();
-        String[] lines = diff.split("\n");
-        StringBuilder currentFile = new StringBuilder();
+    private final TokenEstimator tokenEstimator;
 
-        for (String line : lines) {
-            if (line.startsWith("diff --git") && currentFile.length() > 0) {
-                files.add(currentFile.toString());
-                currentFile = new StringBuilder();
-            }
-            currentFile.append(line).append("\n");
-        }
+    private KeywordMatcher keywordMatcher;
 
-        if (currentFile.length() > 0) {
-            files.add(currentFile.toString());
-        }
+    private static final String[] SECURITY_KEYWORDS = {
+            "password", "secret", "token", "api_key", "private_key",
+            "exec(", "eval(", "system(", "shell_exec(",
+            "sql", "query", "select", "insert", "update", "delete",
+            "md5(", "sha1(", "base64_encode", "base64_decode"
+    };
 
-        return files.toArray(new String[0]);
-    }
+    private static final String[] PERFORMANCE_KEYWORDS = {
+            "for (", "while (", "foreach", ".stream()", ".map(", ".filter(",
+            "n²", "o(n", "recursive", "loop", "nested",
+            "database", "query", "connection", "transaction"
+    };
 
-    private List<DiffChunk> processFileDiff(String fileDiff) {
-        List<DiffChunk> chunks = new ArrayList<>();
-        String[] lines = fileDiff.split("\n");
+    private static final String[] STYLE_KEYWORDS = {
+            "// todo", "// fixme", "system.out.println"
+    };
 
-        String fileName = extractFileName(fileDiff);
-        String fileExtension = getFileExtension(fileName);
+    public DiffProcessorService(TokenEstimator tokenEstimator) {
+        this.tokenEstimator = tokenEstimator;
+    }
 
-        StringBuilder currentChunk = new StringBuilder();
-        int lineCount = 0;
-        int startLine = 0;
+    @PostConstruct
+    void compileRules() {
+        Map<ReviewType, List<String>> rules = new EnumMap<>(ReviewType.class);
+        rules.put(ReviewType.SECURITY, keywordsOrDefault(securityKeywords, SECURITY_KEYWORDS));
+        rules.put(ReviewType.PERFORMANCE, keywordsOrDefault(performanceKeywords, PERFORMANCE_KEYWORDS));
+        rules.put(ReviewType.STYLE, keywordsOrDefault(styleKeywords, STYLE_KEYWORDS));
+        keywordMatcher = new KeywordMatcher(rules);
+        log.info("Compiled static analysis rules: {} security, {} performance, {} style keywords",
+                rules.get(ReviewType.SECURITY).size(), rules.get(ReviewType.PERFORMANCE).size(),
+                rules.get(ReviewType.STYLE).size());
+    }
 
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
+    private static List<String> keywordsOrDefault(List<String> configured, String[] defaults) {
+        if (configured == null || configured.stream().allMatch(String::isBlank)) {
+            return List.of(defaults);
+        }
+        return configured;
+    }
 
-            // 파일 헤더는 건너뛰기
-            if (line.startsWith("diff --git") || line.startsWith("index ") ||
-                line.startsWith("--- ") || line.startsWith("+++ ")) {
-                continue;
-            }
+    public List<DiffChunk> processDiff(String diff) {
+        if (diff == null || diff.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            // 새로운 hunk 시작
-            if (HUNK_HEADER_PATTERN.matcher(line).matches()) {
-                if (currentChunk.length() > 0) {
-                    chunks.add(createDiffChunk(fileName, fileExtension, currentChunk.toString(), startLine));
-                    currentChunk = new StringBuilder();
-                    lineCount = 0;
-                }
-                startLine = extractLineNumber(line);
-                continue;
-            }
+        List<DiffChunk> chunks = new ArrayList<>();
+        new UnifiedDiffParser(newChunker(chunks::add, FileFilter.NONE)).parse(diff);
 
-            currentChunk.append(line).append("\n");
-            lineCount++;
+        log.info("Processed {} diff chunks", chunks.size());
+        return chunks;
+    }
 
-            // chunk 크기 제한 확인
-            if (lineCount >= chunkSize) {
-                chunks.add(createDiffChunk(fileName, fileExtension, currentChunk.toString(), startLine));
-                currentChunk = new StringBuilder();
-                lineCount = 0;
-                startLine = startLine + chunkSize;
-            }
+    /**
+     * diff 를 스트림으로 읽으며 chunk 가 완성되는 즉시 consumer 로 넘긴다.
+     * 전체 diff 를 문자열로 올리거나 다시 split 하지 않으므로 메모리 사용량은 PR 크기가 아닌 chunk 크기에 비례한다.
+     *
+     * fileFilter 가 버리라고 한 파일은 chunk 로 나누지 않는다.
+     *
+     * @return consumer 로 전달된 chunk 수
+     */
+    public int processDiff(Reader diffReader, FileFilter fileFilter, Consumer<DiffChunk> consumer) {
+        int[] emitted = {0};
+        DiffHandler chunker = newChunker(chunk -> {
+            consumer.accept(chunk);
+            emitted[0]++;
+        }, fileFilter);
+
+        try {
+            new UnifiedDiffParser(chunker).parse(diffReader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read diff", e);
         }
 
-        // 남은 chunk 처리
-        if (currentChunk.length() > 0) {
-            chunks.add(createDiffChunk(fileName, fileExtension, currentChunk.toString(), startLine));
-        }
+        return emitted[0];
+    }
 
-        return chunks;
+    /**
+     * 줄 단위 Flux 를 chunk Flux 로 바꾼다. 다운스트림이 요청한 만큼만 줄을 당겨오므로 backpressure 가 유지된다.
+     */
+    public Flux<DiffChunk> processDiff(Flux<String> diffLines, FileFilter fileFilter) {
+        return Flux.defer(() -> {
+            List<DiffChunk> ready = new ArrayList<>();
+            UnifiedDiffParser parser = new UnifiedDiffParser(newChunker(ready::add, fileFilter));
+
+            return diffLines
+                    .concatMapIterable(line -> {
+                        parser.feed(line);
+                        return drain(ready);
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        parser.finish();
+                        return Flux.fromIterable(drain(ready));
+                    }));
+        });
     }
 
-    private String extractFileName(String fileDiff) {
-        String[] lines = fileDiff.split("\n");
-        for (String line : lines) {
-            Matcher matcher = DIFF_FILE_PATTERN.matcher(line);
-            if (matcher.matches()) {
-                return matcher.group(2); // b/ 이후의 파일명
-            }
+    private static List<DiffChunk> drain(List<DiffChunk> ready) {
+        if (ready.isEmpty()) {
+            return List.of();
         }
-        return "unknown";
+        List<DiffChunk> drained = new ArrayList<>(ready);
+        ready.clear();
+        return drained;
     }
 
-    private String getFileExtension(String fileName) {
-        int lastDot = fileName.lastIndexOf('.');
-        return lastDot > 0 ? fileName.substring(lastDot + 1) : "";
+    /**
+     * 주 모델 컨텍스트 창에서 프롬프트 템플릿과 응답 몫을 뺀, chunk 하나에 쓸 수 있는 토큰 수.
+     */
+    public int getChunkTokenBudget() {
+        int contextWindow = tokenEstimator.forPrimaryModel().getContextWindow();
+        return Math.max(256, contextWindow - promptReserveTokens - responseReserveTokens);
     }
 
-    private int extractLineNumber(String hunkHeader) {
-        // @@ -1,4 +1,4 @@ 형태에서 +1,4 부분의 1을 추출
-        Pattern pattern = Pattern.compile("\\+\\d+");
-        Matcher matcher = pattern.matcher(hunkHeader);
-        if (matcher.find()) {
-            return Integer.parseInt(matcher.group().substring(1));
-        }
-        return 0;
+    private DiffHandler newChunker(Consumer<DiffChunk> consumer, FileFilter fileFilter) {
+        DiffChunker chunker = new DiffChunker((file, content, startLine, endLine, estimatedTokens) -> {
+            DiffChunk chunk = createDiffChunk(file.path(), file.extension(), content, startLine, endLine, estimatedTokens);
+            if (!enableStaticAnalysis || hasCodeQualityIssues(chunk)) {
+                consumer.accept(chunk);
+            }
+        }, getChunkTokenBudget(), chunkSize, tokenEstimator.forPrimaryModel());
+        return fileFilter == FileFilter.NONE ? chunker : new FileFilteringHandler(chunker, fileFilter);
     }
 
-    private DiffChunk createDiffChunk(String fileName, String fileExtension, String content, int startLine) {
+    private DiffChunk createDiffChunk(String fileName, String fileExtension, String content,
+                                      int startLine, int endLine, int estimatedTokens) {
         return DiffChunk.builder()
                 .fileName(fileName)
                 .fileExtension(fileExtension)
                 .content(content)
                 .startLine(startLine)
+                .endLine(endLine)
+                .estimatedTokens(estimatedTokens)
                 .language(detectLanguage(fileExtension))
-                .hasSecurityConcerns(hasSecurityPatterns(content))
-                .hasPerformanceConcerns(hasPerformancePatterns(content))
+                .triggeredReviewTypes(triggeredReviewTypes(content))
                 .build();
     }
 
+    /**
+     * 키워드 오토마톤으로 chunk 를 한 번 훑어 해당하는 리뷰 타입을 찾는다.
+     */
+    Set<ReviewType> triggeredReviewTypes(String content) {
+        Set<ReviewType> types = keywordMatcher.match(content);
+        if (content.length() > styleMinLength) {
+            types.add(ReviewType.STYLE);
+        }
+        return types;
+    }
+
     private String detectLanguage(String extension) {
         return switch (extension.toLowerCase()) {
             case "java" -> "java";
@@ -166,83 +217,59 @@ public class DiffProcessorService {
         };
     }
 
-    private List<DiffChunk> filterWithStaticAnalysis(List<DiffChunk> chunks) {
-        // 정적 분석 필터링: 명백한 문제가 있는 chunk만 남기기
-        return chunks.stream()
-                .filter(this::hasCodeQualityIssues)
-                .toList();
-    }
-
     private boolean hasCodeQualityIssues(DiffChunk chunk) {
-        String content = chunk.getContent().toLowerCase();
-
-        // 보안 패턴 체크
-        if (hasSecurityPatterns(content)) return true;
-
-        // 성능 패턴 체크
-        if (hasPerformancePatterns(content)) return true;
-
-        // 코드 스타일 패턴 체크
-        if (hasStyleIssues(content)) return true;
-
-        return false;
-    }
-
-    private boolean hasSecurityPatterns(String content) {
-        List<String> securityPatterns = List.of(
-            "password", "secret", "token", "api_key", "private_key",
-            "exec(", "eval(", "system(", "shell_exec(",
-            "sql", "query", "select", "insert", "update", "delete",
-            "md5(", "sha1(", "base64_encode", "base64_decode"
-        );
-
-        return securityPatterns.stream().anyMatch(content::contains);
-    }
-
-    private boolean hasPerformancePatterns(String content) {
-        List<String> performancePatterns = List.of(
-            "for (", "while (", "foreach", ".stream()", ".map(", ".filter(",
-            "n²", "o(n", "recursive", "loop", "nested",
-            "database", "query", "connection", "transaction"
-        );
-
-        return performancePatterns.stream().anyMatch(content::contains);
-    }
-
-    private boolean hasStyleIssues(String content) {
-        // 간단한 스타일 이슈 체크
-        return content.contains("// todo") ||
-               content.contains("// fixme") ||
-               content.contains("system.out.println") ||
-               content.length() > 1000; // 너무 긴 메서드
+        // 보안/성능/스타일 패턴은 chunk 생성 시 이미 검사했다
+        return !chunk.getTriggeredReviewTypes().isEmpty();
     }
 
     public boolean shouldSkipChunk(String chunk) {
-        if (chunk == null || chunk.trim().isEmpty()) {
+        if (chunk == null || chunk.isBlank()) {
             return true;
         }
 
         // 빈 줄이나 주석만 있는 chunk 건너뛰기
-        String[] lines = chunk.split("\n");
-        boolean hasCode = false;
-        
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (!trimmed.isEmpty() && 
-                !trimmed.startsWith("//") && 
-                !trimmed.startsWith("#") && 
-                !trimmed.startsWith("/*") && 
-                !trimmed.startsWith("*") &&
-                !trimmed.startsWith("diff --git") &&
-                !trimmed.startsWith("index ") &&
-                !trimmed.startsWith("--- ") &&
-                !trimmed.startsWith("+++ ")) {
-                hasCode = true;
-                break;
+        int length = chunk.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = chunk.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
             }
+
+            // chunker 가 붙인 hunk 헤더와 "\ No newline at end of file" 표시는 코드가 아니다
+            if (chunk.startsWith("@@", lineStart) || chunk.startsWith("\\", lineStart)) {
+                lineStart = lineEnd + 1;
+                continue;
+            }
+
+            int pos = lineStart;
+            // diff 접두사(+, -, 공백) 건너뛰기
+            if (pos < lineEnd && (chunk.charAt(pos) == '+' || chunk.charAt(pos) == '-')
+                    && !chunk.startsWith("+++ ", pos) && !chunk.startsWith("--- ", pos)) {
+                pos++;
+            }
+            while (pos < lineEnd && Character.isWhitespace(chunk.charAt(pos))) {
+                pos++;
+            }
+
+            if (pos < lineEnd && !isNonCodeLine(chunk, pos)) {
+                return false;
+            }
+            lineStart = lineEnd + 1;
         }
 
-        return !hasCode;
+        return true;
+    }
+
+    private boolean isNonCodeLine(String chunk, int pos) {
+        return chunk.startsWith("//", pos) ||
+               chunk.startsWith("#", pos) ||
+               chunk.startsWith("/*", pos) ||
+               chunk.startsWith("*", pos) ||
+               chunk.startsWith("diff --git", pos) ||
+               chunk.startsWith("index ", pos) ||
+               chunk.startsWith("--- ", pos) ||
+               chunk.startsWith("+++ ", pos);
     }
 
     public static class DiffChunk {
@@ -250,9 +277,10 @@ public class DiffProcessorService {
         private String fileExtension;
         private String content;
         private int startLine;
+        private int endLine;
+        private int estimatedTokens;
         private String language;
-        private boolean hasSecurityConcerns;
-        private boolean hasPerformanceConcerns;
+        private Set<ReviewType> triggeredReviewTypes = Set.of();
 
         public static DiffChunkBuilder builder() {
             return new DiffChunkBuilder();
@@ -281,18 +309,23 @@ public class DiffProcessorService {
                 return this;
             }
 
-            public DiffChunkBuilder language(String language) {
-                chunk.language = language;
+            public DiffChunkBuilder endLine(int endLine) {
+                chunk.endLine = endLine;
                 return this;
             }
 
-            public DiffChunkBuilder hasSecurityConcerns(boolean hasSecurityConcerns) {
-                chunk.hasSecurityConcerns = hasSecurityConcerns;
+            public DiffChunkBuilder estimatedTokens(int estimatedTokens) {
+                chunk.estimatedTokens = estimatedTokens;
                 return this;
             }
 
-            public DiffChunkBuilder hasPerformanceConcerns(boolean hasPerformanceConcerns) {
-                chunk.hasPerformanceConcerns = hasPerformanceConcerns;
+            public DiffChunkBuilder language(String language) {
+                chunk.language = language;
+                return this;
+            }
+
+            public DiffChunkBuilder triggeredReviewTypes(Set<ReviewType> triggeredReviewTypes) {
+                chunk.triggeredReviewTypes = triggeredReviewTypes;
                 return this;
             }
 
@@ -306,8 +339,36 @@ public class DiffProcessorService {
         public String getFileExtension() { return fileExtension; }
         public String getContent() { return content; }
         public int getStartLine() { return startLine; }
+        public int getEndLine() { return endLine; }
+        public int getEstimatedTokens() { return estimatedTokens; }
         public String getLanguage() { return language; }
-        public boolean hasSecurityConcerns() { return hasSecurityConcerns; }
-        public boolean hasPerformanceConcerns() { return hasPerformanceConcerns; }
+        /** 정적 분석 키워드가 나온 리뷰 타입들 */
+        public Set<ReviewType> getTriggeredReviewTypes() { return triggeredReviewTypes; }
+        public boolean hasSecurityConcerns() { return triggeredReviewTypes.contains(ReviewType.SECURITY); }
+        public boolean hasPerformanceConcerns() { return triggeredReviewTypes.contains(ReviewType.PERFORMANCE); }
+
+        /**
+         * 인라인 코멘트를 달 수 있는 (새 파일 기준) 라인 번호들. chunk 안의 hunk 헤더로부터 계산한다.
+         */
+        public BitSet getCommentableLines() {
+            BitSet lines = new BitSet();
+            new UnifiedDiffParser(new DiffHandler() {
+                @Override
+                public void onFile(DiffFile file) {
+                }
+
+                @Override
+                public void onHunk(DiffHunk hunk) {
+                }
+
+                @Override
+                public void onLine(DiffLine line) {
+                    if (line.kind() != DiffLine.Kind.REMOVED) {
+                        lines.set(line.newLineNumber());
+                    }
+                }
+            }).parse(content);
+            return lines;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.gitea.prbot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 외부 시스템(Ollama, Gitea)별 동시 호출 수를 제한한다.
+ * 리뷰 작업은 가상 스레드에서 돌기 때문에 스레드 수가 아니라 이 허용량이 실제 동시성 상한이 된다.
+ * 블로킹 호출(call)과 리액티브 호출(callReactive)이 같은 허용량을 나눠 쓴다.
+ * 사용 중/대기 중인 호출 수와 대기 시간은 prbot.downstream.* 지표로 노출된다.
+ */
+@Service
+public class DownstreamLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(DownstreamLimiter.class);
+
+    public enum Downstream {
+        OLLAMA, GITEA
+    }
+
+    private final Map<Downstream, PermitQueue> permits = new EnumMap<>(Downstream.class);
+    private final Map<Downstream, Integer> limits = new EnumMap<>(Downstream.class);
+    private final Map<Downstream, Timer> waitTimers = new EnumMap<>(Downstream.class);
+
+    public DownstreamLimiter(MeterRegistry meterRegistry,
+                             @Value("${bot.concurrency.ollama:4}") int ollamaLimit,
+                             @Value("${bot.concurrency.gitea:8}") int giteaLimit) {
+        limits.put(Downstream.OLLAMA, ollamaLimit);
+        limits.put(Downstream.GITEA, giteaLimit);
+
+        for (Downstream downstream : Downstream.values()) {
+            int limit = limits.get(downstream);
+            PermitQueue queue = new PermitQueue(limit);
+            permits.put(downstream, queue);
+
+            String tag = downstream.name().toLowerCase();
+            Gauge.builder("prbot.downstream.in.use", queue, PermitQueue::inUse)
+                    .description("Calls currently holding a permit")
+                    .tag("downstream", tag)
+                    .register(meterRegistry);
+            Gauge.builder("prbot.downstream.waiting", queue, PermitQueue::waiting)
+                    .description("Calls waiting for a permit")
+                    .tag("downstream", tag)
+                    .register(meterRegistry);
+            Gauge.builder("prbot.downstream.limit", () -> limit)
+                    .tag("downstream", tag)
+                    .register(meterRegistry);
+            waitTimers.put(downstream, Timer.builder("prbot.downstream.wait")
+                    .description("Time spent waiting for a permit")
+                    .tag("downstream", tag)
+                    .register(meterRegistry));
+        }
+
+        log.info("Downstream concurrency limits: {}", limits);
+    }
+
+    /**
+     * 허용량을 얻은 뒤 action 을 실행한다. 허용량이 없으면 (가상 스레드를 점유하지 않고) 대기한다.
+     */
+    public <T> T call(Downstream downstream, Supplier<T> action) {
+        PermitQueue queue = permits.get(downstream);
+
+        long started = System.nanoTime();
+        try {
+            queue.acquireInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + downstream + " permit", e);
+        }
+        waitTimers.get(downstream).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        try {
+            return action.get();
+        } finally {
+            queue.release();
+        }
+    }
+
+    /**
+     * call 의 논블로킹 버전. 허용량을 얻으면 action 을 구독하고, action 이 끝나거나 실패하거나 취소되면 돌려준다.
+     * 기다리는 동안 스레드를 점유하지 않는다.
+     */
+    public <T> Mono<T> callReactive(Downstream downstream, Mono<T> action) {
+        PermitQueue queue = permits.get(downstream);
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return Mono.usingWhen(
+                    queue.acquireReactive()
+                            .doOnSuccess(granted -> waitTimers.get(downstream)
+                                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS))
+                            .thenReturn(queue),
+                    granted -> action,
+                    granted -> Mono.fromRunnable(granted::release),
+                    (granted, error) -> Mono.fromRunnable(granted::release),
+                    granted -> Mono.fromRunnable(granted::release));
+        });
+    }
+
+    public void run(Downstream downstream, Runnable action) {
+        call(downstream, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public int getLimit(Downstream downstream) {
+        return limits.get(downstream);
+    }
+
+    public int getInUse(Downstream downstream) {
+        return permits.get(downstream).inUse();
+    }
+}
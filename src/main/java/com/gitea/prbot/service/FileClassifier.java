@@ -0,0 +1,190 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.FileKind;
+import com.gitea.prbot.service.FileFilter.Rule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 저장소의 ignore 파일과 .gitattributes 를 읽어 PR 마다 쓸 FileFilter 를 만든다.
+ * 두 파일은 PR 작성자가 자기 PR 에서 리뷰를 피하지 못하도록 대상(base) 브랜치에서 읽고, repository-cache-ttl 동안 캐시한다.
+ */
+@Service
+public class FileClassifier {
+
+    private static final Logger log = LoggerFactory.getLogger(FileClassifier.class);
+
+    private static final String GITATTRIBUTES = ".gitattributes";
+
+    // 한 시점의 저장소 규칙. sha 가 같으면 파일을 다시 받지 않는다
+    private record RepositoryRules(long expiresAt, String ignoreSha, List<Rule> ignoreRules,
+                                   String attributesSha, List<Rule> attributeRules) {
+    }
+
+    private final GiteaService giteaService;
+    private final boolean enabled;
+    private final String ignoreFile;
+    private final int maxLineLength;
+    private final long repositoryCacheTtlNanos;
+    private final Map<FileKind, Counter> skippedCounters = new EnumMap<>(FileKind.class);
+    private final Map<String, RepositoryRules> repositoryRules = new ConcurrentHashMap<>();
+
+    public FileClassifier(GiteaService giteaService, MeterRegistry meterRegistry,
+                          @Value("${bot.review.skip.enabled:true}") boolean enabled,
+                          @Value("${bot.review.skip.ignore-file:.gitea/prbot/ignore}") String ignoreFile,
+                          @Value("${bot.review.skip.max-line-length:1000}") int maxLineLength,
+                          @Value("${bot.review.skip.repository-cache-ttl:5m}") Duration repositoryCacheTtl) {
+        this.giteaService = giteaService;
+        this.enabled = enabled;
+        this.ignoreFile = ignoreFile;
+        this.maxLineLength = maxLineLength;
+        this.repositoryCacheTtlNanos = repositoryCacheTtl.toNanos();
+
+        for (FileKind kind : FileKind.values()) {
+            if (kind != FileKind.SOURCE) {
+                skippedCounters.put(kind, Counter.builder("prbot.review.files.skipped")
+                        .description("Files dropped from review before chunking")
+                        .tag("kind", kind.name())
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * PR 한 건 동안 쓸 필터. 버린 파일을 모으므로 PR 마다 새로 만든다.
+     */
+    public FileFilter filterFor(String repositoryFullName, String ref) {
+        if (!enabled) {
+            return FileFilter.NONE;
+        }
+        RepositoryRules rules = repositoryFullName != null
+                ? repositoryRules(repositoryFullName, ref)
+                : new RepositoryRules(0, null, List.of(), null, List.of());
+        return new FileFilter(true, rules.ignoreRules(), rules.attributeRules(), maxLineLength, skippedCounters);
+    }
+
+    private RepositoryRules repositoryRules(String repositoryFullName, String ref) {
+        String key = repositoryFullName + "@" + (ref != null ? ref : "");
+        RepositoryRules cached = repositoryRules.get(key);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.expiresAt() < 0) {
+            return cached;
+        }
+        RepositoryRules previous = cached != null ? cached : new RepositoryRules(0, null, List.of(), null, List.of());
+
+        int slash = ignoreFile.lastIndexOf('/');
+        String ignoreDirectory = slash >= 0 ? ignoreFile.substring(0, slash) : "";
+        String ignoreName = ignoreFile.substring(slash + 1);
+
+        Map<String, String> root = giteaService.listDirectory(repositoryFullName, "", ref);
+        Map<String, String> ignoreEntries = ignoreDirectory.isEmpty()
+                ? root
+                : giteaService.listDirectory(repositoryFullName, ignoreDirectory, ref);
+        if (root == null || ignoreEntries == null) {
+            // Gitea 오류 시 이전 규칙을 그대로 쓴다
+            RepositoryRules retry = new RepositoryRules(now + repositoryCacheTtlNanos, previous.ignoreSha(),
+                    previous.ignoreRules(), previous.attributesSha(), previous.attributeRules());
+            repositoryRules.put(key, retry);
+            return retry;
+        }
+
+        String ignoreSha = ignoreEntries.get(ignoreName);
+        List<Rule> ignoreRules = ignoreSha == null ? List.of()
+                : ignoreSha.equals(previous.ignoreSha()) ? previous.ignoreRules()
+                : parseIgnore(giteaService.getRawFile(repositoryFullName, ignoreFile, ref));
+
+        String attributesSha = root.get(GITATTRIBUTES);
+        List<Rule> attributeRules = attributesSha == null ? List.of()
+                : attributesSha.equals(previous.attributesSha()) ? previous.attributeRules()
+                : parseAttributes(giteaService.getRawFile(repositoryFullName, GITATTRIBUTES, ref));
+
+        if (!ignoreRules.isEmpty() || !attributeRules.isEmpty()) {
+            log.debug("Loaded {} ignore and {} attribute rules for {}@{}",
+                    ignoreRules.size(), attributeRules.size(), repositoryFullName, ref);
+        }
+        RepositoryRules loaded = new RepositoryRules(now + repositoryCacheTtlNanos,
+                ignoreSha, ignoreRules, attributesSha, attributeRules);
+        repositoryRules.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * .gitignore 형식. '!' 로 시작하면 다시 리뷰한다.
+     */
+    static List<Rule> parseIgnore(String content) {
+        List<Rule> rules = new ArrayList<>();
+        if (content == null) {
+            return rules;
+        }
+        for (String line : content.split("\n")) {
+            String pattern = line.strip();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            if (pattern.startsWith("!")) {
+                rules.add(new Rule(PathPattern.compile(pattern.substring(1)), FileKind.SOURCE));
+            } else {
+                rules.add(new Rule(PathPattern.compile(pattern), FileKind.IGNORED));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * "패턴 속성..." 줄에서 linguist-generated, linguist-vendored, binary(-diff) 만 본다.
+     */
+    static List<Rule> parseAttributes(String content) {
+        List<Rule> rules = new ArrayList<>();
+        if (content == null) {
+            return rules;
+        }
+        for (String line : content.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            FileKind kind = null;
+            for (int i = 1; i < fields.length; i++) {
+                FileKind attribute = attributeKind(fields[i]);
+                if (attribute != null) {
+                    kind = attribute;
+                }
+            }
+            if (kind != null) {
+                rules.add(new Rule(PathPattern.compile(fields[0]), kind));
+            }
+        }
+        return rules;
+    }
+
+    private static FileKind attributeKind(String attribute) {
+        boolean unset = attribute.startsWith("-") || attribute.endsWith("=false");
+        String name = attribute;
+        if (name.startsWith("-")) {
+            name = name.substring(1);
+        }
+        int equals = name.indexOf('=');
+        if (equals >= 0) {
+            name = name.substring(0, equals);
+        }
+        return switch (name) {
+            case "linguist-generated" -> unset ? FileKind.SOURCE : FileKind.GENERATED;
+            case "linguist-vendored" -> unset ? FileKind.SOURCE : FileKind.VENDORED;
+            case "binary" -> unset ? null : FileKind.BINARY;
+            case "diff" -> unset ? FileKind.BINARY : null;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.diff.DiffLine;
+import com.gitea.prbot.model.FileKind;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PR 한 건의 diff 에서 리뷰하지 않을 파일을 가려낸다. 저장소 규칙은 기본 규칙보다 우선한다.
+ * <ol>
+ *     <li>저장소 ignore 파일(.gitignore 형식)에 맞으면 IGNORED.</li>
+ *     <li>.gitattributes 의 linguist-generated, linguist-vendored, binary 표시. "-linguist-generated" 처럼 끄면 리뷰한다.</li>
+ *     <li>경로로 알 수 있는 바이너리, lockfile, vendor 디렉터리, 축약 파일, 생성 코드.</li>
+ *     <li>내용: 파일 앞부분 주석 줄의 "@generated", "DO NOT EDIT" 같은 표시. 또는 절반 넘는 줄이
+ *     max-line-length 를 넘거나 평균 줄 길이가 max-line-length 를 넘는 경우(축약 파일).</li>
+ * </ol>
+ * 버린 파일은 getSkippedFiles 로 알 수 있다.
+ */
+public final class FileFilter {
+
+    /** 아무 파일도 버리지 않는다. */
+    public static final FileFilter NONE = new FileFilter(false, List.of(), List.of(), Integer.MAX_VALUE, Map.of());
+
+    // 생성 표시를 찾을 파일 앞부분 줄 수
+    private static final int GENERATED_MARKER_LINES = 5;
+
+    // 줄 길이로 축약 파일인지 판단하기 전에 볼 줄 수. 이보다 짧은 파일은 파일이 끝난 뒤에 판단한다
+    static final int MINIFIED_SAMPLE_LINES = 20;
+
+    private static final String[] COMMENT_PREFIXES = {
+            "//", "/*", "*", "#", "<!--", "--", ";"
+    };
+
+    private static final String[] GENERATED_MARKERS = {
+            "@generated", "do not edit", "code generated", "auto-generated", "autogenerated",
+            "generated by the protocol buffer compiler"
+    };
+
+    private static final Set<String> BINARY_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "bmp", "ico", "webp", "tif", "tiff", "psd", "pdf",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar", "war", "ear", "class", "pyc",
+            "so", "dll", "dylib", "exe", "bin", "o", "a", "lib", "wasm",
+            "woff", "woff2", "ttf", "otf", "eot", "mp3", "mp4", "mov", "avi", "wav", "ogg", "sqlite", "db");
+
+    private static final Set<String> LOCKFILE_NAMES = Set.of(
+            "package-lock.json", "npm-shrinkwrap.json", "yarn.lock", "pnpm-lock.yaml", "bun.lockb",
+            "composer.lock", "gemfile.lock", "cargo.lock", "poetry.lock", "pipfile.lock", "uv.lock",
+            "go.sum", "gradle.lockfile", "packages.lock.json", "mix.lock", "pubspec.lock", "flake.lock",
+            "podfile.lock", "package.resolved");
+
+    private static final String[] VENDOR_DIRECTORIES = {
+            "vendor/", "node_modules/", "third_party/", "third-party/", "bower_components/", ".yarn/", "pods/"
+    };
+
+    private static final String[] MINIFIED_SUFFIXES = {
+            ".min.js", ".min.mjs", ".min.css", "-min.js", ".bundle.js"
+    };
+
+    private static final String[] GENERATED_SUFFIXES = {
+            ".pb.go", ".pb.h", ".pb.cc", ".pb.swift", "_pb2.py", "_pb2_grpc.py", "_pb2.pyi", ".pb.dart",
+            ".g.dart", ".freezed.dart", ".designer.cs", ".g.cs", ".snap", ".js.map", ".css.map"
+    };
+
+    private static final String[] GENERATED_DIRECTORIES = {
+            "__snapshots__/", "generated/", "gen-src/"
+    };
+
+    /**
+     * @param kind 맞으면 붙일 분류. SOURCE 면 기본 규칙을 끄고 리뷰한다.
+     */
+    record Rule(PathPattern pattern, FileKind kind) {
+    }
+
+    private final boolean enabled;
+    private final List<Rule> ignoreRules;
+    private final List<Rule> attributeRules;
+    private final int maxLineLength;
+    private final Map<FileKind, Counter> skippedCounters;
+    private final Map<String, FileKind> skipped = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    FileFilter(boolean enabled, List<Rule> ignoreRules, List<Rule> attributeRules, int maxLineLength,
+               Map<FileKind, Counter> skippedCounters) {
+        this.enabled = enabled;
+        this.ignoreRules = ignoreRules;
+        this.attributeRules = attributeRules;
+        this.maxLineLength = maxLineLength;
+        this.skippedCounters = skippedCounters;
+    }
+
+    /**
+     * 경로만 보고 분류한다.
+     */
+    public FileKind classify(String path) {
+        if (!enabled || path == null) {
+            return FileKind.SOURCE;
+        }
+
+        // 뒤에 나온 규칙이 앞의 규칙을 덮어쓴다
+        FileKind ignored = null;
+        for (Rule rule : ignoreRules) {
+            if (rule.pattern().matches(path)) {
+                ignored = rule.kind();
+            }
+        }
+        if (ignored != null) {
+            return ignored;
+        }
+
+        FileKind attributed = null;
+        for (Rule rule : attributeRules) {
+            if (rule.pattern().matches(path)) {
+                attributed = rule.kind();
+            }
+        }
+        if (attributed != null) {
+            return attributed;
+        }
+
+        return classifyByPath(path.toLowerCase(Locale.ROOT));
+    }
+
+    private static FileKind classifyByPath(String path) {
+        int slash = path.lastIndexOf('/');
+        String name = path.substring(slash + 1);
+        int dot = name.lastIndexOf('.');
+        String extension = dot > 0 ? name.substring(dot + 1) : "";
+
+        if (BINARY_EXTENSIONS.contains(extension)) {
+            return FileKind.BINARY;
+        }
+        if (LOCKFILE_NAMES.contains(name)) {
+            return FileKind.LOCKFILE;
+        }
+        String directoryPath = "/" + path.substring(0, slash + 1);
+        if (containsAny(directoryPath, VENDOR_DIRECTORIES)) {
+            return FileKind.VENDORED;
+        }
+        if (endsWithAny(name, MINIFIED_SUFFIXES)) {
+            return FileKind.MINIFIED;
+        }
+        if (endsWithAny(name, GENERATED_SUFFIXES) || name.contains(".generated.") || name.contains("_generated.")
+                || containsAny(directoryPath, GENERATED_DIRECTORIES)) {
+            return FileKind.GENERATED;
+        }
+        return FileKind.SOURCE;
+    }
+
+    /**
+     * 파일 앞부분의 생성 표시로 분류한다. 표시는 줄 전체가 주석인 줄에서만 찾으므로 코드 안의 문자열이나
+     * 줄 끝 주석에 "DO NOT EDIT" 이 있어도 생성 파일로 보지 않는다. 줄 길이는 LineLengths 로 따로 본다.
+     */
+    FileKind classify(DiffLine line) {
+        if (!enabled || line.kind() == DiffLine.Kind.REMOVED || line.newLineNumber() > GENERATED_MARKER_LINES) {
+            return FileKind.SOURCE;
+        }
+        String text = line.toString();
+        int pos = 1;
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        if (!startsWithAny(text, pos, COMMENT_PREFIXES)) {
+            return FileKind.SOURCE;
+        }
+        String comment = text.substring(pos).toLowerCase(Locale.ROOT);
+        for (String marker : GENERATED_MARKERS) {
+            if (comment.contains(marker)) {
+                return FileKind.GENERATED;
+            }
+        }
+        return FileKind.SOURCE;
+    }
+
+    LineLengths lineLengths() {
+        return new LineLengths();
+    }
+
+    /**
+     * 한 파일의 줄 길이. 긴 줄 하나(긴 문자열 상수, data URL 등)만으로는 축약 파일로 보지 않는다.
+     */
+    final class LineLengths {
+        private int lines;
+        private int longLines;
+        private long chars;
+
+        void add(DiffLine line) {
+            if (line.kind() == DiffLine.Kind.REMOVED) {
+                return;
+            }
+            lines++;
+            chars += line.length();
+            if (line.length() > maxLineLength) {
+                longLines++;
+            }
+        }
+
+        /**
+         * 절반 넘는 줄이 길면 축약 파일이다. 평균 줄 길이는 앞부분만 보면 긴 줄 하나에 크게 흔들리므로
+         * 파일을 다 본 뒤에만 쓴다(라이선스 주석 몇 줄 + 아주 긴 한 줄인 번들).
+         *
+         * @param complete 파일의 줄을 다 봤으면 true. 아니면 MINIFIED_SAMPLE_LINES 줄을 본 뒤부터 판단한다
+         */
+        boolean looksMinified(boolean complete) {
+            if (!enabled || lines == 0 || (!complete && lines < MINIFIED_SAMPLE_LINES)) {
+                return false;
+            }
+            if (longLines * 2 > lines) {
+                return true;
+            }
+            return complete && chars / lines > maxLineLength;
+        }
+
+        void reset() {
+            lines = 0;
+            longLines = 0;
+            chars = 0;
+        }
+    }
+
+    void skip(String path, FileKind kind) {
+        skipped.put(path, kind);
+        Counter counter = skippedCounters.get(kind);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * @return 버린 파일 경로와 분류, diff 순서대로
+     */
+    public Map<String, FileKind> getSkippedFiles() {
+        synchronized (skipped) {
+            return new LinkedHashMap<>(skipped);
+        }
+    }
+
+    private static boolean containsAny(String value, String[] fragments) {
+        for (String fragment : fragments) {
+            if (value.contains("/" + fragment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWithAny(String value, int offset, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (value.startsWith(prefix, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWithAny(String value, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (value.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.diff.DiffFile;
+import com.gitea.prbot.diff.DiffHandler;
+import com.gitea.prbot.diff.DiffHunk;
+import com.gitea.prbot.diff.DiffLine;
+import com.gitea.prbot.model.FileKind;
+
+/**
+ * chunker 앞에서 FileFilter 가 버리라고 한 파일의 줄을 걸러낸다.
+ * 내용으로 알게 된 파일은 그때까지 모은 줄도 버린다. 이미 chunk 로 넘어간 부분은 되돌리지 않는다.
+ * 축약 파일은 줄을 충분히 보거나 파일이 끝났을 때 판단하므로, 짧은 파일은 chunker 가 내보내기 전에 버려진다.
+ */
+class FileFilteringHandler implements DiffHandler {
+
+    private final DiffChunker chunker;
+    private final FileFilter filter;
+    private final FileFilter.LineLengths lineLengths;
+
+    private String path;
+    private boolean skipping;
+
+    FileFilteringHandler(DiffChunker chunker, FileFilter filter) {
+        this.chunker = chunker;
+        this.filter = filter;
+        this.lineLengths = filter.lineLengths();
+    }
+
+    @Override
+    public void onFile(DiffFile file) {
+        finishFile();
+        // 앞 파일의 남은 chunk 를 내보내도록 chunker 에는 항상 알린다
+        chunker.onFile(file);
+        path = file.path();
+        lineLengths.reset();
+        FileKind kind = filter.classify(path);
+        skipping = kind != FileKind.SOURCE;
+        if (skipping) {
+            filter.skip(path, kind);
+        }
+    }
+
+    @Override
+    public void onHunk(DiffHunk hunk) {
+        if (!skipping) {
+            chunker.onHunk(hunk);
+        }
+    }
+
+    @Override
+    public void onLine(DiffLine line) {
+        if (skipping) {
+            return;
+        }
+        FileKind kind = filter.classify(line);
+        lineLengths.add(line);
+        if (kind == FileKind.SOURCE && lineLengths.looksMinified(false)) {
+            kind = FileKind.MINIFIED;
+        }
+        if (kind != FileKind.SOURCE) {
+            discard(kind);
+            return;
+        }
+        chunker.onLine(line);
+    }
+
+    @Override
+    public void onEnd() {
+        finishFile();
+        chunker.onEnd();
+    }
+
+    /**
+     * 줄이 적어 아직 판단하지 못한 파일은 chunker 가 남은 줄을 내보내기 전에 줄 길이로 한 번 더 본다.
+     */
+    private void finishFile() {
+        if (path != null && !skipping && lineLengths.looksMinified(true)) {
+            discard(FileKind.MINIFIED);
+        }
+    }
+
+    private void discard(FileKind kind) {
+        skipping = true;
+        filter.skip(path, kind);
+        chunker.discardFile();
+    }
+}
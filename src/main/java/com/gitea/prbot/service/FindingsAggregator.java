@@ -0,0 +1,279 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewResult;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 리뷰 결과의 Finding 을 chunk 위치와 맞춰 보고, 여러 리뷰 타입/인접 chunk 에서 중복 보고된 것을 합친다.
+ * <ul>
+ *     <li>같은 파일이고 라인이 line-proximity 이내이며, 설명의 문자 bigram Jaccard 유사도가
+ *     similarity-threshold 이상이면 같은 문제로 본다.</li>
+ *     <li>같은 라인에 같은 규칙명이면 설명이 달라도 같은 문제로 본다.</li>
+ *     <li>후보는 파일별 bigram 역색인으로 찾으므로 모든 쌍을 비교하지 않는다.</li>
+ * </ul>
+ */
+@Service
+public class FindingsAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(FindingsAggregator.class);
+
+    private final double similarityThreshold;
+    private final int lineProximity;
+    private final Counter reportedCounter;
+    private final Counter distinctCounter;
+
+    public FindingsAggregator(MeterRegistry meterRegistry,
+                              @Value("${bot.review.findings.similarity-threshold:0.6}") double similarityThreshold,
+                              @Value("${bot.review.findings.line-proximity:3}") int lineProximity) {
+        this.similarityThreshold = similarityThreshold;
+        this.lineProximity = Math.max(0, lineProximity);
+        this.reportedCounter = Counter.builder("prbot.review.findings")
+                .description("Findings reported by the model vs. distinct after merging")
+                .tag("stage", "reported")
+                .register(meterRegistry);
+        this.distinctCounter = Counter.builder("prbot.review.findings")
+                .description("Findings reported by the model vs. distinct after merging")
+                .tag("stage", "distinct")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return 중복을 합친 지적 사항, 심각도 → 파일 → 라인 순
+     */
+    public List<Finding> aggregate(List<ReviewResult> results) {
+        Map<String, FileIndex> byFile = new HashMap<>();
+        List<Cluster> clusters = new ArrayList<>();
+        int reported = 0;
+
+        for (ReviewResult result : results) {
+            if (result.getFindings() == null) {
+                continue;
+            }
+            for (Finding finding : result.getFindings()) {
+                Report report = locate(finding, result);
+                reported++;
+
+                FileIndex index = byFile.computeIfAbsent(report.path == null ? "" : report.path,
+                        path -> new FileIndex());
+                Cluster match = index.findMatch(report);
+                if (match != null) {
+                    match.add(report);
+                } else {
+                    Cluster cluster = new Cluster(report);
+                    index.add(cluster);
+                    clusters.add(cluster);
+                }
+            }
+        }
+
+        reportedCounter.increment(reported);
+        distinctCounter.increment(clusters.size());
+        if (reported > clusters.size()) {
+            log.info("Merged {} reported findings into {} distinct findings", reported, clusters.size());
+        }
+
+        return clusters.stream()
+                .map(Cluster::toFinding)
+                .sorted(Comparator.comparing(Finding::severity)
+                        .thenComparing(Finding::path, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparingInt(Finding::line))
+                .toList();
+    }
+
+    /**
+     * 보고된 위치를 결과를 낸 chunk 와 맞춰 본다. 같은 파일이면 chunk 의 전체 경로를 쓰고,
+     * 라인이 chunk 의 diff 안에 있으면 라인 코멘트를 달 수 있다.
+     */
+    private Report locate(Finding finding, ReviewResult result) {
+        String chunkPath = result.getFilePath();
+        String text = finding.rule() != null ? finding.rule() + " " + finding.message() : finding.message();
+
+        if (finding.path() == null) {
+            // 위치가 없으면 결과를 낸 chunk 의 파일로 본다
+            return new Report(chunkPath, 0, 0, finding, text, false);
+        }
+        if (chunkPath == null || !sameFile(finding.path(), chunkPath)) {
+            return new Report(finding.path(), finding.startLine(), finding.endLine(), finding, text, false);
+        }
+        boolean commentable = finding.startLine() > 0 && result.getCommentableLines() != null
+                && result.getCommentableLines().get(finding.startLine());
+        return new Report(chunkPath, finding.startLine(), finding.endLine(), finding, text, commentable);
+    }
+
+    /**
+     * 모델은 경로 전체 대신 파일 이름만 쓰는 경우가 많으므로 끝부분이 일치하면 같은 파일로 본다.
+     */
+    private static boolean sameFile(String reported, String path) {
+        return path.equals(reported) || path.endsWith("/" + reported) || reported.endsWith("/" + path);
+    }
+
+    /**
+     * 설명에서 공백과 문장 부호를 뺀 문자 bigram. 한국어는 조사가 붙어 단어 단위 비교가 잘 맞지 않는다.
+     */
+    private static int[] bigrams(String message) {
+        StringBuilder normalized = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+
+        if (normalized.length() < 2) {
+            return normalized.length() == 0 ? new int[0] : new int[]{normalized.charAt(0)};
+        }
+        int[] grams = new int[normalized.length() - 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (normalized.charAt(i) << 16) | normalized.charAt(i + 1);
+        }
+        Arrays.sort(grams);
+
+        int unique = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[unique++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, unique);
+    }
+
+    private record Report(String path, int startLine, int endLine, Finding finding, String text,
+                          boolean commentable) {
+
+        Severity severity() {
+            return finding.severity();
+        }
+
+        String rule() {
+            return finding.rule() != null ? finding.rule().toLowerCase() : null;
+        }
+    }
+
+    /**
+     * 한 파일의 cluster 들과 bigram → cluster 역색인.
+     */
+    private class FileIndex {
+        private final List<Cluster> clusters = new ArrayList<>();
+        private final Map<Integer, List<Cluster>> postings = new HashMap<>();
+
+        void add(Cluster cluster) {
+            clusters.add(cluster);
+            for (int gram : cluster.grams) {
+                postings.computeIfAbsent(gram, g -> new ArrayList<>()).add(cluster);
+            }
+        }
+
+        Cluster findMatch(Report report) {
+            String rule = report.rule();
+            if (rule != null && report.startLine > 0) {
+                for (Cluster cluster : clusters) {
+                    if (cluster.startLine <= report.startLine && report.startLine <= cluster.endLine
+                            && rule.equals(cluster.rule)) {
+                        return cluster;
+                    }
+                }
+            }
+
+            int[] grams = bigrams(report.text);
+            Map<Cluster, Integer> shared = new HashMap<>();
+            for (int gram : grams) {
+                List<Cluster> posting = postings.get(gram);
+                if (posting != null) {
+                    for (Cluster cluster : posting) {
+                        shared.merge(cluster, 1, Integer::sum);
+                    }
+                }
+            }
+
+            Cluster best = null;
+            double bestScore = similarityThreshold;
+            for (Map.Entry<Cluster, Integer> entry : shared.entrySet()) {
+                Cluster cluster = entry.getKey();
+                if (!cluster.isNear(report)) {
+                    continue;
+                }
+                int common = entry.getValue();
+                double jaccard = (double) common / (grams.length + cluster.grams.length - common);
+                if (jaccard >= bestScore) {
+                    best = cluster;
+                    bestScore = jaccard;
+                }
+            }
+            return best;
+        }
+    }
+
+    private class Cluster {
+        private final String path;
+        private final int[] grams;
+        private final String rule;
+        private final EnumSet<ReviewType> categories;
+        private Report representative;
+        private int anchorLine;
+        private boolean commentable;
+        private int startLine;
+        private int endLine;
+        private int occurrences = 1;
+
+        Cluster(Report first) {
+            this.path = first.path;
+            this.grams = bigrams(first.text);
+            this.rule = first.rule();
+            this.categories = EnumSet.copyOf(first.finding.categories());
+            this.representative = first;
+            this.anchorLine = first.startLine;
+            this.commentable = first.commentable;
+            this.startLine = first.startLine;
+            this.endLine = first.endLine;
+        }
+
+        boolean isNear(Report report) {
+            // 라인이 없는 보고는 같은 파일이면 위치로 가르지 않는다
+            if (startLine == 0 || report.startLine == 0) {
+                return true;
+            }
+            return report.startLine <= endLine + lineProximity && startLine <= report.endLine + lineProximity;
+        }
+
+        void add(Report report) {
+            occurrences++;
+            categories.addAll(report.finding.categories());
+            if (report.severity().compareTo(representative.severity()) < 0) {
+                representative = report;
+            }
+            if (!commentable && report.commentable) {
+                anchorLine = report.startLine;
+                commentable = true;
+            }
+            if (report.startLine > 0) {
+                startLine = startLine == 0 ? report.startLine : Math.min(startLine, report.startLine);
+                endLine = Math.max(endLine, report.endLine);
+                if (anchorLine == 0) {
+                    anchorLine = report.startLine;
+                }
+            }
+        }
+
+        Finding toFinding() {
+            Finding finding = representative.finding;
+            return new Finding(path, anchorLine, startLine, endLine, finding.category(), EnumSet.copyOf(categories),
+                    finding.severity(), finding.rule(), finding.message(), commentable, occurrences);
+        }
+    }
+}
@@ -2,15 +2,29 @@ package com.gitea.prbot.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitea.prbot.model.InlineComment;
+import com.gitea.prbot.model.ReviewPage;
+import com.gitea.prbot.service.DownstreamLimiter.Downstream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
-
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class GiteaService {
@@ -18,41 +32,150 @@ public class GiteaService {
     private static final Logger log = LoggerFactory.getLogger(GiteaService.class);
 
     private final RestTemplate restTemplate;
+    private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final DownstreamLimiter downstreamLimiter;
     private final String giteaBaseUrl;
-    private final String giteaToken;
+    private final HttpHeaders jsonReadHeaders;
+    private final HttpHeaders jsonWriteHeaders;
+    private final HttpHeaders diffHeaders;
 
     public GiteaService(RestTemplate restTemplate,
+                        WebClient giteaWebClient,
                         ObjectMapper objectMapper,
+                        DownstreamLimiter downstreamLimiter,
                         @Value("${gitea.base-url}") String giteaBaseUrl,
                         @Value("${gitea.token}") String giteaToken) {
         this.restTemplate = restTemplate;
+        this.webClient = giteaWebClient;
         this.objectMapper = objectMapper;
+        this.downstreamLimiter = downstreamLimiter;
         this.giteaBaseUrl = giteaBaseUrl;
-        this.giteaToken = giteaToken;
+        this.jsonReadHeaders = readOnlyHeaders(giteaToken, MediaType.APPLICATION_JSON_VALUE, null);
+        this.jsonWriteHeaders = readOnlyHeaders(giteaToken, MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_JSON);
+        // diff 는 텍스트로 받는다. 압축(gzip)은 HTTP 클라이언트가 Accept-Encoding 을 붙이고 풀어준다
+        this.diffHeaders = readOnlyHeaders(giteaToken, "text/plain, */*", null);
         log.info("Gitea service initialized with base URL: {}", giteaBaseUrl);
     }
 
     public String getPullRequestDiff(String repositoryFullName, int prNumber) {
+        String url = String.format("%s/api/v1/repos/%s/pulls/%d.diff",
+                giteaBaseUrl, repositoryFullName, prNumber);
+        return fetchDiff(url, repositoryFullName + "/#" + prNumber);
+    }
+
+    /**
+     * PR diff 를 문자열로 만들지 않고 응답 스트림 그대로 bodyConsumer 에 넘긴다.
+     *
+     * @return 응답을 받아 처리했으면 true, 요청 자체가 실패했으면 false
+     */
+    public boolean streamPullRequestDiff(String repositoryFullName, int prNumber, Consumer<Reader> bodyConsumer) {
+        String url = String.format("%s/api/v1/repos/%s/pulls/%d.diff",
+                giteaBaseUrl, repositoryFullName, prNumber);
+        return streamDiff(url, repositoryFullName + "/#" + prNumber, bodyConsumer);
+    }
+
+    /**
+     * 두 커밋 사이의 diff 를 스트리밍한다. PR 에 새로 추가된 커밋만 리뷰할 때 사용한다.
+     * <p>
+     * Gitea API 의 compare(/api/v1/repos/{repo}/compare/{base}...{head})는 커밋 목록(JSON)만 주고 diff 는 주지 않으므로
+     * 웹 경로의 .diff 를 쓴다. 웹 경로가 API 토큰을 받지 않는 설정에서는 비공개 저장소가 로그인 화면(HTML)으로
+     * 넘어가는데, 이때도 diff 가 아니므로 false 를 반환한다. 기준 커밋이 force-push 등으로 사라졌거나
+     * 본문을 읽다 실패해도 false 이므로 호출자는 API 의 전체 diff 로 대체해야 한다.
+     */
+    public boolean streamCompareDiff(String repositoryFullName, String baseSha, String headSha,
+                                     Consumer<Reader> bodyConsumer) {
+        return streamDiff(compareDiffUrl(repositoryFullName, baseSha, headSha),
+                repositoryFullName + "@" + baseSha + "..." + headSha, bodyConsumer);
+    }
+
+    /**
+     * 리액티브 파이프라인용. diff 를 줄 단위 Flux 로 받는다 (구독자가 요청한 만큼만 읽는다).
+     */
+    public Flux<String> streamPullRequestDiffLines(String repositoryFullName, int prNumber) {
+        return diffLines(String.format("%s/api/v1/repos/%s/pulls/%d.diff",
+                giteaBaseUrl, repositoryFullName, prNumber));
+    }
+
+    /**
+     * 리액티브 파이프라인용 compare diff. streamCompareDiff 와 같은 경우에 오류로 끝난다.
+     */
+    public Flux<String> streamCompareDiffLines(String repositoryFullName, String baseSha, String headSha) {
+        return diffLines(compareDiffUrl(repositoryFullName, baseSha, headSha));
+    }
+
+    private String compareDiffUrl(String repositoryFullName, String baseSha, String headSha) {
+        return String.format("%s/%s/compare/%s...%s.diff", giteaBaseUrl, repositoryFullName, baseSha, headSha);
+    }
+
+    private Flux<String> diffLines(String url) {
+        return webClient.get()
+                .uri(url)
+                .headers(headers -> headers.putAll(diffHeaders))
+                .exchangeToFlux(response -> {
+                    // WebClient 는 리다이렉트를 따라가지 않으므로 로그인 화면으로 넘기는 3xx 도 실패로 본다
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return response.createException().flatMapMany(Flux::error);
+                    }
+                    if (isHtml(response.headers().contentType().orElse(null))) {
+                        return response.releaseBody().thenMany(Flux.error(notADiff(url)));
+                    }
+                    return response.bodyToFlux(String.class);
+                });
+    }
+
+    private boolean streamDiff(String url, String description, Consumer<Reader> bodyConsumer) {
         try {
-            String url = String.format("%s/api/v1/repos/%s/pulls/%d.diff",
-                    giteaBaseUrl, repositoryFullName, prNumber);
+            // 본문을 다 읽을 때까지 허용량을 잡고 있는다 (연결도 그동안 사용 중이므로)
+            downstreamLimiter.run(Downstream.GITEA, () -> restTemplate.execute(url, HttpMethod.GET,
+                    request -> request.getHeaders().putAll(diffHeaders),
+                    response -> {
+                        if (isHtml(response.getHeaders().getContentType())) {
+                            throw notADiff(url);
+                        }
+                        try (Reader reader = new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)) {
+                            bodyConsumer.accept(reader);
+                        }
+                        return null;
+                    }));
+            return true;
+
+        } catch (HttpStatusCodeException e) {
+            log.error("Failed to get diff for {}, status: {}", description, e.getStatusCode());
+            return false;
+        } catch (RuntimeException e) {
+            // 연결 오류, 본문을 읽다 끊긴 경우, diff 가 아닌 응답
+            log.error("Error getting diff for {}", description, e);
+            return false;
+        }
+    }
 
-            HttpHeaders headers = createHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+    // 웹 경로가 토큰을 받지 않으면 로그인 화면으로 리다이렉트된다
+    private static boolean isHtml(MediaType contentType) {
+        return contentType != null && MediaType.TEXT_HTML.isCompatibleWith(contentType);
+    }
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+    private static IllegalStateException notADiff(String url) {
+        return new IllegalStateException("Gitea returned an HTML page instead of a diff for " + url
+                + " (the token may not be accepted on web routes)");
+    }
+
+    private String fetchDiff(String url, String description) {
+        try {
+            HttpEntity<String> entity = new HttpEntity<>(diffHeaders);
+
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 return response.getBody();
             } else {
-                log.error("Failed to get PR diff for {}/#{}, status: {}",
-                         repositoryFullName, prNumber, response.getStatusCode());
+                log.error("Failed to get diff for {}, status: {}", description, response.getStatusCode());
                 return null;
             }
 
         } catch (Exception e) {
-            log.error("Error getting PR diff for {}/#{}", repositoryFullName, prNumber, e);
+            log.error("Error getting diff for {}", description, e);
             return null;
         }
     }
@@ -62,15 +185,13 @@ public class GiteaService {
             String url = String.format("%s/api/v1/repos/%s/issues/%d/comments",
                     giteaBaseUrl, repositoryFullName, prNumber);
 
-            HttpHeaders headers = createHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
             Map<String, String> requestBody = new HashMap<>();
             requestBody.put("body", comment);
 
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, headers);
+            HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, jsonWriteHeaders);
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.POST, entity, String.class));
 
             if (response.getStatusCode() == HttpStatus.CREATED) {
                 log.info("Posted review comment to PR {}/#{}", repositoryFullName, prNumber);
@@ -91,16 +212,14 @@ public class GiteaService {
             String url = String.format("%s/api/v1/repos/%s/pulls/%d/reviews",
                     giteaBaseUrl, repositoryFullName, prNumber);
 
-            HttpHeaders headers = createHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
             Map<String, String> requestBody = new HashMap<>();
             requestBody.put("body", body);
             requestBody.put("event", reviewType); // APPROVE, REQUEST_CHANGES, COMMENT
 
-            HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, headers);
+            HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, jsonWriteHeaders);
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.POST, entity, String.class));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 log.info("Created review for PR {}/#{} with type {}", repositoryFullName, prNumber, reviewType);
@@ -116,15 +235,73 @@ public class GiteaService {
         }
     }
 
+    /**
+     * 요약 본문과 라인 코멘트들을 리뷰 하나로 게시한다 (POST 한 번, 알림 한 번).
+     */
+    public void createReview(String repositoryFullName, int prNumber, String commitSha, ReviewPage page) {
+        try {
+            String url = String.format("%s/api/v1/repos/%s/pulls/%d/reviews",
+                    giteaBaseUrl, repositoryFullName, prNumber);
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(reviewPayload(commitSha, page), jsonWriteHeaders);
+
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.POST, entity, String.class));
+
+            if (response.getStatusCode() == HttpStatus.OK) {
+                log.info("Created review for PR {}/#{} with {} line comments",
+                        repositoryFullName, prNumber, page.comments().size());
+            } else {
+                log.error("Failed to create review for PR {}/#{}, status: {}",
+                        repositoryFullName, prNumber, response.getStatusCode());
+                throw new RuntimeException("Failed to create review");
+            }
+
+        } catch (Exception e) {
+            log.error("Error creating review for PR {}/#{}", repositoryFullName, prNumber, e);
+            throw new RuntimeException("Failed to create review", e);
+        }
+    }
+
+    public Mono<Void> createReviewReactive(String repositoryFullName, Long prNumber, String commitSha, ReviewPage page) {
+        String url = String.format("%s/api/v1/repos/%s/pulls/%d/reviews",
+                giteaBaseUrl, repositoryFullName, prNumber);
+        return webClient.post()
+                .uri(url)
+                .headers(headers -> headers.putAll(jsonWriteHeaders))
+                .bodyValue(reviewPayload(commitSha, page))
+                .retrieve()
+                .toBodilessEntity()
+                .doOnSuccess(response -> log.info("Created review for PR {}/#{} with {} line comments",
+                        repositoryFullName, prNumber, page.comments().size()))
+                .then();
+    }
+
+    private Map<String, Object> reviewPayload(String commitSha, ReviewPage page) {
+        List<Map<String, Object>> comments = new ArrayList<>(page.comments().size());
+        for (InlineComment comment : page.comments()) {
+            Map<String, Object> commentData = new HashMap<>();
+            commentData.put("path", comment.path());
+            commentData.put("body", comment.body());
+            commentData.put("new_position", comment.line());
+            comments.add(commentData);
+        }
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("body", page.body());
+        requestBody.put("event", "COMMENT");
+        requestBody.put("comments", comments);
+        if (commitSha != null) {
+            requestBody.put("commit_id", commitSha);
+        }
+        return requestBody;
+    }
+
     public void addLineComment(String repositoryFullName, int prNumber, String commitSha,
                               String path, int line, String comment) {
         try {
             String url = String.format("%s/api/v1/repos/%s/pulls/%d/reviews",
                     giteaBaseUrl, repositoryFullName, prNumber);
 
-            HttpHeaders headers = createHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
             Map<String, Object> commentData = new HashMap<>();
             commentData.put("path", path);
             commentData.put("body", comment);
@@ -135,9 +312,10 @@ public class GiteaService {
             requestBody.put("event", "COMMENT");
             requestBody.put("comments", new Object[]{commentData});
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, jsonWriteHeaders);
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.POST, entity, String.class));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 log.info("Added line comment to PR {}/#{} at {}:{}", repositoryFullName, prNumber, path, line);
@@ -153,14 +331,72 @@ public class GiteaService {
         }
     }
 
+    /**
+     * 디렉터리의 파일 이름과 blob SHA.
+     *
+     * @return 디렉터리가 없으면 빈 Map, 요청이 실패하면 null
+     */
+    public Map<String, String> listDirectory(String repositoryFullName, String path, String ref) {
+        try {
+            String url = contentsUrl(repositoryFullName, path, ref);
+            HttpEntity<String> entity = new HttpEntity<>(jsonReadHeaders);
+
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
+
+            Map<String, String> files = new HashMap<>();
+            JsonNode entries = objectMapper.readTree(response.getBody());
+            if (entries.isArray()) {
+                for (JsonNode entry : entries) {
+                    if ("file".equals(entry.path("type").asText())) {
+                        files.put(entry.path("name").asText(), entry.path("sha").asText());
+                    }
+                }
+            }
+            return files;
+
+        } catch (HttpClientErrorException.NotFound e) {
+            return Map.of();
+        } catch (Exception e) {
+            log.warn("Error listing {} in {}@{}: {}", path, repositoryFullName, ref, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return 파일 내용, 없거나 요청이 실패하면 null
+     */
+    public String getRawFile(String repositoryFullName, String path, String ref) {
+        try {
+            String url = String.format("%s/api/v1/repos/%s/raw/%s", giteaBaseUrl, repositoryFullName, path)
+                    + (ref != null ? "?ref=" + ref : "");
+            HttpEntity<String> entity = new HttpEntity<>(diffHeaders);
+
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
+
+            return response.getStatusCode() == HttpStatus.OK ? response.getBody() : null;
+
+        } catch (Exception e) {
+            log.warn("Error reading {} in {}@{}: {}", path, repositoryFullName, ref, e.getMessage());
+            return null;
+        }
+    }
+
+    private String contentsUrl(String repositoryFullName, String path, String ref) {
+        return String.format("%s/api/v1/repos/%s/contents", giteaBaseUrl, repositoryFullName)
+                + (path.isEmpty() ? "" : "/" + path)
+                + (ref != null ? "?ref=" + ref : "");
+    }
+
     public boolean isRepositoryAccessible(String repositoryFullName) {
         try {
             String url = String.format("%s/api/v1/repos/%s", giteaBaseUrl, repositoryFullName);
 
-            HttpHeaders headers = createHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            HttpEntity<String> entity = new HttpEntity<>(jsonReadHeaders);
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
 
             return response.getStatusCode() == HttpStatus.OK;
 
@@ -175,10 +411,10 @@ public class GiteaService {
             String url = String.format("%s/api/v1/repos/%s/pulls/%d",
                     giteaBaseUrl, repositoryFullName, prNumber);
 
-            HttpHeaders headers = createHeaders();
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            HttpEntity<String> entity = new HttpEntity<>(jsonReadHeaders);
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            ResponseEntity<String> response = downstreamLimiter.call(Downstream.GITEA,
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 return objectMapper.readTree(response.getBody());
@@ -196,10 +432,16 @@ public class GiteaService {
         createReviewComment(repositoryFullName, prNumber.intValue(), comment);
     }
 
-    private HttpHeaders createHeaders() {
+    /**
+     * 요청마다 같은 헤더를 다시 만들지 않도록 한 번만 만들어 읽기 전용으로 공유한다.
+     */
+    private static HttpHeaders readOnlyHeaders(String giteaToken, String accept, MediaType contentType) {
         HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "token " + giteaToken);
-        headers.set("Accept", "application/json");
-        return headers;
+        headers.set(HttpHeaders.AUTHORIZATION, "token " + giteaToken);
+        headers.set(HttpHeaders.ACCEPT, accept);
+        if (contentType != null) {
+            headers.setContentType(contentType);
+        }
+        return HttpHeaders.readOnlyHttpHeaders(headers);
     }
 }
\ No newline at end of file
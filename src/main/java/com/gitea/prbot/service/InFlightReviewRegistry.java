@@ -0,0 +1,132 @@
+package com.gitea.prbot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * (저장소, PR) 별로 진행 중인 리뷰를 추적한다. 같은 PR 에 새 리뷰가 시작되면 이전 리뷰의
+ * 남은 chunk 작업을 취소하고, 이전 리뷰의 결과는 포스팅되지 않도록 한다.
+ */
+@Service
+public class InFlightReviewRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(InFlightReviewRegistry.class);
+
+    private final ConcurrentMap<String, ReviewRun> runs = new ConcurrentHashMap<>();
+    // 대기열에 마지막으로 들어온 head SHA. SHA 자체로는 순서를 알 수 없어 들어온 순서를 기준으로 삼는다
+    private final ConcurrentMap<String, String> latestShas = new ConcurrentHashMap<>();
+
+    /**
+     * 새 push 가 대기열에 들어왔을 때 부른다. 다른 커밋을 리뷰 중인 작업은 워커가 새 작업을 집을 때까지
+     * 기다리지 않고 바로 취소한다.
+     */
+    public synchronized void supersede(String repositoryFullName, Long prNumber, String headSha) {
+        if (headSha == null) {
+            return;
+        }
+        String key = key(repositoryFullName, prNumber);
+        latestShas.put(key, headSha);
+
+        ReviewRun current = runs.get(key);
+        if (current != null && !headSha.equals(current.getHeadSha())) {
+            log.info("Cancelling in-flight review of PR {}/#{} at {}, {} was pushed",
+                    repositoryFullName, prNumber, current.getHeadSha(), headSha);
+            current.cancel();
+        }
+    }
+
+    /**
+     * 리뷰를 등록하고 같은 PR 의 이전 리뷰를 취소한다. 대기열에 더 나중에 들어온 커밋이 있으면
+     * 이 리뷰가 오래된 것이므로 진행 중인 리뷰는 건드리지 않고 이미 취소된 run 을 돌려준다.
+     */
+    public synchronized ReviewRun begin(String repositoryFullName, Long prNumber, String headSha) {
+        String key = key(repositoryFullName, prNumber);
+        ReviewRun run = new ReviewRun(repositoryFullName, prNumber, headSha);
+
+        String latest = latestShas.get(key);
+        if (headSha != null && latest != null && !latest.equals(headSha)) {
+            log.info("Review of PR {}/#{} at {} is older than the latest push {}, not starting it",
+                    repositoryFullName, prNumber, headSha, latest);
+            run.cancel();
+            return run;
+        }
+
+        ReviewRun previous = runs.put(key, run);
+        if (previous != null) {
+            log.info("Superseding in-flight review of PR {}/#{} at {} with {}",
+                    repositoryFullName, prNumber, previous.getHeadSha(), headSha);
+            previous.cancel();
+        }
+        return run;
+    }
+
+    public synchronized void complete(ReviewRun run) {
+        String key = key(run.getRepositoryFullName(), run.getPullRequestNumber());
+        if (runs.remove(key, run) && !run.isCancelled() && run.getHeadSha() != null) {
+            // 최신 커밋의 리뷰가 끝났으면 더 기억할 필요가 없다
+            latestShas.remove(key, run.getHeadSha());
+        }
+    }
+
+    public int getInFlightCount() {
+        return runs.size();
+    }
+
+    private String key(String repositoryFullName, Long prNumber) {
+        return repositoryFullName + "#" + prNumber;
+    }
+
+    public static class ReviewRun {
+        private final String repositoryFullName;
+        private final Long pullRequestNumber;
+        private final String headSha;
+        private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+        private volatile boolean cancelled;
+
+        ReviewRun(String repositoryFullName, Long pullRequestNumber, String headSha) {
+            this.repositoryFullName = repositoryFullName;
+            this.pullRequestNumber = pullRequestNumber;
+            this.headSha = headSha;
+        }
+
+        /**
+         * chunk 작업을 등록한다. 이미 취소된 리뷰라면 즉시 취소한다.
+         * 아직 실행되지 않은 supplyAsync 작업은 취소되면 실행 자체가 생략된다.
+         */
+        public <T> CompletableFuture<T> track(CompletableFuture<T> task) {
+            synchronized (tasks) {
+                if (!cancelled) {
+                    tasks.add(task);
+                    return task;
+                }
+            }
+            task.cancel(false);
+            return task;
+        }
+
+        public void cancel() {
+            List<CompletableFuture<?>> snapshot;
+            synchronized (tasks) {
+                cancelled = true;
+                snapshot = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            snapshot.forEach(task -> task.cancel(false));
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public String getRepositoryFullName() { return repositoryFullName; }
+        public Long getPullRequestNumber() { return pullRequestNumber; }
+        public String getHeadSha() { return headSha; }
+    }
+}
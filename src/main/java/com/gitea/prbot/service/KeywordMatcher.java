@@ -0,0 +1,186 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * 리뷰 타입별 키워드 전체를 하나의 Aho-Corasick 오토마톤으로 만들어, chunk 를 한 번만 훑으며
+ * 어떤 타입의 키워드가 나오는지 찾는다. 대소문자는 무시한다.
+ * <p>
+ * 전이는 키워드에 나오는 문자만 모은 알파벳 위의 완전한 DFA(int 배열)로 만들어 두므로
+ * 문자마다 실패 링크를 따라가지 않는다. 만든 뒤에는 읽기만 하므로 여러 스레드에서 함께 써도 된다.
+ */
+final class KeywordMatcher {
+
+    private static final int ASCII = 128;
+
+    // 키워드에 없는 문자는 0 번 (항상 루트로 돌아간다)
+    private final int[] asciiIndex = new int[ASCII];
+    private final Map<Character, Integer> otherIndex = new HashMap<>();
+    private final int alphabetSize;
+
+    // transitions[state * alphabetSize + symbol]
+    private final int[] transitions;
+    // 상태에 도달했을 때 끝나는 키워드들의 ReviewType 비트 (실패 링크 쪽 출력 포함)
+    private final int[] outputs;
+    private final int allTypesMask;
+
+    KeywordMatcher(Map<ReviewType, ? extends Collection<String>> keywordsByType) {
+        List<String> keywords = new ArrayList<>();
+        List<Integer> masks = new ArrayList<>();
+        int all = 0;
+        for (Map.Entry<ReviewType, ? extends Collection<String>> entry : keywordsByType.entrySet()) {
+            int bit = 1 << entry.getKey().ordinal();
+            for (String keyword : entry.getValue()) {
+                String normalized = keyword.strip().toLowerCase();
+                if (!normalized.isEmpty()) {
+                    keywords.add(normalized);
+                    masks.add(bit);
+                    all |= bit;
+                }
+            }
+        }
+        this.allTypesMask = all;
+
+        int symbols = 1;
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c < ASCII) {
+                    if (asciiIndex[c] == 0) {
+                        asciiIndex[c] = symbols++;
+                    }
+                } else if (!otherIndex.containsKey(c)) {
+                    otherIndex.put(c, symbols++);
+                }
+            }
+        }
+        this.alphabetSize = symbols;
+
+        // 1) trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        trie.add(newRow());
+        output.add(0);
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int symbol = symbol(keyword.charAt(i));
+                int next = trie.get(state)[symbol];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newRow());
+                    output.add(0);
+                    trie.get(state)[symbol] = next;
+                }
+                state = next;
+            }
+            output.set(state, output.get(state) | masks.get(k));
+        }
+
+        // 2) 너비 우선으로 실패 링크를 계산하며 빠진 전이를 채운다
+        int states = trie.size();
+        this.transitions = new int[states * alphabetSize];
+        this.outputs = new int[states];
+        int[] fail = new int[states];
+        for (int s = 0; s < states; s++) {
+            outputs[s] = output.get(s);
+        }
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int next = trie.get(0)[symbol];
+            if (next < 0) {
+                transitions[symbol] = 0;
+            } else {
+                transitions[symbol] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] |= outputs[fail[state]];
+            int[] row = trie.get(state);
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int next = row[symbol];
+                if (next < 0) {
+                    transitions[state * alphabetSize + symbol] = transitions[fail[state] * alphabetSize + symbol];
+                } else {
+                    transitions[state * alphabetSize + symbol] = next;
+                    fail[next] = transitions[fail[state] * alphabetSize + symbol];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private int symbol(char c) {
+        if (c < ASCII) {
+            return asciiIndex[c];
+        }
+        Integer index = otherIndex.get(c);
+        return index != null ? index : 0;
+    }
+
+    /**
+     * @return 키워드가 나온 ReviewType 들
+     */
+    Set<ReviewType> match(CharSequence content) {
+        int mask = matchMask(content);
+        EnumSet<ReviewType> types = EnumSet.noneOf(ReviewType.class);
+        for (ReviewType type : ReviewType.values()) {
+            if ((mask & (1 << type.ordinal())) != 0) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * 모든 타입이 나오면 더 읽지 않는다.
+     */
+    int matchMask(CharSequence content) {
+        int state = 0;
+        int mask = 0;
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            int symbol;
+            if (c < ASCII) {
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                symbol = asciiIndex[c];
+            } else {
+                symbol = symbol(Character.toLowerCase(c));
+            }
+            state = transitions[state * alphabetSize + symbol];
+            int found = outputs[state];
+            if (found != 0) {
+                mask |= found;
+                if (mask == allTypesMask) {
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,127 @@
+package com.gitea.prbot.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 모델 하나에 대한 서킷 브레이커.
+ * 연속 실패가 failureThreshold 번이거나 최근 호출의 p95 지연 시간이 임계값을 넘으면 OPEN 이 되고,
+ * openDuration 이 지나면 HALF_OPEN 으로 한 번만 시험 호출을 허용한다.
+ */
+class ModelCircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long p95ThresholdNanos;
+    private final int minSamples;
+
+    // 최근 지연 시간 링 버퍼
+    private final long[] latencies;
+    private int latencyCount = 0;
+    private int latencyNext = 0;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    private boolean probeInFlight = false;
+
+    ModelCircuitBreaker(int failureThreshold, Duration openDuration, Duration p95Threshold, int window) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.p95ThresholdNanos = p95Threshold.toNanos();
+        this.latencies = new long[Math.max(1, window)];
+        this.minSamples = Math.max(1, this.latencies.length / 2);
+    }
+
+    /**
+     * 호출해도 되는지 확인한다. HALF_OPEN 에서는 시험 호출 하나만 통과시킨다.
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * @return 이번 결과로 브레이커가 열렸으면 true
+     */
+    synchronized boolean onSuccess(long latencyNanos) {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probeInFlight = false;
+            latencyCount = 0;
+            latencyNext = 0;
+        }
+
+        latencies[latencyNext] = latencyNanos;
+        latencyNext = (latencyNext + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+
+        if (latencyCount >= minSamples && p95() > p95ThresholdNanos) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 이번 결과로 브레이커가 열렸으면 true
+     */
+    synchronized boolean onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 구독이 취소된 호출은 성공도 실패도 아니다. HALF_OPEN 의 시험 호출이었다면 다음 호출이 시험할 수 있도록 자리를 돌려준다.
+     */
+    synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    synchronized long p95() {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(sorted.length * 0.95) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probeInFlight = false;
+        consecutiveFailures = 0;
+        // 다시 닫힐 때는 새 측정값으로 판단한다
+        latencyCount = 0;
+        latencyNext = 0;
+    }
+}
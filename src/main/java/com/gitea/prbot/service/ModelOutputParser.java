@@ -0,0 +1,304 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 모델 응답을 정규식 없이 한 번 훑어 Finding 과 전체 등급으로 바꾼다.
+ * <pre>
+ * [HIGH] [SECURITY] UserDao.java:42 - 인젝션: 문자열 연결로 SQL 생성
+ * 전반적 품질: B
+ * </pre>
+ * 목록 기호, 번호, 굵게 표시, 소문자 심각도, 분류/위치 누락 같은 흔한 변형은 받아들이고,
+ * 심각도로 시작하지 않는 줄은 버린다. 상태가 없으므로 여러 스레드에서 함께 써도 된다.
+ */
+class ModelOutputParser {
+
+    private static final String GRADE_PREFIX = "전반적 품질";
+    private static final String GRADE_PREFIX_EN = "overall";
+
+    // 이 길이 안에 ':' 이 있으면 앞부분을 규칙명으로 본다
+    private static final int MAX_RULE_LENGTH = 40;
+
+    /**
+     * @param findings     읽은 지적 사항 (합치기 전)
+     * @param lines        각 지적 사항의 원문 (findings 와 같은 순서)
+     * @param overallGrade 전체 등급 (A~F), 없으면 null
+     */
+    record ModelOutput(List<Finding> findings, List<String> lines, String overallGrade) {
+    }
+
+    /**
+     * @param defaultCategory 분류 태그가 없는 줄에 쓸 분류
+     */
+    ModelOutput parse(String content, ReviewType defaultCategory) {
+        if (content == null || content.isEmpty()) {
+            return new ModelOutput(List.of(), List.of(), null);
+        }
+
+        List<Finding> findings = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        String grade = null;
+
+        int length = content.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+
+            int end = trimEnd(content, lineStart, lineEnd);
+            int start = skipDecoration(content, lineStart, end);
+            if (start < end) {
+                if (content.charAt(start) == '[') {
+                    Finding finding = parseFinding(content, start, end, defaultCategory);
+                    if (finding != null) {
+                        findings.add(finding);
+                        lines.add(content.substring(start, end));
+                    }
+                } else if (grade == null) {
+                    grade = parseGrade(content, start, end);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new ModelOutput(findings, lines, grade);
+    }
+
+    private Finding parseFinding(String content, int pos, int end, ReviewType defaultCategory) {
+        int close = content.indexOf(']', pos);
+        if (close < 0 || close >= end) {
+            return null;
+        }
+        Severity severity = severity(content, pos + 1, close);
+        if (severity == null) {
+            return null;
+        }
+        pos = skipSpacesAndStars(content, close + 1, end);
+
+        // 분류 태그. 분류가 아닌 태그는 규칙명 후보로 둔다
+        ReviewType category = defaultCategory;
+        String tag = null;
+        if (pos < end && content.charAt(pos) == '[') {
+            close = content.indexOf(']', pos);
+            if (close > pos && close < end) {
+                ReviewType tagged = category(content, pos + 1, close);
+                if (tagged != null) {
+                    category = tagged;
+                } else {
+                    tag = content.substring(pos + 1, close).trim();
+                }
+                pos = skipSpacesAndStars(content, close + 1, end);
+            }
+        }
+
+        // 파일:라인[-라인]
+        String path = null;
+        int startLine = 0;
+        int endLine = 0;
+        int pathEnd = scanPath(content, pos, end);
+        if (pathEnd > pos && pathEnd + 1 < end && content.charAt(pathEnd) == ':' && isDigit(content.charAt(pathEnd + 1))) {
+            int digitsEnd = scanDigits(content, pathEnd + 1, end);
+            path = content.substring(pos, pathEnd);
+            startLine = parseInt(content, pathEnd + 1, digitsEnd);
+            endLine = startLine;
+            pos = digitsEnd;
+            if (pos + 1 < end && content.charAt(pos) == '-' && isDigit(content.charAt(pos + 1))) {
+                int rangeEnd = scanDigits(content, pos + 1, end);
+                endLine = Math.max(startLine, parseInt(content, pos + 1, rangeEnd));
+                pos = rangeEnd;
+            }
+            pos = skipSpacesAndStars(content, pos, end);
+        }
+
+        pos = skipSeparator(content, pos, end);
+        if (pos >= end) {
+            return tag == null ? null : Finding.reported(path, startLine, endLine, category, severity, null, tag);
+        }
+
+        String rule = tag;
+        int ruleEnd = ruleEnd(content, pos, end);
+        String message;
+        if (ruleEnd > pos) {
+            rule = content.substring(pos, ruleEnd).trim();
+            message = content.substring(skipSeparator(content, ruleEnd, end), end).trim();
+        } else {
+            message = content.substring(pos, end).trim();
+        }
+        if (message.isEmpty()) {
+            if (rule == null) {
+                return null;
+            }
+            message = rule;
+            rule = null;
+        }
+        return Finding.reported(path, startLine, endLine, category, severity, rule, message);
+    }
+
+    /**
+     * "전반적 품질: [B]" 또는 "Overall: B" 의 등급 문자.
+     */
+    private String parseGrade(String content, int pos, int end) {
+        if (!startsWithIgnoreCase(content, pos, end, GRADE_PREFIX)
+                && !startsWithIgnoreCase(content, pos, end, GRADE_PREFIX_EN)) {
+            return null;
+        }
+        int colon = content.indexOf(':', pos);
+        if (colon < 0 || colon >= end) {
+            return null;
+        }
+        for (int i = colon + 1; i < end; i++) {
+            char c = Character.toUpperCase(content.charAt(i));
+            if (c >= 'A' && c <= 'F') {
+                boolean standalone = i + 1 >= end || !Character.isLetter(content.charAt(i + 1));
+                return standalone ? String.valueOf(c) : null;
+            }
+            if (!Character.isWhitespace(c) && c != '[' && c != '*') {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Severity severity(String content, int from, int to) {
+        from = skipSpaces(content, from, to);
+        to = trimEnd(content, from, to);
+        if (equalsIgnoreCase(content, from, to, "HIGH") || equalsIgnoreCase(content, from, to, "높음")) {
+            return Severity.HIGH;
+        }
+        if (equalsIgnoreCase(content, from, to, "MED") || equalsIgnoreCase(content, from, to, "MEDIUM")
+                || equalsIgnoreCase(content, from, to, "중간")) {
+            return Severity.MED;
+        }
+        if (equalsIgnoreCase(content, from, to, "LOW") || equalsIgnoreCase(content, from, to, "낮음")) {
+            return Severity.LOW;
+        }
+        return null;
+    }
+
+    private static ReviewType category(String content, int from, int to) {
+        from = skipSpaces(content, from, to);
+        to = trimEnd(content, from, to);
+        for (ReviewType type : ReviewType.values()) {
+            if (equalsIgnoreCase(content, from, to, type.name())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * "규칙명: 설명" 의 규칙명 끝. 앞쪽 MAX_RULE_LENGTH 글자 안에 ':' 이나 " - " 가 없으면 pos.
+     */
+    private static int ruleEnd(String content, int pos, int end) {
+        int limit = Math.min(end, pos + MAX_RULE_LENGTH);
+        for (int i = pos + 1; i < limit; i++) {
+            char c = content.charAt(i);
+            if (c == ':' || (c == '-' && content.charAt(i - 1) == ' ' && i + 1 < end && content.charAt(i + 1) == ' ')) {
+                return i;
+            }
+        }
+        return pos;
+    }
+
+    // 목록 기호, 번호("1." "2)"), 인용, 코드 표시, 굵게 표시를 건너뛴다
+    private static int skipDecoration(String content, int pos, int end) {
+        while (pos < end) {
+            char c = content.charAt(pos);
+            if (Character.isWhitespace(c) || c == '-' || c == '*' || c == '`' || c == '>' || c == '•') {
+                pos++;
+            } else if (isDigit(c)) {
+                int digitsEnd = scanDigits(content, pos, end);
+                if (digitsEnd < end && (content.charAt(digitsEnd) == '.' || content.charAt(digitsEnd) == ')')) {
+                    pos = digitsEnd + 1;
+                } else {
+                    return pos;
+                }
+            } else {
+                return pos;
+            }
+        }
+        return pos;
+    }
+
+    private static int skipSeparator(String content, int pos, int end) {
+        pos = skipSpaces(content, pos, end);
+        if (pos < end) {
+            char c = content.charAt(pos);
+            if (c == '-' || c == '–' || c == '—' || c == ':') {
+                pos++;
+            }
+        }
+        return skipSpaces(content, pos, end);
+    }
+
+    private static int scanPath(String content, int pos, int end) {
+        while (pos < end) {
+            char c = content.charAt(pos);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '/' || c == '-' || c == '$') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    private static int skipSpacesAndStars(String content, int pos, int end) {
+        while (pos < end && (content.charAt(pos) == ' ' || content.charAt(pos) == '*' || content.charAt(pos) == '`')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpaces(String content, int pos, int end) {
+        while (pos < end && Character.isWhitespace(content.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimEnd(String content, int start, int end) {
+        while (end > start) {
+            char c = content.charAt(end - 1);
+            if (Character.isWhitespace(c) || c == '`' || c == '*') {
+                end--;
+            } else {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static boolean startsWithIgnoreCase(String content, int start, int end, String prefix) {
+        return end - start >= prefix.length() && content.regionMatches(true, start, prefix, 0, prefix.length());
+    }
+
+    private static boolean equalsIgnoreCase(String content, int start, int end, String value) {
+        return end - start == value.length() && content.regionMatches(true, start, value, 0, value.length());
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int scanDigits(String content, int pos, int end) {
+        while (pos < end && isDigit(content.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int parseInt(String content, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end && i - start < 9; i++) {
+            value = value * 10 + (content.charAt(i) - '0');
+        }
+        return value;
+    }
+}
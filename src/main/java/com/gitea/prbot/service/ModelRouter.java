@@ -0,0 +1,363 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.DownstreamLimiter.Downstream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * chunk 리뷰 요청을 주 모델로 보내고, 시간 초과/오류/지연 시간(p95) 초과 시 보조 모델로 넘긴다.
+ * 모델마다 서킷 브레이커를 두어 열려 있는 동안은 해당 모델을 건너뛴다.
+ * 응답의 토큰 수(prompt_eval_count, eval_count)를 받기 위해 ChatClient 대신 OllamaApi 를 직접 부르고,
+ * 긴 프롬프트가 Ollama 기본 컨텍스트 창에서 말없이 잘리지 않도록 모델마다 num_ctx 를 설정한다.
+ */
+@Service
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    /**
+     * 실제로 응답한 모델과 응답 내용.
+     *
+     * @param promptTokens   모델이 보고한 프롬프트 토큰 수, 보고되지 않았으면 -1
+     * @param responseTokens 모델이 보고한 생성 토큰 수, 스트리밍을 일찍 끊었으면 받은 조각 수
+     */
+    public record ModelResponse(String model, String content, int promptTokens, int responseTokens) {
+    }
+
+    private final OllamaApi ollamaApi;
+    private final DownstreamLimiter downstreamLimiter;
+    private final AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Duration timeout;
+    private final boolean streaming;
+    private final int maxFindings;
+    private final int maxTokens;
+    private final List<Route> routes = new ArrayList<>();
+
+    // 시간 초과 시 호출 스레드를 인터럽트해 연결을 끊을 수 있도록 호출마다 가상 스레드를 쓴다
+    private final ExecutorService callExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-call-", 0).factory());
+
+    public ModelRouter(OllamaApi ollamaApi,
+                       DownstreamLimiter downstreamLimiter,
+                       AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter,
+                       TokenEstimator tokenEstimator,
+                       MeterRegistry meterRegistry,
+                       @Value("${bot.models.primary:${spring.ai.ollama.chat.options.model:starcoder2:3b}}") String primaryModel,
+                       @Value("${bot.models.fallback:}") String fallbackModel,
+                       @Value("${spring.ai.ollama.chat.options.temperature:0.1}") float temperature,
+                       @Value("${bot.models.timeout:120s}") Duration timeout,
+                       @Value("${bot.models.latency-p95-threshold:60s}") Duration p95Threshold,
+                       @Value("${bot.models.latency-window:50}") int latencyWindow,
+                       @Value("${bot.models.circuit-breaker.failure-threshold:3}") int failureThreshold,
+                       @Value("${bot.models.circuit-breaker.open-duration:60s}") Duration openDuration,
+                       @Value("${bot.models.streaming.enabled:true}") boolean streaming,
+                       @Value("${bot.models.streaming.max-findings:10}") int maxFindings,
+                       @Value("${bot.models.streaming.max-tokens:${bot.review.response-reserve-tokens:1024}}") int maxTokens) {
+        this.ollamaApi = ollamaApi;
+        this.downstreamLimiter = downstreamLimiter;
+        this.adaptiveConcurrencyLimiter = adaptiveConcurrencyLimiter;
+        this.meterRegistry = meterRegistry;
+        this.timeout = timeout;
+        this.streaming = streaming;
+        this.maxFindings = maxFindings;
+        this.maxTokens = maxTokens;
+
+        List<String> models = new ArrayList<>(List.of(primaryModel));
+        if (!fallbackModel.isBlank() && !fallbackModel.equals(primaryModel)) {
+            models.add(fallbackModel);
+        }
+
+        for (String model : models) {
+            // chunk 와 프롬프트 예산을 잡은 컨텍스트 창을 서버에도 알려준다
+            OllamaOptions options = OllamaOptions.create()
+                    .withTemperature(temperature)
+                    .withNumCtx(tokenEstimator.forModel(model).getContextWindow());
+            if (maxTokens > 0) {
+                // 스트림을 끊지 못하는 경우(call)에도 서버 쪽에서 생성 길이를 제한한다
+                options.withNumPredict(maxTokens);
+            }
+            ModelCircuitBreaker breaker =
+                    new ModelCircuitBreaker(failureThreshold, openDuration, p95Threshold, latencyWindow);
+            routes.add(new Route(model, options.toMap(), breaker, Timer.builder("prbot.llm.model.latency")
+                    .description("LLM call latency per model")
+                    .tag("model", model)
+                    .publishPercentiles(0.5, 0.95)
+                    .register(meterRegistry)));
+
+            Gauge.builder("prbot.llm.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("Circuit breaker state per model (0=closed, 1=half-open, 2=open)")
+                    .tag("model", model)
+                    .register(meterRegistry);
+        }
+
+        log.info("Model routing order: {}", models);
+    }
+
+    /**
+     * 캐시 조회에 쓸 모델. 주 모델의 브레이커가 열려 있으면 보조 모델을 가리킨다.
+     */
+    public String preferredModel() {
+        for (Route route : routes) {
+            if (route.breaker.getState() != ModelCircuitBreaker.State.OPEN) {
+                return route.model;
+            }
+        }
+        return routes.get(0).model;
+    }
+
+    /**
+     * 사용 가능한 첫 모델부터 차례로 호출한다. 모든 모델이 실패하면 마지막 오류를 던진다.
+     */
+    public ModelResponse call(String fullPrompt) {
+        RuntimeException lastError = null;
+
+        for (Route route : routes) {
+            if (!route.breaker.tryAcquire()) {
+                count(route.model, "skipped");
+                continue;
+            }
+
+            try {
+                // 모델별 허용량을 먼저 얻는다 (OLLAMA 허용량을 잡은 채 모델별 허용량을 기다리면 다른 모델까지 막힌다).
+                // AIMD 에는 두 제한기의 대기 시간을 뺀 모델 호출 시간만 넘긴다
+                AdaptiveConcurrencyLimiter.Permit permit = adaptiveConcurrencyLimiter.acquire(route.model);
+                TimedResponse timed;
+                try {
+                    timed = downstreamLimiter.call(Downstream.OLLAMA, () -> timedCall(route, fullPrompt));
+                } catch (RuntimeException e) {
+                    permit.release(0, false);
+                    throw e;
+                }
+                permit.release(timed.elapsedNanos(), true);
+
+                route.latency.record(timed.elapsedNanos(), TimeUnit.NANOSECONDS);
+                if (route.breaker.onSuccess(timed.elapsedNanos())) {
+                    log.warn("p95 latency of {} exceeded the threshold, routing to fallback for a while", route.model);
+                }
+                count(route.model, "success");
+                return timed.response();
+
+            } catch (RuntimeException e) {
+                String outcome = e.getCause() instanceof TimeoutException ? "timeout" : "failure";
+                count(route.model, outcome);
+                if (route.breaker.onFailure()) {
+                    log.warn("Circuit breaker for {} opened after {}", route.model, outcome);
+                }
+                log.warn("LLM call to {} failed ({}): {}", route.model, outcome, e.getMessage());
+                lastError = e;
+            }
+        }
+
+        if (lastError != null) {
+            throw lastError;
+        }
+        throw new IllegalStateException("No model available: all circuit breakers are open");
+    }
+
+    /**
+     * 허용량을 얻은 뒤의 모델 호출 시간만 잰다. 제한기 대기 시간이 섞이면 로컬 대기열이 길 때
+     * p95 브레이커가 모델이 느린 것으로 보고 열려 버리고, AIMD 는 limit 을 까닭 없이 줄인다.
+     */
+    private TimedResponse timedCall(Route route, String fullPrompt) {
+        long started = System.nanoTime();
+        ModelResponse response = streaming
+                ? callStreaming(route, fullPrompt)
+                : callWithTimeout(route, fullPrompt);
+        return new TimedResponse(response, System.nanoTime() - started);
+    }
+
+    /**
+     * call 의 논블로킹 버전. 항상 스트리밍으로 받으며 같은 서킷 브레이커, 시간 제한, 조기 종료 규칙을 적용한다.
+     * call 과 같은 순서로 모델별 허용량과 OLLAMA 허용량을 얻으며, 기다리는 동안 스레드를 점유하지 않는다.
+     */
+    public Mono<ModelResponse> callReactive(String fullPrompt) {
+        Mono<ModelResponse> chain = Mono.error(() ->
+                new IllegalStateException("No model available: all circuit breakers are open"));
+        for (int i = routes.size() - 1; i >= 0; i--) {
+            Route route = routes.get(i);
+            Mono<ModelResponse> next = chain;
+            chain = Mono.defer(() -> {
+                if (!route.breaker.tryAcquire()) {
+                    count(route.model, "skipped");
+                    return next;
+                }
+                return Mono.usingWhen(adaptiveConcurrencyLimiter.acquireReactive(route.model),
+                                permit -> downstreamLimiter.callReactive(Downstream.OLLAMA, timedStream(route, fullPrompt))
+                                        .doOnSuccess(timed -> permit.release(timed.elapsedNanos(), true)),
+                                permit -> Mono.fromRunnable(permit::abandon),
+                                (permit, e) -> Mono.fromRunnable(() -> permit.release(0, false)),
+                                // 리뷰가 취소된 것이지 모델이 느리거나 실패한 것이 아니므로 limit 은 그대로 둔다
+                                permit -> Mono.fromRunnable(permit::abandon))
+                        .doOnSuccess(timed -> {
+                            route.latency.record(timed.elapsedNanos(), TimeUnit.NANOSECONDS);
+                            if (route.breaker.onSuccess(timed.elapsedNanos())) {
+                                log.warn("p95 latency of {} exceeded the threshold, routing to fallback for a while", route.model);
+                            }
+                            count(route.model, "success");
+                        })
+                        .map(TimedResponse::response)
+                        // 취소되면 doOnSuccess/onErrorResume 이 불리지 않아 시험 호출 자리가 영영 비지 않는다
+                        .doOnCancel(route.breaker::onCancel)
+                        .onErrorResume(e -> {
+                            String outcome = e instanceof TimeoutException ? "timeout" : "failure";
+                            count(route.model, outcome);
+                            if (route.breaker.onFailure()) {
+                                log.warn("Circuit breaker for {} opened after {}", route.model, outcome);
+                            }
+                            log.warn("Streaming LLM call to {} failed ({}): {}", route.model, outcome, e.getMessage());
+                            return next;
+                        });
+            });
+        }
+        return chain;
+    }
+
+    /**
+     * timedCall 의 리액티브 버전. 구독 시점(허용량을 얻은 뒤)부터 시간과 시간 제한을 잰다.
+     */
+    private Mono<TimedResponse> timedStream(Route route, String fullPrompt) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(maxFindings, maxTokens);
+            return stream(route, fullPrompt, monitor)
+                    .then(Mono.fromCallable(() -> new TimedResponse(response(route, monitor), System.nanoTime() - started)))
+                    .timeout(timeout);
+        });
+    }
+
+    /**
+     * 스트리밍으로 받으며 조기 종료 조건을 만나면 구독을 끊는다. 연결이 끊기면 Ollama 도 생성을 멈춘다.
+     */
+    private ModelResponse callStreaming(Route route, String fullPrompt) {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(maxFindings, maxTokens);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        // 조각 사이 간격이 아니라 전체 응답 시간에 제한을 건다. 초과 시 원인이 TimeoutException 인 예외가 던져진다
+        stream(route, fullPrompt, monitor)
+                .timeout(Mono.delay(timeout),
+                        fragment -> Mono.delay(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))))
+                .blockLast();
+        return response(route, monitor);
+    }
+
+    private Flux<String> stream(Route route, String fullPrompt, StreamingAnswerMonitor monitor) {
+        return ollamaApi.streamingChat(request(route, fullPrompt, true))
+                .doOnNext(response -> {
+                    // 끝까지 받은 경우 마지막 메시지에만 토큰 수가 온다
+                    if (Boolean.TRUE.equals(response.done())) {
+                        monitor.onDone(response.promptEvalCount(), response.evalCount());
+                    }
+                })
+                .mapNotNull(response -> response.message() != null ? response.message().content() : null)
+                .filter(content -> !content.isEmpty())
+                .takeUntil(monitor::accept)
+                .doOnComplete(() -> recordStream(route.model, monitor));
+    }
+
+    private ModelResponse response(Route route, StreamingAnswerMonitor monitor) {
+        return new ModelResponse(route.model, monitor.content(), monitor.getPromptTokens(), monitor.getResponseTokens());
+    }
+
+    private OllamaApi.ChatRequest request(Route route, String fullPrompt, boolean stream) {
+        return OllamaApi.ChatRequest.builder(route.model)
+                .withStream(stream)
+                .withMessages(List.of(OllamaApi.Message.builder(OllamaApi.Message.Role.USER)
+                        .withContent(fullPrompt)
+                        .build()))
+                .withOptions(route.options)
+                .build();
+    }
+
+    private void recordStream(String model, StreamingAnswerMonitor monitor) {
+        if (monitor.getStopReason() != StreamingAnswerMonitor.StopReason.NONE) {
+            Counter.builder("prbot.llm.early.stop")
+                    .description("Streaming generations stopped early")
+                    .tag("model", model)
+                    .tag("reason", monitor.getStopReason().name().toLowerCase())
+                    .register(meterRegistry)
+                    .increment();
+        }
+        if (monitor.getFirstFindingNanos() >= 0) {
+            Timer.builder("prbot.llm.first.finding")
+                    .description("Time from request to the first finding in a streamed answer")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .record(monitor.getFirstFindingNanos(), TimeUnit.NANOSECONDS);
+        }
+        DistributionSummary.builder("prbot.llm.stream.tokens")
+                .tag("model", model)
+                .register(meterRegistry)
+                .record(monitor.getTokens());
+    }
+
+    private ModelResponse callWithTimeout(Route route, String fullPrompt) {
+        Future<OllamaApi.ChatResponse> future = callExecutor.submit(() ->
+                ollamaApi.chat(request(route, fullPrompt, false)));
+        try {
+            OllamaApi.ChatResponse response = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            String content = response.message() != null ? response.message().content() : "";
+            return new ModelResponse(route.model, content,
+                    reportedTokens(response.promptEvalCount()), reportedTokens(response.evalCount()));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("LLM call timed out after " + timeout, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for LLM response", e);
+        }
+    }
+
+    /**
+     * 프롬프트가 Ollama 캐시에 있으면 prompt_eval_count 가 빠지기도 한다.
+     */
+    static int reportedTokens(Integer count) {
+        return count != null && count > 0 ? count : -1;
+    }
+
+    private void count(String model, String outcome) {
+        Counter.builder("prbot.llm.route")
+                .description("Routing decisions per model")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    private record TimedResponse(ModelResponse response, long elapsedNanos) {
+    }
+
+    private record Route(String model, Map<String, Object> options, ModelCircuitBreaker breaker, Timer latency) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.gitea.prbot.service;
+
+/**
+ * .gitignore / .gitattributes 의 경로 패턴.
+ * <ul>
+ *     <li>'/' 가 없는 패턴은 어느 깊이에서든 맞고, '/' 가 있으면 저장소 루트 기준이다.</li>
+ *     <li>'*' 와 '?' 는 '/' 를 넘지 않고, '**' 는 여러 디렉터리에 걸쳐 맞는다.</li>
+ *     <li>디렉터리에 맞으면 그 아래 파일 전체에 맞는다. '/' 로 끝나는 패턴은 디렉터리에만 맞는다.</li>
+ * </ul>
+ * 문자 클래스([abc])는 지원하지 않고 글자 그대로 비교한다.
+ */
+final class PathPattern {
+
+    private final String glob;
+    private final boolean directoryOnly;
+
+    private PathPattern(String glob, boolean directoryOnly) {
+        this.glob = glob;
+        this.directoryOnly = directoryOnly;
+    }
+
+    static PathPattern compile(String pattern) {
+        String glob = pattern.strip();
+        boolean directoryOnly = glob.endsWith("/");
+        if (directoryOnly) {
+            glob = glob.substring(0, glob.length() - 1);
+        }
+        if (glob.startsWith("/")) {
+            glob = glob.substring(1);
+        } else if (glob.indexOf('/') < 0) {
+            glob = "**/" + glob;
+        }
+        return new PathPattern(glob, directoryOnly);
+    }
+
+    boolean matches(String path) {
+        // 경로의 상위 디렉터리들과 경로 자체를 차례로 맞춰 본다
+        for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+            if (match(glob, 0, path.substring(0, slash), 0)) {
+                return true;
+            }
+        }
+        return !directoryOnly && match(glob, 0, path, 0);
+    }
+
+    private static boolean match(String pattern, int pi, String path, int si) {
+        while (pi < pattern.length()) {
+            char c = pattern.charAt(pi);
+            if (c == '*') {
+                if (pi + 1 < pattern.length() && pattern.charAt(pi + 1) == '*') {
+                    int next = pi + 2;
+                    boolean directories = next < pattern.length() && pattern.charAt(next) == '/';
+                    if (directories) {
+                        next++;
+                    }
+                    for (int k = si; k <= path.length(); k++) {
+                        // "**/" 는 디렉터리 경계에서만 끝난다
+                        if ((!directories || k == si || path.charAt(k - 1) == '/') && match(pattern, next, path, k)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                for (int k = si; k <= path.length(); k++) {
+                    if (match(pattern, pi + 1, path, k)) {
+                        return true;
+                    }
+                    if (k < path.length() && path.charAt(k) == '/') {
+                        break;
+                    }
+                }
+                return false;
+            }
+            if (si >= path.length()) {
+                return false;
+            }
+            char s = path.charAt(si);
+            if (c == '?' ? s == '/' : c != s) {
+                return false;
+            }
+            pi++;
+            si++;
+        }
+        return si == path.length();
+    }
+}
@@ -0,0 +1,161 @@
+package com.gitea.prbot.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 허용량을 요청 순서대로 나눠 준다. 블로킹 호출(가상 스레드)과 리액티브 호출이 같은 허용량을 나눠 쓰도록
+ * 대기를 스레드가 아니라 CompletableFuture 로 표현한다. 리액티브 쪽은 기다리는 동안 스레드를 점유하지 않는다.
+ * 허용량은 실행 중에 바꿀 수 있다 (AIMD).
+ */
+final class PermitQueue {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int capacity;
+    private int inUse = 0;
+
+    PermitQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 허용량을 요청한다. 남아 있으면 완료된 future 를, 아니면 차례가 오면 완료되는 future 를 돌려준다.
+     * 받은 future 는 완료 후 release 하거나, 기다림을 그만둘 때 abandon 해야 한다.
+     */
+    CompletableFuture<Void> acquire() {
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inUse < capacity) {
+                inUse++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void acquireUninterruptibly() {
+        acquire().join();
+    }
+
+    void acquireInterruptibly() throws InterruptedException {
+        CompletableFuture<Void> waiter = acquire();
+        try {
+            waiter.get();
+        } catch (InterruptedException e) {
+            abandon(waiter);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 허용량을 얻을 때 값을 내는 Mono. 구독이 취소되면 대기열에서 빠지고, 이미 받은 허용량은 돌려준다.
+     */
+    Mono<Void> acquireReactive() {
+        return Mono.defer(() -> {
+            CompletableFuture<Void> waiter = acquire();
+            return Mono.fromFuture(waiter, true)
+                    .doOnCancel(() -> abandon(waiter));
+        });
+    }
+
+    /**
+     * 기다림을 그만둔다. 그 사이 허용량이 넘어왔다면 돌려준다.
+     */
+    void abandon(CompletableFuture<Void> waiter) {
+        if (waiter.cancel(false)) {
+            lock.lock();
+            try {
+                waiters.remove(waiter);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            release();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inUse--;
+        } finally {
+            lock.unlock();
+        }
+        grant();
+    }
+
+    /**
+     * 허용량을 바꾼다. 늘어난 몫은 다음 release 때 대기자에게 넘어간다.
+     */
+    void setCapacity(int capacity) {
+        lock.lock();
+        try {
+            this.capacity = capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 남은 허용량만큼 대기자를 깨운다. future 를 완료하면 기다리던 쪽의 후속 작업이 이 스레드에서 돌 수 있으므로
+     * 락 밖에서 완료한다. 그 사이 취소된 대기자의 몫은 다시 돌려준다.
+     */
+    private void grant() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        lock.lock();
+        try {
+            while (inUse < capacity && !waiters.isEmpty()) {
+                granted.add(waiters.poll());
+                inUse++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<Void> waiter : granted) {
+            if (!waiter.complete(null)) {
+                release();
+            }
+        }
+    }
+
+    int capacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.PromptTemplate.Slot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * 컴파일된 템플릿에 PR 정보와 diff 를 채워 프롬프트를 만든다.
+ * <ul>
+ *     <li>모델 컨텍스트 창에서 응답 몫을 뺀 토큰 예산을 넘지 않도록 diff 를 줄 단위로 자르고, 잘린 부분은 변경 줄 수로 요약한다.
+ *     토큰 수는 chunker 와 같은 모델별 어림값(TokenEstimator)으로 센다.</li>
+ *     <li>렌더링 버퍼는 풀에서 재사용해 큰 프롬프트마다 StringBuilder 를 키우며 복사하지 않는다.</li>
+ * </ul>
+ */
+@Service
+public class PromptAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(PromptAssembler.class);
+
+    private static final int MAX_TITLE_CHARS = 200;
+    private static final int MAX_POOLED_BUFFERS = 16;
+    // 이보다 커진 버퍼는 풀에 돌려놓지 않는다 (큰 diff 한 번에 메모리를 계속 잡고 있지 않도록)
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+    // 잘린 diff 끝에 붙는 요약 문구 몫
+    private static final int TRIM_SUMMARY_TOKENS = 32;
+
+    /**
+     * 템플릿 슬롯에 들어갈 값.
+     */
+    public record PromptValues(String codeDiff, String prTitle, int linesAdded, int linesDeleted) {
+    }
+
+    /**
+     * @param model           토큰 수를 어림한 모델
+     * @param estimatedTokens 프롬프트 토큰 수 어림값
+     * @param truncations     예산 때문에 잘린 슬롯 수
+     */
+    public record RenderedPrompt(String text, String model, int estimatedTokens, int truncations) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final TokenEstimator tokenEstimator;
+    private final int responseReserveTokens;
+    private final Deque<StringBuilder> buffers = new ConcurrentLinkedDeque<>();
+
+    public PromptAssembler(MeterRegistry meterRegistry, TokenEstimator tokenEstimator,
+                           @Value("${bot.review.response-reserve-tokens:1024}") int responseReserveTokens) {
+        this.meterRegistry = meterRegistry;
+        this.tokenEstimator = tokenEstimator;
+        this.responseReserveTokens = responseReserveTokens;
+    }
+
+    /**
+     * 모델 컨텍스트 창 중 프롬프트에 쓸 수 있는 토큰 수.
+     */
+    public int getPromptTokenBudget(String model) {
+        return Math.max(256, tokenEstimator.forModel(model).getContextWindow() - responseReserveTokens);
+    }
+
+    public RenderedPrompt assemble(String promptId, PromptTemplate template, PromptValues values, String model) {
+        TokenEstimator.Profile profile = tokenEstimator.forModel(model);
+        int budget = getPromptTokenBudget(model);
+        int truncations = 0;
+
+        CharSequence[] slotValues = new CharSequence[Slot.values().length];
+        String title = values.prTitle() != null ? values.prTitle() : "";
+        if (title.length() > MAX_TITLE_CHARS) {
+            title = title.substring(0, MAX_TITLE_CHARS) + "…";
+            truncations++;
+        }
+        slotValues[Slot.PR_TITLE.ordinal()] = title;
+        slotValues[Slot.LINES_ADDED.ordinal()] = Integer.toString(values.linesAdded());
+        slotValues[Slot.LINES_DELETED.ordinal()] = Integer.toString(values.linesDeleted());
+
+        int fixedChars = template.literalLength();
+        int fixedTokens = template.literalTokens(profile);
+        for (Slot slot : Slot.values()) {
+            CharSequence value = slotValues[slot.ordinal()];
+            if (slot != Slot.CODE_DIFF && value != null) {
+                int occurrences = template.occurrences(slot);
+                fixedChars += occurrences * value.length();
+                fixedTokens += occurrences * profile.count(value);
+            }
+        }
+
+        String diff = values.codeDiff() != null ? values.codeDiff() : "";
+        int codeSlots = Math.max(1, template.occurrences(Slot.CODE_DIFF));
+        int diffBudget = Math.max(0, (budget - fixedTokens) / codeSlots);
+        CharSequence code = diff;
+        int codeTokens = profile.count(diff);
+        if (codeTokens > diffBudget) {
+            code = trimDiff(diff, diffBudget, profile);
+            codeTokens = profile.count(code);
+            truncations++;
+        }
+        slotValues[Slot.CODE_DIFF.ordinal()] = code;
+
+        StringBuilder buffer = acquire(fixedChars + codeSlots * code.length());
+        try {
+            template.render(buffer, slotValues);
+            String text = buffer.toString();
+            int estimatedTokens = fixedTokens + codeSlots * codeTokens;
+
+            DistributionSummary.builder("prbot.prompt.tokens.estimated")
+                    .description("Estimated size of rendered prompts")
+                    .tag("prompt", promptId)
+                    .register(meterRegistry)
+                    .record(estimatedTokens);
+            if (truncations > 0) {
+                Counter.builder("prbot.prompt.truncations")
+                        .description("Prompt slots trimmed to fit the model's token budget")
+                        .tag("prompt", promptId)
+                        .register(meterRegistry)
+                        .increment(truncations);
+                log.debug("Trimmed prompt {} for model {} to ~{} tokens", promptId, model, estimatedTokens);
+            }
+            return new RenderedPrompt(text, model, estimatedTokens, truncations);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * 예산 안에 들어가는 줄까지만 남기고, 나머지는 추가/삭제 줄 수로 요약한다.
+     */
+    private String trimDiff(String diff, int budget, TokenEstimator.Profile profile) {
+        int added = 0;
+        int deleted = 0;
+        int omitted = 0;
+
+        // 요약 문구 자리를 먼저 빼 둔다
+        int limit = Math.max(0, budget - TRIM_SUMMARY_TOKENS);
+        int used = 0;
+        int cut = 0;
+        while (cut < diff.length()) {
+            int lineEnd = diff.indexOf('\n', cut);
+            int next = lineEnd < 0 ? diff.length() : lineEnd + 1;
+            used += profile.count(diff, cut, next);
+            if (used > limit) {
+                break;
+            }
+            cut = next;
+        }
+
+        int lineStart = cut;
+        while (lineStart < diff.length()) {
+            int lineEnd = diff.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = diff.length();
+            }
+            if (lineEnd > lineStart) {
+                char marker = diff.charAt(lineStart);
+                if (marker == '+') {
+                    added++;
+                } else if (marker == '-') {
+                    deleted++;
+                }
+            }
+            omitted++;
+            lineStart = lineEnd + 1;
+        }
+
+        return diff.substring(0, cut) + "... (이하 " + omitted + "줄 생략: +" + added + "/-" + deleted + ")\n";
+    }
+
+    private StringBuilder acquire(int capacity) {
+        StringBuilder buffer = buffers.pollFirst();
+        if (buffer == null) {
+            return new StringBuilder(capacity);
+        }
+        buffer.ensureCapacity(capacity);
+        return buffer;
+    }
+
+    private void release(StringBuilder buffer) {
+        if (buffer.capacity() > MAX_POOLED_CAPACITY || buffers.size() >= MAX_POOLED_BUFFERS) {
+            return;
+        }
+        buffer.setLength(0);
+        buffers.offerFirst(buffer);
+    }
+}
@@ -1,47 +1,304 @@
 package com.gitea.prbot.service;
 
 import com.gitea.prbot.model.ReviewType;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.EnumMap;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 리뷰 프롬프트 템플릿을 읽고 컴파일해 둔다.
+ * <ul>
+ *     <li>기본값은 bot.prompts.* 위치(classpath:, file:)에서 읽는다.</li>
+ *     <li>bot.prompts.directory 가 있으면 그 안의 security.md, performance.md, style.md, general.md, combined.md 가
+ *     기본값을 덮어쓰고, 파일이 바뀌면 재시작 없이 다시 읽는다.</li>
+ *     <li>저장소의 대상 브랜치에 .gitea/prbot/*.md 가 있으면 그 저장소에서는 그것을 쓴다.</li>
+ * </ul>
+ * 버전은 템플릿 내용의 해시이므로 결과 캐시는 내용이 바뀔 때만 무효화된다.
+ */
 @Service
 public class PromptService {
 
     private static final Logger log = LoggerFactory.getLogger(PromptService.class);
 
-    private final Map<ReviewType, String> promptTemplates = new EnumMap<>(ReviewType.class);
+    public static final String COMBINED_PROMPT_ID = "COMBINED";
 
-    public PromptService() {
-        loadPromptTemplates();
+    private static final String DEFAULT_PROMPT = "코드를 검토해 주세요.";
+
+    /**
+     * @param origin 템플릿을 읽은 곳 (로그용)
+     */
+    public record ResolvedPrompt(String id, PromptTemplate template, String version, String origin) {
+    }
+
+    /**
+     * 리뷰 한 건 동안 쓸 프롬프트 묶음. 리뷰 중에 템플릿이 바뀌어도 같은 PR 안에서는 섞이지 않는다.
+     */
+    public static final class PromptSet {
+        private final Map<String, ResolvedPrompt> prompts;
+
+        private PromptSet(Map<String, ResolvedPrompt> prompts) {
+            this.prompts = prompts;
+        }
+
+        public ResolvedPrompt get(String promptId) {
+            return prompts.get(promptId);
+        }
+
+        public ResolvedPrompt get(ReviewType type) {
+            return prompts.get(type.name());
+        }
+    }
+
+    // 저장소 프롬프트 디렉터리의 한 시점 상태
+    private record RepositoryPrompts(long expiresAt, Map<String, String> shas, Map<String, ResolvedPrompt> prompts) {
+    }
+
+    private final ResourceLoader resourceLoader;
+    private final GiteaService giteaService;
+    private final Map<String, String> locations = new LinkedHashMap<>();
+    private final Path directory;
+    private final boolean repositoryOverrides;
+    private final String repositoryPath;
+    private final long repositoryCacheTtlNanos;
+
+    private final Map<String, ResolvedPrompt> defaults = new ConcurrentHashMap<>();
+    private final Map<String, RepositoryPrompts> repositoryPrompts = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+
+    public PromptService(ResourceLoader resourceLoader, GiteaService giteaService,
+                         @Value("${bot.prompts.security:classpath:prompts/security/security-review.md}") String security,
+                         @Value("${bot.prompts.performance:classpath:prompts/performance/performance-review.md}") String performance,
+                         @Value("${bot.prompts.style:classpath:prompts/style/code-style-review.md}") String style,
+                         @Value("${bot.prompts.general:classpath:prompts/general/general-review.md}") String general,
+                         @Value("${bot.prompts.combined:classpath:prompts/combined/combined-review.md}") String combined,
+                         @Value("${bot.prompts.directory:}") String directory,
+                         @Value("${bot.prompts.repository-overrides:true}") boolean repositoryOverrides,
+                         @Value("${bot.prompts.repository-path:.gitea/prbot}") String repositoryPath,
+                         @Value("${bot.prompts.repository-cache-ttl:5m}") Duration repositoryCacheTtl) {
+        this.resourceLoader = resourceLoader;
+        this.giteaService = giteaService;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.repositoryOverrides = repositoryOverrides;
+        this.repositoryPath = repositoryPath;
+        this.repositoryCacheTtlNanos = repositoryCacheTtl.toNanos();
+
+        locations.put(ReviewType.SECURITY.name(), security);
+        locations.put(ReviewType.PERFORMANCE.name(), performance);
+        locations.put(ReviewType.STYLE.name(), style);
+        locations.put(ReviewType.GENERAL.name(), general);
+        locations.put(COMBINED_PROMPT_ID, combined);
+
+        locations.keySet().forEach(this::reloadDefault);
+        log.info("Loaded {} prompt templates", defaults.size());
     }
 
-    private void loadPromptTemplates() {
+    /**
+     * 저장소와 대상 브랜치에 맞는 프롬프트 묶음. 저장소 덮어쓰기는 repository-cache-ttl 동안 캐시한다.
+     */
+    public PromptSet promptsFor(String repositoryFullName, String ref) {
+        Map<String, ResolvedPrompt> prompts = new HashMap<>(defaults);
+        if (repositoryOverrides && repositoryFullName != null) {
+            prompts.putAll(repositoryPrompts(repositoryFullName, ref).prompts());
+        }
+        return new PromptSet(Collections.unmodifiableMap(prompts));
+    }
+
+    private RepositoryPrompts repositoryPrompts(String repositoryFullName, String ref) {
+        String key = repositoryFullName + "@" + (ref != null ? ref : "");
+        RepositoryPrompts cached = repositoryPrompts.get(key);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.expiresAt() < 0) {
+            return cached;
+        }
+
+        Map<String, String> files = giteaService.listDirectory(repositoryFullName, repositoryPath, ref);
+        if (files == null) {
+            // Gitea 오류 시 이전 상태를 그대로 쓴다
+            RepositoryPrompts previous = cached != null ? cached : new RepositoryPrompts(0, Map.of(), Map.of());
+            RepositoryPrompts retry = new RepositoryPrompts(now + repositoryCacheTtlNanos, previous.shas(), previous.prompts());
+            repositoryPrompts.put(key, retry);
+            return retry;
+        }
+
+        Map<String, String> shas = new HashMap<>();
+        Map<String, ResolvedPrompt> prompts = new HashMap<>();
+        for (String promptId : locations.keySet()) {
+            String fileName = fileName(promptId);
+            String sha = files.get(fileName);
+            if (sha == null) {
+                continue;
+            }
+
+            // blob SHA 가 같으면 내용을 다시 받지 않는다
+            ResolvedPrompt prompt = cached != null && sha.equals(cached.shas().get(promptId))
+                    ? cached.prompts().get(promptId)
+                    : null;
+            if (prompt == null) {
+                String content = giteaService.getRawFile(repositoryFullName, repositoryPath + "/" + fileName, ref);
+                if (content == null) {
+                    continue;
+                }
+                prompt = resolve(promptId, content, repositoryFullName + ":" + repositoryPath + "/" + fileName);
+                log.info("Using repository prompt {} for {} (version {})",
+                        prompt.origin(), promptId, prompt.version());
+            }
+            shas.put(promptId, sha);
+            prompts.put(promptId, prompt);
+        }
+
+        RepositoryPrompts loaded = new RepositoryPrompts(now + repositoryCacheTtlNanos, shas, prompts);
+        repositoryPrompts.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * 감시 디렉터리의 파일이 있으면 그것을, 없으면 bot.prompts.* 위치에서 다시 읽는다.
+     */
+    private void reloadDefault(String promptId) {
+        String content = null;
+        String origin = null;
+
+        if (directory != null) {
+            Path file = directory.resolve(fileName(promptId));
+            if (Files.isRegularFile(file)) {
+                try {
+                    content = Files.readString(file, StandardCharsets.UTF_8);
+                    origin = file.toString();
+                } catch (IOException e) {
+                    log.warn("Could not read prompt file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        if (content == null) {
+            String location = locations.get(promptId);
+            try {
+                Resource resource = resourceLoader.getResource(location);
+                content = resource.getContentAsString(StandardCharsets.UTF_8);
+                origin = location;
+            } catch (IOException e) {
+                log.error("Error loading prompt template {} from {}", promptId, location, e);
+                content = DEFAULT_PROMPT;
+                origin = "default";
+            }
+        }
+
+        ResolvedPrompt previous = defaults.get(promptId);
+        ResolvedPrompt loaded = resolve(promptId, content, origin);
+        if (previous != null && previous.version().equals(loaded.version())) {
+            return;
+        }
+        defaults.put(promptId, loaded);
+        if (previous != null) {
+            log.info("Reloaded prompt {} from {} (version {} -> {})",
+                    promptId, origin, previous.version(), loaded.version());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watchDirectory() {
+        if (directory == null) {
+            return;
+        }
+        if (!Files.isDirectory(directory)) {
+            log.warn("Prompt directory {} does not exist, not watching", directory);
+            return;
+        }
+
         try {
-            promptTemplates.put(ReviewType.SECURITY, loadPrompt("prompts/security/security-review.md"));
-            promptTemplates.put(ReviewType.PERFORMANCE, loadPrompt("prompts/performance/performance-review.md"));
-            promptTemplates.put(ReviewType.STYLE, loadPrompt("prompts/style/code-style-review.md"));
-            promptTemplates.put(ReviewType.GENERAL, loadPrompt("prompts/general/general-review.md"));
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.error("Could not watch prompt directory {}", directory, e);
+            return;
+        }
 
-            log.info("Loaded {} prompt templates", promptTemplates.size());
-        } catch (Exception e) {
-            log.error("Error loading prompt templates", e);
+        Thread.ofVirtual().name("prompt-watcher").start(this::watchLoop);
+        log.info("Watching {} for prompt changes", directory);
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path changed) {
+                        String promptId = promptIdFor(changed.getFileName().toString());
+                        if (promptId != null) {
+                            reloadDefault(promptId);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Prompt directory {} is no longer accessible, stopped watching", directory);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 종료
         }
     }
 
-    private String loadPrompt(String path) throws IOException {
-        Resource resource = new ClassPathResource(path);
-        return resource.getContentAsString(StandardCharsets.UTF_8);
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 
-    public String getPrompt(ReviewType type) {
-        return promptTemplates.getOrDefault(type, "코드를 검토해 주세요.");
+    private ResolvedPrompt resolve(String promptId, String content, String origin) {
+        return new ResolvedPrompt(promptId, PromptTemplate.compile(content), contentHash(content), origin);
+    }
+
+    private static String fileName(String promptId) {
+        return promptId.toLowerCase() + ".md";
+    }
+
+    private String promptIdFor(String fileName) {
+        for (String promptId : locations.keySet()) {
+            if (fileName(promptId).equals(fileName)) {
+                return promptId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 템플릿 내용의 해시. 결과 캐시 키에 포함되어 프롬프트가 바뀌면 캐시가 무효화된다.
+     */
+    private String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.gitea.prbot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 시작 시 한 번 리터럴 조각과 슬롯({code_diff} 등)으로 나눠 둔 프롬프트 템플릿.
+ * 렌더링은 조각을 버퍼에 이어 붙이기만 하므로 요청마다 템플릿을 다시 훑지 않는다.
+ * 알 수 없는 {이름} 은 리터럴로 남는다.
+ */
+public final class PromptTemplate {
+
+    public enum Slot {
+        CODE_DIFF("code_diff"),
+        PR_TITLE("pr_title"),
+        LINES_ADDED("lines_added"),
+        LINES_DELETED("lines_deleted");
+
+        private final String placeholder;
+
+        Slot(String placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        static Slot of(CharSequence source, int start, int end) {
+            for (Slot slot : values()) {
+                String name = slot.placeholder;
+                if (end - start == name.length() && source.toString().regionMatches(start, name, 0, name.length())) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+    }
+
+    // 코드 슬롯이 없는 템플릿은 예전처럼 끝에 코드를 붙인다
+    private static final String CODE_SUFFIX = "\n\n코드:\n";
+
+    // literals.length == slots.length + 1
+    private final String[] literals;
+    private final Slot[] slots;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, Slot[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static PromptTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        boolean hasCode = false;
+
+        int literalStart = 0;
+        int pos = 0;
+        int length = source.length();
+        while (pos < length) {
+            int open = source.indexOf('{', pos);
+            if (open < 0) {
+                break;
+            }
+            int close = open + 1;
+            while (close < length && isNameChar(source.charAt(close))) {
+                close++;
+            }
+            Slot slot = close < length && source.charAt(close) == '}' ? Slot.of(source, open + 1, close) : null;
+            if (slot == null) {
+                pos = open + 1;
+                continue;
+            }
+
+            literals.add(source.substring(literalStart, open));
+            slots.add(slot);
+            hasCode |= slot == Slot.CODE_DIFF;
+            literalStart = close + 1;
+            pos = literalStart;
+        }
+        String tail = source.substring(literalStart);
+
+        if (!hasCode) {
+            literals.add(tail + CODE_SUFFIX);
+            slots.add(Slot.CODE_DIFF);
+            tail = "";
+        }
+        literals.add(tail);
+
+        return new PromptTemplate(literals.toArray(new String[0]), slots.toArray(new Slot[0]));
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    /** 슬롯을 뺀 고정 부분의 길이 */
+    int literalLength() {
+        return literalLength;
+    }
+
+    /** 슬롯을 뺀 고정 부분의 토큰 수 어림값 */
+    int literalTokens(TokenEstimator.Profile profile) {
+        int tokens = 0;
+        for (String literal : literals) {
+            tokens += profile.count(literal);
+        }
+        return tokens;
+    }
+
+    int occurrences(Slot slot) {
+        int count = 0;
+        for (Slot s : slots) {
+            if (s == slot) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param values 슬롯 순서(Slot.ordinal)대로의 값
+     */
+    void render(StringBuilder out, CharSequence[] values) {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            CharSequence value = values[slots[i].ordinal()];
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append(literals[slots.length]);
+    }
+}
@@ -0,0 +1,254 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.dto.PullRequestEvent;
+import com.gitea.prbot.model.ReviewCoverage;
+import com.gitea.prbot.model.ReviewPage;
+import com.gitea.prbot.model.ReviewResult;
+import com.gitea.prbot.model.ReviewStatistics;
+import com.gitea.prbot.model.TokenUsage;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.InFlightReviewRegistry.ReviewRun;
+import com.gitea.prbot.service.PromptAssembler.RenderedPrompt;
+import com.gitea.prbot.service.PromptService.PromptSet;
+import com.gitea.prbot.service.PromptService.ResolvedPrompt;
+import com.gitea.prbot.service.ReviewBudgetPlanner.Budget;
+import com.gitea.prbot.service.ReviewBudgetPlanner.ReviewPlan;
+import com.gitea.prbot.service.ReviewResultCache.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * diff 수신 → chunk 분할 → LLM 호출 → 취합 → 코멘트 게시를 하나의 리액티브 스트림으로 처리한다.
+ * <ul>
+ *     <li>diff 는 줄 단위로 읽어 chunk 로 나누고, 리뷰 예산 안에서 위험도가 높은 파일의 chunk 부터 LLM 에 보낸다.</li>
+ *     <li>PR 하나가 동시에 진행하는 LLM 호출 수(llm-concurrency)가 앞 단계의 요청량을 정한다.
+ *     Ollama 전체의 동시 호출 수는 BLOCKING 과 같이 ModelRouter 의 모델별 허용량과 OLLAMA 허용량이 제한한다.</li>
+ *     <li>캐시/상태 저장처럼 JPA 를 쓰는 부분만 boundedElastic 에서 실행한다.</li>
+ * </ul>
+ * 프롬프트, 결과 파싱, 코멘트 형식은 CodeReviewService 와 같은 것을 쓴다.
+ */
+@Service
+public class ReactiveReviewPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveReviewPipeline.class);
+
+    private final CodeReviewService codeReviewService;
+    private final GiteaService giteaService;
+    private final DiffProcessorService diffProcessorService;
+    private final ModelRouter modelRouter;
+    private final ReviewResultCache reviewResultCache;
+    private final ReviewStateService reviewStateService;
+    private final ReviewMetrics reviewMetrics;
+    private final InFlightReviewRegistry inFlightReviewRegistry;
+    private final FindingsAggregator findingsAggregator;
+    private final ReviewCommentPlanner reviewCommentPlanner;
+    private final ReviewBudgetPlanner reviewBudgetPlanner;
+    private final int llmConcurrency;
+
+    public ReactiveReviewPipeline(CodeReviewService codeReviewService, GiteaService giteaService,
+                                  DiffProcessorService diffProcessorService, ModelRouter modelRouter,
+                                  ReviewResultCache reviewResultCache, ReviewStateService reviewStateService,
+                                  ReviewMetrics reviewMetrics, InFlightReviewRegistry inFlightReviewRegistry,
+                                  FindingsAggregator findingsAggregator, ReviewCommentPlanner reviewCommentPlanner,
+                                  ReviewBudgetPlanner reviewBudgetPlanner,
+                                  @Value("${bot.review.reactive.llm-concurrency:${bot.concurrency.ollama:4}}") int llmConcurrency) {
+        this.codeReviewService = codeReviewService;
+        this.giteaService = giteaService;
+        this.diffProcessorService = diffProcessorService;
+        this.modelRouter = modelRouter;
+        this.reviewResultCache = reviewResultCache;
+        this.reviewStateService = reviewStateService;
+        this.reviewMetrics = reviewMetrics;
+        this.inFlightReviewRegistry = inFlightReviewRegistry;
+        this.findingsAggregator = findingsAggregator;
+        this.reviewCommentPlanner = reviewCommentPlanner;
+        this.reviewBudgetPlanner = reviewBudgetPlanner;
+        this.llmConcurrency = Math.max(1, llmConcurrency);
+    }
+
+    public Mono<Void> review(PullRequestEvent event) {
+        String repositoryFullName = event.getRepository().getFullName();
+        Long prNumber = event.getPullRequest().getNumber();
+        String headSha = codeReviewService.headSha(event);
+
+        return Mono.defer(() -> {
+            ReviewRun run = inFlightReviewRegistry.begin(repositoryFullName, prNumber, headSha);
+            if (run.isCancelled()) {
+                log.info("PR #{} at {} has a newer push queued, skipping", prNumber, headSha);
+                return Mono.<Void>empty();
+            }
+            log.info("Starting reactive review for PR #{} in {}", prNumber, repositoryFullName);
+
+            return blocking(() -> reviewStateService.getLastReviewedSha(repositoryFullName, prNumber).orElse(""))
+                    .flatMap(last -> {
+                        String lastReviewedSha = last.isEmpty() ? null : last;
+                        if (headSha != null && headSha.equals(lastReviewedSha)) {
+                            log.info("PR #{} at {} has already been reviewed, skipping", prNumber, headSha);
+                            return Mono.<Void>empty();
+                        }
+                        return reviewDiff(event, run, lastReviewedSha, headSha);
+                    })
+                    .onErrorResume(e -> run.isCancelled(), e -> {
+                        log.info("Review for PR #{} at {} was superseded by a newer push", prNumber, headSha);
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> inFlightReviewRegistry.complete(run));
+        });
+    }
+
+    private Mono<Void> reviewDiff(PullRequestEvent event, ReviewRun run, String lastReviewedSha, String headSha) {
+        String repositoryFullName = event.getRepository().getFullName();
+        ReviewStatistics stats = new ReviewStatistics(codeReviewService.reviewModeFor(repositoryFullName));
+        AtomicReference<String> reviewScope = new AtomicReference<>();
+
+        // 저장소 프롬프트와 파일 규칙 조회는 Gitea 를 부를 수 있으므로 blocking 으로 한 번만 한다
+        Mono<PromptSet> prompts = blocking(() -> codeReviewService.promptsFor(event));
+        Mono<FileFilter> fileFilter = blocking(() -> codeReviewService.fileFilterFor(event));
+        return Mono.zip(prompts, fileFilter)
+                .flatMap(rules -> reviewChunks(event, run, stats, rules.getT1(), rules.getT2(),
+                        lastReviewedSha, headSha, reviewScope));
+    }
+
+    private Mono<Void> reviewChunks(PullRequestEvent event, ReviewRun run, ReviewStatistics stats,
+                                    PromptSet prompts, FileFilter fileFilter, String lastReviewedSha,
+                                    String headSha, AtomicReference<String> reviewScope) {
+        return diffProcessorService.processDiff(diffLines(event, lastReviewedSha, headSha, reviewScope), fileFilter)
+                .takeWhile(chunk -> !run.isCancelled())
+                .filter(chunk -> !codeReviewService.shouldSkipChunk(chunk.getContent()))
+                // 파일 순위는 diff 를 읽으면서 파일별 통계로 매기고, 예산 밖으로 밀린 파일의 chunk 는 들고 있지 않는다
+                .collect(() -> reviewBudgetPlanner.open(stats.getMode(), stats), Budget::add)
+                .flatMap(budget -> {
+                    ReviewPlan plan = budget.finish();
+                    ReviewCoverage coverage = codeReviewService.coverage(event.getPullRequest().getNumber(),
+                            fileFilter, plan);
+                    return Flux.fromIterable(plan.chunks())
+                            .takeWhile(planned -> !run.isCancelled())
+                            .concatMapIterable(planned -> {
+                                String text = codeReviewService.formatChunk(planned.chunk());
+                                return CodeReviewService.promptIdsFor(stats.getMode(), planned.reviewTypes()).stream()
+                                        .map(promptId -> new ChunkTask(text, planned.chunk(), prompts.get(promptId)))
+                                        .toList();
+                            })
+                            // 동시에 llmConcurrency 개만 진행하고, 그만큼만 앞 단계에 요청한다
+                            .flatMap(task -> reviewTask(task, event, stats), llmConcurrency, 1)
+                            .flatMapIterable(results -> results)
+                            .filter(result -> !result.getIssues().isEmpty())
+                            .collectList()
+                            .flatMap(results -> finish(event, run, stats, results, coverage, reviewScope.get(), headSha));
+                });
+    }
+
+    /**
+     * synchronize 이벤트면 이전 리뷰 이후의 변경분만 받는다. 첫 줄을 받기 전에 실패하면(기준 커밋이 사라졌거나,
+     * diff 대신 로그인 화면이 왔거나, 연결이 끊긴 경우) 전체 diff 로 대체한다. 줄을 받은 뒤의 실패는 이미 내보낸
+     * chunk 를 되돌릴 수 없으므로 작업을 실패시켜 재시도한다.
+     */
+    private Flux<String> diffLines(PullRequestEvent event, String lastReviewedSha, String headSha,
+                                   AtomicReference<String> reviewScope) {
+        String repositoryFullName = event.getRepository().getFullName();
+        int prNumber = event.getPullRequest().getNumber().intValue();
+        Flux<String> fullDiff = Flux.defer(() -> {
+            reviewScope.set(null);
+            return giteaService.streamPullRequestDiffLines(repositoryFullName, prNumber);
+        });
+
+        if (!"synchronize".equals(event.getAction()) || lastReviewedSha == null || headSha == null) {
+            return fullDiff;
+        }
+
+        AtomicBoolean received = new AtomicBoolean();
+        return giteaService.streamCompareDiffLines(repositoryFullName, lastReviewedSha, headSha)
+                .doOnSubscribe(subscription -> reviewScope.set(
+                        codeReviewService.shortSha(lastReviewedSha) + ".." + codeReviewService.shortSha(headSha)))
+                .doOnNext(line -> received.set(true))
+                .onErrorResume(e -> !received.get(), e -> {
+                    log.warn("Compare diff for PR #{} failed ({}), falling back to the full diff",
+                            prNumber, e.getMessage());
+                    return fullDiff;
+                });
+    }
+
+    private Mono<List<ReviewResult>> reviewTask(ChunkTask task, PullRequestEvent event, ReviewStatistics stats) {
+        String promptVersion = task.prompt().version();
+        String preferredModel = modelRouter.preferredModel();
+
+        return blocking(() -> reviewResultCache.get(task.diffChunk(), task.promptId(), promptVersion, preferredModel)
+                        .orElse(null))
+                .doOnNext(cached -> stats.recordCacheHit())
+                .switchIfEmpty(Mono.defer(() -> callModel(task, promptVersion, event, stats)))
+                .map(answer -> codeReviewService.parseResults(task.promptId(), answer, task.diffChunk(), event))
+                .onErrorResume(e -> {
+                    log.error("Error reviewing chunk with prompt {}: {}", task.promptId(), e.getMessage());
+                    return Mono.just(List.of());
+                });
+    }
+
+    private Mono<Answer> callModel(ChunkTask task, String promptVersion, PullRequestEvent event,
+                                   ReviewStatistics stats) {
+        RenderedPrompt rendered = codeReviewService.renderPrompt(task.prompt(), task.chunk(), event, stats);
+        long started = System.nanoTime();
+
+        return modelRouter.callReactive(rendered.text())
+                .flatMap(response -> {
+                    long elapsed = System.nanoTime() - started;
+                    TokenUsage tokens = codeReviewService.tokenUsage(rendered, response);
+                    stats.recordLlmCall(tokens, elapsed);
+                    reviewMetrics.recordLlmCall(stats.getMode(), task.promptId(), response.model(), elapsed, tokens);
+
+                    return blocking(() -> {
+                        reviewResultCache.put(task.diffChunk(), task.promptId(), promptVersion,
+                                response.model(), response.content());
+                        return new Answer(response.content(), 0);
+                    });
+                });
+    }
+
+    private Mono<Void> finish(PullRequestEvent event, ReviewRun run, ReviewStatistics stats,
+                              List<ReviewResult> results, ReviewCoverage coverage, String reviewScope,
+                              String headSha) {
+        String repositoryFullName = event.getRepository().getFullName();
+        Long prNumber = event.getPullRequest().getNumber();
+        reviewMetrics.recordReview(repositoryFullName, prNumber, stats);
+
+        if (run.isCancelled()) {
+            log.info("Discarding results of superseded review for PR #{} at {}", prNumber, run.getHeadSha());
+            return Mono.empty();
+        }
+
+        List<ReviewPage> pages = reviewCommentPlanner.plan(findingsAggregator.aggregate(results),
+                codeReviewService.overallGrade(results), reviewScope, coverage);
+        Mono<Void> post = pages.isEmpty()
+                ? Mono.fromRunnable(() -> log.info("No issues found in PR #{}", prNumber))
+                : Flux.fromIterable(pages)
+                        .concatMap(page -> giteaService.createReviewReactive(repositoryFullName, prNumber, headSha, page))
+                        .then()
+                        .doOnError(e -> log.error("Error posting review comments for PR #{}", prNumber, e));
+
+        // 게시가 모두 성공한 뒤에만 리뷰한 SHA 로 기록한다. 실패하면 오류가 작업까지 전파되어 재시도된다
+        return post.then(blocking(() -> {
+            reviewStateService.markReviewed(repositoryFullName, prNumber, headSha);
+            return Boolean.TRUE;
+        })).then();
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> callable) {
+        return Mono.fromCallable(callable).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private record ChunkTask(String chunk, DiffChunk diffChunk, ResolvedPrompt prompt) {
+
+        String promptId() {
+            return prompt.id();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewMode;
+import com.gitea.prbot.model.ReviewStatistics;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * PR 의 파일을 위험도 순으로 세우고, 파일 수/파일당 변경 줄 수/LLM 호출 수 한도 안에서 리뷰할 chunk 를 고른다.
+ * <ul>
+ *     <li>위험도: 민감한 경로, 보안/성능/스타일 키워드가 나온 chunk, 코드 파일 여부, 변경 규모(로그 스케일).</li>
+ *     <li>호출 예산은 위험도가 높은 파일부터 쓰고, 다 쓰면 나머지 파일은 리뷰하지 않는다.</li>
+ *     <li>한도가 0 이하이면 그 한도는 적용하지 않는다.</li>
+ * </ul>
+ * diff 를 스트리밍하면서 {@link Budget} 에 chunk 를 넣으면 파일마다 가벼운 통계(경로, 언어, 변경 줄 수, 키워드)만
+ * 남기고, chunk 본문은 아직 예산 안에 들 수 있는 파일(위험도 상위 max-files-per-review 개, 파일당
+ * max-lines-per-file 줄까지)의 것만 들고 있는다. 고른 chunk 는 위험도 순으로 돌려주므로 중요한 파일이 먼저 리뷰된다.
+ */
+@Service
+public class ReviewBudgetPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewBudgetPlanner.class);
+
+    private static final double SECURITY_PATH_WEIGHT = 8;
+    private static final double SECURITY_HIT_WEIGHT = 6;
+    private static final double PERFORMANCE_HIT_WEIGHT = 3;
+    private static final double STYLE_HIT_WEIGHT = 1;
+    private static final double CODE_WEIGHT = 3;
+
+    public record PlannedChunk(DiffChunk chunk, Set<ReviewType> reviewTypes) {
+    }
+
+    /**
+     * @param chunks     리뷰할 chunk, 위험도가 높은 파일부터
+     * @param overBudget 한도 때문에 빼거나 일부만 리뷰한 파일과 이유
+     * @param llmCalls   예상 LLM 호출 수
+     */
+    public record ReviewPlan(List<PlannedChunk> chunks, Map<String, String> overBudget, int llmCalls) {
+    }
+
+    // 위험도가 높은 파일이 앞, 같으면 diff 에서 먼저 나온 파일이 앞
+    private static final Comparator<FilePlan> RANK = Comparator.comparingDouble((FilePlan file) -> -file.score)
+            .thenComparingInt(file -> file.order);
+
+    private static final class FilePlan {
+        final String path;
+        final int order;
+        // 예산 안에 들 수 있는 동안만 채운다. 밀려나면 비운다
+        final List<PlannedChunk> chunks = new ArrayList<>();
+        boolean code;
+        boolean security;
+        boolean performance;
+        boolean style;
+        int changedLines;
+        int retainedLines;
+        int cost;
+        boolean trimmed;
+        double score;
+        String evicted;
+
+        FilePlan(String path, int order) {
+            this.path = path;
+            this.order = order;
+        }
+    }
+
+    private final ReviewRouter reviewRouter;
+    private final int maxFiles;
+    private final int maxLinesPerFile;
+    private final int maxLlmCalls;
+    private final Counter overBudgetCounter;
+
+    public ReviewBudgetPlanner(ReviewRouter reviewRouter, MeterRegistry meterRegistry,
+                               @Value("${bot.review.max-files-per-review:10}") int maxFiles,
+                               @Value("${bot.review.max-lines-per-file:500}") int maxLinesPerFile,
+                               @Value("${bot.review.max-llm-calls-per-review:100}") int maxLlmCalls) {
+        this.reviewRouter = reviewRouter;
+        this.maxFiles = maxFiles;
+        this.maxLinesPerFile = maxLinesPerFile;
+        this.maxLlmCalls = maxLlmCalls;
+        this.overBudgetCounter = Counter.builder("prbot.review.files.over-budget")
+                .description("Files left out of review or reviewed partially because of the review budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * PR 한 건의 예산. diff 를 읽는 동안 chunk 를 넣고, 다 읽은 뒤 finish 로 계획을 받는다.
+     */
+    public Budget open(ReviewMode mode, ReviewStatistics stats) {
+        return new Budget(mode, stats);
+    }
+
+    /**
+     * 이미 모아 둔 chunk 로 계획을 세운다.
+     */
+    public ReviewPlan plan(List<DiffChunk> chunks, ReviewMode mode, ReviewStatistics stats) {
+        Budget budget = open(mode, stats);
+        chunks.forEach(budget::add);
+        return budget.finish();
+    }
+
+    /**
+     * 한 PR 의 chunk 를 받아 파일별 통계를 쌓는다. 한 스레드(또는 순서가 보장된 스트림)에서만 쓴다.
+     * chunker 는 한 파일의 chunk 를 이어서 내보내므로 다른 파일의 chunk 가 오면 앞 파일의 순위를 정한다.
+     */
+    public final class Budget {
+        private final ReviewMode mode;
+        private final ReviewStatistics stats;
+        private final Map<String, FilePlan> files = new LinkedHashMap<>();
+        // 본문을 들고 있는 파일 중 가장 순위가 낮은 파일이 head
+        private final PriorityQueue<FilePlan> retained = new PriorityQueue<>(RANK.reversed());
+        private FilePlan current;
+        private int retainedCost;
+        private int unrouted;
+
+        private Budget(ReviewMode mode, ReviewStatistics stats) {
+            this.mode = mode;
+            this.stats = stats;
+        }
+
+        public void add(DiffChunk chunk) {
+            Set<ReviewType> types = reviewRouter.route(chunk);
+            if (types.isEmpty()) {
+                unrouted++;
+                return;
+            }
+            FilePlan file = files.get(chunk.getFileName());
+            if (file == null) {
+                file = new FilePlan(chunk.getFileName(), files.size());
+                file.code = reviewRouter.isCode(chunk);
+                files.put(file.path, file);
+            }
+            if (file != current) {
+                closeCurrent();
+                if (retained.remove(file)) {
+                    retainedCost -= file.cost;
+                }
+                current = file;
+            }
+
+            Set<ReviewType> triggered = chunk.getTriggeredReviewTypes();
+            file.security |= triggered.contains(ReviewType.SECURITY);
+            file.performance |= triggered.contains(ReviewType.PERFORMANCE);
+            file.style |= triggered.contains(ReviewType.STYLE);
+            int lines = changedLines(chunk.getContent());
+            file.changedLines += lines;
+
+            if (file.evicted != null || file.trimmed) {
+                return;
+            }
+            if (maxLinesPerFile > 0 && !file.chunks.isEmpty() && file.retainedLines + lines > maxLinesPerFile) {
+                file.trimmed = true;
+                return;
+            }
+            file.chunks.add(new PlannedChunk(chunk, types));
+            file.retainedLines += lines;
+            file.cost += mode == ReviewMode.COMBINED ? 1 : types.size();
+        }
+
+        /**
+         * fallback 으로 diff 를 처음부터 다시 읽기 전에 쌓은 것을 버린다.
+         */
+        public void reset() {
+            files.clear();
+            retained.clear();
+            current = null;
+            retainedCost = 0;
+            unrouted = 0;
+        }
+
+        public ReviewPlan finish() {
+            closeCurrent();
+            for (int i = 0; i < unrouted; i++) {
+                stats.recordRouting(Set.of());
+            }
+
+            List<FilePlan> ranked = new ArrayList<>(files.values());
+            ranked.sort(RANK);
+
+            List<PlannedChunk> selected = new ArrayList<>();
+            Map<String, String> overBudget = new LinkedHashMap<>();
+            int reviewedFiles = 0;
+            int calls = 0;
+            boolean callsExhausted = false;
+
+            for (FilePlan file : ranked) {
+                if (file.evicted != null) {
+                    overBudget.put(file.path, file.evicted);
+                    continue;
+                }
+                if (callsExhausted) {
+                    overBudget.put(file.path, callsReason());
+                    continue;
+                }
+                if (maxFiles > 0 && reviewedFiles >= maxFiles) {
+                    overBudget.put(file.path, filesReason());
+                    continue;
+                }
+
+                int reviewedLines = 0;
+                int admitted = 0;
+                String reason = null;
+                for (PlannedChunk planned : file.chunks) {
+                    int cost = mode == ReviewMode.COMBINED ? 1 : planned.reviewTypes().size();
+                    if (maxLlmCalls > 0 && calls + cost > maxLlmCalls) {
+                        callsExhausted = true;
+                        reason = admitted == 0
+                                ? callsReason()
+                                : "변경 " + file.changedLines + "줄 중 " + reviewedLines + "줄만 리뷰 (LLM 호출 예산 소진)";
+                        break;
+                    }
+                    selected.add(planned);
+                    stats.recordRouting(planned.reviewTypes());
+                    calls += cost;
+                    reviewedLines += changedLines(planned.chunk().getContent());
+                    admitted++;
+                }
+                if (reason == null && file.trimmed) {
+                    reason = "변경 " + file.changedLines + "줄 중 " + reviewedLines + "줄만 리뷰 (파일당 "
+                            + maxLinesPerFile + "줄 한도)";
+                }
+                if (admitted > 0) {
+                    reviewedFiles++;
+                }
+                if (reason != null) {
+                    overBudget.put(file.path, reason);
+                }
+            }
+
+            if (!overBudget.isEmpty()) {
+                overBudgetCounter.increment(overBudget.size());
+                log.info("Review budget: {} of {} files, {} LLM calls planned, {} files left out or trimmed",
+                        reviewedFiles, ranked.size(), calls, overBudget.size());
+            }
+            return new ReviewPlan(selected, overBudget, calls);
+        }
+
+        /**
+         * 다 읽은 파일의 순위를 정하고, 상위 파일만으로 한도가 차면 가장 낮은 파일의 본문을 버린다.
+         */
+        private void closeCurrent() {
+            FilePlan file = current;
+            current = null;
+            if (file == null || file.evicted != null) {
+                return;
+            }
+            file.score = score(file);
+            retained.add(file);
+            retainedCost += file.cost;
+
+            while (maxFiles > 0 && retained.size() > maxFiles) {
+                evict(filesReason());
+            }
+            // 나머지 파일만으로 호출 예산을 다 쓰면 가장 낮은 파일은 한 번도 호출되지 않는다
+            while (maxLlmCalls > 0 && retained.size() > 1 && retainedCost - retained.peek().cost >= maxLlmCalls) {
+                evict(callsReason());
+            }
+        }
+
+        /** 지금 본문을 들고 있는 chunk 수 */
+        int retainedChunks() {
+            int count = current != null && current.evicted == null ? current.chunks.size() : 0;
+            for (FilePlan file : retained) {
+                count += file.chunks.size();
+            }
+            return count;
+        }
+
+        private void evict(String reason) {
+            FilePlan lowest = retained.poll();
+            retainedCost -= lowest.cost;
+            lowest.evicted = reason;
+            lowest.chunks.clear();
+        }
+    }
+
+    private String filesReason() {
+        return "파일 수 한도(" + maxFiles + "개) 초과";
+    }
+
+    private String callsReason() {
+        return "LLM 호출 예산(" + maxLlmCalls + "회) 소진";
+    }
+
+    private double score(FilePlan file) {
+        double score = 0;
+        if (reviewRouter.isSecurityPath(file.path)) {
+            score += SECURITY_PATH_WEIGHT;
+        }
+        if (file.code) {
+            score += CODE_WEIGHT;
+        }
+        if (file.security) {
+            score += SECURITY_HIT_WEIGHT;
+        }
+        if (file.performance) {
+            score += PERFORMANCE_HIT_WEIGHT;
+        }
+        if (file.style) {
+            score += STYLE_HIT_WEIGHT;
+        }
+
+        // 변경 규모는 로그 스케일로만 더해 큰 파일 하나가 순위를 독차지하지 않도록 한다
+        return score + Math.log1p(file.changedLines) / Math.log(2);
+    }
+
+    /**
+     * chunk 안의 추가/삭제 줄 수 ("@@" 헤더와 문맥 줄 제외).
+     */
+    private static int changedLines(String content) {
+        int count = 0;
+        int length = content.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            char marker = content.charAt(lineStart);
+            if (marker == '+' || marker == '-') {
+                count++;
+            }
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return count;
+    }
+}
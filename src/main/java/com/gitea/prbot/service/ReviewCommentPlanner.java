@@ -0,0 +1,287 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.FileKind;
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.InlineComment;
+import com.gitea.prbot.model.ReviewCoverage;
+import com.gitea.prbot.model.ReviewPage;
+import com.gitea.prbot.model.ReviewType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 합쳐진 지적 사항(Finding)을 Gitea 리뷰 요청으로 바꾼다.
+ * 위치가 리뷰한 diff 안에 있으면 라인 코멘트로, 아니면 요약 본문으로 보낸다.
+ * 라인 코멘트는 한 리뷰의 comments[] 에 모으고, 개수나 요청 크기 제한을 넘으면 여러 리뷰로 나눈다.
+ * 요약 본문도 요청 크기 제한을 넘으면 줄 단위로 나눠 앞쪽 리뷰들에 싣는다.
+ */
+@Service
+public class ReviewCommentPlanner {
+
+    // JSON 필드 이름, 따옴표 등 코멘트 하나당 고정 오버헤드 어림값
+    private static final int COMMENT_OVERHEAD_BYTES = 64;
+
+    // 이어지는 리뷰의 "(계속 i/n)" 제목 몫
+    private static final int CONTINUATION_HEADER_BYTES = 96;
+
+    private static final String CONTINUATION_HEADER = "## 🤖 자동 코드 리뷰 결과 (계속 ";
+
+    // 요약에 나열할 리뷰하지 않은 파일 수
+    private static final int MAX_LISTED_SKIPPED_FILES = 30;
+
+    private final int maxCommentsPerReview;
+    private final int maxPayloadBytes;
+
+    public ReviewCommentPlanner(@Value("${gitea.review.max-comments-per-review:50}") int maxCommentsPerReview,
+                                @Value("${gitea.review.max-payload-bytes:900000}") int maxPayloadBytes) {
+        this.maxCommentsPerReview = Math.max(1, maxCommentsPerReview);
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    /**
+     * @param coverage 리뷰하지 않은 파일. 예산 때문에 빠진 파일이 있으면 지적 사항이 없어도 요약을 보낸다.
+     * @return 보낼 리뷰 목록, 지적 사항도 예산 때문에 빠진 파일도 없으면 빈 목록
+     */
+    public List<ReviewPage> plan(List<Finding> findings, String overallGrade, String reviewScope,
+                                 ReviewCoverage coverage) {
+        if (findings.isEmpty() && !coverage.isPartial()) {
+            return List.of();
+        }
+
+        List<InlineComment> inline = new ArrayList<>();
+        Map<ReviewType, List<String>> summary = new EnumMap<>(ReviewType.class);
+
+        for (Finding finding : findings) {
+            if (finding.commentable()) {
+                inline.add(new InlineComment(finding.path(), finding.line(),
+                        getReviewTypeEmoji(finding.category()) + " " + format(finding, false)));
+            } else {
+                summary.computeIfAbsent(finding.category(), type -> new ArrayList<>()).add(format(finding, true));
+            }
+        }
+
+        String summaryBody = buildSummary(summary, inline.size(), overallGrade, reviewScope, coverage);
+        return paginate(summaryBody, inline);
+    }
+
+    /**
+     * "[HIGH] [SECURITY, PERFORMANCE] UserDao.java:42-44 - 인젝션: 설명" 형태로 되돌린다.
+     * 라인 코멘트는 위치가 드러나므로 위치를 뺀다.
+     */
+    private String format(Finding finding, boolean withLocation) {
+        StringBuilder text = new StringBuilder();
+        text.append('[').append(finding.severity().name()).append("] ");
+        if (finding.categories().size() > 1) {
+            text.append(finding.categories()).append(' ');
+        }
+        if (withLocation && finding.path() != null) {
+            text.append(finding.path());
+            if (finding.startLine() > 0) {
+                text.append(':').append(finding.startLine());
+                if (finding.endLine() > finding.startLine()) {
+                    text.append('-').append(finding.endLine());
+                }
+            }
+            text.append(" - ");
+        }
+        if (finding.rule() != null) {
+            text.append(finding.rule()).append(": ");
+        }
+        text.append(finding.message());
+        if (finding.occurrences() > 1) {
+            text.append(" (").append(finding.occurrences()).append("건 중복 보고)");
+        }
+        return text.toString();
+    }
+
+    private String buildSummary(Map<ReviewType, List<String>> summary, int inlineCount, String overallGrade,
+                                String reviewScope, ReviewCoverage coverage) {
+        StringBuilder comment = new StringBuilder();
+        comment.append("## 🤖 자동 코드 리뷰 결과\n\n");
+        if (reviewScope != null) {
+            comment.append("> 이전 리뷰 이후 추가된 변경분(").append(reviewScope).append(")만 검토했습니다.\n\n");
+        }
+        if (overallGrade != null) {
+            comment.append("**전반적 품질: ").append(overallGrade).append("**\n\n");
+        }
+        if (inlineCount > 0) {
+            comment.append("> ").append(inlineCount).append("건은 해당 라인에 코멘트로 남겼습니다.\n\n");
+        }
+
+        for (ReviewType type : ReviewType.values()) {
+            List<String> issues = summary.get(type);
+            if (issues == null) {
+                continue;
+            }
+            comment.append("### ").append(getReviewTypeEmoji(type)).append(" ")
+                    .append(type.name()).append(" 리뷰\n\n");
+            for (String issue : issues) {
+                comment.append("- ").append(issue).append("\n");
+            }
+            comment.append("\n");
+        }
+
+        appendSkippedFiles(comment, coverage);
+        return comment.toString();
+    }
+
+    /**
+     * 예산 때문에 빠진 파일을 먼저, 그다음 생성 코드 등으로 버린 파일을 나열한다.
+     */
+    private void appendSkippedFiles(StringBuilder comment, ReviewCoverage coverage) {
+        int total = coverage.skippedFiles();
+        if (total == 0) {
+            return;
+        }
+        comment.append("### ⏭️ 리뷰하지 않은 파일 (").append(total).append("개)\n\n");
+        if (coverage.isPartial()) {
+            comment.append("> 리뷰 예산 한도로 위험도가 높은 파일부터 검토했습니다.\n\n");
+        }
+
+        int listed = 0;
+        for (Map.Entry<String, String> entry : coverage.overBudget().entrySet()) {
+            if (listed == MAX_LISTED_SKIPPED_FILES) {
+                break;
+            }
+            comment.append("- `").append(entry.getKey()).append("` - ").append(entry.getValue()).append("\n");
+            listed++;
+        }
+        for (Map.Entry<String, FileKind> entry : coverage.filtered().entrySet()) {
+            if (listed == MAX_LISTED_SKIPPED_FILES) {
+                break;
+            }
+            comment.append("- `").append(entry.getKey()).append("` - ").append(describe(entry.getValue())).append("\n");
+            listed++;
+        }
+        if (total > MAX_LISTED_SKIPPED_FILES) {
+            comment.append("- 외 ").append(total - MAX_LISTED_SKIPPED_FILES).append("개\n");
+        }
+        comment.append("\n");
+    }
+
+    private String describe(FileKind kind) {
+        return switch (kind) {
+            case GENERATED -> "생성된 코드";
+            case VENDORED -> "외부 코드(vendor)";
+            case BINARY -> "바이너리";
+            case MINIFIED -> "축약 파일";
+            case LOCKFILE -> "lockfile";
+            case IGNORED -> "저장소 ignore 설정";
+            case SOURCE -> "소스";
+        };
+    }
+
+    /**
+     * 요약을 먼저 싣고, 라인 코멘트는 요약의 마지막 페이지부터 채운다. 코멘트 하나가 한도보다 크지 않으면
+     * 어느 페이지도 maxPayloadBytes 를 넘지 않는다.
+     */
+    List<ReviewPage> paginate(String summaryBody, List<InlineComment> inline) {
+        List<String> summaryParts = splitSummary(summaryBody, Math.max(1, maxPayloadBytes - CONTINUATION_HEADER_BYTES));
+
+        List<List<InlineComment>> pages = new ArrayList<>();
+        for (int i = 0; i < summaryParts.size(); i++) {
+            pages.add(new ArrayList<>());
+        }
+        List<InlineComment> current = pages.get(pages.size() - 1);
+        int currentBytes = utf8Length(summaryParts.get(summaryParts.size() - 1))
+                + (summaryParts.size() > 1 ? CONTINUATION_HEADER_BYTES : 0);
+
+        // 새 페이지에는 바로 코멘트를 하나 싣는다. 그래서 한도보다 큰 코멘트도 페이지를 비워 두지 않는다
+        for (InlineComment comment : inline) {
+            int bytes = utf8Length(comment.path()) + utf8Length(comment.body()) + COMMENT_OVERHEAD_BYTES;
+            if (current.size() >= maxCommentsPerReview || currentBytes + bytes > maxPayloadBytes) {
+                current = new ArrayList<>();
+                pages.add(current);
+                currentBytes = CONTINUATION_HEADER_BYTES;
+            }
+            current.add(comment);
+            currentBytes += bytes;
+        }
+
+        List<ReviewPage> reviews = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            String part = i < summaryParts.size() ? summaryParts.get(i) : "";
+            String body = i == 0
+                    ? part
+                    : CONTINUATION_HEADER + (i + 1) + "/" + pages.size() + ")" + (part.isEmpty() ? "" : "\n\n" + part);
+            reviews.add(new ReviewPage(body, pages.get(i)));
+        }
+        return reviews;
+    }
+
+    /**
+     * 요약을 budget 바이트 이하 조각으로 줄 단위로 나눈다. 한 줄이 budget 보다 길면 잘라 낸다.
+     */
+    private static List<String> splitSummary(String summary, int budget) {
+        if (utf8Length(summary) <= budget) {
+            return List.of(summary);
+        }
+
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        int partBytes = 0;
+        int start = 0;
+        while (start < summary.length()) {
+            int end = summary.indexOf('\n', start);
+            end = end < 0 ? summary.length() : end + 1;
+            String line = summary.substring(start, end);
+            start = end;
+
+            int lineBytes = utf8Length(line);
+            if (lineBytes > budget) {
+                line = truncate(line, budget);
+                lineBytes = utf8Length(line);
+            }
+            if (partBytes + lineBytes > budget) {
+                parts.add(part.toString());
+                part.setLength(0);
+                partBytes = 0;
+            }
+            part.append(line);
+            partBytes += lineBytes;
+        }
+        if (partBytes > 0) {
+            parts.add(part.toString());
+        }
+        return parts;
+    }
+
+    /**
+     * UTF-8 로 maxBytes 바이트 이하가 되도록 글자 단위로 자르고 "…\n" 을 붙인다.
+     */
+    private static String truncate(String line, int maxBytes) {
+        String suffix = "…\n";
+        int budget = maxBytes - utf8Length(suffix);
+        int bytes = 0;
+        int end = 0;
+        while (end < line.length()) {
+            int codePoint = line.codePointAt(end);
+            int size = utf8Length(new String(Character.toChars(codePoint)));
+            if (bytes + size > budget) {
+                break;
+            }
+            bytes += size;
+            end += Character.charCount(codePoint);
+        }
+        return line.substring(0, end) + suffix;
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private String getReviewTypeEmoji(ReviewType type) {
+        return switch (type) {
+            case SECURITY -> "🔒";
+            case PERFORMANCE -> "⚡";
+            case STYLE -> "🎨";
+            case GENERAL -> "📋";
+        };
+    }
+}
@@ -0,0 +1,206 @@
+package com.gitea.prbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitea.prbot.dto.PullRequestEvent;
+import com.gitea.prbot.entity.ReviewJob;
+import com.gitea.prbot.entity.ReviewJobStatus;
+import com.gitea.prbot.repository.ReviewJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+public class ReviewJobQueueService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewJobQueueService.class);
+
+    private final ReviewJobRepository reviewJobRepository;
+    private final InFlightReviewRegistry inFlightReviewRegistry;
+    private final ObjectMapper objectMapper;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final String workerId;
+    private final Duration lease;
+
+    public ReviewJobQueueService(ReviewJobRepository reviewJobRepository,
+                                 InFlightReviewRegistry inFlightReviewRegistry,
+                                 ObjectMapper objectMapper,
+                                 @Value("${bot.queue.max-attempts:3}") int maxAttempts,
+                                 @Value("${bot.queue.retry-backoff:30s}") Duration retryBackoff,
+                                 @Value("${bot.queue.worker-id:}") String workerId,
+                                 @Value("${bot.queue.lease:2m}") Duration lease) {
+        this.reviewJobRepository = reviewJobRepository;
+        this.inFlightReviewRegistry = inFlightReviewRegistry;
+        this.objectMapper = objectMapper;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        // 지정하지 않으면 "pid@호스트명"
+        this.workerId = workerId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : workerId;
+        this.lease = lease;
+        log.info("Review job worker id {}, lease {}", this.workerId, lease);
+    }
+
+    @Transactional
+    public ReviewJob enqueue(PullRequestEvent event) {
+        String repositoryFullName = event.getRepository().getFullName();
+        Long prNumber = event.getPullRequest().getNumber();
+        String headSha = event.getPullRequest().getHead() != null
+                ? event.getPullRequest().getHead().getSha()
+                : null;
+
+        ReviewJob job = reviewJobRepository.save(
+                new ReviewJob(repositoryFullName, prNumber, headSha, event.getAction(), serialize(event)));
+
+        int superseded = reviewJobRepository.supersedePending(repositoryFullName, prNumber, job.getId(),
+                ReviewJobStatus.PENDING, ReviewJobStatus.SUPERSEDED, Instant.now());
+        if (superseded > 0) {
+            log.info("Superseded {} pending review jobs for PR {}/#{}", superseded, repositoryFullName, prNumber);
+        }
+        // 이미 실행 중인 이전 커밋의 리뷰도 새 작업이 집히기 전에 멈춰 모델 시간을 아낀다
+        inFlightReviewRegistry.supersede(repositoryFullName, prNumber, headSha);
+
+        log.info("Enqueued review job #{} for PR {}/#{} ({})", job.getId(), repositoryFullName, prNumber, headSha);
+        return job;
+    }
+
+    /**
+     * 처리 가능한 PENDING 작업을 최대 limit 개까지 RUNNING 으로 선점하고 이 워커 이름으로 임대한다.
+     */
+    @Transactional
+    public List<ReviewJob> claim(int limit) {
+        Instant now = Instant.now();
+        Instant leaseExpiresAt = now.plus(lease);
+        List<ReviewJob> candidates = reviewJobRepository
+                .findByStatusAndAvailableAtLessThanEqualOrderByCreatedAtAsc(
+                        ReviewJobStatus.PENDING, now, PageRequest.of(0, limit));
+
+        List<ReviewJob> claimed = new ArrayList<>();
+        for (ReviewJob job : candidates) {
+            if (reviewJobRepository.claim(job.getId(), workerId, leaseExpiresAt,
+                    ReviewJobStatus.PENDING, ReviewJobStatus.RUNNING, now) == 1) {
+                job.setStatus(ReviewJobStatus.RUNNING);
+                job.setWorkerId(workerId);
+                job.setLeaseExpiresAt(leaseExpiresAt);
+                claimed.add(job);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 실행 중인 작업의 임대를 연장한다. 연장된 작업 수가 적으면 임대가 이미 끝나 다른 워커가 가져간 작업이 있다.
+     */
+    @Transactional
+    public int renewLeases(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        return reviewJobRepository.renewLeases(jobIds, workerId, now.plus(lease), ReviewJobStatus.RUNNING, now);
+    }
+
+    @Transactional
+    public void markCompleted(Long jobId) {
+        reviewJobRepository.findById(jobId).filter(this::ownedLease).ifPresent(job -> {
+            job.setStatus(ReviewJobStatus.COMPLETED);
+            releaseLease(job);
+            job.setUpdatedAt(Instant.now());
+        });
+    }
+
+    @Transactional
+    public void markFailed(Long jobId, Exception error) {
+        reviewJobRepository.findById(jobId).filter(this::ownedLease).ifPresent(job -> {
+            Instant now = Instant.now();
+            releaseLease(job);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(truncate(error.getMessage()));
+            job.setUpdatedAt(now);
+
+            if (reviewJobRepository.existsByRepositoryFullNameAndPullRequestNumberAndIdGreaterThan(
+                    job.getRepositoryFullName(), job.getPullRequestNumber(), job.getId())) {
+                job.setStatus(ReviewJobStatus.SUPERSEDED);
+                log.info("Review job #{} failed but a newer job exists for the PR, not retrying", jobId);
+            } else if (job.getAttempts() < maxAttempts) {
+                job.setStatus(ReviewJobStatus.PENDING);
+                job.setAvailableAt(now.plus(retryBackoff.multipliedBy(job.getAttempts())));
+                log.warn("Review job #{} failed (attempt {}/{}), will retry", jobId, job.getAttempts(), maxAttempts);
+            } else {
+                job.setStatus(ReviewJobStatus.FAILED);
+                log.error("Review job #{} failed permanently after {} attempts", jobId, job.getAttempts());
+            }
+        });
+    }
+
+    /**
+     * 시작할 때 같은 worker-id 로 처리 중이던 작업과 임대가 끝난 작업을 다시 대기열로 돌려놓는다.
+     * 다른 인스턴스가 실행 중인 작업은 건드리지 않는다.
+     */
+    @Transactional
+    public int requeueInterrupted() {
+        Instant now = Instant.now();
+        return reviewJobRepository.requeueWorker(workerId, ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING, now)
+                + reviewJobRepository.requeueExpired(ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING, now);
+    }
+
+    /**
+     * 하트비트가 끊긴 워커(다른 인스턴스 포함)의 작업을 다시 대기열로 돌려놓는다.
+     */
+    @Transactional
+    public int requeueExpired() {
+        return reviewJobRepository.requeueExpired(ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING, Instant.now());
+    }
+
+    // 임대가 끝나 다른 워커가 다시 가져간 작업의 결과는 기록하지 않는다
+    private boolean ownedLease(ReviewJob job) {
+        if (job.getStatus() == ReviewJobStatus.RUNNING && workerId.equals(job.getWorkerId())) {
+            return true;
+        }
+        log.warn("Review job #{} is no longer leased by {} (status {}, worker {}), ignoring its result",
+                job.getId(), workerId, job.getStatus(), job.getWorkerId());
+        return false;
+    }
+
+    private static void releaseLease(ReviewJob job) {
+        job.setWorkerId(null);
+        job.setLeaseExpiresAt(null);
+    }
+
+    public long countPending() {
+        return reviewJobRepository.countByStatus(ReviewJobStatus.PENDING);
+    }
+
+    public PullRequestEvent readEvent(ReviewJob job) {
+        try {
+            return objectMapper.readValue(job.getPayload(), PullRequestEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to read payload of review job #" + job.getId(), e);
+        }
+    }
+
+    private String serialize(PullRequestEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize pull request event", e);
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 2000 ? message.substring(0, 2000) : message;
+    }
+}
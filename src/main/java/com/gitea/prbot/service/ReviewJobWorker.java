@@ -0,0 +1,171 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.dto.PullRequestEvent;
+import com.gitea.prbot.entity.ReviewJob;
+import com.gitea.prbot.model.ReviewPipeline;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 영속 대기열에서 리뷰 작업을 꺼내 가상 스레드에서 실행한다. 동시에 실행되는 작업은 최대 bot.queue.workers 개다.
+ * 실행 중인 작업의 임대는 하트비트로 연장하고, 임대가 끝난 작업(죽은 인스턴스의 작업)은 다시 대기열로 돌린다.
+ */
+@Service
+public class ReviewJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewJobWorker.class);
+
+    private final ReviewJobQueueService queueService;
+    private final CodeReviewService codeReviewService;
+    private final ReactiveReviewPipeline reactiveReviewPipeline;
+    private final ReviewPipeline pipeline;
+    private final int workerCount;
+    private final ExecutorService workers;
+    private final Set<Long> activeJobs = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean ready = false;
+
+    public ReviewJobWorker(ReviewJobQueueService queueService,
+                           CodeReviewService codeReviewService,
+                           ReactiveReviewPipeline reactiveReviewPipeline,
+                           @Value("${bot.review.pipeline:BLOCKING}") ReviewPipeline pipeline,
+                           @Value("${bot.queue.workers:2}") int workerCount) {
+        this.queueService = queueService;
+        this.codeReviewService = codeReviewService;
+        this.reactiveReviewPipeline = reactiveReviewPipeline;
+        this.pipeline = pipeline;
+        this.workerCount = workerCount;
+
+        // 동시에 처리하는 작업 수는 poll() 에서 workerCount 로 제한하므로 스레드는 작업마다 가상 스레드를 쓴다
+        this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("review-worker-", 1).factory());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        int requeued = queueService.requeueInterrupted();
+        if (requeued > 0) {
+            log.info("Requeued {} review jobs interrupted by the previous shutdown or left by a dead worker", requeued);
+        }
+        ready = true;
+    }
+
+    @Scheduled(fixedDelayString = "${bot.queue.poll-interval:1000}")
+    public void poll() {
+        if (!ready) {
+            return;
+        }
+
+        int free = workerCount - activeJobs.size();
+        if (free <= 0) {
+            return;
+        }
+
+        List<ReviewJob> jobs = queueService.claim(free);
+        for (ReviewJob job : jobs) {
+            activeJobs.add(job.getId());
+            workers.execute(() -> process(job));
+        }
+    }
+
+    /**
+     * 실행 중인 작업의 임대를 연장하고, 임대가 끝난 작업을 다시 대기열로 돌린다.
+     * 주기는 bot.queue.lease 보다 충분히 짧아야 한다.
+     */
+    @Scheduled(fixedDelayString = "${bot.queue.heartbeat-interval:30000}")
+    public void heartbeat() {
+        if (!ready) {
+            return;
+        }
+
+        Set<Long> running = Set.copyOf(activeJobs);
+        int renewed = queueService.renewLeases(running);
+        if (renewed < running.size()) {
+            // 방금 끝났거나, 하트비트가 늦어 다른 워커가 가져갔다. 가져간 작업의 결과는 markCompleted/markFailed 에서 버린다
+            log.debug("Renewed {} of {} review job leases", renewed, running.size());
+        }
+
+        int requeued = queueService.requeueExpired();
+        if (requeued > 0) {
+            log.warn("Requeued {} review jobs whose lease expired", requeued);
+        }
+    }
+
+    private void process(ReviewJob job) {
+        if (pipeline == ReviewPipeline.REACTIVE) {
+            processReactive(job);
+            return;
+        }
+
+        try {
+            log.info("Processing review job #{} for PR {}/#{}",
+                    job.getId(), job.getRepositoryFullName(), job.getPullRequestNumber());
+
+            PullRequestEvent event = queueService.readEvent(job);
+            codeReviewService.reviewPullRequest(event);
+            queueService.markCompleted(job.getId());
+
+        } catch (Exception e) {
+            log.error("Review job #{} failed", job.getId(), e);
+            queueService.markFailed(job.getId(), e);
+        } finally {
+            activeJobs.remove(job.getId());
+        }
+    }
+
+    /**
+     * 리액티브 파이프라인은 구독만 하고 바로 돌아온다. 작업 상태 갱신(JPA)은 boundedElastic 에서 한다.
+     */
+    private void processReactive(ReviewJob job) {
+        PullRequestEvent event;
+        try {
+            event = queueService.readEvent(job);
+        } catch (Exception e) {
+            log.error("Review job #{} failed", job.getId(), e);
+            queueService.markFailed(job.getId(), e);
+            activeJobs.remove(job.getId());
+            return;
+        }
+
+        log.info("Processing review job #{} for PR {}/#{} (reactive)",
+                job.getId(), job.getRepositoryFullName(), job.getPullRequestNumber());
+
+        reactiveReviewPipeline.review(event)
+                .publishOn(Schedulers.boundedElastic())
+                .doOnSuccess(ignored -> queueService.markCompleted(job.getId()))
+                .doOnError(e -> {
+                    log.error("Review job #{} failed", job.getId(), e);
+                    queueService.markFailed(job.getId(), e instanceof Exception exception
+                            ? exception
+                            : new RuntimeException(e));
+                })
+                .doFinally(signal -> activeJobs.remove(job.getId()))
+                .subscribe(ignored -> { }, e -> { });
+    }
+
+    public int getActiveJobs() {
+        return activeJobs.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ready = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
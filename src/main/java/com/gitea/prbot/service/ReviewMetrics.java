@@ -0,0 +1,131 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewMode;
+import com.gitea.prbot.model.ReviewStatistics;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리뷰/LLM 호출 지표를 actuator(metrics, prometheus) 로 내보낸다.
+ * mode 태그로 FAN_OUT 과 COMBINED 의 토큰 사용량과 소요 시간을 비교할 수 있다.
+ * 토큰 수는 Ollama 가 보고한 값이 있으면 그 값을 쓰고, prbot.llm.tokens.ratio 로 어림값이 얼마나 맞는지 본다.
+ */
+@Service
+public class ReviewMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public ReviewMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordLlmCall(ReviewMode mode, String promptId, String model, long durationNanos, TokenUsage tokens) {
+        Timer.builder("prbot.llm.call")
+                .description("LLM call latency per chunk")
+                .tag("mode", mode.name())
+                .tag("prompt", promptId)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        DistributionSummary.builder("prbot.llm.prompt.tokens")
+                .tag("mode", mode.name())
+                .tag("prompt", promptId)
+                .register(meterRegistry)
+                .record(tokens.prompt());
+
+        DistributionSummary.builder("prbot.llm.response.tokens")
+                .tag("mode", mode.name())
+                .tag("prompt", promptId)
+                .register(meterRegistry)
+                .record(tokens.response());
+
+        recordEstimateRatio(model, "prompt", tokens.actualPrompt(), tokens.estimatedPrompt());
+        recordEstimateRatio(model, "response", tokens.actualResponse(), tokens.estimatedResponse());
+    }
+
+    /**
+     * 실제 토큰 수 / 어림값. 1 보다 꾸준히 크면 bot.models.token-scales 로 그 모델의 배수를 올린다.
+     */
+    private void recordEstimateRatio(String model, String kind, int actual, int estimated) {
+        if (actual < 0 || estimated <= 0) {
+            return;
+        }
+        DistributionSummary.builder("prbot.llm.tokens.ratio")
+                .description("Reported token count divided by the estimate")
+                .tag("model", model)
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .record((double) actual / estimated);
+    }
+
+    public void recordReview(String repositoryFullName, Long prNumber, ReviewStatistics stats) {
+        String mode = stats.getMode().name();
+
+        Timer.builder("prbot.review.duration")
+                .description("Wall-clock time of a whole PR review")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(stats.getElapsedNanos(), TimeUnit.NANOSECONDS);
+
+        DistributionSummary.builder("prbot.review.llm.calls")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(stats.getLlmCalls());
+
+        DistributionSummary.builder("prbot.review.tokens")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(stats.getPromptTokens() + stats.getResponseTokens());
+
+        // 프롬프트 처리와 생성은 GPU 시간당 처리량이 크게 달라 따로 본다
+        DistributionSummary.builder("prbot.review.prompt.tokens")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(stats.getPromptTokens());
+
+        DistributionSummary.builder("prbot.review.response.tokens")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(stats.getResponseTokens());
+
+        StringJoiner routing = new StringJoiner(", ");
+        for (ReviewType type : ReviewType.values()) {
+            int routed = stats.getRoutedChunks(type);
+            Counter.builder("prbot.review.chunks.routed")
+                    .description("Chunks sent to each review type after static routing")
+                    .tag("mode", mode)
+                    .tag("type", type.name())
+                    .register(meterRegistry)
+                    .increment(routed);
+            routing.add(type.name() + "=" + routed);
+        }
+        Counter.builder("prbot.review.chunks.unrouted")
+                .description("Chunks that no review type needed")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .increment(stats.getUnroutedChunks());
+
+        log.info("Review of PR {}/#{} [{}]: {} LLM calls, {} cache hits, {} prompt / {} response tokens "
+                        + "(prompt ~{} estimated, {} reported by {} calls; response ~{} estimated, {} reported by {} calls), "
+                        + "{} prompt truncations, routed chunks [{}, none={}], LLM time {} ms, wall-clock {} ms",
+                repositoryFullName, prNumber, mode, stats.getLlmCalls(), stats.getCacheHits(),
+                stats.getPromptTokens(), stats.getResponseTokens(),
+                stats.getEstimatedPromptTokens(), stats.getActualPromptTokens(), stats.getReportedPromptCalls(),
+                stats.getEstimatedResponseTokens(), stats.getActualResponseTokens(), stats.getReportedResponseCalls(),
+                stats.getPromptTruncations(), routing, stats.getUnroutedChunks(),
+                TimeUnit.NANOSECONDS.toMillis(stats.getLlmNanos()),
+                TimeUnit.NANOSECONDS.toMillis(stats.getElapsedNanos()));
+    }
+}
@@ -0,0 +1,256 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.entity.ReviewCacheEntry;
+import com.gitea.prbot.repository.ReviewCacheEntryRepository;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * chunk 단위 LLM 리뷰 결과 캐시.
+ * 1차는 크기 제한이 있는 메모리 LRU, 2차는 (선택적으로) 기존 데이터소스의 review_cache_entry 테이블이다.
+ * 키에는 라인 번호를 넣지 않으므로 위쪽에 줄이 추가되어 같은 변경이 밀려나도 캐시가 맞고,
+ * 저장할 때의 시작 라인과의 차이만큼 응답의 라인 번호를 옮겨 쓴다.
+ */
+@Service
+public class ReviewResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewResultCache.class);
+
+    /**
+     * 모델 응답.
+     *
+     * @param lineOffset 응답의 라인 번호에 더해야 이번 chunk 의 라인이 되는 값. 새로 받은 응답이면 0
+     */
+    public record Answer(String content, int lineOffset) {
+    }
+
+    // baseLine: 응답을 받았을 때 chunk 의 시작 라인
+    private record Stored(String content, int baseLine) {
+    }
+
+    private final ReviewCacheEntryRepository repository;
+    private final boolean enabled;
+    private final boolean persistentEnabled;
+    private final long maxMemoryChars;
+    private final Duration persistentTtl;
+
+    // accessOrder = true 로 LRU 순서를 유지한다
+    private final LinkedHashMap<String, Stored> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryChars = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ReviewResultCache(ReviewCacheEntryRepository repository,
+                             @Value("${bot.cache.enabled:true}") boolean enabled,
+                             @Value("${bot.cache.persistent.enabled:true}") boolean persistentEnabled,
+                             @Value("${bot.cache.memory.max-chars:16000000}") long maxMemoryChars,
+                             @Value("${bot.cache.persistent.ttl:14d}") Duration persistentTtl) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.persistentEnabled = persistentEnabled;
+        this.maxMemoryChars = maxMemoryChars;
+        this.persistentTtl = persistentTtl;
+    }
+
+    @Transactional
+    public Optional<Answer> get(DiffChunk chunk, String promptId, String promptVersion, String model) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String key = cacheKey(chunk, promptId, promptVersion, model);
+
+        synchronized (memory) {
+            Stored cached = memory.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return Optional.of(answer(cached, chunk));
+            }
+        }
+
+        if (persistentEnabled) {
+            Optional<ReviewCacheEntry> entry = repository.findById(key);
+            if (entry.isPresent()) {
+                repository.touch(key, Instant.now());
+                Stored stored = new Stored(entry.get().getContent(), entry.get().getBaseLine());
+                putInMemory(key, stored);
+                hits.incrementAndGet();
+                return Optional.of(answer(stored, chunk));
+            }
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    @Transactional
+    public void put(DiffChunk chunk, String promptId, String promptVersion, String model, String content) {
+        if (!enabled || content == null) {
+            return;
+        }
+
+        String key = cacheKey(chunk, promptId, promptVersion, model);
+        putInMemory(key, new Stored(content, chunk.getStartLine()));
+
+        if (persistentEnabled) {
+            repository.save(new ReviewCacheEntry(key, promptId, model, promptVersion, content, chunk.getStartLine()));
+        }
+    }
+
+    private static Answer answer(Stored stored, DiffChunk chunk) {
+        return new Answer(stored.content(), chunk.getStartLine() - stored.baseLine());
+    }
+
+    @Scheduled(cron = "${bot.cache.persistent.cleanup-cron:0 30 3 * * *}")
+    @Transactional
+    public void evictExpired() {
+        if (!persistentEnabled) {
+            return;
+        }
+        int deleted = repository.deleteUnusedSince(Instant.now().minus(persistentTtl));
+        if (deleted > 0) {
+            log.info("Evicted {} review cache entries unused for {}", deleted, persistentTtl);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void putInMemory(String key, Stored stored) {
+        synchronized (memory) {
+            Stored previous = memory.put(key, stored);
+            if (previous != null) {
+                memoryChars -= previous.content().length();
+            }
+            memoryChars += stored.content().length();
+
+            Iterator<Map.Entry<String, Stored>> eldest = memory.entrySet().iterator();
+            while (memoryChars > maxMemoryChars && eldest.hasNext()) {
+                Map.Entry<String, Stored> entry = eldest.next();
+                memoryChars -= entry.getValue().content().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * 파일 경로와 정규화한 chunk 내용의 해시. 라인 번호는 빼므로 모델 응답의 "파일:라인" 은 get 이 돌려주는
+     * lineOffset 으로 옮겨 써야 한다.
+     */
+    String cacheKey(DiffChunk chunk, String promptId, String promptVersion, String model) {
+        MessageDigest digest = sha256();
+        digest.update(promptId.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(promptVersion).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(chunk.getFileName()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalize(chunk.getContent()).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 줄바꿈(CRLF)과 줄 끝 공백 차이는 같은 chunk 로 취급한다. hunk 헤더의 시작 라인은 첫 hunk 에서의
+     * 거리로 바꾼다. chunk 안의 hunk 사이 간격은 응답의 라인 번호에 영향을 주므로 남겨 둔다.
+     */
+    static String normalize(String chunk) {
+        StringBuilder normalized = new StringBuilder(chunk.length());
+        int lineStart = 0;
+        int length = chunk.length();
+        int[] firstHunk = null;
+
+        while (lineStart <= length) {
+            int lineEnd = chunk.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+
+            int end = lineEnd;
+            while (end > lineStart && Character.isWhitespace(chunk.charAt(end - 1))) {
+                end--;
+            }
+
+            int[] hunk = chunk.startsWith("@@ -", lineStart) ? parseHunkHeader(chunk, lineStart, end) : null;
+            if (hunk != null) {
+                if (firstHunk == null) {
+                    firstHunk = hunk;
+                }
+                normalized.append("@@ -").append(hunk[0] - firstHunk[0])
+                        .append(chunk, hunk[1], hunk[2])
+                        .append(hunk[3] - firstHunk[3])
+                        .append(chunk, hunk[4], end).append('\n');
+            } else {
+                normalized.append(chunk, lineStart, end).append('\n');
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        // 끝의 빈 줄 제거
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '\n') {
+            end--;
+        }
+        normalized.setLength(end);
+        return normalized.toString();
+    }
+
+    /**
+     * "@@ -a,b +c,d @@" 헤더를 {a, a 뒤 위치, c 앞 위치, c, c 뒤 위치} 로 읽는다. 형식이 다르면 null.
+     */
+    private static int[] parseHunkHeader(String chunk, int start, int end) {
+        int oldFrom = start + 4;
+        int oldTo = digitsEnd(chunk, oldFrom, end);
+        int plus = chunk.indexOf(" +", oldTo);
+        if (oldTo == oldFrom || plus < 0 || plus >= end) {
+            return null;
+        }
+        int newFrom = plus + 2;
+        int newTo = digitsEnd(chunk, newFrom, end);
+        if (newTo == newFrom) {
+            return null;
+        }
+        return new int[]{Integer.parseInt(chunk, oldFrom, oldTo, 10), oldTo, newFrom,
+                Integer.parseInt(chunk, newFrom, newTo, 10), newTo};
+    }
+
+    private static int digitsEnd(String line, int from, int end) {
+        int i = from;
+        while (i < end && Character.isDigit(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * chunk 의 정적 신호(정적 분석 키워드, 파일 종류와 경로, 추가/삭제 줄 비율)로 어떤 리뷰 타입이 필요한지 정한다.
+ * <ul>
+ *     <li>선언과 모든 사용처를 함께 바꾼 이름 바꾸기나 공백 정리만 한 chunk 는 STYLE 만 본다. 보안 키워드나 민감한 경로면 예외다.</li>
+ *     <li>SECURITY 는 보안 키워드가 나오거나 민감한 경로(security-paths)일 때만 본다. 삭제만 한 chunk 도 여기에 해당하면 본다.</li>
+ *     <li>PERFORMANCE, STYLE 은 코드 파일에서 해당 키워드가 나오고, 대부분이 삭제인 chunk 가 아닐 때만 본다.</li>
+ *     <li>GENERAL 은 추가된 줄이 있는 chunk 면 본다.</li>
+ * </ul>
+ */
+@Service
+public class ReviewRouter {
+
+    // 문서와 설정 파일. 성능/스타일 리뷰는 하지 않는다
+    private static final Set<String> NON_CODE_EXTENSIONS = Set.of(
+            "md", "markdown", "txt", "rst", "adoc", "csv",
+            "json", "yml", "yaml", "toml", "xml", "properties", "ini", "conf", "cfg", "env");
+
+    // 삭제 줄이 추가 줄의 이 배수 이상이면 새 코드가 거의 없는 chunk 로 본다
+    private static final int MOSTLY_REMOVED_RATIO = 4;
+
+    private final boolean enabled;
+    private final List<String> securityPaths;
+
+    public ReviewRouter(@Value("${bot.review.routing.enabled:true}") boolean enabled,
+                        @Value("${bot.review.routing.security-paths:auth,security,crypto,login,password,secret,token,permission,.env,dockerfile}")
+                        List<String> securityPaths) {
+        this.enabled = enabled;
+        List<String> paths = new ArrayList<>();
+        for (String path : securityPaths) {
+            if (!path.isBlank()) {
+                paths.add(path.strip().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.securityPaths = List.copyOf(paths);
+    }
+
+    /**
+     * @return chunk 를 보낼 리뷰 타입. 비어 있으면 리뷰하지 않는다.
+     */
+    public Set<ReviewType> route(DiffChunk chunk) {
+        if (!enabled) {
+            return EnumSet.allOf(ReviewType.class);
+        }
+
+        ChangeShape shape = ChangeShape.of(chunk.getContent());
+        Set<ReviewType> types = EnumSet.noneOf(ReviewType.class);
+        if (shape.added == 0 && shape.removed == 0) {
+            return types;
+        }
+
+        boolean code = isCode(chunk);
+        Set<ReviewType> triggered = chunk.getTriggeredReviewTypes();
+        boolean security = triggered.contains(ReviewType.SECURITY) || isSecurityPath(chunk.getFileName());
+        // 보안 신호가 있으면 이름 바꾸기처럼 보여도 줄이지 않는다
+        if (shape.cosmetic && !security) {
+            if (code) {
+                types.add(ReviewType.STYLE);
+            }
+            return types;
+        }
+
+        if (security) {
+            types.add(ReviewType.SECURITY);
+        }
+        if (shape.added == 0) {
+            return types;
+        }
+
+        boolean mostlyRemoved = shape.removed >= shape.added * MOSTLY_REMOVED_RATIO;
+        if (code && !mostlyRemoved) {
+            if (triggered.contains(ReviewType.PERFORMANCE)) {
+                types.add(ReviewType.PERFORMANCE);
+            }
+            if (triggered.contains(ReviewType.STYLE)) {
+                types.add(ReviewType.STYLE);
+            }
+        }
+        types.add(ReviewType.GENERAL);
+        return types;
+    }
+
+    boolean isCode(DiffChunk chunk) {
+        String extension = chunk.getFileExtension() != null ? chunk.getFileExtension().toLowerCase(Locale.ROOT) : "";
+        return !"text".equals(chunk.getLanguage()) || (!extension.isEmpty() && !NON_CODE_EXTENSIONS.contains(extension));
+    }
+
+    boolean isSecurityPath(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        String path = fileName.toLowerCase(Locale.ROOT);
+        for (String fragment : securityPaths) {
+            if (path.contains(fragment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * chunk 의 추가/삭제 줄 수와, 바뀐 줄이 모두 식별자 이름 바꾸기나 공백 변경뿐인지 여부.
+     * 이름 바꾸기로 보려면 바뀐 식별자마다 chunk 안에 선언이 있고, 예전 이름이 새 코드에 남아 있지 않으며,
+     * 새 이름이 예전 코드에 없던 이름이어야 한다. 키워드와 리터럴(true, false, null, 숫자, 문자열)이 바뀌면 이름 바꾸기가 아니다.
+     */
+    static final class ChangeShape {
+        // 바뀌면 의미가 바뀌는 단어. 식별자처럼 생겼어도 이름 바꾸기로 보지 않는다
+        private static final Set<String> KEYWORDS = Set.of(
+                "true", "false", "null", "nil", "None", "True", "False", "undefined", "this", "self", "super",
+                "new", "return", "throw", "throws", "if", "else", "for", "while", "do", "switch", "case", "default",
+                "break", "continue", "try", "catch", "finally", "import", "package", "extends", "implements",
+                "instanceof", "in", "is", "not", "and", "or", "public", "private", "protected", "static", "final",
+                "abstract", "synchronized", "volatile", "transient", "const", "let", "var", "val", "def", "fun",
+                "func", "fn", "function", "class", "interface", "enum", "record", "struct", "void", "async", "await");
+
+        // 이 단어 뒤에 오는 식별자는 선언된 이름이다
+        private static final Set<String> DECLARATION_KEYWORDS = Set.of(
+                "class", "interface", "enum", "record", "struct", "def", "fun", "func", "fn", "function",
+                "var", "let", "val", "const");
+
+        // 이 단어 뒤의 식별자는 선언이 아니라 사용이다
+        private static final Set<String> NON_TYPE_KEYWORDS = Set.of(
+                "return", "throw", "new", "else", "case", "in", "is", "instanceof", "not", "and", "or", "await",
+                "import", "package", "extends", "implements", "throws");
+
+        int added;
+        int removed;
+        boolean cosmetic;
+
+        private final Map<String, String> renames = new HashMap<>();
+        private final Map<String, String> reverse = new HashMap<>();
+        private final Set<String> declared = new HashSet<>();
+        private final Set<String> oldIdentifiers = new HashSet<>();
+        private final Set<String> newIdentifiers = new HashSet<>();
+
+        static ChangeShape of(String content) {
+            ChangeShape shape = new ChangeShape();
+            List<String> removedBlock = new ArrayList<>();
+            List<String> addedBlock = new ArrayList<>();
+            boolean cosmetic = true;
+
+            int length = content.length();
+            int lineStart = 0;
+            while (lineStart <= length) {
+                int lineEnd = content.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = length;
+                }
+                char marker = lineEnd > lineStart ? content.charAt(lineStart) : ' ';
+                if (marker == '-') {
+                    // 추가 줄 뒤에 다시 삭제 줄이 오면 새 블록이다
+                    if (!addedBlock.isEmpty()) {
+                        cosmetic &= shape.sameShape(removedBlock, addedBlock);
+                        removedBlock.clear();
+                        addedBlock.clear();
+                    }
+                    removedBlock.add(content.substring(lineStart + 1, lineEnd));
+                    shape.removed++;
+                } else if (marker == '+') {
+                    addedBlock.add(content.substring(lineStart + 1, lineEnd));
+                    shape.added++;
+                } else {
+                    if (!removedBlock.isEmpty() || !addedBlock.isEmpty()) {
+                        cosmetic &= shape.sameShape(removedBlock, addedBlock);
+                        removedBlock.clear();
+                        addedBlock.clear();
+                    }
+                    // 문맥 줄은 양쪽 코드에 다 있다. "@@" 헤더와 "\ No newline" 은 코드가 아니다
+                    if (marker == ' ' && lineEnd > lineStart) {
+                        for (String token : tokens(content.substring(lineStart + 1, lineEnd))) {
+                            if (isIdentifierStart(token.charAt(0))) {
+                                shape.oldIdentifiers.add(token);
+                                shape.newIdentifiers.add(token);
+                            }
+                        }
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (!removedBlock.isEmpty() || !addedBlock.isEmpty()) {
+                cosmetic &= shape.sameShape(removedBlock, addedBlock);
+            }
+
+            shape.cosmetic = cosmetic && shape.added > 0 && shape.renamesAreComplete();
+            return shape;
+        }
+
+        /**
+         * 삭제/추가 블록이 줄마다 같은 토큰 구조이고, 다른 식별자는 chunk 전체에서 일관되게 1:1 로 바뀌었는지.
+         * 공백만 다른 줄도 같은 것으로 본다.
+         */
+        private boolean sameShape(List<String> removedLines, List<String> addedLines) {
+            boolean same = removedLines.size() == addedLines.size();
+            for (int i = 0; i < removedLines.size(); i++) {
+                List<String> before = tokens(removedLines.get(i));
+                collectIdentifiers(before, oldIdentifiers);
+                if (i >= addedLines.size()) {
+                    continue;
+                }
+                List<String> after = tokens(addedLines.get(i));
+                collectIdentifiers(after, newIdentifiers);
+                if (!same || before.size() != after.size()) {
+                    same = false;
+                    continue;
+                }
+                for (int t = 0; t < before.size() && same; t++) {
+                    String from = before.get(t);
+                    String to = after.get(t);
+                    if (from.equals(to)) {
+                        continue;
+                    }
+                    if (!isRenamable(from) || !isRenamable(to)) {
+                        same = false;
+                        break;
+                    }
+                    String previous = renames.putIfAbsent(from, to);
+                    String previousReverse = reverse.putIfAbsent(to, from);
+                    if ((previous != null && !previous.equals(to))
+                            || (previousReverse != null && !previousReverse.equals(from))) {
+                        same = false;
+                        break;
+                    }
+                    if (isDeclaration(before, t)) {
+                        declared.add(from);
+                    }
+                }
+            }
+            for (int i = removedLines.size(); i < addedLines.size(); i++) {
+                collectIdentifiers(tokens(addedLines.get(i)), newIdentifiers);
+            }
+            return same;
+        }
+
+        /**
+         * 모든 이름 바꾸기가 선언과 모든 사용처를 함께 바꿨는지. 다른 이름으로 바꿔 끼운 것은 동작이 바뀐다.
+         */
+        private boolean renamesAreComplete() {
+            for (Map.Entry<String, String> rename : renames.entrySet()) {
+                String from = rename.getKey();
+                String to = rename.getValue();
+                if (!declared.contains(from) || newIdentifiers.contains(from) || oldIdentifiers.contains(to)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void collectIdentifiers(List<String> tokens, Set<String> identifiers) {
+            for (String token : tokens) {
+                if (isIdentifierStart(token.charAt(0))) {
+                    identifiers.add(token);
+                }
+            }
+        }
+
+        private static boolean isRenamable(String token) {
+            return isIdentifierStart(token.charAt(0)) && !KEYWORDS.contains(token);
+        }
+
+        /**
+         * "int max = 0", "String name;", "List<String> items)", "def total(" 처럼 타입이나 선언 키워드 뒤에 오는 이름.
+         */
+        private static boolean isDeclaration(List<String> tokens, int index) {
+            if (index == 0) {
+                return false;
+            }
+            String previous = tokens.get(index - 1);
+            boolean afterType = DECLARATION_KEYWORDS.contains(previous)
+                    || (isIdentifierStart(previous.charAt(0)) && !NON_TYPE_KEYWORDS.contains(previous))
+                    || previous.equals(">") || previous.equals("]");
+            if (!afterType) {
+                return false;
+            }
+            if (index + 1 == tokens.size()) {
+                return true;
+            }
+            String next = tokens.get(index + 1);
+            return next.equals("=") || next.equals(";") || next.equals("(") || next.equals(",")
+                    || next.equals(")") || next.equals(":") || next.equals("{") || next.equals("<");
+        }
+
+        /**
+         * 식별자 하나, 숫자 하나, 문자열 리터럴 하나, 그 밖의 문자 하나씩을 토큰으로 나눈다. 공백은 버린다.
+         */
+        private static List<String> tokens(String line) {
+            List<String> tokens = new ArrayList<>();
+            int length = line.length();
+            int pos = 0;
+            while (pos < length) {
+                char c = line.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (isIdentifierStart(c) || Character.isDigit(c)) {
+                    int end = pos + 1;
+                    while (end < length && isIdentifierPart(line.charAt(end))) {
+                        end++;
+                    }
+                    tokens.add(line.substring(pos, end));
+                    pos = end;
+                } else if (c == '"' || c == '\'' || c == '`') {
+                    int end = pos + 1;
+                    while (end < length && line.charAt(end) != c) {
+                        end += line.charAt(end) == '\\' ? 2 : 1;
+                    }
+                    end = Math.min(length, end + 1);
+                    tokens.add(line.substring(pos, end));
+                    pos = end;
+                } else {
+                    tokens.add(String.valueOf(c));
+                    pos++;
+                }
+            }
+            return tokens;
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == '$';
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.gitea.prbot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 모든 PR 의 chunk 리뷰 작업을 한 곳에서 순서를 정해 실행한다.
+ * <ul>
+ *     <li>우선 저장소(bot.scheduler.priority-repositories)의 작업이 항상 먼저 나간다.</li>
+ *     <li>그 외에는 저장소별 가중 공정 큐잉(WFQ): 처리한 토큰 수 / 가중치가 가장 작은 저장소 차례다.</li>
+ *     <li>같은 저장소 안에서는 변경량이 작은 PR 의 작업이 먼저 나간다.</li>
+ * </ul>
+ * 동시에 실행하는 작업은 max-running 개로 제한하므로, 큰 PR 이 리뷰 중이어도 작은 PR 의 작업이 사이사이 끼어든다.
+ */
+@Service
+public class ReviewScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewScheduler.class);
+
+    private final int maxRunning;
+    private final Set<String> priorityRepositories;
+    private final Map<String, Double> repositoryWeights = new HashMap<>();
+    private final Timer priorityWait;
+    private final Timer normalWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, RepositoryQueue> repositories = new HashMap<>();
+    private double virtualTime = 0;
+    private int running = 0;
+    private int queued = 0;
+
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("review-chunk-", 0).factory());
+
+    public ReviewScheduler(MeterRegistry meterRegistry,
+                           @Value("${bot.scheduler.max-running:${bot.concurrency.ollama:4}}") int maxRunning,
+                           @Value("${bot.scheduler.priority-repositories:}") Set<String> priorityRepositories,
+                           @Value("${bot.scheduler.repository-weights:}") Set<String> repositoryWeights) {
+        this.maxRunning = Math.max(1, maxRunning);
+        this.priorityRepositories = priorityRepositories;
+
+        // "org/repo=3" 형식
+        for (String entry : repositoryWeights) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                log.warn("Ignoring malformed repository weight '{}'", entry);
+                continue;
+            }
+            try {
+                double weight = Double.parseDouble(entry.substring(separator + 1).trim());
+                if (weight > 0) {
+                    this.repositoryWeights.put(entry.substring(0, separator).trim(), weight);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed repository weight '{}'", entry);
+            }
+        }
+
+        Gauge.builder("prbot.scheduler.queued", this, s -> s.queued)
+                .description("Chunk review tasks waiting in the scheduler")
+                .register(meterRegistry);
+        Gauge.builder("prbot.scheduler.running", this, s -> s.running)
+                .description("Chunk review tasks currently running")
+                .register(meterRegistry);
+        this.priorityWait = Timer.builder("prbot.scheduler.wait")
+                .tag("priority", "true")
+                .register(meterRegistry);
+        this.normalWait = Timer.builder("prbot.scheduler.wait")
+                .tag("priority", "false")
+                .register(meterRegistry);
+    }
+
+    /**
+     * PR 하나의 작업을 받을 큐를 연다. 리뷰가 끝나면 반드시 close 해야 한다.
+     *
+     * @param sizeHint webhook 에 포함된 변경 라인 수 (모르면 0). 실제 제출된 라인 수가 더 크면 그 값을 쓴다
+     */
+    public PullRequestQueue open(String repositoryFullName, Long prNumber, int sizeHint) {
+        lock.lock();
+        try {
+            RepositoryQueue repository = repositories.computeIfAbsent(repositoryFullName, name -> new RepositoryQueue(
+                    priorityRepositories.contains(name), repositoryWeights.getOrDefault(name, 1.0), virtualTime));
+            PullRequestQueue queue = new PullRequestQueue(repositoryFullName, prNumber, sizeHint, repository);
+            repository.pullRequests.add(queue);
+            return queue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        List<Task<?>> toStart = new ArrayList<>();
+        lock.lock();
+        try {
+            while (running < maxRunning) {
+                Task<?> next = pollNext();
+                if (next == null) {
+                    break;
+                }
+                if (next.future.isDone()) {
+                    // 실행 전에 취소된 작업
+                    continue;
+                }
+                running++;
+                toStart.add(next);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Task<?> task : toStart) {
+            executor.execute(task);
+        }
+    }
+
+    private Task<?> pollNext() {
+        RepositoryQueue best = null;
+        for (RepositoryQueue repository : repositories.values()) {
+            if (repository.isEmpty()) {
+                continue;
+            }
+            if (best == null
+                    || (repository.priority && !best.priority)
+                    || (repository.priority == best.priority && repository.served < best.served)) {
+                best = repository;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        PullRequestQueue smallest = null;
+        for (PullRequestQueue pullRequest : best.pullRequests) {
+            if (!pullRequest.tasks.isEmpty() && (smallest == null || pullRequest.size() < smallest.size())) {
+                smallest = pullRequest;
+            }
+        }
+
+        Task<?> task = smallest.tasks.poll();
+        queued--;
+        virtualTime = Math.max(virtualTime, best.served);
+        best.served += task.cost / best.weight;
+        return task;
+    }
+
+    private void finished() {
+        lock.lock();
+        try {
+            running--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class RepositoryQueue {
+        private final boolean priority;
+        private final double weight;
+        private final List<PullRequestQueue> pullRequests = new ArrayList<>();
+        // 가중치로 나눈 누적 처리 토큰 수 (WFQ 의 가상 시간)
+        private double served;
+
+        RepositoryQueue(boolean priority, double weight, double served) {
+            this.priority = priority;
+            this.weight = weight;
+            this.served = served;
+        }
+
+        boolean isEmpty() {
+            for (PullRequestQueue pullRequest : pullRequests) {
+                if (!pullRequest.tasks.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * PR 하나에 대한 작업 큐. diff 파싱 스레드가 chunk 마다 submit 한다.
+     */
+    public class PullRequestQueue implements AutoCloseable {
+        private final String repositoryFullName;
+        private final Long prNumber;
+        private final int sizeHint;
+        private final RepositoryQueue repository;
+        private final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        private long submittedLines = 0;
+
+        PullRequestQueue(String repositoryFullName, Long prNumber, int sizeHint, RepositoryQueue repository) {
+            this.repositoryFullName = repositoryFullName;
+            this.prNumber = prNumber;
+            this.sizeHint = sizeHint;
+            this.repository = repository;
+        }
+
+        /**
+         * @param lines chunk 의 diff 라인 수 (PR 크기 추정용)
+         * @param cost  chunk 의 예상 토큰 수 (공정 큐잉 비용)
+         */
+        public <T> CompletableFuture<T> submit(int lines, int cost, Supplier<T> work) {
+            Task<T> task = new Task<>(work, Math.max(1, cost), repository.priority ? priorityWait : normalWait);
+            lock.lock();
+            try {
+                if (repository.isEmpty()) {
+                    // 쉬고 있던 저장소가 밀린 몫을 한꺼번에 가져가지 않도록 현재 가상 시간으로 맞춘다
+                    repository.served = Math.max(repository.served, virtualTime);
+                }
+                submittedLines += lines;
+                tasks.add(task);
+                queued++;
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+            return task.future;
+        }
+
+        long size() {
+            return Math.max(sizeHint, submittedLines);
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                queued -= tasks.size();
+                for (Task<?> task : tasks) {
+                    task.future.cancel(false);
+                }
+                tasks.clear();
+                repository.pullRequests.remove(this);
+                if (repository.pullRequests.isEmpty()) {
+                    repositories.remove(repositoryFullName, repository);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return repositoryFullName + "/#" + prNumber;
+        }
+    }
+
+    private class Task<T> implements Runnable {
+        private final Supplier<T> work;
+        private final double cost;
+        private final Timer waitTimer;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Supplier<T> work, double cost, Timer waitTimer) {
+            this.work = work;
+            this.cost = cost;
+            this.waitTimer = waitTimer;
+        }
+
+        @Override
+        public void run() {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                if (!future.isDone()) {
+                    future.complete(work.get());
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                finished();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.entity.PullRequestReviewState;
+import com.gitea.prbot.repository.PullRequestReviewStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Service
+public class ReviewStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewStateService.class);
+
+    private final PullRequestReviewStateRepository repository;
+
+    public ReviewStateService(PullRequestReviewStateRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<String> getLastReviewedSha(String repositoryFullName, Long prNumber) {
+        return repository.findByRepositoryFullNameAndPullRequestNumber(repositoryFullName, prNumber)
+                .map(PullRequestReviewState::getLastReviewedSha);
+    }
+
+    @Transactional
+    public void markReviewed(String repositoryFullName, Long prNumber, String headSha) {
+        if (headSha == null) {
+            return;
+        }
+
+        PullRequestReviewState state = repository
+                .findByRepositoryFullNameAndPullRequestNumber(repositoryFullName, prNumber)
+                .orElseGet(() -> new PullRequestReviewState(repositoryFullName, prNumber));
+
+        state.setLastReviewedSha(headSha);
+        state.setReviewedAt(Instant.now());
+        repository.save(state);
+
+        log.debug("Recorded {} as last reviewed head of PR {}/#{}", headSha, repositoryFullName, prNumber);
+    }
+}
@@ -0,0 +1,168 @@
+package com.gitea.prbot.service;
+
+/**
+ * 스트리밍으로 받는 모델 응답을 조각마다 검사해 생성을 일찍 멈출 시점을 정한다.
+ * <ul>
+ *     <li>첫 줄이 "OK" 이면 (문제 없음) 바로 멈춘다.</li>
+ *     <li>[HIGH|MED|LOW] 로 시작하는 줄이 maxFindings 개가 되면 멈춘다.</li>
+ *     <li>받은 조각(≈토큰) 수가 maxTokens 에 이르면 멈춘다.</li>
+ * </ul>
+ * 끝까지 받으면 마지막 메시지에 온 토큰 수도 보관한다.
+ * 한 번의 호출에서만 쓰며 스레드 안전하지 않다.
+ */
+class StreamingAnswerMonitor {
+
+    enum StopReason {
+        NONE, OK, MAX_FINDINGS, MAX_TOKENS
+    }
+
+    private final int maxFindings;
+    private final int maxTokens;
+    private final long startedAt = System.nanoTime();
+
+    private final StringBuilder text = new StringBuilder();
+    private int lineStart = 0;
+    private int lastCompleteLineEnd = 0;
+    private boolean seenContentLine = false;
+    private int tokens = 0;
+    private int findings = 0;
+    private long firstFindingNanos = -1;
+    private int reportedPromptTokens = -1;
+    private int reportedResponseTokens = -1;
+    private StopReason stopReason = StopReason.NONE;
+
+    StreamingAnswerMonitor(int maxFindings, int maxTokens) {
+        this.maxFindings = maxFindings;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * @return 생성을 멈춰야 하면 true
+     */
+    boolean accept(String fragment) {
+        if (stopReason != StopReason.NONE) {
+            return true;
+        }
+
+        text.append(fragment);
+        tokens++;
+
+        int newline;
+        while ((newline = text.indexOf("\n", lineStart)) >= 0) {
+            onLine(lineStart, newline);
+            lineStart = newline + 1;
+            lastCompleteLineEnd = lineStart;
+            if (stopReason != StopReason.NONE) {
+                return true;
+            }
+        }
+
+        if (maxTokens > 0 && tokens >= maxTokens) {
+            stopReason = StopReason.MAX_TOKENS;
+        }
+        return stopReason != StopReason.NONE;
+    }
+
+    /**
+     * 생성이 끝났다는 마지막 메시지의 토큰 수.
+     */
+    void onDone(Integer promptEvalCount, Integer evalCount) {
+        reportedPromptTokens = ModelRouter.reportedTokens(promptEvalCount);
+        reportedResponseTokens = ModelRouter.reportedTokens(evalCount);
+    }
+
+    private void onLine(int start, int end) {
+        int from = skipNoise(start, end);
+        int to = end;
+        while (to > from && isNoise(text.charAt(to - 1))) {
+            to--;
+        }
+        if (from >= to) {
+            return;
+        }
+
+        if (!seenContentLine) {
+            seenContentLine = true;
+            if (to - from == 2 && Character.toUpperCase(text.charAt(from)) == 'O'
+                    && Character.toUpperCase(text.charAt(from + 1)) == 'K') {
+                stopReason = StopReason.OK;
+                return;
+            }
+        }
+
+        if (isFinding(from, to)) {
+            findings++;
+            if (firstFindingNanos < 0) {
+                firstFindingNanos = System.nanoTime() - startedAt;
+            }
+            if (maxFindings > 0 && findings >= maxFindings) {
+                stopReason = StopReason.MAX_FINDINGS;
+            }
+        }
+    }
+
+    private boolean isFinding(int from, int to) {
+        return startsWith(from, to, "[HIGH]") || startsWith(from, to, "[MED]") || startsWith(from, to, "[LOW]");
+    }
+
+    private boolean startsWith(int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 목록 기호, 코드 블록 표시, 공백은 판정에서 제외한다
+    private int skipNoise(int from, int to) {
+        while (from < to && (isNoise(text.charAt(from)) || text.charAt(from) == '-' || text.charAt(from) == '*')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isNoise(char c) {
+        return Character.isWhitespace(c) || c == '`' || c == '.';
+    }
+
+    /**
+     * 지금까지 받은 응답. 한도 때문에 멈춘 경우 잘린 마지막 줄은 버린다.
+     */
+    String content() {
+        if (stopReason == StopReason.MAX_TOKENS || stopReason == StopReason.MAX_FINDINGS) {
+            return text.substring(0, lastCompleteLineEnd);
+        }
+        return text.toString();
+    }
+
+    StopReason getStopReason() {
+        return stopReason;
+    }
+
+    int getTokens() {
+        return tokens;
+    }
+
+    /** 모델이 보고한 프롬프트 토큰 수, 일찍 멈췄거나 보고되지 않았으면 -1 */
+    int getPromptTokens() {
+        return reportedPromptTokens;
+    }
+
+    /** 모델이 보고한 생성 토큰 수, 일찍 멈췄으면 받은 조각 수 (Ollama 는 토큰마다 조각을 보낸다) */
+    int getResponseTokens() {
+        return reportedResponseTokens >= 0 ? reportedResponseTokens : tokens;
+    }
+
+    int getFindings() {
+        return findings;
+    }
+
+    /** 첫 지적 사항까지 걸린 시간, 없으면 -1 */
+    long getFirstFindingNanos() {
+        return firstFindingNanos;
+    }
+}
@@ -0,0 +1,241 @@
+package com.gitea.prbot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 모델별 토큰 수 어림값과 컨텍스트 창. chunker 와 PromptAssembler 가 같은 값을 쓴다.
+ * <ul>
+ *     <li>영문 식별자, 숫자, 공백, 기호, 비 ASCII 문자를 런 단위로 세어 모델 계열의 토크나이저가 나누는 방식을 흉내 낸다.
+ *     객체를 만들지 않고 문자열을 한 번만 훑는다.</li>
+ *     <li>계열별 상수는 어림값이다. prbot.llm.tokens.ratio (Ollama 가 보고한 토큰 수 / 어림값) 를 보고
+ *     token-scales 로 모델별 보정 배수를 준다.</li>
+ * </ul>
+ */
+@Service
+public class TokenEstimator {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenEstimator.class);
+
+    /**
+     * 모델 이름에 포함된 문자열로 고르는 토크나이저 계열. 앞에 있는 것부터 맞춰 본다.
+     */
+    private enum Family {
+        // 숫자는 한 자리씩, 긴 공백 런은 토큰 하나로 묶는다
+        STARCODER("starcoder", 4.0, 1, 4, 1.5, 1.6),
+        DEEPSEEK_CODER("deepseek", 3.8, 1, 4, 1.4, 1.2),
+        QWEN("qwen", 4.0, 1, 4, 1.5, 1.0),
+        // sentencepiece 계열은 공백을 잘게 나눈다 (codellama 포함)
+        LLAMA("llama", 3.5, 1, 2, 1.2, 1.5),
+        // 모르는 모델은 넘치지 않도록 조금 크게 어림한다
+        GENERIC("", 3.5, 3, 4, 1.3, 1.5);
+
+        final String marker;
+        final double lettersPerToken;
+        final double digitsPerToken;
+        final double spacesPerToken;
+        final double symbolsPerToken;
+        final double tokensPerNonAscii;
+
+        Family(String marker, double lettersPerToken, double digitsPerToken, double spacesPerToken,
+               double symbolsPerToken, double tokensPerNonAscii) {
+            this.marker = marker;
+            this.lettersPerToken = lettersPerToken;
+            this.digitsPerToken = digitsPerToken;
+            this.spacesPerToken = spacesPerToken;
+            this.symbolsPerToken = symbolsPerToken;
+            this.tokensPerNonAscii = tokensPerNonAscii;
+        }
+
+        static Family of(String model) {
+            String name = model.toLowerCase(Locale.ROOT);
+            for (Family family : values()) {
+                if (name.contains(family.marker)) {
+                    return family;
+                }
+            }
+            return GENERIC;
+        }
+    }
+
+    /**
+     * 한 모델의 토큰 어림값 계산기. 불변이라 여러 스레드에서 같이 쓴다.
+     */
+    public static final class Profile {
+        private final String model;
+        private final Family family;
+        private final double scale;
+        private final int contextWindow;
+
+        private Profile(String model, Family family, double scale, int contextWindow) {
+            this.model = model;
+            this.family = family;
+            this.scale = scale;
+            this.contextWindow = contextWindow;
+        }
+
+        public int count(CharSequence text) {
+            return text == null ? 0 : count(text, 0, text.length());
+        }
+
+        /**
+         * text[start, end) 의 토큰 수 어림값. 줄바꿈은 항상 토큰 하나로 세므로 줄 단위로 나눠 센 값을 더해도 된다.
+         */
+        public int count(CharSequence text, int start, int end) {
+            double tokens = 0;
+            int i = start;
+            while (i < end) {
+                char c = text.charAt(i);
+                int runStart = i;
+                if (c == '\n') {
+                    tokens++;
+                    i++;
+                } else if (isBlank(c)) {
+                    do {
+                        i++;
+                    } while (i < end && isBlank(text.charAt(i)));
+                    int run = i - runStart;
+                    // 단어 앞 공백 하나는 보통 그 단어 토큰에 붙는다
+                    if (i < end && isWordChar(text.charAt(i))) {
+                        run--;
+                    }
+                    if (run > 0) {
+                        tokens += Math.ceil(run / family.spacesPerToken);
+                    }
+                } else if (isLetter(c)) {
+                    // camelCase 의 대문자에서 토큰이 갈리는 경우가 많다
+                    i++;
+                    while (i < end) {
+                        char next = text.charAt(i);
+                        if (!isLetter(next) || (next >= 'A' && next <= 'Z' && isLower(text.charAt(i - 1)))) {
+                            break;
+                        }
+                        i++;
+                    }
+                    tokens += Math.ceil((i - runStart) / family.lettersPerToken);
+                } else if (isDigit(c)) {
+                    do {
+                        i++;
+                    } while (i < end && isDigit(text.charAt(i)));
+                    tokens += Math.ceil((i - runStart) / family.digitsPerToken);
+                } else if (c < 0x80) {
+                    do {
+                        i++;
+                    } while (i < end && isSymbol(text.charAt(i)));
+                    tokens += Math.ceil((i - runStart) / family.symbolsPerToken);
+                } else {
+                    tokens += family.tokensPerNonAscii;
+                    i++;
+                }
+            }
+            return (int) Math.ceil(tokens * scale);
+        }
+
+        public String getModel() { return model; }
+        public String getFamily() { return family.name(); }
+        public double getScale() { return scale; }
+        public int getContextWindow() { return contextWindow; }
+
+        private static boolean isBlank(char c) {
+            return c == ' ' || c == '\t' || c == '\r';
+        }
+
+        private static boolean isLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        }
+
+        private static boolean isLower(char c) {
+            return c >= 'a' && c <= 'z';
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isWordChar(char c) {
+            return isLetter(c) || isDigit(c) || c >= 0x80;
+        }
+
+        private static boolean isSymbol(char c) {
+            return c < 0x80 && c != '\n' && !isBlank(c) && !isLetter(c) && !isDigit(c);
+        }
+    }
+
+    private final String primaryModel;
+    private final int defaultContextWindow;
+    private final Map<String, Integer> contextWindows = new HashMap<>();
+    private final Map<String, Double> scales = new HashMap<>();
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    public TokenEstimator(@Value("${bot.models.primary:${spring.ai.ollama.chat.options.model:starcoder2:3b}}") String primaryModel,
+                          @Value("${bot.models.context-window:16384}") int defaultContextWindow,
+                          @Value("${bot.models.context-windows:}") Set<String> contextWindows,
+                          @Value("${bot.models.token-scales:}") Set<String> tokenScales) {
+        this.primaryModel = primaryModel;
+        this.defaultContextWindow = defaultContextWindow;
+
+        // "model=값" 형식
+        for (String entry : contextWindows) {
+            String[] pair = split(entry, "context window");
+            if (pair != null) {
+                try {
+                    this.contextWindows.put(pair[0], Integer.parseInt(pair[1]));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring malformed context window '{}'", entry);
+                }
+            }
+        }
+        for (String entry : tokenScales) {
+            String[] pair = split(entry, "token scale");
+            if (pair != null) {
+                try {
+                    double scale = Double.parseDouble(pair[1]);
+                    if (scale > 0) {
+                        this.scales.put(pair[0], scale);
+                    } else {
+                        log.warn("Ignoring non-positive token scale '{}'", entry);
+                    }
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring malformed token scale '{}'", entry);
+                }
+            }
+        }
+    }
+
+    private static String[] split(String entry, String what) {
+        if (entry.isBlank()) {
+            return null;
+        }
+        int separator = entry.lastIndexOf('=');
+        if (separator <= 0) {
+            log.warn("Ignoring malformed {} '{}'", what, entry);
+            return null;
+        }
+        return new String[]{entry.substring(0, separator).trim(), entry.substring(separator + 1).trim()};
+    }
+
+    public Profile forModel(String model) {
+        return profiles.computeIfAbsent(model, name -> {
+            Profile profile = new Profile(name, Family.of(name), scales.getOrDefault(name, 1.0),
+                    contextWindows.getOrDefault(name, defaultContextWindow));
+            log.info("Token estimate for {}: {} tokenizer, scale {}, context window {}",
+                    name, profile.getFamily(), profile.getScale(), profile.getContextWindow());
+            return profile;
+        });
+    }
+
+    /**
+     * chunk 를 나눌 때 기준이 되는 주 모델.
+     */
+    public Profile forPrimaryModel() {
+        return forModel(primaryModel);
+    }
+}
@@ -0,0 +1,50 @@
+-- production 프로필(ddl-auto: validate)에서 사용하는 PostgreSQL 스키마
+
+CREATE TABLE IF NOT EXISTS review_job (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    repository_full_name VARCHAR(255)             NOT NULL,
+    pull_request_number  BIGINT                   NOT NULL,
+    head_sha             VARCHAR(255),
+    action               VARCHAR(255),
+    payload              TEXT                     NOT NULL,
+    status               VARCHAR(20)              NOT NULL,
+    attempts             INTEGER                  NOT NULL DEFAULT 0,
+    last_error           VARCHAR(2000),
+    available_at         TIMESTAMP WITH TIME ZONE NOT NULL,
+    worker_id            VARCHAR(100),
+    lease_expires_at     TIMESTAMP WITH TIME ZONE,
+    created_at           TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at           TIMESTAMP WITH TIME ZONE
+);
+
+-- 임대 없이 RUNNING 인 기존 작업은 requeueExpired 가 다시 대기열로 돌린다
+ALTER TABLE review_job ADD COLUMN IF NOT EXISTS worker_id VARCHAR(100);
+ALTER TABLE review_job ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP WITH TIME ZONE;
+
+CREATE INDEX IF NOT EXISTS idx_review_job_status_available ON review_job (status, available_at);
+CREATE INDEX IF NOT EXISTS idx_review_job_pr ON review_job (repository_full_name, pull_request_number);
+
+CREATE TABLE IF NOT EXISTS review_cache_entry (
+    cache_key      VARCHAR(64)              PRIMARY KEY,
+    review_type    VARCHAR(20),
+    model          VARCHAR(255),
+    prompt_version VARCHAR(64),
+    content        TEXT                     NOT NULL,
+    base_line      INTEGER                  NOT NULL DEFAULT 0,
+    created_at     TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_used_at   TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- 키에서 라인 번호를 빼기 전의 항목은 새 키와 맞지 않으므로 기본값 0 으로 둬도 된다
+ALTER TABLE review_cache_entry ADD COLUMN IF NOT EXISTS base_line INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_review_cache_entry_last_used ON review_cache_entry (last_used_at);
+
+CREATE TABLE IF NOT EXISTS pull_request_review_state (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    repository_full_name VARCHAR(255)             NOT NULL,
+    pull_request_number  BIGINT                   NOT NULL,
+    last_reviewed_sha    VARCHAR(255)             NOT NULL,
+    reviewed_at          TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT uk_pull_request_review_state_pr UNIQUE (repository_full_name, pull_request_number)
+);
@@ -0,0 +1,131 @@
+package com.gitea.prbot.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gitea API 호출 비용. 연결 풀을 쓰는 RestTemplate 과 요청마다 연결을 새로 여는 클라이언트를
+ * 로컬 stub 서버에 같은 수만큼 보내 비교하고, 서버가 받은 연결 수를 센다.
+ * ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class RestTemplateConfigBenchmarkTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int CALLERS = 8;
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    private static final byte[] BODY = "{\"id\":1,\"state\":\"open\",\"title\":\"benchmark\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/v1/repos/owner/repo/pulls/1", exchange -> {
+            // 같은 연결에서 온 요청은 같은 원격 포트를 쓴다
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/repos/owner/repo/pulls/1";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private static RestTemplateConfig config() {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(config, "maxConnections", 32);
+        ReflectionTestUtils.setField(config, "maxConnectionsPerHost", MAX_CONNECTIONS_PER_HOST);
+        ReflectionTestUtils.setField(config, "idleTimeout", Duration.ofSeconds(30));
+        return config;
+    }
+
+    /** CALLERS 개 스레드가 나눠 보낸 REQUESTS 건의 소요 시간 */
+    private long run(RestTemplate restTemplate, int requests) throws Exception {
+        List<Future<?>> callers = new ArrayList<>();
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CALLERS; c++) {
+                callers.add(executor.submit(() -> {
+                    for (int i = 0; i < requests / CALLERS; i++) {
+                        assertEquals(BODY.length, restTemplate.getForObject(url, String.class).length());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> caller : callers) {
+                caller.get();
+            }
+        }
+        return System.nanoTime() - started;
+    }
+
+    @Test
+    void pooledVersusNewConnectionPerRequest() throws Exception {
+        RestTemplateConfig config = config();
+        try (CloseableHttpClient pooledClient = config.giteaHttpClient();
+             CloseableHttpClient unpooledClient = HttpClients.custom()
+                     .setConnectionReuseStrategy((request, response, context) -> false)
+                     .build()) {
+            RestTemplate pooled = config.restTemplate(pooledClient);
+            RestTemplate unpooled = new RestTemplate(new HttpComponentsClientHttpRequestFactory(unpooledClient));
+
+            run(pooled, REQUESTS / 4);
+            run(unpooled, REQUESTS / 4);
+
+            clientPorts.clear();
+            long pooledNanos = run(pooled, REQUESTS);
+            int pooledConnections = clientPorts.size();
+
+            clientPorts.clear();
+            long unpooledNanos = run(unpooled, REQUESTS);
+            int unpooledConnections = clientPorts.size();
+
+            assertTrue(pooledConnections <= MAX_CONNECTIONS_PER_HOST,
+                    "pooled client opened " + pooledConnections + " connections");
+            System.out.printf("Gitea RestTemplate: %d requests from %d callers%n", REQUESTS, CALLERS);
+            System.out.printf("  pooled:          %.1f us/request, %d connections%n",
+                    pooledNanos / 1e3 / REQUESTS, pooledConnections);
+            System.out.printf("  new connection:  %.1f us/request, %d connections%n",
+                    unpooledNanos / 1e3 / REQUESTS, unpooledConnections);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.gitea.prbot.diff;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 큰 PR diff 의 파싱 처리량과 diff 1MB 당 할당량을 예전 split("\n")/정규식 방식과 같은 입력에서 비교한다.
+ * 할당량은 com.sun.management.ThreadMXBean 이 지원하는 JVM(HotSpot)에서만 잰다. ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class UnifiedDiffParserBenchmarkTest {
+
+    private static final int FILES = 2_000;
+    private static final int HUNKS_PER_FILE = 5;
+    private static final int ITERATIONS = 20;
+
+    private static String syntheticDiff() {
+        StringBuilder diff = new StringBuilder();
+        for (int f = 0; f < FILES; f++) {
+            String path = "src/main/java/com/example/module" + (f % 40) + "/Service" + f + ".java";
+            diff.append("diff --git a/").append(path).append(" b/").append(path).append('\n')
+                    .append("index 1111111..2222222 100644\n")
+                    .append("--- a/").append(path).append('\n')
+                    .append("+++ b/").append(path).append('\n');
+            for (int h = 0; h < HUNKS_PER_FILE; h++) {
+                int start = 10 + h * 40;
+                diff.append("@@ -").append(start).append(",6 +").append(start).append(",7 @@ class Service {\n")
+                        .append("     private final Repository repository;\n")
+                        .append("     private final Clock clock;\n")
+                        .append("-    public Result find(long id) { return repository.findById(id).orElseThrow(); }\n")
+                        .append("+    public Result find(long id) {\n")
+                        .append("+        return repository.findById(id).orElseThrow(() -> new NotFound(id));\n")
+                        .append("     }\n")
+                        .append("     // end of block\n")
+                        .append("     \n");
+            }
+        }
+        return diff.toString();
+    }
+
+    private static class CountingHandler implements DiffHandler {
+        long files;
+        long lines;
+        long chars;
+
+        @Override
+        public void onFile(DiffFile file) {
+            files++;
+        }
+
+        @Override
+        public void onHunk(DiffHunk hunk) {
+        }
+
+        @Override
+        public void onLine(DiffLine line) {
+            lines++;
+            chars += line.length();
+        }
+    }
+
+    /**
+     * 손으로 짠 파서 이전의 DiffProcessorService 방식. 파일별로 split 한 뒤 다시 줄로 split 하고, hunk 헤더와
+     * 파일 이름은 정규식으로 찾는다. chunk 를 만드는 부분은 빼고 줄을 나누는 비용만 남겼다.
+     */
+    private static final class LegacySplitParser {
+        private static final Pattern DIFF_FILE_PATTERN = Pattern.compile("^diff --git a/(.*) b/(.*)$");
+        // 예전 정규식은 matches() 로 비교해 헤더 뒤에 함수 이름이 붙은 hunk 를 놓쳤다. 같은 줄 수를 읽도록 .* 를 붙였다
+        private static final Pattern HUNK_HEADER_PATTERN = Pattern.compile("^@@\\s*-\\d+,?\\d*\\s*\\+\\d+,?\\d*\\s*@@.*");
+
+        long files;
+        long lines;
+        long chars;
+
+        void parse(String diff) {
+            StringBuilder currentFile = new StringBuilder();
+            for (String line : diff.split("\n")) {
+                if (line.startsWith("diff --git") && currentFile.length() > 0) {
+                    parseFile(currentFile.toString());
+                    currentFile = new StringBuilder();
+                }
+                currentFile.append(line).append("\n");
+            }
+            if (currentFile.length() > 0) {
+                parseFile(currentFile.toString());
+            }
+        }
+
+        private void parseFile(String fileDiff) {
+            for (String line : fileDiff.split("\n")) {
+                Matcher matcher = DIFF_FILE_PATTERN.matcher(line);
+                if (matcher.matches() && matcher.group(2) != null) {
+                    files++;
+                    break;
+                }
+            }
+            for (String line : fileDiff.split("\n")) {
+                if (line.startsWith("diff --git") || line.startsWith("index ")
+                        || line.startsWith("--- ") || line.startsWith("+++ ")) {
+                    continue;
+                }
+                if (HUNK_HEADER_PATTERN.matcher(line).matches()) {
+                    Matcher start = Pattern.compile("\\+\\d+").matcher(line);
+                    if (start.find()) {
+                        Integer.parseInt(start.group().substring(1));
+                    }
+                    continue;
+                }
+                lines++;
+                chars += line.length();
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return -1;
+    }
+
+    @Test
+    void parseThroughput() throws IOException {
+        String diff = syntheticDiff();
+
+        // JIT 워밍업
+        for (int i = 0; i < 5; i++) {
+            new UnifiedDiffParser(new CountingHandler()).parse(diff);
+            new LegacySplitParser().parse(diff);
+        }
+
+        long inMemoryNanos = 0;
+        long readerNanos = 0;
+        long legacyNanos = 0;
+        long inMemoryBytes = 0;
+        long readerBytes = 0;
+        long legacyBytes = 0;
+        CountingHandler handler = null;
+        LegacySplitParser legacy = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            handler = new CountingHandler();
+            long allocated = allocatedBytes();
+            long started = System.nanoTime();
+            new UnifiedDiffParser(handler).parse(diff);
+            inMemoryNanos += System.nanoTime() - started;
+            inMemoryBytes += allocatedBytes() - allocated;
+
+            allocated = allocatedBytes();
+            started = System.nanoTime();
+            new UnifiedDiffParser(new CountingHandler()).parse(new StringReader(diff));
+            readerNanos += System.nanoTime() - started;
+            readerBytes += allocatedBytes() - allocated;
+
+            legacy = new LegacySplitParser();
+            allocated = allocatedBytes();
+            started = System.nanoTime();
+            legacy.parse(diff);
+            legacyNanos += System.nanoTime() - started;
+            legacyBytes += allocatedBytes() - allocated;
+        }
+
+        assertEquals(FILES, handler.files);
+        assertEquals((long) FILES * HUNKS_PER_FILE * 8, handler.lines);
+        // 같은 입력에서 같은 양의 줄을 읽었는지 확인한다
+        assertEquals(handler.files, legacy.files);
+        assertEquals(handler.lines, legacy.lines);
+
+        double diffMegabytes = diff.length() / (1024.0 * 1024.0);
+        double megabytes = diffMegabytes * ITERATIONS;
+        System.out.printf("UnifiedDiffParser: %.1f MB diff, %d lines per run%n", diffMegabytes, handler.lines);
+        print("CharSequence", megabytes, inMemoryNanos, inMemoryBytes);
+        print("Reader", megabytes, readerNanos, readerBytes);
+        print("split/regex", megabytes, legacyNanos, legacyBytes);
+    }
+
+    private static void print(String name, double megabytes, long nanos, long allocatedBytes) {
+        String allocation = allocatedBytes < 0
+                ? "n/a"
+                : String.format("%.2f MB allocated per MB of diff", allocatedBytes / (1024.0 * 1024.0) / megabytes);
+        System.out.printf("  %-12s %7.1f MB/s, %s%n", name + ":", megabytes / (nanos / 1e9), allocation);
+    }
+}
@@ -0,0 +1,179 @@
+package com.gitea.prbot.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnifiedDiffParserTest {
+
+    /**
+     * 이벤트를 "file path", "hunk -a,b +c,d", "ADDED 3/5 +text" 형태의 문자열로 모은다.
+     */
+    private static class Recorder implements DiffHandler {
+        final List<String> events = new ArrayList<>();
+        boolean ended;
+
+        @Override
+        public void onFile(DiffFile file) {
+            events.add("file " + file.path() + " [" + file.extension() + "]");
+        }
+
+        @Override
+        public void onHunk(DiffHunk hunk) {
+            events.add("hunk -" + hunk.oldStart() + "," + hunk.oldCount() + " +" + hunk.newStart() + "," + hunk.newCount());
+        }
+
+        @Override
+        public void onLine(DiffLine line) {
+            events.add(line.kind() + " " + line.oldLineNumber() + "/" + line.newLineNumber() + " " + line);
+        }
+
+        @Override
+        public void onEnd() {
+            ended = true;
+        }
+    }
+
+    private static Recorder parse(String diff) {
+        Recorder recorder = new Recorder();
+        new UnifiedDiffParser(recorder).parse(diff);
+        return recorder;
+    }
+
+    @Test
+    void tracksLineNumbersThroughHunk() {
+        Recorder recorder = parse("""
+                diff --git a/src/App.java b/src/App.java
+                index 1111111..2222222 100644
+                --- a/src/App.java
+                +++ b/src/App.java
+                @@ -10,3 +10,3 @@ class App {
+                 keep();
+                -old();
+                +created();
+                 end();
+                """);
+
+        assertEquals(List.of(
+                "file src/App.java [java]",
+                "hunk -10,3 +10,3",
+                "CONTEXT 10/10  keep();",
+                "REMOVED 11/11 -old();",
+                "ADDED 12/11 +created();",
+                "CONTEXT 12/12  end();"), recorder.events);
+        assertTrue(recorder.ended);
+    }
+
+    @Test
+    void linesAfterHunkCountsAreIgnored() {
+        Recorder recorder = parse("""
+                diff --git a/a.txt b/a.txt
+                @@ -1,1 +1,1 @@
+                -x
+                +y
+                +not part of the hunk
+                """);
+
+        assertEquals(List.of("file a.txt [txt]", "hunk -1,1 +1,1", "REMOVED 1/1 -x", "ADDED 2/1 +y"),
+                recorder.events);
+    }
+
+    @Test
+    void omittedCountsDefaultToOne() {
+        Recorder recorder = parse("""
+                diff --git a/a.txt b/a.txt
+                @@ -3 +3 @@
+                -x
+                +y
+                """);
+
+        assertEquals("hunk -3,1 +3,1", recorder.events.get(1));
+        assertEquals(4, recorder.events.size());
+    }
+
+    @Test
+    void noNewlineMarkerIsNotALine() {
+        Recorder recorder = parse("""
+                diff --git a/a.txt b/a.txt
+                @@ -1,1 +1,1 @@
+                -x
+                \\ No newline at end of file
+                +y
+                \\ No newline at end of file
+                """);
+
+        assertEquals(List.of("file a.txt [txt]", "hunk -1,1 +1,1", "REMOVED 1/1 -x", "ADDED 2/1 +y"),
+                recorder.events);
+    }
+
+    @Test
+    void renameUsesNewPath() {
+        Recorder recorder = parse("""
+                diff --git a/old/Name.java b/new/Name.java
+                similarity index 90%
+                rename from old/Name.java
+                rename to new/Name.java
+                --- a/old/Name.java
+                +++ b/new/Name.java
+                @@ -1,1 +1,1 @@
+                -class Old {}
+                +class Name {}
+                """);
+
+        assertEquals("file new/Name.java [java]", recorder.events.get(0));
+        assertEquals(4, recorder.events.size());
+    }
+
+    @Test
+    void binaryFileHasNoHunks() {
+        Recorder recorder = parse("""
+                diff --git a/img/logo.png b/img/logo.png
+                index 1111111..2222222 100644
+                Binary files a/img/logo.png and b/img/logo.png differ
+                diff --git a/README b/README
+                @@ -1,0 +1,1 @@
+                +hello
+                """);
+
+        assertEquals(List.of("file img/logo.png [png]", "file README []", "hunk -1,0 +1,1", "ADDED 1/1 +hello"),
+                recorder.events);
+    }
+
+    @Test
+    void readerHandlesCrlfAndLinesLongerThanBuffer() throws IOException {
+        String longLine = "+" + "x".repeat(40_000);
+        String diff = "diff --git a/a.txt b/a.txt\r\n@@ -1,0 +1,2 @@\r\n" + longLine + "\r\n+short";
+
+        Recorder recorder = new Recorder();
+        new UnifiedDiffParser(recorder).parse(new StringReader(diff));
+
+        assertEquals(4, recorder.events.size());
+        assertEquals("ADDED 1/1 " + longLine, recorder.events.get(2));
+        assertEquals("ADDED 1/2 +short", recorder.events.get(3));
+        assertTrue(recorder.ended);
+    }
+
+    @Test
+    void feedMatchesWholeInputParse() {
+        String diff = """
+                diff --git a/a.txt b/a.txt
+                @@ -5,2 +5,2 @@
+                 a
+                -b
+                +c
+                """;
+        Recorder fed = new Recorder();
+        UnifiedDiffParser parser = new UnifiedDiffParser(fed);
+        diff.lines().forEach(parser::feed);
+        parser.finish();
+
+        assertEquals(parse(diff).events, fed.events);
+        assertTrue(fed.ended);
+    }
+}
@@ -0,0 +1,193 @@
+package com.gitea.prbot.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitea.prbot.entity.ReviewJob;
+import com.gitea.prbot.entity.ReviewJobStatus;
+import com.gitea.prbot.service.InFlightReviewRegistry;
+import com.gitea.prbot.service.ReviewJobQueueService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 영속 대기열의 임대(lease) 쿼리와 실패한 작업의 SUPERSEDED 처리를 내장 H2 에서 확인한다.
+ */
+@DataJpaTest
+class ReviewJobRepositoryTest {
+
+    private static final String REPOSITORY = "org/repo";
+
+    @Autowired
+    private ReviewJobRepository reviewJobRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ReviewJob pending(long prNumber) {
+        return entityManager.persistAndFlush(new ReviewJob(REPOSITORY, prNumber, "sha-" + prNumber, "opened", "{}"));
+    }
+
+    private ReviewJob running(long prNumber, String workerId, Instant leaseExpiresAt) {
+        ReviewJob job = new ReviewJob(REPOSITORY, prNumber, "sha-" + prNumber, "synchronize", "{}");
+        job.setStatus(ReviewJobStatus.RUNNING);
+        job.setWorkerId(workerId);
+        job.setLeaseExpiresAt(leaseExpiresAt);
+        return entityManager.persistAndFlush(job);
+    }
+
+    /**
+     * 벌크 update 는 영속성 컨텍스트를 거치지 않으므로 다시 읽는다.
+     */
+    private ReviewJob reload(ReviewJob job) {
+        entityManager.clear();
+        return entityManager.find(ReviewJob.class, job.getId());
+    }
+
+    private ReviewJobQueueService queueService(String workerId) {
+        return new ReviewJobQueueService(reviewJobRepository, new InFlightReviewRegistry(), new ObjectMapper(),
+                3, Duration.ofSeconds(30), workerId, Duration.ofMinutes(2));
+    }
+
+    @Test
+    void claimLeasesPendingJobOnlyOnce() {
+        ReviewJob job = pending(1);
+        Instant now = Instant.now();
+        Instant leaseExpiresAt = now.plus(Duration.ofMinutes(2));
+
+        assertEquals(1, reviewJobRepository.claim(job.getId(), "worker-a", leaseExpiresAt,
+                ReviewJobStatus.PENDING, ReviewJobStatus.RUNNING, now));
+        assertEquals(0, reviewJobRepository.claim(job.getId(), "worker-b", leaseExpiresAt,
+                ReviewJobStatus.PENDING, ReviewJobStatus.RUNNING, now));
+
+        ReviewJob claimed = reload(job);
+        assertEquals(ReviewJobStatus.RUNNING, claimed.getStatus());
+        assertEquals("worker-a", claimed.getWorkerId());
+        assertEquals(leaseExpiresAt.toEpochMilli(), claimed.getLeaseExpiresAt().toEpochMilli());
+    }
+
+    @Test
+    void renewLeasesExtendsOnlyJobsOwnedByWorker() {
+        Instant now = Instant.now();
+        ReviewJob own = running(1, "worker-a", now.plusSeconds(10));
+        ReviewJob other = running(2, "worker-b", now.plusSeconds(10));
+        Instant renewed = now.plus(Duration.ofMinutes(2));
+
+        int count = reviewJobRepository.renewLeases(List.of(own.getId(), other.getId()), "worker-a", renewed,
+                ReviewJobStatus.RUNNING, now);
+
+        assertEquals(1, count);
+        assertEquals(renewed.toEpochMilli(), reload(own).getLeaseExpiresAt().toEpochMilli());
+        assertEquals(now.plusSeconds(10).toEpochMilli(), reload(other).getLeaseExpiresAt().toEpochMilli());
+    }
+
+    @Test
+    void leaseExpiresAfterItsDeadline() {
+        Instant now = Instant.now();
+        ReviewJob job = running(1, "worker-a", now.plusSeconds(30));
+
+        assertEquals(0, reviewJobRepository.requeueExpired(ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING, now));
+        assertEquals(ReviewJobStatus.RUNNING, reload(job).getStatus());
+
+        assertEquals(1, reviewJobRepository.requeueExpired(ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING,
+                now.plusSeconds(31)));
+        ReviewJob requeued = reload(job);
+        assertEquals(ReviewJobStatus.PENDING, requeued.getStatus());
+        assertNull(requeued.getWorkerId());
+        assertNull(requeued.getLeaseExpiresAt());
+    }
+
+    @Test
+    void requeueExpiredLeavesLiveLeasesAndOtherStatesAlone() {
+        Instant now = Instant.now();
+        ReviewJob expired = running(1, "worker-a", now.minusSeconds(1));
+        ReviewJob live = running(2, "worker-b", now.plusSeconds(60));
+        // 임대를 기록하기 전 버전이 선점한 작업
+        ReviewJob legacy = running(3, null, null);
+        ReviewJob waiting = pending(4);
+        ReviewJob done = pending(5);
+        done.setStatus(ReviewJobStatus.COMPLETED);
+        entityManager.persistAndFlush(done);
+
+        int requeued = reviewJobRepository.requeueExpired(ReviewJobStatus.RUNNING, ReviewJobStatus.PENDING, now);
+
+        assertEquals(2, requeued);
+        assertEquals(ReviewJobStatus.PENDING, reload(expired).getStatus());
+        assertEquals(ReviewJobStatus.PENDING, reload(legacy).getStatus());
+        ReviewJob stillRunning = reload(live);
+        assertEquals(ReviewJobStatus.RUNNING, stillRunning.getStatus());
+        assertEquals("worker-b", stillRunning.getWorkerId());
+        assertEquals(ReviewJobStatus.PENDING, reload(waiting).getStatus());
+        assertEquals(ReviewJobStatus.COMPLETED, reload(done).getStatus());
+    }
+
+    @Test
+    void requeueWorkerReturnsOnlyThatWorkersJobs() {
+        Instant now = Instant.now();
+        ReviewJob own = running(1, "worker-a", now.plusSeconds(60));
+        ReviewJob other = running(2, "worker-b", now.plusSeconds(60));
+
+        assertEquals(1, reviewJobRepository.requeueWorker("worker-a", ReviewJobStatus.RUNNING,
+                ReviewJobStatus.PENDING, now));
+        assertEquals(ReviewJobStatus.PENDING, reload(own).getStatus());
+        assertEquals(ReviewJobStatus.RUNNING, reload(other).getStatus());
+    }
+
+    @Test
+    void supersedePendingKeepsLatestAndRunningJobs() {
+        ReviewJob older = pending(7);
+        ReviewJob runningOlder = running(7, "worker-a", Instant.now().plusSeconds(60));
+        ReviewJob otherPr = pending(8);
+        ReviewJob latest = pending(7);
+
+        int superseded = reviewJobRepository.supersedePending(REPOSITORY, 7L, latest.getId(),
+                ReviewJobStatus.PENDING, ReviewJobStatus.SUPERSEDED, Instant.now());
+
+        assertEquals(1, superseded);
+        assertEquals(ReviewJobStatus.SUPERSEDED, reload(older).getStatus());
+        assertEquals(ReviewJobStatus.RUNNING, reload(runningOlder).getStatus());
+        assertEquals(ReviewJobStatus.PENDING, reload(otherPr).getStatus());
+        assertEquals(ReviewJobStatus.PENDING, reload(latest).getStatus());
+    }
+
+    @Test
+    void failedJobIsSupersededWhenNewerJobExists() {
+        ReviewJob failing = running(9, "worker-a", Instant.now().plusSeconds(60));
+        ReviewJob newer = pending(9);
+        assertTrue(reviewJobRepository.existsByRepositoryFullNameAndPullRequestNumberAndIdGreaterThan(
+                REPOSITORY, 9L, failing.getId()));
+
+        queueService("worker-a").markFailed(failing.getId(), new IllegalStateException("ollama down"));
+        entityManager.flush();
+
+        ReviewJob failed = reload(failing);
+        assertEquals(ReviewJobStatus.SUPERSEDED, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertNull(failed.getWorkerId());
+        assertEquals(ReviewJobStatus.PENDING, reload(newer).getStatus());
+    }
+
+    @Test
+    void failedJobIsRetriedWhenNoNewerJobExists() {
+        pending(10);
+        ReviewJob failing = running(10, "worker-a", Instant.now().plusSeconds(60));
+        assertFalse(reviewJobRepository.existsByRepositoryFullNameAndPullRequestNumberAndIdGreaterThan(
+                REPOSITORY, 10L, failing.getId()));
+
+        queueService("worker-a").markFailed(failing.getId(), new IllegalStateException("ollama down"));
+        entityManager.flush();
+
+        ReviewJob failed = reload(failing);
+        assertEquals(ReviewJobStatus.PENDING, failed.getStatus());
+        assertTrue(failed.getAvailableAt().isAfter(Instant.now()));
+    }
+}
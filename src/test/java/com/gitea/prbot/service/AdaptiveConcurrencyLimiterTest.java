@@ -0,0 +1,156 @@
+package com.gitea.prbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final String MODEL = "qwen2.5-coder:7b";
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1_000);
+
+    private AdaptiveConcurrencyLimiter limiter(int initial, int min, int max) {
+        return new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), true,
+                initial, min, max, 2.0, 0.5, MODEL, "");
+    }
+
+    /**
+     * 라운드마다 limit 만큼 허용량을 잡은 뒤 모두 돌려준다. 라운드의 첫 release 가 포화 상태에서 일어난다.
+     */
+    private static void saturatedReleases(AdaptiveConcurrencyLimiter limiter, int count, long latency) {
+        for (int i = 0; i < count; i++) {
+            int limit = limiter.getLimit(MODEL);
+            AdaptiveConcurrencyLimiter.Permit[] permits = new AdaptiveConcurrencyLimiter.Permit[limit];
+            for (int p = 0; p < limit; p++) {
+                permits[p] = limiter.acquire(MODEL);
+            }
+            for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+                permit.release(latency, true);
+            }
+        }
+    }
+
+    private static boolean acquiresWithin(AdaptiveConcurrencyLimiter limiter, int permits) throws Exception {
+        CompletableFuture<Void> acquired = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < permits; i++) {
+                limiter.acquire(MODEL);
+            }
+        });
+        try {
+            acquired.get(1, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    @Test
+    void increasesLimitWhileSaturatedAndLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 8);
+
+        // 라운드마다 첫 release 만 포화 상태다: 2 -> 2.5 -> 2.9 -> 3.24
+        saturatedReleases(limiter, 3, FAST);
+
+        assertEquals(3, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void doesNotIncreaseLimitWithoutSaturation() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 8);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(MODEL).release(FAST, true);
+        }
+
+        assertEquals(2, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void decreasesLimitWhenLatencyExceedsBaseline() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 8);
+        limiter.acquire(MODEL).release(FAST, true);
+
+        // 단기 EWMA = 100 + 0.3 * 900 = 370ms > 기준 100ms * 2.0
+        limiter.acquire(MODEL).release(SLOW, true);
+
+        assertEquals(2, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void decreasesLimitOnFailure() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 1, 8);
+
+        limiter.acquire(MODEL).release(FAST, false);
+
+        assertEquals(2, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void clampsLimitToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 2, 8);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(MODEL).release(FAST, false);
+        }
+
+        assertEquals(2, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void clampsLimitToMaximum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 3);
+
+        saturatedReleases(limiter, 10, FAST);
+
+        assertEquals(3, limiter.getLimit(MODEL));
+    }
+
+    @Test
+    void clampsInitialLimitIntoRange() {
+        assertEquals(3, limiter(10, 1, 3).getLimit(MODEL));
+        assertEquals(2, limiter(1, 2, 3).getLimit(MODEL));
+    }
+
+    @Test
+    void releasesPermitWhenActionThrows() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 2, 2);
+
+        assertThrows(IllegalStateException.class, () -> limiter.call(MODEL, () -> {
+            throw new IllegalStateException("ollama down");
+        }));
+
+        assertEquals(2, limiter.getLimit(MODEL));
+        assertTrue(acquiresWithin(limiter, 2));
+    }
+
+    @Test
+    void ignoresSecondReleaseOfSamePermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 2, 2);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(MODEL);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire(MODEL);
+        permit.release(FAST, true);
+        permit.release(FAST, true);
+
+        // 두 번째 release 가 허용량을 하나 더 돌려줬다면 두 개를 잡을 수 있다
+        assertFalse(acquiresWithin(limiter, 2));
+        held.release(FAST, true);
+    }
+
+    @Test
+    void disabledLimiterNeverBlocks() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), false,
+                1, 1, 1, 2.0, 0.5, MODEL, "");
+
+        assertTrue(acquiresWithin(limiter, 5));
+    }
+}
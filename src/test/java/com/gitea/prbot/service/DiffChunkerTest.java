@@ -0,0 +1,152 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.diff.UnifiedDiffParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffChunkerTest {
+
+    private record Chunk(String path, String content, int startLine, int endLine, int tokens) {
+
+        List<String> bodyLines() {
+            return content.lines().filter(line -> !line.startsWith("@@ ")).toList();
+        }
+
+        long headers() {
+            return content.lines().filter(line -> line.startsWith("@@ ")).count();
+        }
+    }
+
+    private final TokenEstimator.Profile profile =
+            new TokenEstimator("starcoder2:3b", 16384, Set.of(), Set.of()).forPrimaryModel();
+
+    private List<Chunk> chunk(String diff, int tokenBudget, int maxLines) {
+        List<Chunk> chunks = new ArrayList<>();
+        DiffChunker chunker = new DiffChunker((file, content, startLine, endLine, tokens) ->
+                chunks.add(new Chunk(file.path(), content, startLine, endLine, tokens)), tokenBudget, maxLines, profile);
+        new UnifiedDiffParser(chunker).parse(diff);
+        return chunks;
+    }
+
+    private static String hunk(int start, List<String> lines) {
+        StringBuilder hunk = new StringBuilder("@@ -").append(start).append(',').append(lines.size())
+                .append(" +").append(start).append(',').append(lines.size()).append(" @@\n");
+        lines.forEach(line -> hunk.append(' ').append(line).append('\n'));
+        return hunk.toString();
+    }
+
+    @Test
+    void packsSmallHunksOfOneFileTogether() {
+        String diff = "diff --git a/A.java b/A.java\n"
+                + "@@ -10,2 +10,3 @@\n a();\n+b();\n c();\n"
+                + "@@ -50,1 +51,2 @@\n d();\n+e();\n";
+
+        List<Chunk> chunks = chunk(diff, 10_000, 100);
+
+        assertEquals(1, chunks.size());
+        Chunk chunk = chunks.get(0);
+        assertEquals(2, chunk.headers());
+        assertEquals(List.of(" a();", "+b();", " c();", " d();", "+e();"), chunk.bodyLines());
+        assertEquals(10, chunk.startLine());
+        assertEquals(52, chunk.endLine());
+        assertTrue(chunk.content().startsWith("@@ -10,2 +10,3 @@\n"));
+        assertTrue(chunk.content().contains("@@ -50,1 +51,2 @@\n"));
+    }
+
+    @Test
+    void neverMixesFiles() {
+        String diff = "diff --git a/A.java b/A.java\n@@ -1,1 +1,1 @@\n-a\n+b\n"
+                + "diff --git a/B.java b/B.java\n@@ -1,1 +1,1 @@\n-c\n+d\n";
+
+        List<Chunk> chunks = chunk(diff, 10_000, 100);
+
+        assertEquals(List.of("A.java", "B.java"), chunks.stream().map(Chunk::path).toList());
+    }
+
+    @Test
+    void startsNewChunkWhenNextHunkDoesNotFit() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            lines.add("line" + i + "();");
+        }
+        String diff = "diff --git a/A.java b/A.java\n" + hunk(1, lines) + hunk(100, lines);
+
+        List<Chunk> chunks = chunk(diff, 10_000, 8);
+
+        assertEquals(2, chunks.size());
+        assertEquals(1, chunks.get(0).startLine());
+        assertEquals(100, chunks.get(1).startLine());
+    }
+
+    @Test
+    void splitsOversizeHunkWithoutLosingLines() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add("call" + i + "();");
+        }
+        String diff = "diff --git a/A.java b/A.java\n" + hunk(1, lines);
+
+        List<Chunk> chunks = chunk(diff, 10_000, 12);
+
+        assertTrue(chunks.size() >= 5);
+        List<String> body = new ArrayList<>();
+        int expectedStart = 1;
+        for (Chunk chunk : chunks) {
+            assertEquals(1, chunk.headers());
+            assertTrue(chunk.bodyLines().size() <= 12);
+            // 각 조각의 헤더가 조각의 실제 위치를 가리킨다
+            assertEquals(expectedStart, chunk.startLine());
+            assertTrue(chunk.content().startsWith("@@ -" + expectedStart + "," + chunk.bodyLines().size()
+                    + " +" + expectedStart + "," + chunk.bodyLines().size() + " @@\n"));
+            expectedStart += chunk.bodyLines().size();
+            body.addAll(chunk.bodyLines());
+        }
+        assertEquals(lines.stream().map(line -> " " + line).toList(), body);
+    }
+
+    @Test
+    void splitsAtBlockEndRatherThanMidBlock() {
+        List<String> lines = new ArrayList<>();
+        lines.add("void first() {");
+        for (int i = 0; i < 6; i++) {
+            lines.add("    a" + i + "();");
+        }
+        lines.add("}");
+        lines.add("void second() {");
+        for (int i = 0; i < 6; i++) {
+            lines.add("    b" + i + "();");
+        }
+        lines.add("}");
+        String diff = "diff --git a/A.java b/A.java\n" + hunk(1, lines);
+
+        List<Chunk> chunks = chunk(diff, 10_000, 10);
+
+        assertEquals(2, chunks.size());
+        assertEquals(" }", chunks.get(0).bodyLines().get(chunks.get(0).bodyLines().size() - 1));
+        assertEquals(" void second() {", chunks.get(1).bodyLines().get(0));
+    }
+
+    @Test
+    void tokenBudgetAlsoSplits() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            lines.add("someRatherLongIdentifierName" + i + " = anotherLongIdentifier(" + i + ");");
+        }
+        String diff = "diff --git a/A.java b/A.java\n" + hunk(1, lines);
+        int budget = 200;
+
+        List<Chunk> chunks = chunk(diff, budget, 1_000);
+
+        assertTrue(chunks.size() > 1);
+        for (Chunk chunk : chunks) {
+            assertTrue(chunk.tokens() <= budget, "chunk of " + chunk.tokens() + " tokens");
+        }
+        assertEquals(40, chunks.stream().mapToInt(chunk -> chunk.bodyLines().size()).sum());
+    }
+}
@@ -0,0 +1,34 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffProcessorServiceTest {
+
+    private final DiffProcessorService service =
+            new DiffProcessorService(new TokenEstimator("starcoder2:3b", 16384, Set.of(), Set.of()));
+
+    @Test
+    void skipsCommentOnlyHunk() {
+        assertTrue(service.shouldSkipChunk("@@ -10,2 +10,3 @@\n // 설명\n+// 새 주석\n+ * 문서\n"));
+    }
+
+    @Test
+    void skipsBlankLinesAndNoNewlineMarker() {
+        assertTrue(service.shouldSkipChunk("@@ -1,1 +1,2 @@\n+\n \n\\ No newline at end of file\n"));
+    }
+
+    @Test
+    void skipsHeaderOnlyChunk() {
+        assertTrue(service.shouldSkipChunk("@@ -1,0 +1,0 @@ class Foo {\n"));
+    }
+
+    @Test
+    void keepsHunkWithCode() {
+        assertFalse(service.shouldSkipChunk("@@ -10,2 +10,3 @@\n // 설명\n+int x = 1;\n"));
+    }
+}
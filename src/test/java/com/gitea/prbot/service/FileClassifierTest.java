@@ -0,0 +1,90 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.FileKind;
+import com.gitea.prbot.service.FileFilter.Rule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileClassifierTest {
+
+    private static List<FileKind> kinds(List<Rule> rules) {
+        return rules.stream().map(Rule::kind).toList();
+    }
+
+    @Test
+    void ignoreFileSkipsCommentsAndBlankLines() {
+        List<Rule> rules = FileClassifier.parseIgnore("""
+                # 생성된 클라이언트
+                
+                api/client/
+                  *.snap  
+                """);
+
+        assertEquals(List.of(FileKind.IGNORED, FileKind.IGNORED), kinds(rules));
+        assertTrue(rules.get(0).pattern().matches("api/client/Api.java"));
+        assertTrue(rules.get(1).pattern().matches("test/__snapshots__/view.snap"));
+    }
+
+    @Test
+    void negatedIgnorePatternReviewsAgain() {
+        List<Rule> rules = FileClassifier.parseIgnore("docs/\n!docs/api.md\n");
+
+        assertEquals(List.of(FileKind.IGNORED, FileKind.SOURCE), kinds(rules));
+        assertTrue(rules.get(1).pattern().matches("docs/api.md"));
+    }
+
+    @Test
+    void missingFileHasNoRules() {
+        assertTrue(FileClassifier.parseIgnore(null).isEmpty());
+        assertTrue(FileClassifier.parseAttributes(null).isEmpty());
+    }
+
+    @Test
+    void linguistAttributesMapToKinds() {
+        List<Rule> rules = FileClassifier.parseAttributes("""
+                *.pb.go linguist-generated
+                third_party/** linguist-vendored=true
+                *.png binary
+                *.pdf -diff
+                """);
+
+        assertEquals(List.of(FileKind.GENERATED, FileKind.VENDORED, FileKind.BINARY, FileKind.BINARY), kinds(rules));
+        assertTrue(rules.get(0).pattern().matches("api/v1/user.pb.go"));
+    }
+
+    @Test
+    void unsetLinguistAttributeReviewsAgain() {
+        List<Rule> rules = FileClassifier.parseAttributes("""
+                gen/** linguist-generated
+                gen/handwritten/** -linguist-generated
+                vendor/patched/** linguist-vendored=false
+                """);
+
+        assertEquals(List.of(FileKind.GENERATED, FileKind.SOURCE, FileKind.SOURCE), kinds(rules));
+    }
+
+    @Test
+    void unrelatedAttributesAreIgnored() {
+        List<Rule> rules = FileClassifier.parseAttributes("""
+                # 줄바꿈
+                * text=auto eol=lf
+                *.sh -binary
+                *.java diff=java
+                """);
+
+        assertTrue(rules.isEmpty());
+    }
+
+    @Test
+    void lastRelevantAttributeOnLineWins() {
+        List<Rule> rules = FileClassifier.parseAttributes("assets/** linguist-vendored binary text\n");
+
+        assertEquals(List.of(FileKind.BINARY), kinds(rules));
+        assertFalse(rules.get(0).pattern().matches("src/assets.txt"));
+    }
+}
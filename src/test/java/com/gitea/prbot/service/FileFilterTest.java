@@ -0,0 +1,129 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.diff.UnifiedDiffParser;
+import com.gitea.prbot.model.FileKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileFilterTest {
+
+    private static final int MAX_LINE_LENGTH = 200;
+
+    private final FileFilter filter = new FileFilter(true, List.of(), List.of(), MAX_LINE_LENGTH, Map.of());
+
+    /** diff 를 필터와 chunker 에 흘려 보내고 chunk 로 나온 파일 경로를 돌려준다. */
+    private List<String> reviewedFiles(String diff) {
+        List<String> files = new ArrayList<>();
+        TokenEstimator.Profile profile = new TokenEstimator("starcoder2:3b", 16384, Set.of(), Set.of()).forPrimaryModel();
+        DiffChunker chunker = new DiffChunker((file, content, start, end, tokens) -> {
+            if (!files.contains(file.path())) {
+                files.add(file.path());
+            }
+        }, 100_000, 10_000, profile);
+        new UnifiedDiffParser(new FileFilteringHandler(chunker, filter)).parse(diff);
+        return files;
+    }
+
+    private static String addedFile(String path, List<String> lines) {
+        StringBuilder diff = new StringBuilder("diff --git a/").append(path).append(" b/").append(path).append('\n')
+                .append("@@ -0,0 +1,").append(lines.size()).append(" @@\n");
+        lines.forEach(line -> diff.append('+').append(line).append('\n'));
+        return diff.toString();
+    }
+
+    private static List<String> normalLines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("    value" + i + " = compute(" + i + ");");
+        }
+        return lines;
+    }
+
+    @Test
+    void oneLongLineDoesNotMakeFileMinified() {
+        List<String> lines = normalLines(60);
+        lines.add(5, "    String logo = \"data:image/png;base64," + "A".repeat(5_000) + "\";");
+
+        assertEquals(List.of("src/Logo.java"), reviewedFiles(addedFile("src/Logo.java", lines)));
+        assertTrue(filter.getSkippedFiles().isEmpty());
+    }
+
+    @Test
+    void oneLongLineInShortFileIsKept() {
+        List<String> lines = normalLines(4);
+        lines.add("    String key = \"" + "k".repeat(300) + "\";");
+
+        assertEquals(List.of("src/Keys.java"), reviewedFiles(addedFile("src/Keys.java", lines)));
+    }
+
+    @Test
+    void mostlyLongLinesAreMinified() {
+        List<String> lines = List.of("x".repeat(500), "y".repeat(500), "short();");
+
+        assertTrue(reviewedFiles(addedFile("web/app.js", lines)).isEmpty());
+        assertEquals(Map.of("web/app.js", FileKind.MINIFIED), filter.getSkippedFiles());
+    }
+
+    @Test
+    void licenseHeaderAndHugeBundleLineIsMinified() {
+        List<String> lines = new ArrayList<>(List.of("/*!", " * lib v1.0", " * MIT License", " */"));
+        lines.add("!function(){" + "var a=1;".repeat(2_000) + "}();");
+
+        assertTrue(reviewedFiles(addedFile("web/lib.js", lines)).isEmpty());
+        assertEquals(FileKind.MINIFIED, filter.getSkippedFiles().get("web/lib.js"));
+    }
+
+    @Test
+    void minifiedFileDoesNotTakeFollowingFileWithIt() {
+        String diff = addedFile("web/app.js", List.of("x".repeat(500), "y".repeat(500)))
+                + addedFile("src/App.java", normalLines(3));
+
+        assertEquals(List.of("src/App.java"), reviewedFiles(diff));
+    }
+
+    @Test
+    void generatedHeaderCommentIsGenerated() {
+        List<String> lines = new ArrayList<>(List.of("// Code generated by protoc-gen-go. DO NOT EDIT.", "package api"));
+        lines.addAll(normalLines(5));
+
+        assertTrue(reviewedFiles(addedFile("api/api.go", lines)).isEmpty());
+        assertEquals(FileKind.GENERATED, filter.getSkippedFiles().get("api/api.go"));
+    }
+
+    @Test
+    void markerInCodeOrTrailingCommentIsNotGenerated() {
+        List<String> lines = List.of(
+                "package util;",
+                "class Banner { static final String TEXT = \"DO NOT EDIT\"; }",
+                "int x = 1; // @generated id, do not edit");
+
+        assertEquals(List.of("src/Banner.java"), reviewedFiles(addedFile("src/Banner.java", lines)));
+    }
+
+    @Test
+    void markerBelowFileHeaderIsIgnored() {
+        List<String> lines = normalLines(8);
+        lines.add("    // do not edit the values above by hand");
+
+        assertEquals(List.of("src/Table.java"), reviewedFiles(addedFile("src/Table.java", lines)));
+    }
+
+    @Test
+    void classifiesByPath() {
+        assertEquals(FileKind.BINARY, filter.classify("assets/logo.PNG"));
+        assertEquals(FileKind.LOCKFILE, filter.classify("web/package-lock.json"));
+        assertEquals(FileKind.VENDORED, filter.classify("vendor/github.com/x/y.go"));
+        assertEquals(FileKind.MINIFIED, filter.classify("static/jquery.min.js"));
+        assertEquals(FileKind.GENERATED, filter.classify("api/service.pb.go"));
+        assertEquals(FileKind.GENERATED, filter.classify("src/generated/Model.java"));
+        assertEquals(FileKind.SOURCE, filter.classify("src/vendorService.java"));
+        assertEquals(FileKind.SOURCE, FileFilter.NONE.classify("vendor/lib.go"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewResult;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FindingsAggregatorTest {
+
+    private final FindingsAggregator aggregator = new FindingsAggregator(new SimpleMeterRegistry(), 0.6, 3);
+
+    private static ReviewResult result(ReviewType type, String path, BitSet commentable, Finding... findings) {
+        return ReviewResult.builder()
+                .reviewType(type)
+                .filePath(path)
+                .commentableLines(commentable)
+                .findings(List.of(findings))
+                .build();
+    }
+
+    private static BitSet lines(int from, int to) {
+        BitSet lines = new BitSet();
+        lines.set(from, to + 1);
+        return lines;
+    }
+
+    private static Finding finding(String path, int line, ReviewType type, Severity severity, String rule,
+                                   String message) {
+        return Finding.reported(path, line, line, type, severity, rule, message);
+    }
+
+    @Test
+    void mergesSimilarMessagesFromDifferentReviewTypes() {
+        List<Finding> merged = aggregator.aggregate(List.of(
+                result(ReviewType.SECURITY, "src/UserDao.java", lines(40, 50),
+                        finding("UserDao.java", 42, ReviewType.SECURITY, Severity.HIGH, null,
+                                "문자열 연결로 SQL 쿼리를 만듭니다")),
+                result(ReviewType.PERFORMANCE, "src/UserDao.java", lines(40, 50),
+                        finding("UserDao.java", 43, ReviewType.PERFORMANCE, Severity.MED, null,
+                                "문자열 연결로 SQL 쿼리를 만듭니다."))));
+
+        assertEquals(1, merged.size());
+        Finding finding = merged.get(0);
+        assertEquals("src/UserDao.java", finding.path());
+        assertEquals(Severity.HIGH, finding.severity());
+        assertEquals(EnumSet.of(ReviewType.SECURITY, ReviewType.PERFORMANCE), finding.categories());
+        assertEquals(42, finding.startLine());
+        assertEquals(43, finding.endLine());
+        assertEquals(2, finding.occurrences());
+        assertTrue(finding.commentable());
+    }
+
+    @Test
+    void sameRuleOnSameLineMergesDespiteDifferentWording() {
+        List<Finding> merged = aggregator.aggregate(List.of(result(ReviewType.GENERAL, "A.java", lines(1, 20),
+                finding("A.java", 5, ReviewType.SECURITY, Severity.MED, "Injection", "입력 검증 없음"),
+                finding("A.java", 5, ReviewType.GENERAL, Severity.LOW, "injection", "사용자 값을 그대로 씀"))));
+
+        assertEquals(1, merged.size());
+        assertEquals(Severity.MED, merged.get(0).severity());
+    }
+
+    @Test
+    void keepsDistantOrDifferentFindingsApart() {
+        List<Finding> merged = aggregator.aggregate(List.of(result(ReviewType.GENERAL, "A.java", lines(1, 100),
+                finding("A.java", 5, ReviewType.STYLE, Severity.LOW, null, "변수 이름이 모호합니다"),
+                finding("A.java", 80, ReviewType.STYLE, Severity.LOW, null, "변수 이름이 모호합니다"),
+                finding("A.java", 6, ReviewType.PERFORMANCE, Severity.LOW, null, "루프 안에서 객체를 생성합니다"))));
+
+        assertEquals(3, merged.size());
+    }
+
+    @Test
+    void differentFilesNeverMerge() {
+        List<Finding> merged = aggregator.aggregate(List.of(
+                result(ReviewType.GENERAL, "A.java", lines(1, 10),
+                        finding("A.java", 3, ReviewType.GENERAL, Severity.LOW, null, "null 검사 누락")),
+                result(ReviewType.GENERAL, "B.java", lines(1, 10),
+                        finding("B.java", 3, ReviewType.GENERAL, Severity.LOW, null, "null 검사 누락"))));
+
+        assertEquals(2, merged.size());
+    }
+
+    @Test
+    void findingOutsideChunkDiffIsNotCommentable() {
+        List<Finding> merged = aggregator.aggregate(List.of(
+                result(ReviewType.GENERAL, "src/A.java", lines(10, 20),
+                        finding("A.java", 90, ReviewType.GENERAL, Severity.LOW, null, "diff 밖의 줄"),
+                        finding("Other.java", 12, ReviewType.GENERAL, Severity.LOW, null, "다른 파일"),
+                        finding(null, 0, ReviewType.GENERAL, Severity.LOW, null, "위치 없음"))));
+
+        assertEquals(3, merged.size());
+        merged.forEach(finding -> assertFalse(finding.commentable(), finding.toString()));
+        assertTrue(merged.stream().anyMatch(finding -> "src/A.java".equals(finding.path()) && finding.line() == 0));
+    }
+
+    @Test
+    void anchorsOnCommentableReportWhenMerging() {
+        List<Finding> merged = aggregator.aggregate(List.of(
+                result(ReviewType.SECURITY, "A.java", lines(20, 30),
+                        finding("A.java", 18, ReviewType.SECURITY, Severity.HIGH, null, "토큰을 로그에 남깁니다")),
+                result(ReviewType.STYLE, "A.java", lines(20, 30),
+                        finding("A.java", 20, ReviewType.STYLE, Severity.LOW, null, "토큰을 로그에 남깁니다"))));
+
+        assertEquals(1, merged.size());
+        assertEquals(20, merged.get(0).line());
+        assertTrue(merged.get(0).commentable());
+        assertEquals(Severity.HIGH, merged.get(0).severity());
+    }
+
+    @Test
+    void sortsBySeverityThenPathThenLine() {
+        List<Finding> merged = aggregator.aggregate(List.of(result(ReviewType.GENERAL, "B.java", lines(1, 100),
+                finding("B.java", 50, ReviewType.GENERAL, Severity.LOW, null, "첫째 문제 설명"),
+                finding("B.java", 10, ReviewType.GENERAL, Severity.LOW, null, "완전히 다른 내용"),
+                finding("B.java", 90, ReviewType.GENERAL, Severity.HIGH, null, "심각한 보안 결함"))));
+
+        assertEquals(List.of(90, 10, 50), merged.stream().map(Finding::line).toList());
+    }
+}
@@ -0,0 +1,143 @@
+package com.gitea.prbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * compare diff 를 웹 경로로 받을 때 토큰이 거부되는 경우와 읽기 실패를 stub Gitea 로 확인한다.
+ */
+class GiteaServiceTest {
+
+    private static final String TOKEN = "secret";
+    private static final String COMPARE_PATH = "/owner/repo/compare/aaa...bbb.diff";
+    private static final String DIFF = """
+            diff --git a/App.java b/App.java
+            @@ -1,1 +1,2 @@
+             class App {
+            +    int value;
+            """;
+
+    private HttpServer server;
+    private GiteaService giteaService;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // 토큰을 받는 Gitea 는 diff 를, 받지 않는 Gitea 는 로그인 화면으로 보낸다
+        server.createContext("/user/login", exchange -> respond(exchange, 200, "text/html; charset=utf-8",
+                "<html><body>Sign in</body></html>"));
+        server.start();
+
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        giteaService = new GiteaService(new RestTemplate(), WebClient.create(), new ObjectMapper(),
+                new DownstreamLimiter(new SimpleMeterRegistry(), 4, 8), baseUrl, TOKEN);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void compareRoute(boolean acceptsToken) {
+        server.createContext(COMPARE_PATH, exchange -> {
+            if (acceptsToken && ("token " + TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                respond(exchange, 200, "text/plain; charset=utf-8", DIFF);
+            } else {
+                exchange.getResponseHeaders().set("Location", "/user/login");
+                exchange.sendResponseHeaders(303, -1);
+                exchange.close();
+            }
+        });
+    }
+
+    private String readCompareDiff(AtomicReference<String> body) {
+        return giteaService.streamCompareDiff("owner/repo", "aaa", "bbb", reader -> body.set(
+                new BufferedReader(reader).lines().collect(Collectors.joining("\n", "", "\n")))) ? body.get() : null;
+    }
+
+    @Test
+    void compareDiffIsReadWithTheApiToken() {
+        compareRoute(true);
+
+        assertEquals(DIFF, readCompareDiff(new AtomicReference<>()));
+    }
+
+    @Test
+    void loginPageInsteadOfDiffFallsBack() {
+        compareRoute(false);
+        AtomicReference<String> body = new AtomicReference<>();
+
+        assertNull(readCompareDiff(body));
+        assertNull(body.get(), "the login page must not reach the diff parser");
+    }
+
+    @Test
+    void missingBaseCommitFallsBack() {
+        server.createContext(COMPARE_PATH, exchange -> respond(exchange, 404, "text/plain", "Not found"));
+
+        assertNull(readCompareDiff(new AtomicReference<>()));
+    }
+
+    @Test
+    void failureWhileReadingTheStreamFallsBack() {
+        compareRoute(true);
+
+        assertFalse(giteaService.streamCompareDiff("owner/repo", "aaa", "bbb", reader -> {
+            throw new UncheckedIOException(new IOException("connection reset"));
+        }));
+    }
+
+    @Test
+    void reactiveCompareDiffFailsOnLoginRedirect() {
+        compareRoute(false);
+
+        assertThrows(RuntimeException.class, () -> giteaService.streamCompareDiffLines("owner/repo", "aaa", "bbb")
+                .collectList()
+                .block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void reactiveCompareDiffIsReadWithTheApiToken() {
+        compareRoute(true);
+
+        List<String> parts = giteaService.streamCompareDiffLines("owner/repo", "aaa", "bbb")
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertTrue(parts != null && String.join("\n", parts).contains("+    int value;"));
+    }
+}
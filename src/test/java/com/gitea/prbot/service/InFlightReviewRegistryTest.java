@@ -0,0 +1,78 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.InFlightReviewRegistry.ReviewRun;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightReviewRegistryTest {
+
+    private final InFlightReviewRegistry registry = new InFlightReviewRegistry();
+
+    @Test
+    void newerRunCancelsOlderRun() {
+        ReviewRun older = registry.begin("org/repo", 1L, "aaa");
+        ReviewRun newer = registry.begin("org/repo", 1L, "bbb");
+
+        assertTrue(older.isCancelled());
+        assertFalse(newer.isCancelled());
+    }
+
+    @Test
+    void enqueueCancelsRunningReviewOfAnotherCommit() {
+        ReviewRun running = registry.begin("org/repo", 1L, "aaa");
+        CompletableFuture<String> task = running.track(new CompletableFuture<>());
+
+        registry.supersede("org/repo", 1L, "bbb");
+
+        assertTrue(running.isCancelled());
+        assertTrue(task.isCancelled());
+    }
+
+    @Test
+    void enqueueOfSameCommitKeepsRunningReview() {
+        ReviewRun running = registry.begin("org/repo", 1L, "aaa");
+
+        registry.supersede("org/repo", 1L, "aaa");
+
+        assertFalse(running.isCancelled());
+    }
+
+    @Test
+    void olderJobStartingLateDoesNotCancelNewerRun() {
+        registry.supersede("org/repo", 1L, "aaa");
+        registry.supersede("org/repo", 1L, "bbb");
+        ReviewRun newer = registry.begin("org/repo", 1L, "bbb");
+
+        ReviewRun older = registry.begin("org/repo", 1L, "aaa");
+
+        assertTrue(older.isCancelled());
+        assertFalse(newer.isCancelled());
+        assertEquals(1, registry.getInFlightCount());
+    }
+
+    @Test
+    void otherPullRequestsAreUnaffected() {
+        ReviewRun other = registry.begin("org/repo", 2L, "ccc");
+
+        registry.supersede("org/repo", 1L, "bbb");
+        registry.begin("org/repo", 1L, "bbb");
+
+        assertFalse(other.isCancelled());
+    }
+
+    @Test
+    void completedLatestRunIsForgotten() {
+        registry.supersede("org/repo", 1L, "bbb");
+        ReviewRun run = registry.begin("org/repo", 1L, "bbb");
+        registry.complete(run);
+
+        assertEquals(0, registry.getInFlightCount());
+        // 재시작 뒤처럼 아무 기록이 없으면 어떤 커밋이든 시작할 수 있다
+        assertFalse(registry.begin("org/repo", 1L, "ccc").isCancelled());
+    }
+}
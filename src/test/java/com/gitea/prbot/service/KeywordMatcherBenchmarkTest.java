@@ -0,0 +1,195 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 키워드 검사 비용. 한 번 훑는 오토마톤과 예전 방식(소문자 사본 + 키워드마다 contains,
+ * 위치마다 키워드 목록을 도는 containsAnyIgnoreCase)을 chunk 하나와 수 MB 짜리 diff 에서 비교한다.
+ * ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class KeywordMatcherBenchmarkTest {
+
+    private static final int ITERATIONS = 5_000;
+    private static final int LARGE_DIFF_BYTES = 8 * 1024 * 1024;
+    private static final int LARGE_ITERATIONS = 10;
+
+    private static final Map<ReviewType, List<String>> RULES = Map.of(
+            ReviewType.SECURITY, List.of("password", "secret", "token", "api_key", "private_key", "exec(", "eval(",
+                    "system(", "shell_exec(", "sql", "query", "select", "insert", "update", "delete"),
+            ReviewType.PERFORMANCE, List.of("for (", "while (", "foreach", ".stream()", ".map(", ".filter(",
+                    "n²", "o(n", "recursive", "loop", "nested", "database", "query", "connection", "transaction"),
+            ReviewType.STYLE, List.of("// todo", "// fixme", "system.out.println"));
+
+    private static String chunk() {
+        StringBuilder chunk = new StringBuilder("@@ -1,200 +1,210 @@\n");
+        for (int i = 0; i < 200; i++) {
+            chunk.append("+    private final Map<String, List<Integer>> cache").append(i)
+                    .append(" = new HashMap<>(); // 값 ").append(i).append('\n');
+        }
+        // 키워드는 끝에만 있어 조기 종료 없이 전체를 읽는다
+        return chunk.append("+    System.out.println(query);\n").toString();
+    }
+
+    private static Set<ReviewType> naive(String content) {
+        String lower = content.toLowerCase(Locale.ROOT);
+        Set<ReviewType> types = EnumSet.noneOf(ReviewType.class);
+        RULES.forEach((type, keywords) -> {
+            for (String keyword : keywords) {
+                if (lower.contains(keyword)) {
+                    types.add(type);
+                    break;
+                }
+            }
+        });
+        return types;
+    }
+
+    /**
+     * 여러 파일에 걸친 큰 diff. 키워드는 맨 끝에만 있어 어느 방식도 일찍 끝나지 않는다.
+     */
+    private static String largeDiff() {
+        StringBuilder diff = new StringBuilder(LARGE_DIFF_BYTES + 4096);
+        int file = 0;
+        while (diff.length() < LARGE_DIFF_BYTES) {
+            String path = "src/main/java/com/example/order/OrderMapper" + file++ + ".java";
+            diff.append("diff --git a/").append(path).append(" b/").append(path).append('\n')
+                    .append("--- a/").append(path).append('\n')
+                    .append("+++ b/").append(path).append('\n')
+                    .append("@@ -1,120 +1,160 @@\n");
+            for (int i = 0; i < 160; i++) {
+                diff.append(i % 4 == 0 ? '-' : '+')
+                        .append("        OrderDto dto").append(i).append(" = mapper.toDto(order, Locale.KOREA); // 주문 ")
+                        .append(i).append('\n');
+            }
+        }
+        return diff.append("+    String password = System.getenv(\"DB\"); for (Item item : items) { } // TODO\n").toString();
+    }
+
+    /**
+     * KeywordMatcher 이전의 DiffProcessorService 검사. 위치마다 키워드 목록을 돌며 대소문자를 무시하고 비교한다.
+     */
+    private static Set<ReviewType> legacy(CharSequence content) {
+        Set<ReviewType> types = EnumSet.noneOf(ReviewType.class);
+        RULES.forEach((type, keywords) -> {
+            if (containsAnyIgnoreCase(content, keywords)) {
+                types.add(type);
+            }
+        });
+        return types;
+    }
+
+    private static boolean containsAnyIgnoreCase(CharSequence content, List<String> keywords) {
+        int length = content.length();
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(content.charAt(i));
+            for (String keyword : keywords) {
+                if (keyword.charAt(0) == c && regionMatchesIgnoreCase(content, i, keyword)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence content, int offset, String keyword) {
+        if (offset + keyword.length() > content.length()) {
+            return false;
+        }
+        for (int j = 1; j < keyword.length(); j++) {
+            if (Character.toLowerCase(content.charAt(offset + j)) != keyword.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double megabytesPerSecond(int chars, int iterations, long nanos) {
+        return (double) chars * iterations / (1024 * 1024) / (nanos / 1e9);
+    }
+
+    @Test
+    void matchCost() {
+        KeywordMatcher matcher = new KeywordMatcher(RULES);
+        String content = chunk();
+
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            matcher.match(content);
+            naive(content);
+        }
+
+        Set<ReviewType> matched = null;
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            matched = matcher.match(content);
+        }
+        long automatonNanos = System.nanoTime() - started;
+
+        Set<ReviewType> expected = null;
+        started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            expected = naive(content);
+        }
+        long naiveNanos = System.nanoTime() - started;
+
+        assertEquals(expected, matched);
+        System.out.printf("KeywordMatcher: %d chars per chunk, %d keywords%n", content.length(),
+                RULES.values().stream().mapToInt(List::size).sum());
+        System.out.printf("  single pass:          %.1f us/chunk%n", automatonNanos / 1e3 / ITERATIONS);
+        System.out.printf("  lowercase + contains: %.1f us/chunk%n", naiveNanos / 1e3 / ITERATIONS);
+    }
+
+    @Test
+    void multiMegabyteDiff() {
+        KeywordMatcher matcher = new KeywordMatcher(RULES);
+        String diff = largeDiff();
+
+        for (int i = 0; i < 3; i++) {
+            matcher.match(diff);
+            legacy(diff);
+            naive(diff);
+        }
+
+        Set<ReviewType> matched = null;
+        long started = System.nanoTime();
+        for (int i = 0; i < LARGE_ITERATIONS; i++) {
+            matched = matcher.match(diff);
+        }
+        long automatonNanos = System.nanoTime() - started;
+
+        Set<ReviewType> legacyMatched = null;
+        started = System.nanoTime();
+        for (int i = 0; i < LARGE_ITERATIONS; i++) {
+            legacyMatched = legacy(diff);
+        }
+        long legacyNanos = System.nanoTime() - started;
+
+        Set<ReviewType> expected = null;
+        started = System.nanoTime();
+        for (int i = 0; i < LARGE_ITERATIONS; i++) {
+            expected = naive(diff);
+        }
+        long naiveNanos = System.nanoTime() - started;
+
+        assertEquals(EnumSet.of(ReviewType.SECURITY, ReviewType.PERFORMANCE, ReviewType.STYLE), expected);
+        assertEquals(expected, matched);
+        assertEquals(expected, legacyMatched);
+        System.out.printf("KeywordMatcher: %.1f MB diff%n", diff.length() / (1024.0 * 1024));
+        System.out.printf("  single pass:             %6.1f ms/diff %7.1f MB/s%n", automatonNanos / 1e6 / LARGE_ITERATIONS,
+                megabytesPerSecond(diff.length(), LARGE_ITERATIONS, automatonNanos));
+        System.out.printf("  containsAnyIgnoreCase:   %6.1f ms/diff %7.1f MB/s%n", legacyNanos / 1e6 / LARGE_ITERATIONS,
+                megabytesPerSecond(diff.length(), LARGE_ITERATIONS, legacyNanos));
+        System.out.printf("  lowercase + contains:    %6.1f ms/diff %7.1f MB/s%n", naiveNanos / 1e6 / LARGE_ITERATIONS,
+                megabytesPerSecond(diff.length(), LARGE_ITERATIONS, naiveNanos));
+    }
+}
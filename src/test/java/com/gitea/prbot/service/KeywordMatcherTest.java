@@ -0,0 +1,89 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordMatcherTest {
+
+    @Test
+    void findsKeywordEndingInsideAnotherKeyword() {
+        // "she" 를 읽는 도중 끝나는 "he" 는 실패 링크 쪽 출력으로 찾아야 한다
+        KeywordMatcher matcher = new KeywordMatcher(Map.of(
+                ReviewType.SECURITY, List.of("he"),
+                ReviewType.PERFORMANCE, List.of("she", "hers")));
+
+        assertEquals(EnumSet.of(ReviewType.SECURITY, ReviewType.PERFORMANCE), matcher.match("ushers"));
+        assertEquals(EnumSet.of(ReviewType.SECURITY), matcher.match("the"));
+    }
+
+    @Test
+    void recoversAfterPartialMatch() {
+        KeywordMatcher matcher = new KeywordMatcher(Map.of(ReviewType.SECURITY, List.of("aab")));
+
+        assertEquals(EnumSet.of(ReviewType.SECURITY), matcher.match("aaab"));
+        assertTrue(matcher.match("abab").isEmpty());
+    }
+
+    @Test
+    void sameKeywordInTwoTypesReportsBoth() {
+        KeywordMatcher matcher = new KeywordMatcher(Map.of(
+                ReviewType.SECURITY, List.of("query"),
+                ReviewType.PERFORMANCE, List.of("query", "loop")));
+
+        assertEquals(EnumSet.of(ReviewType.SECURITY, ReviewType.PERFORMANCE), matcher.match("runQuery(sql)"));
+    }
+
+    @Test
+    void ignoresCaseAndMatchesNonAscii() {
+        KeywordMatcher matcher = new KeywordMatcher(Map.of(
+                ReviewType.STYLE, List.of("System.out.println"),
+                ReviewType.PERFORMANCE, List.of("N²", "비밀번호")));
+
+        assertEquals(EnumSet.of(ReviewType.STYLE), matcher.match("SYSTEM.OUT.PRINTLN(x)"));
+        assertEquals(EnumSet.of(ReviewType.PERFORMANCE), matcher.match("복잡도 n² 입니다"));
+        assertEquals(EnumSet.of(ReviewType.PERFORMANCE), matcher.match("// 비밀번호 확인"));
+    }
+
+    @Test
+    void blankKeywordsAreIgnored() {
+        KeywordMatcher matcher = new KeywordMatcher(Map.of(ReviewType.SECURITY, List.of(" ", "", " token ")));
+
+        assertTrue(matcher.match("anything at all").isEmpty());
+        assertEquals(EnumSet.of(ReviewType.SECURITY), matcher.match("getToken()"));
+    }
+
+    @Test
+    void agreesWithNaiveSearchOnRandomText() {
+        Map<ReviewType, List<String>> rules = Map.of(
+                ReviewType.SECURITY, List.of("ab", "bca", "cab"),
+                ReviewType.PERFORMANCE, List.of("aaa", "bcb"),
+                ReviewType.STYLE, List.of("cc", "abc"));
+        KeywordMatcher matcher = new KeywordMatcher(rules);
+        Random random = new Random(42);
+
+        for (int n = 0; n < 2_000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                text.append((char) ('a' + random.nextInt(3)));
+            }
+
+            Set<ReviewType> expected = EnumSet.noneOf(ReviewType.class);
+            rules.forEach((type, keywords) -> {
+                if (keywords.stream().anyMatch(keyword -> text.indexOf(keyword) >= 0)) {
+                    expected.add(type);
+                }
+            });
+            assertEquals(expected, matcher.match(text), text.toString());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelCircuitBreakerTest {
+
+    private ModelCircuitBreaker halfOpenBreaker() {
+        ModelCircuitBreaker breaker = new ModelCircuitBreaker(1, Duration.ZERO, Duration.ofMinutes(1), 10);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(ModelCircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    @Test
+    void allowsOnlyOneProbeWhileHalfOpen() {
+        ModelCircuitBreaker breaker = halfOpenBreaker();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(ModelCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelledProbeLetsTheNextCallProbe() {
+        ModelCircuitBreaker breaker = halfOpenBreaker();
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onCancel();
+
+        assertEquals(ModelCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelWhileClosedChangesNothing() {
+        ModelCircuitBreaker breaker = new ModelCircuitBreaker(3, Duration.ofMinutes(1), Duration.ofMinutes(1), 10);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onCancel();
+
+        assertEquals(ModelCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,153 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 모델 응답 파싱 비용. 예전 방식(호출마다 정규식 컴파일, 문자열만 추출)과 비교한다.
+ * 만든 응답 하나와, test resources 의 model-outputs/ 에 모아 둔 실제 형태의 응답(형식이 깨진 것, 말이 긴 것 포함)으로 잰다.
+ * ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class ModelOutputParserBenchmarkTest {
+
+    private static final int FINDINGS = 40;
+    private static final int ITERATIONS = 20_000;
+
+    /**
+     * 응답 파일에서 읽어야 할 지적 사항 수와 등급. 파서 동작이 바뀌면 여기서 먼저 드러난다.
+     */
+    private record Recorded(String name, int findings, String grade) {
+    }
+
+    private static final List<Recorded> CORPUS = List.of(
+            new Recorded("canonical", 6, "C"),
+            new Recorded("ok", 0, null),
+            new Recorded("markdown", 5, "B"),
+            new Recorded("rambling", 5, "C"),
+            new Recorded("malformed", 6, "B"),
+            new Recorded("english", 4, "C"));
+
+    private static String response() {
+        StringBuilder response = new StringBuilder("리뷰 결과입니다.\n\n");
+        for (int i = 0; i < FINDINGS; i++) {
+            String severity = i % 3 == 0 ? "HIGH" : i % 3 == 1 ? "MED" : "LOW";
+            response.append(i + 1).append(". **[").append(severity).append("]** [SECURITY] `src/main/java/App")
+                    .append(i).append(".java:").append(10 + i).append("` - 규칙").append(i)
+                    .append(": 입력 값을 검증하지 않고 쿼리에 사용합니다\n");
+        }
+        return response.append("\n전반적 품질: B\n").toString();
+    }
+
+    private static String recorded(String name) throws IOException {
+        try (InputStream in = ModelOutputParserBenchmarkTest.class.getResourceAsStream("/model-outputs/" + name + ".txt")) {
+            assertNotNull(in, "missing model output " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int regexBaseline(String content) {
+        Pattern pattern = Pattern.compile("\\[(HIGH|MED|LOW)\\](.+?)(?=\\n|$)", Pattern.MULTILINE);
+        Matcher matcher = pattern.matcher(content);
+        int count = 0;
+        while (matcher.find()) {
+            matcher.group(0).trim();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void parseCost() {
+        ModelOutputParser parser = new ModelOutputParser();
+        String content = response();
+
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            parser.parse(content, ReviewType.GENERAL);
+            regexBaseline(content);
+        }
+
+        int parsed = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parsed = parser.parse(content, ReviewType.GENERAL).findings().size();
+        }
+        long parserNanos = System.nanoTime() - started;
+
+        int matched = 0;
+        started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            matched = regexBaseline(content);
+        }
+        long regexNanos = System.nanoTime() - started;
+
+        assertEquals(FINDINGS, parsed);
+        assertEquals(FINDINGS, matched);
+        System.out.printf("ModelOutputParser: %d findings, %d chars per response%n", FINDINGS, content.length());
+        System.out.printf("  scanner (typed findings + grade): %.1f us/response%n", parserNanos / 1e3 / ITERATIONS);
+        System.out.printf("  regex baseline (strings only):    %.1f us/response%n", regexNanos / 1e3 / ITERATIONS);
+    }
+
+    @Test
+    void recordedCorpusCost() throws IOException {
+        ModelOutputParser parser = new ModelOutputParser();
+        Map<Recorded, String> corpus = new LinkedHashMap<>();
+        for (Recorded recorded : CORPUS) {
+            corpus.put(recorded, recorded(recorded.name()));
+        }
+
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            for (String content : corpus.values()) {
+                parser.parse(content, ReviewType.GENERAL);
+                regexBaseline(content);
+            }
+        }
+
+        long totalChars = 0;
+        long totalParserNanos = 0;
+        long totalRegexNanos = 0;
+        System.out.printf("ModelOutputParser: %d recorded responses%n", corpus.size());
+        for (Map.Entry<Recorded, String> entry : corpus.entrySet()) {
+            String content = entry.getValue();
+            ModelOutputParser.ModelOutput output = null;
+            long started = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                output = parser.parse(content, ReviewType.GENERAL);
+            }
+            long parserNanos = System.nanoTime() - started;
+
+            int matched = 0;
+            started = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                matched = regexBaseline(content);
+            }
+            long regexNanos = System.nanoTime() - started;
+
+            Recorded recorded = entry.getKey();
+            assertEquals(recorded.findings(), output.findings().size(), recorded.name());
+            assertEquals(recorded.grade(), output.overallGrade(), recorded.name());
+
+            totalChars += content.length();
+            totalParserNanos += parserNanos;
+            totalRegexNanos += regexNanos;
+            System.out.printf("  %-10s %5d chars  findings %d (regex matches %d)  scanner %6.1f us  regex %6.1f us%n",
+                    recorded.name(), content.length(), output.findings().size(), matched,
+                    parserNanos / 1e3 / ITERATIONS, regexNanos / 1e3 / ITERATIONS);
+        }
+        System.out.printf("  total      %5d chars  scanner %6.1f us  regex %6.1f us%n", totalChars,
+                totalParserNanos / 1e3 / ITERATIONS, totalRegexNanos / 1e3 / ITERATIONS);
+    }
+}
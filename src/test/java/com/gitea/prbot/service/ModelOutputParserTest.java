@@ -0,0 +1,131 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+import com.gitea.prbot.service.ModelOutputParser.ModelOutput;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelOutputParserTest {
+
+    private final ModelOutputParser parser = new ModelOutputParser();
+
+    private Finding single(String content) {
+        ModelOutput output = parser.parse(content, ReviewType.GENERAL);
+        assertEquals(1, output.findings().size(), content);
+        return output.findings().get(0);
+    }
+
+    @Test
+    void parsesCanonicalLine() {
+        Finding finding = single("[HIGH] [SECURITY] UserDao.java:42 - 인젝션: 문자열 연결로 SQL 생성");
+
+        assertEquals(Severity.HIGH, finding.severity());
+        assertEquals(ReviewType.SECURITY, finding.category());
+        assertEquals("UserDao.java", finding.path());
+        assertEquals(42, finding.line());
+        assertEquals(42, finding.endLine());
+        assertEquals("인젝션", finding.rule());
+        assertEquals("문자열 연결로 SQL 생성", finding.message());
+    }
+
+    @Test
+    void acceptsBoldAndBackticks() {
+        Finding finding = single("**[high]** **[performance]** `src/a/Repo.java:7` — N+1: 루프 안에서 조회");
+
+        assertEquals(Severity.HIGH, finding.severity());
+        assertEquals(ReviewType.PERFORMANCE, finding.category());
+        assertEquals("src/a/Repo.java", finding.path());
+        assertEquals(7, finding.line());
+        assertEquals("N+1", finding.rule());
+        assertEquals("루프 안에서 조회", finding.message());
+    }
+
+    @Test
+    void acceptsNumberedAndBulletedLines() {
+        ModelOutput output = parser.parse("""
+                1. [MED] [STYLE] A.java:3 - 이름 규칙: 상수는 대문자
+                2) [LOW] A.java:9 - 불필요한 import
+                - [중간] [PERFORMANCE] B.java:1 - 큰 객체 복사
+                • [낮음] 설명만 있는 지적
+                """, ReviewType.GENERAL);
+
+        assertEquals(4, output.findings().size());
+        assertEquals(Severity.MED, output.findings().get(0).severity());
+        assertEquals(ReviewType.GENERAL, output.findings().get(1).category());
+        assertEquals(9, output.findings().get(1).line());
+        assertEquals(ReviewType.PERFORMANCE, output.findings().get(2).category());
+        assertNull(output.findings().get(3).path());
+        assertEquals("설명만 있는 지적", output.findings().get(3).message());
+        assertEquals("[MED] [STYLE] A.java:3 - 이름 규칙: 상수는 대문자", output.lines().get(0));
+    }
+
+    @Test
+    void parsesLineRange() {
+        Finding finding = single("[LOW] [STYLE] Foo.kt:10-14 - 긴 메서드");
+
+        assertEquals(10, finding.startLine());
+        assertEquals(14, finding.endLine());
+        assertEquals("긴 메서드", finding.message());
+    }
+
+    @Test
+    void reversedRangeKeepsStartLine() {
+        Finding finding = single("[LOW] Foo.kt:20-3 - 범위가 뒤집힘");
+
+        assertEquals(20, finding.startLine());
+        assertEquals(20, finding.endLine());
+    }
+
+    @Test
+    void unknownTagBecomesRule() {
+        Finding finding = single("[HIGH] [XSS] View.java:5 - 출력 이스케이프 누락");
+
+        assertEquals(ReviewType.GENERAL, finding.category());
+        assertEquals("XSS", finding.rule());
+        assertEquals("출력 이스케이프 누락", finding.message());
+    }
+
+    @Test
+    void ignoresLinesWithoutSeverity() {
+        ModelOutput output = parser.parse("""
+                리뷰 결과입니다.
+                [INFO] 참고 사항
+                [참고] A.java:1 - 무시
+                """, ReviewType.GENERAL);
+
+        assertTrue(output.findings().isEmpty());
+        assertNull(output.overallGrade());
+    }
+
+    @Test
+    void readsGradeLine() {
+        assertEquals("B", parser.parse("[LOW] a\n전반적 품질: B\n", ReviewType.GENERAL).overallGrade());
+        assertEquals("C", parser.parse("**전반적 품질: [c]**", ReviewType.GENERAL).overallGrade());
+        assertEquals("A", parser.parse("Overall: A", ReviewType.GENERAL).overallGrade());
+    }
+
+    @Test
+    void gradeMustBeStandaloneLetter() {
+        assertNull(parser.parse("전반적 품질: Bad", ReviewType.GENERAL).overallGrade());
+        assertNull(parser.parse("전반적 품질: 양호", ReviewType.GENERAL).overallGrade());
+    }
+
+    @Test
+    void firstGradeWins() {
+        assertEquals("D", parser.parse("전반적 품질: D\nOverall: A", ReviewType.GENERAL).overallGrade());
+    }
+
+    @Test
+    void emptyContent() {
+        ModelOutput output = parser.parse("", ReviewType.SECURITY);
+
+        assertTrue(output.findings().isEmpty());
+        assertNull(output.overallGrade());
+        assertTrue(parser.parse(null, ReviewType.SECURITY).lines().isEmpty());
+    }
+}
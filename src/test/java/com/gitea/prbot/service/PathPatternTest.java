@@ -0,0 +1,86 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathPatternTest {
+
+    @Test
+    void patternWithoutSlashMatchesAtAnyDepth() {
+        PathPattern pattern = PathPattern.compile("*.min.js");
+
+        assertTrue(pattern.matches("app.min.js"));
+        assertTrue(pattern.matches("web/static/js/app.min.js"));
+        assertFalse(pattern.matches("web/static/js/app.js"));
+    }
+
+    @Test
+    void leadingSlashAnchorsToRepositoryRoot() {
+        PathPattern pattern = PathPattern.compile("/build");
+
+        assertTrue(pattern.matches("build/classes/App.class"));
+        assertFalse(pattern.matches("module/build/classes/App.class"));
+    }
+
+    @Test
+    void patternWithInnerSlashIsRelativeToRoot() {
+        PathPattern pattern = PathPattern.compile("docs/*.md");
+
+        assertTrue(pattern.matches("docs/guide.md"));
+        assertFalse(pattern.matches("module/docs/guide.md"));
+    }
+
+    @Test
+    void singleStarDoesNotCrossDirectories() {
+        PathPattern pattern = PathPattern.compile("src/*.java");
+
+        assertTrue(pattern.matches("src/App.java"));
+        assertFalse(pattern.matches("src/main/App.java"));
+    }
+
+    @Test
+    void questionMarkMatchesOneCharacterButNotSlash() {
+        PathPattern pattern = PathPattern.compile("/v?/api.yaml");
+
+        assertTrue(pattern.matches("v1/api.yaml"));
+        assertFalse(pattern.matches("v10/api.yaml"));
+        assertFalse(PathPattern.compile("/a?b").matches("a/b"));
+    }
+
+    @Test
+    void doubleStarSpansDirectoriesOnlyAtBoundaries() {
+        PathPattern pattern = PathPattern.compile("src/**/generated/*.java");
+
+        assertTrue(pattern.matches("src/generated/Api.java"));
+        assertTrue(pattern.matches("src/main/java/generated/Api.java"));
+        assertFalse(pattern.matches("src/main/notgenerated/Api.java"));
+    }
+
+    @Test
+    void matchingDirectoryMatchesEverythingBelowIt() {
+        PathPattern pattern = PathPattern.compile("vendor");
+
+        assertTrue(pattern.matches("vendor/lib/a.go"));
+        assertTrue(pattern.matches("third_party/vendor/lib/a.go"));
+        assertFalse(pattern.matches("vendored/a.go"));
+    }
+
+    @Test
+    void trailingSlashMatchesOnlyDirectories() {
+        PathPattern pattern = PathPattern.compile("dist/");
+
+        assertTrue(pattern.matches("dist/app.js"));
+        assertTrue(pattern.matches("web/dist/app.js"));
+        assertFalse(pattern.matches("dist"));
+    }
+
+    @Test
+    void characterClassesAreCompared() {
+        PathPattern pattern = PathPattern.compile("[ab].txt");
+
+        assertTrue(pattern.matches("[ab].txt"));
+        assertFalse(pattern.matches("a.txt"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermitQueueTest {
+
+    @Test
+    void grantsImmediatelyWithinCapacity() {
+        PermitQueue queue = new PermitQueue(2);
+
+        assertTrue(queue.acquire().isDone());
+        assertTrue(queue.acquire().isDone());
+        assertFalse(queue.acquire().isDone());
+        assertEquals(2, queue.inUse());
+        assertEquals(1, queue.waiting());
+    }
+
+    @Test
+    void grantsWaitersInRequestOrder() {
+        PermitQueue queue = new PermitQueue(1);
+        queue.acquire();
+        CompletableFuture<Void> first = queue.acquire();
+        CompletableFuture<Void> second = queue.acquire();
+
+        queue.release();
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, queue.inUse());
+    }
+
+    @Test
+    void abandonedWaiterLeavesQueue() {
+        PermitQueue queue = new PermitQueue(1);
+        queue.acquire();
+        CompletableFuture<Void> abandoned = queue.acquire();
+        CompletableFuture<Void> next = queue.acquire();
+
+        queue.abandon(abandoned);
+        queue.release();
+
+        assertTrue(abandoned.isCancelled());
+        assertTrue(next.isDone());
+        assertEquals(1, queue.inUse());
+        assertEquals(0, queue.waiting());
+    }
+
+    @Test
+    void abandoningGrantedPermitReturnsIt() {
+        PermitQueue queue = new PermitQueue(1);
+        CompletableFuture<Void> granted = queue.acquire();
+        CompletableFuture<Void> waiting = queue.acquire();
+
+        queue.abandon(granted);
+
+        assertTrue(waiting.isDone());
+        assertEquals(1, queue.inUse());
+    }
+
+    @Test
+    void lowerCapacityHoldsBackWaitersUntilInUseDrops() {
+        PermitQueue queue = new PermitQueue(2);
+        queue.acquire();
+        queue.acquire();
+        CompletableFuture<Void> waiting = queue.acquire();
+
+        queue.setCapacity(1);
+        queue.release();
+        assertFalse(waiting.isDone());
+
+        queue.release();
+        assertTrue(waiting.isDone());
+    }
+
+    @Test
+    void higherCapacityIsHandedOutOnNextRelease() {
+        PermitQueue queue = new PermitQueue(1);
+        queue.acquire();
+        CompletableFuture<Void> first = queue.acquire();
+        CompletableFuture<Void> second = queue.acquire();
+
+        queue.setCapacity(3);
+        queue.release();
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(2, queue.inUse());
+    }
+}
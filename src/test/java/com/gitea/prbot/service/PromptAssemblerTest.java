@@ -0,0 +1,104 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.PromptAssembler.PromptValues;
+import com.gitea.prbot.service.PromptAssembler.RenderedPrompt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptAssemblerTest {
+
+    private static final String MODEL = "qwen2.5-coder:7b";
+    private static final Pattern TRIM_SUMMARY = Pattern.compile("\\.\\.\\. \\(이하 (\\d+)줄 생략: \\+(\\d+)/-(\\d+)\\)\n$");
+
+    // 컨텍스트 2048 - 응답 몫 1024 = 프롬프트 예산 1024
+    private final TokenEstimator tokenEstimator = new TokenEstimator(MODEL, 2048, Set.of(), Set.of());
+    private final PromptAssembler assembler = new PromptAssembler(new SimpleMeterRegistry(), tokenEstimator, 1024);
+    private final PromptTemplate template = PromptTemplate.compile("PR: {pr_title} (+{lines_added}/-{lines_deleted})\n```diff\n{code_diff}```\n");
+
+    private static String diff(int lines) {
+        StringBuilder diff = new StringBuilder("@@ -1,").append(lines).append(" +1,").append(lines).append(" @@\n");
+        for (int i = 0; i < lines; i++) {
+            diff.append(i % 3 == 0 ? "-" : "+").append("        total").append(i).append(" += order.getItems().size();\n");
+        }
+        return diff.toString();
+    }
+
+    @Test
+    void keepsPromptWithinBudgetUntouched() {
+        String diff = diff(10);
+
+        RenderedPrompt prompt = assembler.assemble("SECURITY", template, new PromptValues(diff, "주문 합계", 7, 3), MODEL);
+
+        assertEquals("PR: 주문 합계 (+7/-3)\n```diff\n" + diff + "```\n", prompt.text());
+        assertEquals(0, prompt.truncations());
+        assertEquals(MODEL, prompt.model());
+        assertTrue(prompt.estimatedTokens() <= assembler.getPromptTokenBudget(MODEL));
+    }
+
+    @Test
+    void trimsDiffToTokenBudgetAndSummarizesRest() {
+        int lines = 500;
+        String diff = diff(lines);
+        int budget = assembler.getPromptTokenBudget(MODEL);
+        assertEquals(1024, budget);
+        assertTrue(tokenEstimator.forModel(MODEL).count(diff) > budget);
+
+        RenderedPrompt prompt = assembler.assemble("SECURITY", template, new PromptValues(diff, "주문 합계", 333, 167), MODEL);
+
+        assertEquals(1, prompt.truncations());
+        assertTrue(prompt.estimatedTokens() <= budget, "estimated " + prompt.estimatedTokens());
+        assertTrue(tokenEstimator.forModel(MODEL).count(prompt.text()) <= budget);
+
+        String code = prompt.text().substring("PR: 주문 합계 (+333/-167)\n```diff\n".length(),
+                prompt.text().length() - "```\n".length());
+        Matcher summary = TRIM_SUMMARY.matcher(code);
+        assertTrue(summary.find(), code);
+        String kept = code.substring(0, summary.start());
+        // 줄 단위로 잘리고, 생략된 줄 수가 나머지와 맞는다
+        assertTrue(diff.startsWith(kept));
+        assertTrue(kept.endsWith("\n"));
+        int omitted = Integer.parseInt(summary.group(1));
+        assertEquals(lines + 1, kept.split("\n").length + omitted);
+        assertEquals(omitted, Integer.parseInt(summary.group(2)) + Integer.parseInt(summary.group(3)));
+    }
+
+    @Test
+    void shortensLongTitle() {
+        String title = "가".repeat(500);
+
+        RenderedPrompt prompt = assembler.assemble("GENERAL", template, new PromptValues("+a\n", title, 1, 0), MODEL);
+
+        assertEquals(1, prompt.truncations());
+        assertTrue(prompt.text().startsWith("PR: " + "가".repeat(200) + "… (+1/-0)"));
+    }
+
+    @Test
+    void splitsBudgetBetweenRepeatedCodeSlots() {
+        PromptTemplate twice = PromptTemplate.compile("{code_diff}\n---\n{code_diff}");
+        String diff = diff(300);
+
+        RenderedPrompt prompt = assembler.assemble("COMBINED", twice, new PromptValues(diff, "", 0, 0), MODEL);
+
+        assertEquals(1, prompt.truncations());
+        assertTrue(prompt.estimatedTokens() <= assembler.getPromptTokenBudget(MODEL), "estimated " + prompt.estimatedTokens());
+        String[] halves = prompt.text().split("\n---\n");
+        assertEquals(2, halves.length);
+        assertEquals(halves[0], halves[1]);
+    }
+
+    @Test
+    void reusesBufferWithoutLeakingPreviousPrompt() {
+        RenderedPrompt first = assembler.assemble("SECURITY", template, new PromptValues(diff(40), "첫 번째", 27, 13), MODEL);
+        RenderedPrompt second = assembler.assemble("SECURITY", template, new PromptValues("+x\n", "두 번째", 1, 0), MODEL);
+
+        assertTrue(first.text().contains("첫 번째"));
+        assertEquals("PR: 두 번째 (+1/-0)\n```diff\n+x\n```\n", second.text());
+    }
+}
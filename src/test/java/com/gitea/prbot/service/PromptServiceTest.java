@@ -0,0 +1,201 @@
+package com.gitea.prbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.PromptService.PromptSet;
+import com.gitea.prbot.service.PromptService.ResolvedPrompt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 기본 템플릿, 감시 디렉터리의 덮어쓰기와 다시 읽기, 저장소별 .gitea/prbot 덮어쓰기를 확인한다.
+ */
+class PromptServiceTest {
+
+    private static final String SECURITY_LOCATION = "classpath:prompts/security/security-review.md";
+
+    @TempDir
+    Path directory;
+
+    private final FakeGiteaService giteaService = new FakeGiteaService();
+    private PromptService promptService;
+
+    /**
+     * 저장소 디렉터리 목록과 파일 내용을 메모리에서 돌려준다.
+     */
+    private static final class FakeGiteaService extends GiteaService {
+        private final Map<String, Map<String, String>> directories = new HashMap<>();
+        private final Map<String, String> files = new HashMap<>();
+        private final AtomicInteger rawFileCalls = new AtomicInteger();
+
+        FakeGiteaService() {
+            super(new RestTemplate(), WebClient.create(), new ObjectMapper(),
+                    new DownstreamLimiter(new SimpleMeterRegistry(), 4, 8), "http://127.0.0.1", "token");
+        }
+
+        void put(String repository, String fileName, String sha, String content) {
+            directories.computeIfAbsent(repository, r -> new HashMap<>()).put(fileName, sha);
+            files.put(repository + "/" + fileName, content);
+        }
+
+        @Override
+        public Map<String, String> listDirectory(String repositoryFullName, String path, String ref) {
+            return directories.getOrDefault(repositoryFullName, Map.of());
+        }
+
+        @Override
+        public String getRawFile(String repositoryFullName, String path, String ref) {
+            rawFileCalls.incrementAndGet();
+            return files.get(repositoryFullName + "/" + path.substring(path.lastIndexOf('/') + 1));
+        }
+    }
+
+    private PromptService promptService(String directory, Duration repositoryCacheTtl) {
+        promptService = new PromptService(new DefaultResourceLoader(), giteaService,
+                SECURITY_LOCATION,
+                "classpath:prompts/performance/performance-review.md",
+                "classpath:prompts/style/code-style-review.md",
+                "classpath:prompts/general/general-review.md",
+                "classpath:prompts/combined/combined-review.md",
+                directory, true, ".gitea/prbot", repositoryCacheTtl);
+        return promptService;
+    }
+
+    @AfterEach
+    void stopWatching() throws IOException {
+        if (promptService != null) {
+            promptService.shutdown();
+        }
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        Files.writeString(directory.resolve(fileName), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 감시 스레드가 파일 변경을 반영할 때까지 기다린다.
+     */
+    private ResolvedPrompt awaitSecurity(Predicate<ResolvedPrompt> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (true) {
+            ResolvedPrompt prompt = promptService.promptsFor(null, null).get(ReviewType.SECURITY);
+            if (condition.test(prompt) || System.nanoTime() - deadline > 0) {
+                return prompt;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static String render(ResolvedPrompt prompt, String diff) {
+        CharSequence[] values = new CharSequence[PromptTemplate.Slot.values().length];
+        values[PromptTemplate.Slot.CODE_DIFF.ordinal()] = diff;
+        StringBuilder out = new StringBuilder();
+        prompt.template().render(out, values);
+        return out.toString();
+    }
+
+    @Test
+    void loadsEveryDefaultFromConfiguredLocations() {
+        PromptSet prompts = promptService("", Duration.ofMinutes(5)).promptsFor(null, null);
+
+        for (ReviewType type : new ReviewType[]{ReviewType.SECURITY, ReviewType.PERFORMANCE, ReviewType.STYLE, ReviewType.GENERAL}) {
+            assertTrue(prompts.get(type).origin().startsWith("classpath:prompts/"), prompts.get(type).origin());
+        }
+        assertTrue(prompts.get(PromptService.COMBINED_PROMPT_ID).origin().startsWith("classpath:prompts/combined/"));
+        assertEquals(SECURITY_LOCATION, prompts.get(ReviewType.SECURITY).origin());
+        assertEquals(16, prompts.get(ReviewType.SECURITY).version().length());
+    }
+
+    @Test
+    void directoryFileOverridesDefault() throws IOException {
+        write("security.md", "보안만 봐 주세요.\n{code_diff}");
+
+        PromptSet prompts = promptService(directory.toString(), Duration.ofMinutes(5)).promptsFor(null, null);
+
+        assertEquals(directory.resolve("security.md").toString(), prompts.get(ReviewType.SECURITY).origin());
+        assertEquals("보안만 봐 주세요.\n+a", render(prompts.get(ReviewType.SECURITY), "+a"));
+        assertTrue(prompts.get(ReviewType.GENERAL).origin().startsWith("classpath:"));
+    }
+
+    @Test
+    void reloadBumpsVersionAndCacheKey() throws Exception {
+        write("security.md", "v1 {code_diff}");
+        promptService(directory.toString(), Duration.ofMinutes(5)).watchDirectory();
+        PromptSet before = promptService.promptsFor(null, null);
+        ResolvedPrompt v1 = before.get(ReviewType.SECURITY);
+
+        write("security.md", "v2 {code_diff}");
+        ResolvedPrompt v2 = awaitSecurity(prompt -> !prompt.version().equals(v1.version()));
+
+        assertNotEquals(v1.version(), v2.version());
+        assertEquals("v2 +a", render(v2, "+a"));
+        // 리뷰 중에 받아 둔 묶음은 그대로다
+        assertSame(v1, before.get(ReviewType.SECURITY));
+
+        ReviewResultCache cache = new ReviewResultCache(null, true, false, 1_000, Duration.ofDays(1));
+        DiffChunk chunk = DiffChunk.builder().fileName("src/App.java").startLine(1).content("@@ -1,1 +1,1 @@\n-a\n+b\n").build();
+        assertNotEquals(cache.cacheKey(chunk, "SECURITY", v1.version(), "m"),
+                cache.cacheKey(chunk, "SECURITY", v2.version(), "m"));
+
+        // 파일을 지우면 설정된 위치의 기본값으로 돌아간다
+        Files.delete(directory.resolve("security.md"));
+        ResolvedPrompt fallback = awaitSecurity(prompt -> prompt.origin().equals(SECURITY_LOCATION));
+        assertEquals(SECURITY_LOCATION, fallback.origin());
+    }
+
+    @Test
+    void repositoryOverrideAppliesOnlyToThatRepository() {
+        giteaService.put("org/custom", "security.md", "sha-1", "저장소 규칙 {code_diff}");
+        promptService("", Duration.ofMinutes(5));
+
+        PromptSet custom = promptService.promptsFor("org/custom", "main");
+        PromptSet other = promptService.promptsFor("org/other", "main");
+
+        assertEquals("org/custom:.gitea/prbot/security.md", custom.get(ReviewType.SECURITY).origin());
+        assertEquals("저장소 규칙 +a", render(custom.get(ReviewType.SECURITY), "+a"));
+        assertEquals(SECURITY_LOCATION, other.get(ReviewType.SECURITY).origin());
+        // 덮어쓰지 않은 프롬프트는 기본값을 쓴다
+        assertEquals(other.get(ReviewType.GENERAL), custom.get(ReviewType.GENERAL));
+        assertNotEquals(other.get(ReviewType.SECURITY).version(), custom.get(ReviewType.SECURITY).version());
+    }
+
+    @Test
+    void repositoryOverrideIsFetchedAgainOnlyWhenBlobChanges() {
+        giteaService.put("org/custom", "security.md", "sha-1", "규칙 v1 {code_diff}");
+        // TTL 0: 매번 디렉터리 목록을 다시 받는다
+        promptService("", Duration.ZERO);
+
+        ResolvedPrompt first = promptService.promptsFor("org/custom", "main").get(ReviewType.SECURITY);
+        ResolvedPrompt same = promptService.promptsFor("org/custom", "main").get(ReviewType.SECURITY);
+        assertSame(first, same);
+        assertEquals(1, giteaService.rawFileCalls.get());
+
+        giteaService.put("org/custom", "security.md", "sha-2", "규칙 v2 {code_diff}");
+        ResolvedPrompt changed = promptService.promptsFor("org/custom", "main").get(ReviewType.SECURITY);
+
+        assertEquals(2, giteaService.rawFileCalls.get());
+        assertNotEquals(first.version(), changed.version());
+        assertEquals("규칙 v2 +a", render(changed, "+a"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.PromptTemplate.Slot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PromptTemplateTest {
+
+    private static String render(PromptTemplate template, String diff, String title, int added, int deleted) {
+        CharSequence[] values = new CharSequence[Slot.values().length];
+        values[Slot.CODE_DIFF.ordinal()] = diff;
+        values[Slot.PR_TITLE.ordinal()] = title;
+        values[Slot.LINES_ADDED.ordinal()] = Integer.toString(added);
+        values[Slot.LINES_DELETED.ordinal()] = Integer.toString(deleted);
+        StringBuilder out = new StringBuilder();
+        template.render(out, values);
+        return out.toString();
+    }
+
+    @Test
+    void fillsEverySlot() {
+        PromptTemplate template = PromptTemplate.compile("PR: {pr_title} (+{lines_added}/-{lines_deleted})\n{code_diff}\n끝");
+
+        assertEquals("PR: 로그인 수정 (+3/-1)\n+a\n끝", render(template, "+a", "로그인 수정", 3, 1));
+        assertEquals("PR:  (+/-)\n\n끝".length(), template.literalLength());
+    }
+
+    @Test
+    void countsRepeatedSlots() {
+        PromptTemplate template = PromptTemplate.compile("{code_diff} / {code_diff} / {pr_title}");
+
+        assertEquals(2, template.occurrences(Slot.CODE_DIFF));
+        assertEquals(1, template.occurrences(Slot.PR_TITLE));
+        assertEquals(0, template.occurrences(Slot.LINES_ADDED));
+        assertEquals("x / x / t", render(template, "x", "t", 0, 0));
+    }
+
+    @Test
+    void leavesUnknownPlaceholdersAndBracesAsLiterals() {
+        String source = "{unknown} {CODE_DIFF} { \"severity\": \"HIGH\" } {code_diff}{";
+
+        PromptTemplate template = PromptTemplate.compile(source);
+
+        assertEquals(1, template.occurrences(Slot.CODE_DIFF));
+        assertEquals("{unknown} {CODE_DIFF} { \"severity\": \"HIGH\" } +b{", render(template, "+b", "t", 0, 0));
+    }
+
+    @Test
+    void appendsCodeWhenTemplateHasNoCodeSlot() {
+        PromptTemplate template = PromptTemplate.compile("다음 변경을 검토해 주세요: {pr_title}");
+
+        assertEquals(1, template.occurrences(Slot.CODE_DIFF));
+        assertEquals("다음 변경을 검토해 주세요: 제목\n\n코드:\n+c", render(template, "+c", "제목", 0, 0));
+    }
+}
@@ -0,0 +1,144 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewMode;
+import com.gitea.prbot.model.ReviewStatistics;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.ReviewBudgetPlanner.Budget;
+import com.gitea.prbot.service.ReviewBudgetPlanner.PlannedChunk;
+import com.gitea.prbot.service.ReviewBudgetPlanner.ReviewPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewBudgetPlannerTest {
+
+    private final ReviewRouter router = new ReviewRouter(true, List.of("auth", "security"));
+
+    private ReviewBudgetPlanner planner(int maxFiles, int maxLinesPerFile, int maxLlmCalls) {
+        return new ReviewBudgetPlanner(router, new SimpleMeterRegistry(), maxFiles, maxLinesPerFile, maxLlmCalls);
+    }
+
+    private static DiffChunk chunk(String path, int addedLines, Set<ReviewType> triggered) {
+        StringBuilder content = new StringBuilder("@@ -1,0 +1,").append(addedLines).append(" @@\n");
+        for (int i = 0; i < addedLines; i++) {
+            content.append("+    value").append(i).append(" = compute(").append(i).append(");\n");
+        }
+        return DiffChunk.builder()
+                .fileName(path)
+                .fileExtension("java")
+                .language("java")
+                .content(content.toString())
+                .triggeredReviewTypes(triggered)
+                .build();
+    }
+
+    private static List<String> files(ReviewPlan plan) {
+        return plan.chunks().stream().map(PlannedChunk::chunk).map(DiffChunk::getFileName).distinct().toList();
+    }
+
+    @Test
+    void riskiestFilesWinEvenWhenTheyArriveLast() {
+        Budget budget = planner(2, 0, 0).open(ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+        budget.add(chunk("src/A.java", 3, Set.of()));
+        budget.add(chunk("src/B.java", 3, Set.of()));
+        budget.add(chunk("src/C.java", 3, Set.of()));
+        budget.add(chunk("src/auth/Login.java", 3, Set.of(ReviewType.SECURITY)));
+
+        ReviewPlan plan = budget.finish();
+
+        assertEquals(List.of("src/auth/Login.java", "src/A.java"), files(plan));
+        assertEquals(Map.of("src/B.java", "파일 수 한도(2개) 초과", "src/C.java", "파일 수 한도(2개) 초과"),
+                plan.overBudget());
+    }
+
+    @Test
+    void chunksOfFilesOutsideTheTopNAreNotKept() {
+        Budget budget = planner(3, 0, 0).open(ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+        for (int file = 0; file < 400; file++) {
+            for (int part = 0; part < 4; part++) {
+                budget.add(chunk("src/File" + file + ".java", 5, Set.of()));
+            }
+            assertTrue(budget.retainedChunks() <= 4 * 4, "retained " + budget.retainedChunks() + " chunks");
+        }
+
+        ReviewPlan plan = budget.finish();
+
+        assertEquals(3 * 4, plan.chunks().size());
+        assertEquals(397, plan.overBudget().size());
+    }
+
+    @Test
+    void linesPerFileCapTrimsWhileStreaming() {
+        Budget budget = planner(0, 10, 0).open(ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+        for (int part = 0; part < 5; part++) {
+            budget.add(chunk("src/Big.java", 4, Set.of()));
+        }
+        assertEquals(2, budget.retainedChunks());
+
+        ReviewPlan plan = budget.finish();
+
+        assertEquals(2, plan.chunks().size());
+        assertEquals(Map.of("src/Big.java", "변경 20줄 중 8줄만 리뷰 (파일당 10줄 한도)"), plan.overBudget());
+    }
+
+    @Test
+    void firstChunkIsAlwaysAdmittedEvenAboveTheLineCap() {
+        ReviewPlan plan = planner(0, 10, 0).plan(List.of(chunk("src/Huge.java", 50, Set.of())),
+                ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+
+        assertEquals(1, plan.chunks().size());
+        assertTrue(plan.overBudget().isEmpty());
+    }
+
+    @Test
+    void callBudgetDropsLowerRankedFiles() {
+        Budget budget = planner(0, 0, 3).open(ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+        budget.add(chunk("src/A.java", 2, Set.of()));
+        budget.add(chunk("src/A.java", 2, Set.of()));
+        budget.add(chunk("src/B.java", 2, Set.of()));
+        budget.add(chunk("src/B.java", 2, Set.of()));
+        budget.add(chunk("src/C.java", 2, Set.of()));
+
+        ReviewPlan plan = budget.finish();
+
+        // A, B 만으로 호출 예산 3회를 넘으므로 C 는 본문을 버린다
+        assertEquals(4, budget.retainedChunks());
+
+        assertEquals(3, plan.llmCalls());
+        assertEquals(List.of("src/A.java", "src/B.java"), files(plan));
+        assertEquals("변경 4줄 중 2줄만 리뷰 (LLM 호출 예산 소진)", plan.overBudget().get("src/B.java"));
+        assertEquals("LLM 호출 예산(3회) 소진", plan.overBudget().get("src/C.java"));
+    }
+
+    @Test
+    void resetForgetsThePartialDiff() {
+        Budget budget = planner(0, 0, 0).open(ReviewMode.COMBINED, new ReviewStatistics(ReviewMode.COMBINED));
+        budget.add(chunk("src/Delta.java", 3, Set.of()));
+        budget.reset();
+        budget.add(chunk("src/Full.java", 3, Set.of()));
+
+        assertEquals(List.of("src/Full.java"), files(budget.finish()));
+    }
+
+    @Test
+    void unroutedChunksAreCountedOnceAtFinish() {
+        ReviewStatistics stats = new ReviewStatistics(ReviewMode.COMBINED);
+        Budget budget = planner(0, 0, 0).open(ReviewMode.COMBINED, stats);
+        // 삭제만 있는 chunk 는 리뷰할 타입이 없다
+        budget.add(DiffChunk.builder().fileName("src/Old.java").fileExtension("java").language("java")
+                .content("@@ -1,1 +0,0 @@\n-    int unused;\n").triggeredReviewTypes(Set.of()).build());
+        budget.add(chunk("src/New.java", 1, Set.of()));
+
+        budget.finish();
+
+        assertEquals(1, stats.getUnroutedChunks());
+        assertEquals(1, stats.getRoutedChunks(ReviewType.GENERAL));
+    }
+}
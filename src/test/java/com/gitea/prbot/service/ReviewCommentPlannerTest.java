@@ -0,0 +1,161 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.InlineComment;
+import com.gitea.prbot.model.ReviewCoverage;
+import com.gitea.prbot.model.ReviewPage;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewCommentPlannerTest {
+
+    private static InlineComment comment(int line, int bodyChars) {
+        return new InlineComment("src/App.java", line, "x".repeat(bodyChars));
+    }
+
+    private static Finding finding(String path, int line, boolean commentable, String message) {
+        return new Finding(path, line, line, line, ReviewType.GENERAL, EnumSet.of(ReviewType.GENERAL),
+                Severity.MED, null, message, commentable, 1);
+    }
+
+    /**
+     * 페이지 하나의 크기. 코멘트는 ReviewCommentPlanner 와 같은 방식으로 어림한다.
+     */
+    private static int payloadBytes(ReviewPage page) {
+        int bytes = page.body().getBytes(StandardCharsets.UTF_8).length;
+        for (InlineComment comment : page.comments()) {
+            bytes += comment.path().getBytes(StandardCharsets.UTF_8).length
+                    + comment.body().getBytes(StandardCharsets.UTF_8).length + 64;
+        }
+        return bytes;
+    }
+
+    private static List<InlineComment> comments(List<ReviewPage> pages) {
+        List<InlineComment> all = new ArrayList<>();
+        pages.forEach(page -> all.addAll(page.comments()));
+        return all;
+    }
+
+    @Test
+    void keepsEverythingOnOnePageWithinLimits() {
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, 900_000);
+        List<InlineComment> inline = List.of(comment(1, 10), comment(2, 10));
+
+        List<ReviewPage> pages = planner.paginate("## summary\n", inline);
+
+        assertEquals(1, pages.size());
+        assertEquals("## summary\n", pages.get(0).body());
+        assertEquals(inline, pages.get(0).comments());
+    }
+
+    @Test
+    void splitsCommentsByCount() {
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(3, 900_000);
+        List<InlineComment> inline = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            inline.add(comment(i, 10));
+        }
+
+        List<ReviewPage> pages = planner.paginate("## summary\n", inline);
+
+        assertEquals(3, pages.size());
+        assertEquals(List.of(3, 3, 1), pages.stream().map(page -> page.comments().size()).toList());
+        assertEquals(inline, comments(pages));
+        assertEquals("## 🤖 자동 코드 리뷰 결과 (계속 2/3)", pages.get(1).body());
+        assertEquals("## 🤖 자동 코드 리뷰 결과 (계속 3/3)", pages.get(2).body());
+    }
+
+    @Test
+    void splitsCommentsByPayloadBytes() {
+        int maxPayloadBytes = 2_000;
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, maxPayloadBytes);
+        List<InlineComment> inline = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            inline.add(comment(i, 400));
+        }
+
+        List<ReviewPage> pages = planner.paginate("## summary\n", inline);
+
+        assertTrue(pages.size() > 1);
+        assertEquals(inline, comments(pages));
+        for (ReviewPage page : pages) {
+            assertTrue(payloadBytes(page) <= maxPayloadBytes, "page of " + payloadBytes(page) + " bytes");
+        }
+    }
+
+    @Test
+    void splitsOversizedSummaryAcrossPages() {
+        int maxPayloadBytes = 1_000;
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, maxPayloadBytes);
+        StringBuilder summary = new StringBuilder("## 🤖 자동 코드 리뷰 결과\n\n");
+        for (int i = 0; i < 100; i++) {
+            summary.append("- [MED] src/Service").append(i).append(".java:").append(i).append(" - 예외 처리 누락\n");
+        }
+
+        List<ReviewPage> pages = planner.paginate(summary.toString(), List.of(comment(1, 10)));
+
+        assertTrue(pages.size() > 1);
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < pages.size(); i++) {
+            ReviewPage page = pages.get(i);
+            assertTrue(payloadBytes(page) <= maxPayloadBytes, "page of " + payloadBytes(page) + " bytes");
+            String body = page.body();
+            if (i > 0) {
+                String header = "## 🤖 자동 코드 리뷰 결과 (계속 " + (i + 1) + "/" + pages.size() + ")";
+                assertTrue(body.startsWith(header), body);
+                body = body.substring(header.length()).replaceFirst("^\n\n", "");
+            }
+            joined.append(body);
+        }
+        // 줄이 잘리거나 빠지지 않고 순서대로 나뉜다
+        assertEquals(summary.toString(), joined.toString());
+        assertEquals(1, comments(pages).size());
+        assertEquals(1, pages.get(pages.size() - 1).comments().size());
+    }
+
+    @Test
+    void truncatesSummaryLineLongerThanPage() {
+        int maxPayloadBytes = 500;
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, maxPayloadBytes);
+        String summary = "## 요약\n" + "- " + "가".repeat(1_000) + "\n";
+
+        List<ReviewPage> pages = planner.paginate(summary, List.of());
+
+        for (ReviewPage page : pages) {
+            assertTrue(payloadBytes(page) <= maxPayloadBytes, "page of " + payloadBytes(page) + " bytes");
+        }
+        assertTrue(pages.get(pages.size() - 1).body().endsWith("…\n"));
+    }
+
+    @Test
+    void planSendsCommentableFindingsInlineAndRestInSummary() {
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, 900_000);
+        List<Finding> findings = List.of(
+                finding("src/App.java", 10, true, "널 검사 누락"),
+                finding("src/Other.java", 3, false, "diff 밖의 라인"));
+
+        List<ReviewPage> pages = planner.plan(findings, "B", null, ReviewCoverage.FULL);
+
+        assertEquals(1, pages.size());
+        assertEquals(1, pages.get(0).comments().size());
+        assertEquals(10, pages.get(0).comments().get(0).line());
+        assertTrue(pages.get(0).body().contains("src/Other.java:3 - diff 밖의 라인"));
+        assertTrue(pages.get(0).body().contains("1건은 해당 라인에 코멘트로 남겼습니다"));
+    }
+
+    @Test
+    void planReturnsNothingWithoutFindingsOrBudgetGaps() {
+        ReviewCommentPlanner planner = new ReviewCommentPlanner(50, 900_000);
+
+        assertTrue(planner.plan(List.of(), null, null, ReviewCoverage.FULL).isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewMode;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.PromptAssembler.PromptValues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 같은 diff 를 COMBINED 와 FAN_OUT 으로 리뷰할 때 chunk 당 LLM 호출 수와 프롬프트 토큰 수(TokenEstimator 어림값)를 비교한다.
+ * 호출할 프롬프트는 두 파이프라인과 같은 CodeReviewService.promptIdsFor 로 고른다. ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class ReviewModeBenchmarkTest {
+
+    private static final String MODEL = "qwen2.5-coder:7b";
+    private static final Map<String, String> PROMPT_FILES = Map.of(
+            "SECURITY", "/prompts/security/security-review.md",
+            "PERFORMANCE", "/prompts/performance/performance-review.md",
+            "STYLE", "/prompts/style/code-style-review.md",
+            "GENERAL", "/prompts/general/general-review.md",
+            PromptService.COMBINED_PROMPT_ID, "/prompts/combined/combined-review.md");
+
+    private final TokenEstimator tokenEstimator = new TokenEstimator(MODEL, 16384, Set.of(), Set.of());
+    private final ReviewRouter router = new ReviewRouter(true, List.of("auth", "security", "password", "token"));
+    private final PromptAssembler assembler = new PromptAssembler(new SimpleMeterRegistry(), tokenEstimator, 1024);
+
+    private DiffProcessorService diffProcessorService() {
+        DiffProcessorService service = new DiffProcessorService(tokenEstimator);
+        // application.yml 과 같은 값
+        ReflectionTestUtils.setField(service, "chunkSize", 400);
+        ReflectionTestUtils.setField(service, "promptReserveTokens", 1024);
+        ReflectionTestUtils.setField(service, "responseReserveTokens", 1024);
+        ReflectionTestUtils.setField(service, "styleMinLength", 1000);
+        service.compileRules();
+        return service;
+    }
+
+    private static String corpus() {
+        StringBuilder diff = new StringBuilder();
+        for (int file = 0; file < 12; file++) {
+            String path = switch (file % 4) {
+                case 0 -> "src/main/java/com/example/auth/LoginService" + file + ".java";
+                case 1 -> "src/main/java/com/example/order/OrderRepository" + file + ".java";
+                case 2 -> "src/main/java/com/example/web/OrderController" + file + ".java";
+                default -> "src/main/resources/application-" + file + ".yml";
+            };
+            diff.append("diff --git a/").append(path).append(" b/").append(path).append('\n')
+                    .append("--- a/").append(path).append('\n')
+                    .append("+++ b/").append(path).append('\n')
+                    .append("@@ -1,4 +1,60 @@\n");
+            for (int i = 0; i < 60; i++) {
+                switch (file % 4) {
+                    case 0 -> diff.append(i % 3 == 0
+                            ? "+        String password = request.getParameter(\"password\" + " + i + ");\n"
+                            : "+        String query = \"SELECT * FROM users WHERE id = \" + id" + i + ";\n");
+                    case 1 -> diff.append(i % 2 == 0
+                            ? "+        for (Order order : orders) { for (Item item : order.getItems()) { total" + i + " += item.price(); } }\n"
+                            : "+        List<Order> all" + i + " = repository.findAll();\n");
+                    case 2 -> diff.append("+    public ResponseEntity<OrderDto> get").append(i)
+                            .append("(@PathVariable Long id) { return ResponseEntity.ok(service.find(id)); } // TODO\n");
+                    default -> diff.append("+  timeout-").append(i).append(": 30s\n");
+                }
+            }
+        }
+        return diff.toString();
+    }
+
+    private static PromptTemplate template(String promptId) throws IOException {
+        try (InputStream in = ReviewModeBenchmarkTest.class.getResourceAsStream(PROMPT_FILES.get(promptId))) {
+            assertNotNull(in, "missing prompt resource for " + promptId);
+            return PromptTemplate.compile(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void combinedVersusFanOutOnSameDiff() throws IOException {
+        List<DiffChunk> chunks = diffProcessorService().processDiff(corpus());
+        assertFalse(chunks.isEmpty());
+
+        Map<String, PromptTemplate> templates = new HashMap<>();
+        for (String promptId : PROMPT_FILES.keySet()) {
+            templates.put(promptId, template(promptId));
+        }
+
+        Map<ReviewMode, long[]> totals = new EnumMap<>(ReviewMode.class);
+        int routedChunks = 0;
+        for (DiffChunk chunk : chunks) {
+            Set<ReviewType> routed = router.route(chunk);
+            if (routed.isEmpty()) {
+                continue;
+            }
+            routedChunks++;
+            PromptValues values = new PromptValues(chunk.getContent(), "Add login audit and order totals", 60, 4);
+            for (ReviewMode mode : ReviewMode.values()) {
+                long[] total = totals.computeIfAbsent(mode, m -> new long[2]);
+                for (String promptId : CodeReviewService.promptIdsFor(mode, routed)) {
+                    total[0]++;
+                    total[1] += assembler.assemble(promptId, templates.get(promptId), values, MODEL).estimatedTokens();
+                }
+            }
+        }
+
+        assertTrue(routedChunks > 0);
+        for (ReviewMode mode : ReviewMode.values()) {
+            long[] total = totals.get(mode);
+            System.out.printf("%-8s chunks=%d calls=%d (%.2f/chunk) prompt tokens=%d (%.0f/chunk)%n",
+                    mode, routedChunks, total[0], (double) total[0] / routedChunks,
+                    total[1], (double) total[1] / routedChunks);
+        }
+
+        long[] combined = totals.get(ReviewMode.COMBINED);
+        long[] fanOut = totals.get(ReviewMode.FAN_OUT);
+        System.out.printf("COMBINED / FAN_OUT: calls %.2f, prompt tokens %.2f%n",
+                (double) combined[0] / fanOut[0], (double) combined[1] / fanOut[1]);
+        assertTrue(combined[0] <= fanOut[0]);
+    }
+}
@@ -0,0 +1,74 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.Finding;
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.model.Severity;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import com.gitea.prbot.service.ReviewResultCache.Answer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewResultCacheTest {
+
+    private final ReviewResultCache cache = new ReviewResultCache(null, true, false, 1_000_000, Duration.ofDays(1));
+
+    private static DiffChunk chunk(String fileName, int startLine, String content) {
+        return DiffChunk.builder().fileName(fileName).startLine(startLine).content(content).build();
+    }
+
+    @Test
+    void sameChangeMovedDownTheFileHitsWithLineOffset() {
+        DiffChunk before = chunk("src/App.java", 10, "@@ -8,3 +10,4 @@\n a();\n+b();\n c();\n");
+        DiffChunk after = chunk("src/App.java", 25, "@@ -8,3 +25,4 @@\n a();\n+b();\n c();\n");
+        cache.put(before, "SECURITY", "v1", "model", "- src/App.java:11 문제");
+
+        Optional<Answer> hit = cache.get(after, "SECURITY", "v1", "model");
+
+        assertTrue(hit.isPresent());
+        assertEquals("- src/App.java:11 문제", hit.get().content());
+        assertEquals(15, hit.get().lineOffset());
+    }
+
+    @Test
+    void hunkSpacingInsideChunkStaysInKey() {
+        DiffChunk near = chunk("a.java", 1, "@@ -1,1 +1,1 @@\n-x\n+y\n@@ -10,1 +10,1 @@\n-x\n+y\n");
+        DiffChunk far = chunk("a.java", 1, "@@ -1,1 +1,1 @@\n-x\n+y\n@@ -20,1 +20,1 @@\n-x\n+y\n");
+
+        assertNotEquals(cache.cacheKey(near, "P", "v", "m"), cache.cacheKey(far, "P", "v", "m"));
+        assertEquals(cache.cacheKey(near, "P", "v", "m"),
+                cache.cacheKey(chunk("a.java", 51, "@@ -50,1 +51,1 @@\n-x\n+y\n@@ -59,1 +60,1 @@\n-x\n+y\n"),
+                        "P", "v", "m"));
+    }
+
+    @Test
+    void fileNameIsPartOfKey() {
+        String content = "@@ -1,1 +1,1 @@\n-x\n+y\n";
+
+        assertNotEquals(cache.cacheKey(chunk("a.java", 1, content), "P", "v", "m"),
+                cache.cacheKey(chunk("b.java", 1, content), "P", "v", "m"));
+    }
+
+    @Test
+    void normalizeIgnoresTrailingWhitespaceAndKeepsHunkSection() {
+        assertEquals("@@ -0,2 +0,3 @@ void run()\n a\n+b",
+                ReviewResultCache.normalize("@@ -40,2 +42,3 @@ void run()\r\n a  \r\n+b\r\n\r\n"));
+    }
+
+    @Test
+    void shiftLinesMovesOnlyKnownLines() {
+        Finding finding = Finding.reported("a.java", 11, 13, ReviewType.SECURITY, Severity.HIGH, null, "m");
+        Finding shifted = finding.shiftLines(15);
+
+        assertEquals(26, shifted.line());
+        assertEquals(26, shifted.startLine());
+        assertEquals(28, shifted.endLine());
+        assertEquals(0, Finding.reported(null, 0, 0, ReviewType.SECURITY, Severity.HIGH, null, "m")
+                .shiftLines(5).line());
+    }
+}
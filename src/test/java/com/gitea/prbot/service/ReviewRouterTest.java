@@ -0,0 +1,160 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.model.ReviewType;
+import com.gitea.prbot.service.DiffProcessorService.DiffChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewRouterTest {
+
+    private final ReviewRouter router = new ReviewRouter(true, List.of("auth", "security"));
+
+    @Test
+    void consistentRenameWithDeclarationIsCosmetic() {
+        String diff = """
+                @@ -1,4 +1,4 @@
+                -    int max = 0;
+                -    return max + 1;
+                +    int limit = 0;
+                +    return limit + 1;
+                """;
+        assertTrue(ReviewRouter.ChangeShape.of(diff).cosmetic);
+        assertEquals(EnumSet.of(ReviewType.STYLE), router.route(chunk("src/Counter.java", diff, Set.of())));
+    }
+
+    @Test
+    void whitespaceOnlyChangeIsCosmetic() {
+        String diff = """
+                @@ -1,1 +1,1 @@
+                -if(a){return b;}
+                +if (a) { return b; }
+                """;
+        assertTrue(ReviewRouter.ChangeShape.of(diff).cosmetic);
+    }
+
+    @Test
+    void literalSwapIsNotCosmetic() {
+        String diff = """
+                @@ -1,1 +1,1 @@
+                -        cookie.setSecure(true);
+                +        cookie.setSecure(false);
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+        assertTrue(router.route(chunk("src/Cookies.java", diff, Set.of())).contains(ReviewType.GENERAL));
+    }
+
+    @Test
+    void stringLiteralChangeIsNotCosmetic() {
+        String diff = """
+                @@ -1,1 +1,1 @@
+                -    String role = "admin";
+                +    String role = "guest";
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+    }
+
+    @Test
+    void swappingOneCallForAnotherIsNotCosmetic() {
+        String diff = """
+                @@ -1,1 +1,1 @@
+                -        http.authorizeRequests().antMatchers("/admin").hasRole(ADMIN);
+                +        http.authorizeRequests().antMatchers("/admin").permitAll(ADMIN);
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+        Set<ReviewType> types = router.route(chunk("src/WebConfig.java", diff, Set.of()));
+        assertTrue(types.contains(ReviewType.GENERAL));
+    }
+
+    @Test
+    void swappingToAnotherVariableIsNotCosmetic() {
+        String diff = """
+                @@ -1,3 +1,3 @@
+                 int min = 0, max = 10;
+                -    while (count < max) {
+                +    while (count < min) {
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+    }
+
+    @Test
+    void renameWithoutDeclarationInChunkIsNotCosmetic() {
+        String diff = """
+                @@ -1,1 +1,1 @@
+                -    if (count < max) {
+                +    if (count < min) {
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+    }
+
+    @Test
+    void renameLeavingOldNameInUseIsNotCosmetic() {
+        String diff = """
+                @@ -1,3 +1,3 @@
+                -    int max = 0;
+                +    int limit = 0;
+                     return max;
+                """;
+        assertFalse(ReviewRouter.ChangeShape.of(diff).cosmetic);
+    }
+
+    @Test
+    void securitySignalKeepsSecurityAndGeneralForCosmeticChunk() {
+        String diff = """
+                @@ -1,2 +1,2 @@
+                -    String token = read();
+                -    send(token);
+                +    String secret = read();
+                +    send(secret);
+                """;
+        assertTrue(ReviewRouter.ChangeShape.of(diff).cosmetic);
+
+        Set<ReviewType> byKeyword = router.route(chunk("src/Client.java", diff, Set.of(ReviewType.SECURITY)));
+        assertTrue(byKeyword.contains(ReviewType.SECURITY));
+        assertTrue(byKeyword.contains(ReviewType.GENERAL));
+
+        Set<ReviewType> byPath = router.route(chunk("src/auth/Client.java", diff, Set.of()));
+        assertTrue(byPath.contains(ReviewType.SECURITY));
+        assertTrue(byPath.contains(ReviewType.GENERAL));
+    }
+
+    @Test
+    void deletionOnlyChunkIsReviewedForSecurityOnlyOnSignal() {
+        String diff = """
+                @@ -1,2 +1,0 @@
+                -    check(user);
+                -    audit(user);
+                """;
+        assertTrue(router.route(chunk("src/Service.java", diff, Set.of())).isEmpty());
+        assertEquals(EnumSet.of(ReviewType.SECURITY), router.route(chunk("src/security/Service.java", diff, Set.of())));
+    }
+
+    @Test
+    void performanceAndStyleNeedCodeFiles() {
+        String diff = """
+                @@ -1,0 +1,1 @@
+                +for (item : items) loop
+                """;
+        Set<ReviewType> triggered = Set.of(ReviewType.PERFORMANCE, ReviewType.STYLE);
+        assertEquals(EnumSet.of(ReviewType.PERFORMANCE, ReviewType.STYLE, ReviewType.GENERAL),
+                router.route(chunk("src/Loop.java", diff, triggered)));
+        assertEquals(EnumSet.of(ReviewType.GENERAL), router.route(chunk("docs/loop.md", diff, triggered)));
+    }
+
+    private static DiffChunk chunk(String path, String content, Set<ReviewType> triggered) {
+        String extension = path.substring(path.lastIndexOf('.') + 1);
+        return DiffChunk.builder()
+                .fileName(path)
+                .fileExtension(extension)
+                .content(content)
+                .language("java".equals(extension) ? "java" : "text")
+                .triggeredReviewTypes(triggered)
+                .build();
+    }
+}
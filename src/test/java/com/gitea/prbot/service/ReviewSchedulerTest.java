@@ -0,0 +1,196 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.ReviewScheduler.PullRequestQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * max-running 1 인 스케줄러에 막아 두는 작업을 먼저 넣고, 그동안 쌓인 작업이 실행되는 순서를 본다.
+ */
+class ReviewSchedulerTest {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<String>> futures = new ArrayList<>();
+
+    private static ReviewScheduler scheduler(int maxRunning, Set<String> priority, Set<String> weights) {
+        return new ReviewScheduler(new SimpleMeterRegistry(), maxRunning, priority, weights);
+    }
+
+    /**
+     * 스케줄러의 유일한 실행 자리를 차지한다. 돌려받은 latch 를 열면 쌓인 작업이 하나씩 실행된다.
+     */
+    private static CountDownLatch block(ReviewScheduler scheduler) {
+        CountDownLatch gate = new CountDownLatch(1);
+        PullRequestQueue blocker = scheduler.open("blocker/repo", 0L, 0);
+        blocker.submit(1, 1, () -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        return gate;
+    }
+
+    private void submit(PullRequestQueue queue, String label, int cost) {
+        futures.add(queue.submit(1, cost, () -> {
+            executed.add(label);
+            return label;
+        }));
+    }
+
+    private List<String> runAll(CountDownLatch gate) throws Exception {
+        gate.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        return List.copyOf(executed);
+    }
+
+    @Test
+    void alternatesBetweenRepositoriesWithEqualWeight() throws Exception {
+        ReviewScheduler scheduler = scheduler(1, Set.of(), Set.of());
+        CountDownLatch gate = block(scheduler);
+
+        PullRequestQueue a = scheduler.open("org/a", 1L, 0);
+        PullRequestQueue b = scheduler.open("org/b", 2L, 0);
+        // a 의 작업을 모두 먼저 넣어도 b 가 끝까지 기다리지 않는다
+        for (int i = 0; i < 4; i++) {
+            submit(a, "a", 100);
+        }
+        for (int i = 0; i < 4; i++) {
+            submit(b, "b", 100);
+        }
+
+        List<String> order = runAll(gate);
+
+        assertEquals(8, order.size());
+        for (int i = 1; i < order.size(); i++) {
+            assertNotEquals(order.get(i - 1), order.get(i), "order " + order);
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    void weightedRepositoryGetsProportionalShare() throws Exception {
+        ReviewScheduler scheduler = scheduler(1, Set.of(), Set.of("org/a=3"));
+        CountDownLatch gate = block(scheduler);
+
+        PullRequestQueue a = scheduler.open("org/a", 1L, 0);
+        PullRequestQueue b = scheduler.open("org/b", 2L, 0);
+        for (int i = 0; i < 6; i++) {
+            submit(b, "b", 300);
+        }
+        for (int i = 0; i < 6; i++) {
+            submit(a, "a", 300);
+        }
+
+        List<String> order = runAll(gate);
+
+        assertEquals(3, Collections.frequency(order.subList(0, 4), "a"), "order " + order);
+        assertEquals(6, Collections.frequency(order.subList(0, 8), "a"), "order " + order);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void priorityRepositoryRunsFirst() throws Exception {
+        ReviewScheduler scheduler = scheduler(1, Set.of("org/urgent"), Set.of());
+        CountDownLatch gate = block(scheduler);
+
+        PullRequestQueue normal = scheduler.open("org/normal", 1L, 0);
+        PullRequestQueue urgent = scheduler.open("org/urgent", 2L, 0);
+        for (int i = 0; i < 3; i++) {
+            submit(normal, "normal", 10);
+        }
+        for (int i = 0; i < 3; i++) {
+            submit(urgent, "urgent", 1_000);
+        }
+
+        List<String> order = runAll(gate);
+
+        assertEquals(List.of("urgent", "urgent", "urgent", "normal", "normal", "normal"), order);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void smallerPullRequestRunsFirstWithinRepository() throws Exception {
+        ReviewScheduler scheduler = scheduler(1, Set.of(), Set.of());
+        CountDownLatch gate = block(scheduler);
+
+        PullRequestQueue large = scheduler.open("org/a", 1L, 5_000);
+        PullRequestQueue small = scheduler.open("org/a", 2L, 20);
+        for (int i = 0; i < 3; i++) {
+            submit(large, "large", 100);
+        }
+        for (int i = 0; i < 2; i++) {
+            submit(small, "small", 100);
+        }
+
+        List<String> order = runAll(gate);
+
+        assertEquals(List.of("small", "small", "large", "large", "large"), order);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void neverRunsMoreThanMaxRunning() throws Exception {
+        ReviewScheduler scheduler = scheduler(2, Set.of(), Set.of());
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch gate = new CountDownLatch(1);
+
+        PullRequestQueue a = scheduler.open("org/a", 1L, 0);
+        PullRequestQueue b = scheduler.open("org/b", 2L, 0);
+        List<CompletableFuture<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            tasks.add((i % 2 == 0 ? a : b).submit(1, 10, () -> {
+                peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return current.decrementAndGet();
+            }));
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 자리가 둘뿐이므로 나머지 넷은 기다린다
+        Thread.sleep(100);
+        assertEquals(2, current.get());
+
+        gate.countDown();
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(2, peak.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void closingQueueCancelsTasksThatHaveNotStarted() throws Exception {
+        ReviewScheduler scheduler = scheduler(1, Set.of(), Set.of());
+        CountDownLatch gate = block(scheduler);
+
+        PullRequestQueue a = scheduler.open("org/a", 1L, 0);
+        submit(a, "a", 10);
+        a.close();
+
+        gate.countDown();
+        assertTrue(futures.get(0).isCancelled());
+        scheduler.shutdown();
+        assertTrue(executed.isEmpty());
+    }
+}
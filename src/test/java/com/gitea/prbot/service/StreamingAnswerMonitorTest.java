@@ -0,0 +1,115 @@
+package com.gitea.prbot.service;
+
+import com.gitea.prbot.service.StreamingAnswerMonitor.StopReason;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingAnswerMonitorTest {
+
+    /**
+     * 조각을 차례로 넣고, 멈추라고 한 조각의 순번(0 부터)을 돌려준다. 끝까지 멈추지 않으면 -1.
+     */
+    private static int feed(StreamingAnswerMonitor monitor, String... fragments) {
+        for (int i = 0; i < fragments.length; i++) {
+            if (monitor.accept(fragments[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void stopsWhenFirstLineIsOk() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(0, 0);
+
+        assertEquals(2, feed(monitor, "O", "K", "\n", "이후 설명"));
+        assertEquals(StopReason.OK, monitor.getStopReason());
+        assertEquals("OK\n", monitor.content());
+        assertEquals(3, monitor.getResponseTokens());
+    }
+
+    @Test
+    void okInsideCodeFenceStillStops() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(0, 0);
+
+        assertEquals(1, feed(monitor, "```\n", "ok.\n", "```\n"));
+        assertEquals(StopReason.OK, monitor.getStopReason());
+    }
+
+    @Test
+    void okAfterOtherContentDoesNotStop() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(0, 0);
+
+        assertEquals(-1, feed(monitor, "검토 결과\n", "OK\n", "[LOW] 이름이 모호함\n"));
+        assertEquals(StopReason.NONE, monitor.getStopReason());
+        assertEquals(1, monitor.getFindings());
+        assertEquals("검토 결과\nOK\n[LOW] 이름이 모호함\n", monitor.content());
+    }
+
+    @Test
+    void stopsAtMaxFindingsAndDropsPartialLine() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(2, 0);
+
+        assertEquals(0, feed(monitor, "[HIGH] SQL 인젝션\n- [MED] 널 검사 누락\n[LO", "W] 다음 줄\n"));
+        assertEquals(StopReason.MAX_FINDINGS, monitor.getStopReason());
+        assertEquals(2, monitor.getFindings());
+        assertEquals("[HIGH] SQL 인젝션\n- [MED] 널 검사 누락\n", monitor.content());
+    }
+
+    @Test
+    void stopsAtMaxTokensAndDropsPartialLine() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(0, 5);
+
+        assertEquals(4, feed(monitor, "[HIGH] 하드코딩된", " 비밀번호\n", "[MED] 반복문", " 안의", " 쿼리", "\n"));
+        assertEquals(StopReason.MAX_TOKENS, monitor.getStopReason());
+        assertEquals(5, monitor.getTokens());
+        assertEquals("[HIGH] 하드코딩된 비밀번호\n", monitor.content());
+        assertEquals(-1, monitor.getPromptTokens());
+        assertEquals(5, monitor.getResponseTokens());
+    }
+
+    @Test
+    void recognizesFindingSplitAcrossFragments() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(1, 0);
+
+        assertFalse(monitor.accept("[HI"));
+        assertFalse(monitor.accept("GH] 토큰이 "));
+        assertEquals(-1, monitor.getFirstFindingNanos());
+        assertTrue(monitor.accept("로그에 남음\n"));
+
+        assertEquals(StopReason.MAX_FINDINGS, monitor.getStopReason());
+        assertEquals(1, monitor.getFindings());
+        assertTrue(monitor.getFirstFindingNanos() >= 0);
+        assertEquals("[HIGH] 토큰이 로그에 남음\n", monitor.content());
+    }
+
+    @Test
+    void ignoresFragmentsAfterStop() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(0, 0);
+        feed(monitor, "OK\n");
+
+        assertTrue(monitor.accept("[HIGH] 무시됨\n"));
+        assertEquals("OK\n", monitor.content());
+        assertEquals(0, monitor.getFindings());
+        assertEquals(1, monitor.getTokens());
+    }
+
+    @Test
+    void prefersReportedTokenCountsWhenStreamCompletes() {
+        StreamingAnswerMonitor monitor = new StreamingAnswerMonitor(3, 100);
+        feed(monitor, "[LOW] ", "매직 넘버\n");
+
+        monitor.onDone(812, 41);
+
+        assertEquals(StopReason.NONE, monitor.getStopReason());
+        assertEquals(812, monitor.getPromptTokens());
+        assertEquals(41, monitor.getResponseTokens());
+
+        monitor.onDone(null, 0);
+        assertEquals(-1, monitor.getPromptTokens());
+        assertEquals(2, monitor.getResponseTokens());
+    }
+}
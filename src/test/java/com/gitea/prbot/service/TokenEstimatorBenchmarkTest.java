@@ -0,0 +1,74 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 토큰 어림 비용과, 종류가 다른 입력에서 계열별 어림값이 예전 방식(글자 수 / 4)과 얼마나 다른지 본다.
+ * 실제 토크나이저와의 차이는 운영에서 prbot.llm.tokens.ratio 로 본다. ./mvnw test -Pbenchmark 로 실행한다.
+ */
+@Tag("benchmark")
+class TokenEstimatorBenchmarkTest {
+
+    private static final int ITERATIONS = 2_000;
+    private static final List<String> MODELS = List.of("starcoder2:3b", "deepseek-coder:6.7b", "qwen2.5-coder:7b",
+            "codellama:13b", "mistral:7b");
+
+    private static Map<String, String> samples() {
+        Map<String, String> samples = new LinkedHashMap<>();
+        StringBuilder code = new StringBuilder();
+        StringBuilder korean = new StringBuilder();
+        StringBuilder minified = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            code.append("+        if (userRepository.existsById(id").append(i).append(")) {\n")
+                    .append("+            return Optional.of(mapper.toDto(entity));\n")
+                    .append("+        }\n");
+            korean.append("+    // 사용자 권한을 확인한 뒤 세션을 갱신한다 ").append(i).append('\n');
+            minified.append("{\"id\":").append(i).append(",\"v\":[1,2,3],\"n\":\"x").append(i).append("\"},");
+        }
+        samples.put("java diff", code.toString());
+        samples.put("korean comments", korean.toString());
+        samples.put("minified json", minified.toString());
+        return samples;
+    }
+
+    @Test
+    void estimateCostAndSpread() {
+        TokenEstimator estimator = new TokenEstimator("starcoder2:3b", 16384, Set.of(), Set.of());
+        Map<String, String> samples = samples();
+
+        for (Map.Entry<String, String> sample : samples.entrySet()) {
+            String text = sample.getValue();
+            StringBuilder row = new StringBuilder();
+            for (String model : MODELS) {
+                int tokens = estimator.forModel(model).count(text);
+                assertTrue(tokens > 0);
+                row.append(String.format(" %s=%d", estimator.forModel(model).getFamily(), tokens));
+            }
+            System.out.printf("%-16s chars/4=%d%s%n", sample.getKey(), text.length() / 4, row);
+        }
+
+        TokenEstimator.Profile profile = estimator.forPrimaryModel();
+        String text = samples.get("java diff");
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            profile.count(text);
+        }
+        long started = System.nanoTime();
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            total += profile.count(text);
+        }
+        long nanos = System.nanoTime() - started;
+
+        assertTrue(total > 0);
+        System.out.printf("TokenEstimator: %.1f MB/s on the java diff sample%n",
+                (double) text.length() * ITERATIONS / (1024 * 1024) / (nanos / 1e9));
+    }
+}
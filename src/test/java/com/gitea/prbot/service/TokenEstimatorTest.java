@@ -0,0 +1,119 @@
+package com.gitea.prbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenEstimatorTest {
+
+    private static final String CODE = """
+            public List<User> findActive(int limit) {
+                return users.stream().filter(User::isActive).limit(limit).toList();
+            }
+            """;
+
+    private static TokenEstimator estimator(Set<String> contextWindows, Set<String> scales) {
+        return new TokenEstimator("starcoder2:3b", 16384, contextWindows, scales);
+    }
+
+    @Test
+    void picksFamilyFromModelName() {
+        TokenEstimator estimator = estimator(Set.of(), Set.of());
+
+        assertEquals("STARCODER", estimator.forModel("starcoder2:7b").getFamily());
+        assertEquals("DEEPSEEK_CODER", estimator.forModel("deepseek-coder:6.7b").getFamily());
+        assertEquals("QWEN", estimator.forModel("Qwen2.5-Coder:7B").getFamily());
+        assertEquals("LLAMA", estimator.forModel("codellama:13b").getFamily());
+        assertEquals("GENERIC", estimator.forModel("mistral:7b").getFamily());
+    }
+
+    @Test
+    void primaryModelProfileIsCached() {
+        TokenEstimator estimator = estimator(Set.of(), Set.of());
+
+        assertSame(estimator.forPrimaryModel(), estimator.forModel("starcoder2:3b"));
+    }
+
+    @Test
+    void readsContextWindowsAndScales() {
+        TokenEstimator estimator = estimator(Set.of("codellama:13b=4096"), Set.of("starcoder2:3b=1.5"));
+
+        assertEquals(4096, estimator.forModel("codellama:13b").getContextWindow());
+        assertEquals(16384, estimator.forModel("starcoder2:3b").getContextWindow());
+        assertEquals(1.5, estimator.forModel("starcoder2:3b").getScale());
+        assertEquals(1.0, estimator.forModel("codellama:13b").getScale());
+    }
+
+    @Test
+    void ignoresMalformedEntries() {
+        TokenEstimator estimator = estimator(Set.of("=100", "codellama:13b=big", ""),
+                Set.of("starcoder2:3b=-1", "starcoder2:3b", "qwen=abc"));
+
+        assertEquals(16384, estimator.forModel("codellama:13b").getContextWindow());
+        assertEquals(1.0, estimator.forModel("starcoder2:3b").getScale());
+        assertEquals(1.0, estimator.forModel("qwen").getScale());
+    }
+
+    @Test
+    void scaleMultipliesEstimate() {
+        int base = estimator(Set.of(), Set.of()).forPrimaryModel().count(CODE);
+        int scaled = estimator(Set.of(), Set.of("starcoder2:3b=2")).forPrimaryModel().count(CODE);
+
+        assertTrue(scaled >= 2 * base - 1 && scaled <= 2 * base, base + " -> " + scaled);
+    }
+
+    @Test
+    void countsPerLineAddUpToWholeText() {
+        TokenEstimator.Profile profile = estimator(Set.of(), Set.of()).forModel("deepseek-coder");
+        int sum = 0;
+        int lineStart = 0;
+        while (lineStart < CODE.length()) {
+            int lineEnd = CODE.indexOf('\n', lineStart) + 1;
+            sum += profile.count(CODE, lineStart, lineEnd);
+            lineStart = lineEnd;
+        }
+
+        int whole = profile.count(CODE);
+        // 줄마다 올림하므로 줄 수 이내로만 커진다
+        assertTrue(sum >= whole && sum <= whole + 3, sum + " vs " + whole);
+    }
+
+    @Test
+    void emptyAndNullTextAreFree() {
+        TokenEstimator.Profile profile = estimator(Set.of(), Set.of()).forPrimaryModel();
+
+        assertEquals(0, profile.count(null));
+        assertEquals(0, profile.count(""));
+        assertEquals(1, profile.count("\n"));
+    }
+
+    @Test
+    void familiesDifferWhereTheirTokenizersDo() {
+        TokenEstimator estimator = estimator(Set.of(), Set.of());
+        String indented = "                if (x) {\n                    y();\n";
+        String digits = "0123456789012345";
+
+        // sentencepiece 계열은 들여쓰기를 더 잘게 나눈다
+        assertTrue(estimator.forModel("codellama").count(indented) > estimator.forModel("starcoder2").count(indented));
+        // starcoder 는 숫자를 한 자리씩 나눈다
+        assertTrue(estimator.forModel("starcoder2").count(digits) > estimator.forModel("mistral").count(digits));
+    }
+
+    @Test
+    void nonAsciiCostsMoreThanAsciiLetters() {
+        TokenEstimator.Profile profile = estimator(Set.of(), Set.of()).forPrimaryModel();
+
+        assertTrue(profile.count("사용자비밀번호확인") > profile.count("userpasswordcheck"));
+    }
+
+    @Test
+    void camelCaseSplitsWords() {
+        TokenEstimator.Profile profile = estimator(Set.of(), Set.of()).forModel("qwen");
+
+        assertTrue(profile.count("findActiveUserById") > profile.count("findactiveuserbyid"));
+    }
+}